@@ -0,0 +1,82 @@
+package eu.tneitzel.rmg.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import eu.tneitzel.rmg.internal.ArgumentHandler;
+import eu.tneitzel.rmg.io.Logger;
+import eu.tneitzel.rmg.operations.Dispatcher;
+import eu.tneitzel.rmg.simulator.FaultProfile;
+import eu.tneitzel.rmg.simulator.Simulator;
+import eu.tneitzel.rmg.utils.RMGUtils;
+
+/**
+ * End-to-end benchmark of the guess operation. During setup, a Simulator with two remote objects is started
+ * on loopback within the benchmark JVM. Each operation runs the guess action against this Simulator with the
+ * internal wordlists, which covers wordlist loading, the scheduling of the guessing workers and the guessing
+ * calls themselves. Since the internal wordlists contain roughly 3300 methods, the throughput of the guessing
+ * workers is roughly twice the number of methods divided by the measured time.
+ *
+ * The faults parameter selects the FaultProfile of the Simulator. Connection resets are not benchmarked, as
+ * remote-method-guesser aborts the guess operation when a connection is reset.
+ *
+ * @author Tobias Neitzel (@qtc_de)
+ */
+@State(Scope.Benchmark)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+public class GuessingBenchmark extends RMGBenchmark
+{
+    @Param({"1", "5"})
+    private String threads;
+
+    @Param({"none", "latency"})
+    private String faults;
+
+    private Simulator simulator;
+    private ArgumentHandler handler;
+
+    @Setup
+    public void setup() throws Exception
+    {
+        RMGUtils.enableCodebaseCollector();
+
+        FaultProfile profile = FaultProfile.NONE;
+
+        if (faults.equals("latency"))
+        {
+            profile = new FaultProfile(1, 1, 0, 50, 0, 0);
+        }
+
+        simulator = new Simulator(0, 2, 20, false, profile);
+        simulator.start();
+
+        handler = new ArgumentHandler(new String[] { "guess", "127.0.0.1", String.valueOf(simulator.getPort()), "--threads", threads, "--no-progress" });
+
+        RMGUtils.init();
+        RMGUtils.disableWarning();
+        Logger.disable();
+    }
+
+    @TearDown
+    public void teardown()
+    {
+        simulator.stop();
+    }
+
+    @Benchmark
+    public void guess()
+    {
+        new Dispatcher(handler).dispatchGuess();
+    }
+}
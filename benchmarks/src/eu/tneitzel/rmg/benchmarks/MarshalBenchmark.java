@@ -0,0 +1,70 @@
+package eu.tneitzel.rmg.benchmarks;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutput;
+import java.io.ObjectOutputStream;
+import java.lang.reflect.Method;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import eu.tneitzel.rmg.networking.RMIEndpoint;
+
+/**
+ * Measures the marshalling of call arguments as performed by RMIEndpoint during unmanaged calls. The private
+ * marshalValue function of RMIEndpoint is obtained via reflection during setup. Arguments are written to an
+ * in memory stream that is reset after each operation.
+ *
+ * @author Tobias Neitzel (@qtc_de)
+ */
+@State(Scope.Thread)
+public class MarshalBenchmark extends RMGBenchmark
+{
+    private static final String[] strings = new String[] { "remote-method-guesser", "benchmark" };
+
+    private ByteArrayOutputStream bos;
+    private ObjectOutputStream out;
+    private Method marshalValue;
+
+    @Setup
+    public void setup() throws IOException, NoSuchMethodException
+    {
+        bos = new ByteArrayOutputStream(4096);
+        out = new ObjectOutputStream(bos);
+
+        marshalValue = RMIEndpoint.class.getDeclaredMethod("marshalValue", Class.class, Object.class, ObjectOutput.class);
+        marshalValue.setAccessible(true);
+    }
+
+    @Benchmark
+    public int marshalPrimitives() throws ReflectiveOperationException, IOException
+    {
+        bos.reset();
+
+        marshalValue.invoke(null, int.class, 1337, out);
+        marshalValue.invoke(null, long.class, 133713371337L, out);
+        marshalValue.invoke(null, boolean.class, true, out);
+        marshalValue.invoke(null, double.class, 13.37, out);
+        marshalValue.invoke(null, char.class, 'r', out);
+        out.flush();
+
+        return bos.size();
+    }
+
+    @Benchmark
+    public int marshalObjects() throws ReflectiveOperationException, IOException
+    {
+        bos.reset();
+
+        marshalValue.invoke(null, String.class, "remote-method-guesser", out);
+        marshalValue.invoke(null, String[].class, strings, out);
+        marshalValue.invoke(null, Integer.class, 1337, out);
+        out.reset();
+        out.flush();
+
+        return bos.size();
+    }
+}
@@ -0,0 +1,61 @@
+package eu.tneitzel.rmg.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import eu.tneitzel.rmg.internal.MethodCandidate;
+import eu.tneitzel.rmg.io.Logger;
+import eu.tneitzel.rmg.utils.RMGUtils;
+import javassist.CtMethod;
+
+/**
+ * Measures the creation of MethodCandidates, which includes the computation of the RMI method hash. Candidates
+ * can either be created from a plain signature, which is parsed without involving javassist, or from a CtMethod
+ * that was compiled before. Both paths are used when wordlists without precomputed hashes are loaded.
+ *
+ * @author Tobias Neitzel (@qtc_de)
+ */
+@State(Scope.Thread)
+public class MethodCandidateBenchmark extends RMGBenchmark
+{
+    private static final String[] signatures = new String[] {
+        "void ping()",
+        "String login(String user, String password)",
+        "boolean execute(String[] command, int timeout, java.util.Map env)",
+        "java.lang.Object lookup(long id, int version, boolean cached, java.lang.String name)",
+        "int[] compute(double x, double y, float scale, short mode, byte flags, char separator)",
+    };
+
+    private int next;
+    private CtMethod[] methods;
+
+    @Setup
+    public void setup() throws Exception
+    {
+        Logger.disable();
+        RMGUtils.init();
+
+        methods = new CtMethod[signatures.length];
+
+        for (int ctr = 0; ctr < signatures.length; ctr++)
+        {
+            methods[ctr] = RMGUtils.makeMethod(signatures[ctr]);
+        }
+    }
+
+    @Benchmark
+    public long fromSignature() throws Exception
+    {
+        String signature = signatures[next++ % signatures.length];
+        return new MethodCandidate(signature).getHash();
+    }
+
+    @Benchmark
+    public long fromCtMethod() throws Exception
+    {
+        CtMethod method = methods[next++ % methods.length];
+        return new MethodCandidate(method).getHash();
+    }
+}
@@ -0,0 +1,52 @@
+package eu.tneitzel.rmg.benchmarks;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import eu.tneitzel.rmg.utils.RMGUtils;
+import javassist.ClassPool;
+import javassist.CtClass;
+
+/**
+ * Measures the computation of the primitive size of method arguments, which is performed for each method
+ * candidate during wordlist parsing.
+ *
+ * @author Tobias Neitzel (@qtc_de)
+ */
+@State(Scope.Thread)
+public class PrimitiveSizeBenchmark extends RMGBenchmark
+{
+    @Param({"primitive", "mixed", "object"})
+    private String arguments;
+
+    private CtClass[] types;
+
+    @Setup
+    public void setup() throws Exception
+    {
+        CtClass string = ClassPool.getDefault().get("java.lang.String");
+
+        switch (arguments)
+        {
+            case "primitive":
+                types = new CtClass[] { CtClass.intType, CtClass.longType, CtClass.booleanType, CtClass.doubleType, CtClass.charType };
+                break;
+
+            case "mixed":
+                types = new CtClass[] { CtClass.intType, CtClass.longType, string, CtClass.doubleType, string };
+                break;
+
+            default:
+                types = new CtClass[] { string, string, string, string, string };
+        }
+    }
+
+    @Benchmark
+    public int getPrimitiveSize()
+    {
+        return RMGUtils.getPrimitiveSize(types);
+    }
+}
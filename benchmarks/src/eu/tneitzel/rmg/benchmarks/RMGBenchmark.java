@@ -0,0 +1,37 @@
+package eu.tneitzel.rmg.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Warmup;
+
+/**
+ * Common base class of all remote-method-guesser benchmarks. JMH annotations are inherited by subclasses,
+ * which allows to define the benchmark defaults in one place. Forked benchmark JVMs do not obtain the
+ * Add-Opens entries from the manifest of the rmg jar. The required module openings are therefore passed
+ * as JVM arguments. Subclasses may override the defaults by specifying the corresponding annotations
+ * themselves.
+ *
+ * @author Tobias Neitzel (@qtc_de)
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgsAppend = {
+        "--add-opens=java.base/java.io=ALL-UNNAMED",
+        "--add-opens=java.base/java.lang=ALL-UNNAMED",
+        "--add-opens=java.base/java.lang.reflect=ALL-UNNAMED",
+        "--add-opens=java.base/jdk.internal.misc=ALL-UNNAMED",
+        "--add-opens=java.rmi/java.rmi.server=ALL-UNNAMED",
+        "--add-opens=java.rmi/sun.rmi.server=ALL-UNNAMED",
+        "--add-opens=java.rmi/sun.rmi.transport=ALL-UNNAMED",
+        "--add-opens=java.rmi/sun.rmi.transport.tcp=ALL-UNNAMED",
+})
+public abstract class RMGBenchmark
+{
+}
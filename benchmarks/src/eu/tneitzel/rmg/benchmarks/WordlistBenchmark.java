@@ -0,0 +1,69 @@
+package eu.tneitzel.rmg.benchmarks;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.HashSet;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.io.IOUtils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import eu.tneitzel.rmg.internal.MethodCandidate;
+import eu.tneitzel.rmg.io.Logger;
+import eu.tneitzel.rmg.io.WordlistHandler;
+import eu.tneitzel.rmg.utils.RMGUtils;
+
+/**
+ * Measures the parsing of the internal wordlists of remote-method-guesser. The internal wordlists use the
+ * advanced format that contains precomputed method hashes. The plain format strips this information, which
+ * forces each signature to be parsed and hashed.
+ *
+ * @author Tobias Neitzel (@qtc_de)
+ */
+@State(Scope.Thread)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class WordlistBenchmark extends RMGBenchmark
+{
+    @Param({"rmg.txt", "rmiscout.txt"})
+    private String wordlist;
+
+    @Param({"advanced", "plain"})
+    private String format;
+
+    private String[] lines;
+
+    @Setup
+    public void setup() throws IOException
+    {
+        Logger.disable();
+        RMGUtils.init();
+
+        List<String> content;
+
+        try (InputStream stream = WordlistHandler.class.getResourceAsStream("/resources/wordlists/" + wordlist))
+        {
+            content = IOUtils.readLines(stream, StandardCharsets.UTF_8);
+        }
+
+        lines = new String[content.size()];
+
+        for (int ctr = 0; ctr < lines.length; ctr++)
+        {
+            String line = content.get(ctr);
+            lines[ctr] = format.equals("plain") ? line.split(";")[0] : line;
+        }
+    }
+
+    @Benchmark
+    public HashSet<MethodCandidate> parseMethods() throws IOException
+    {
+        return WordlistHandler.parseMethods(lines);
+    }
+}
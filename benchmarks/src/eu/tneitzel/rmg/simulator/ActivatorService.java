@@ -0,0 +1,23 @@
+package eu.tneitzel.rmg.simulator;
+
+import java.rmi.Remote;
+import java.rmi.RemoteException;
+
+/**
+ * Remote interface of the SimulatedActivator. Replaces the Activator interface, which is no longer available
+ * within recent Java versions.
+ *
+ * @author Tobias Neitzel (@qtc_de)
+ */
+public interface ActivatorService extends Remote
+{
+    /**
+     * Replacement of Activator.activate.
+     *
+     * @param id the ActivationID of the object to activate
+     * @param force whether a cached reference should be ignored
+     * @return never returns
+     * @throws RemoteException never thrown
+     */
+    Object activate(Object id, boolean force) throws RemoteException;
+}
@@ -0,0 +1,109 @@
+package eu.tneitzel.rmg.simulator;
+
+/**
+ * Describes the faults that are injected by the socket layer of the Simulator. Delays are applied whenever the
+ * server flushes data to a client, which is usually once per RMI response. Resets are triggered with the configured
+ * probability on each flush and close the connection with an RST instead of a FIN. The backlog bounds the accept
+ * queue of the server socket, whereas maxConnections bounds the number of connections that are served concurrently.
+ * Since RMI serves each connection within its own thread, this limits the number of server side threads. Further
+ * connections remain within the accept queue until a served connection is closed.
+ *
+ * @author Tobias Neitzel (@qtc_de)
+ */
+public class FaultProfile
+{
+    private final int delay;
+    private final int jitter;
+    private final double resetRate;
+    private final int backlog;
+    private final int maxConnections;
+    private final long seed;
+
+    /** FaultProfile that does not inject any faults */
+    public static final FaultProfile NONE = new FaultProfile(0, 0, 0, 50, 0, 0);
+
+    /**
+     * Create a new FaultProfile.
+     *
+     * @param delay delay in milliseconds that is applied to each response
+     * @param jitter maximum deviation in milliseconds from the delay
+     * @param resetRate probability between 0 and 1 that a response causes a connection reset
+     * @param backlog maximum length of the accept queue
+     * @param maxConnections maximum number of concurrently served connections. Zero means no limit
+     * @param seed seed for the random decisions of the socket layer
+     */
+    public FaultProfile(int delay, int jitter, double resetRate, int backlog, int maxConnections, long seed)
+    {
+        if (delay < 0 || jitter < 0 || backlog < 0 || maxConnections < 0)
+        {
+            throw new IllegalArgumentException("delay, jitter, backlog and maxConnections cannot be negative");
+        }
+
+        if (resetRate < 0 || resetRate > 1)
+        {
+            throw new IllegalArgumentException("resetRate needs to be between 0 and 1");
+        }
+
+        this.delay = delay;
+        this.jitter = jitter;
+        this.resetRate = resetRate;
+        this.backlog = backlog;
+        this.maxConnections = maxConnections;
+        this.seed = seed;
+    }
+
+    /**
+     * @return delay in milliseconds that is applied to each response
+     */
+    public int getDelay()
+    {
+        return delay;
+    }
+
+    /**
+     * @return maximum deviation in milliseconds from the delay
+     */
+    public int getJitter()
+    {
+        return jitter;
+    }
+
+    /**
+     * @return probability that a response causes a connection reset
+     */
+    public double getResetRate()
+    {
+        return resetRate;
+    }
+
+    /**
+     * @return maximum length of the accept queue
+     */
+    public int getBacklog()
+    {
+        return backlog;
+    }
+
+    /**
+     * @return maximum number of concurrently served connections. Zero means no limit
+     */
+    public int getMaxConnections()
+    {
+        return maxConnections;
+    }
+
+    /**
+     * @return seed for the random decisions of the socket layer
+     */
+    public long getSeed()
+    {
+        return seed;
+    }
+
+    @Override
+    public String toString()
+    {
+        return String.format("delay=%dms, jitter=%dms, resets=%.2f%%, backlog=%d, max-connections=%d",
+                             delay, jitter, resetRate * 100, backlog, maxConnections);
+    }
+}
@@ -0,0 +1,258 @@
+package eu.tneitzel.rmg.simulator;
+
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketException;
+import java.rmi.server.RMIServerSocketFactory;
+import java.util.Random;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+/**
+ * RMIServerSocketFactory that injects the faults of a FaultProfile into all connections accepted by the Simulator.
+ * Faults are injected before the first write that follows a flush. The RMI runtime buffers its output and writes
+ * each response at once, which delays or resets the connection once per response.
+ * The same factory instance is used for all exported objects, which makes the RMI runtime serve them over a single
+ * server socket. The random decisions of each connection are derived from the seed of the FaultProfile.
+ *
+ * @author Tobias Neitzel (@qtc_de)
+ */
+public class FaultyServerSocketFactory implements RMIServerSocketFactory
+{
+    private final FaultProfile profile;
+    private final Random random;
+    private final Semaphore permits;
+
+    /**
+     * Create a new FaultyServerSocketFactory.
+     *
+     * @param profile faults to inject
+     */
+    public FaultyServerSocketFactory(FaultProfile profile)
+    {
+        this.profile = profile;
+        this.random = new Random(profile.getSeed());
+        this.permits = profile.getMaxConnections() > 0 ? new Semaphore(profile.getMaxConnections()) : null;
+    }
+
+    @Override
+    public ServerSocket createServerSocket(int port) throws IOException
+    {
+        return new FaultyServerSocket(port);
+    }
+
+    /**
+     * Obtain a seed for the random decisions of a new connection.
+     *
+     * @return seed derived from the seed of the FaultProfile
+     */
+    private synchronized long nextSeed()
+    {
+        return random.nextLong();
+    }
+
+    /**
+     * ServerSocket that accepts FaultySockets. If the number of concurrent connections is limited, accept blocks
+     * until a served connection is closed. Pending connections remain within the accept queue meanwhile.
+     */
+    private class FaultyServerSocket extends ServerSocket
+    {
+        FaultyServerSocket(int port) throws IOException
+        {
+            super(port, profile.getBacklog());
+        }
+
+        @Override
+        public Socket accept() throws IOException
+        {
+            acquire();
+
+            FaultySocket socket = new FaultySocket(nextSeed());
+
+            try
+            {
+                implAccept(socket);
+            }
+
+            catch (IOException e)
+            {
+                socket.release();
+                throw e;
+            }
+
+            return socket;
+        }
+
+        /**
+         * Wait until another connection can be served. Waiting is aborted when the server socket is closed.
+         *
+         * @throws IOException if the server socket was closed or the thread was interrupted
+         */
+        private void acquire() throws IOException
+        {
+            if (permits == null)
+            {
+                return;
+            }
+
+            try
+            {
+                while (!permits.tryAcquire(100, TimeUnit.MILLISECONDS))
+                {
+                    if (isClosed())
+                    {
+                        throw new SocketException("Socket is closed");
+                    }
+                }
+            }
+
+            catch (InterruptedException e)
+            {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("Interrupted while waiting for a free connection slot");
+            }
+        }
+    }
+
+    /**
+     * Socket that delays or resets the connection before data is sent to the client.
+     */
+    private class FaultySocket extends Socket
+    {
+        private final Random random;
+        private final AtomicBoolean released = new AtomicBoolean(permits == null);
+
+        private OutputStream out;
+
+        FaultySocket(long seed)
+        {
+            this.random = new Random(seed);
+        }
+
+        @Override
+        public synchronized OutputStream getOutputStream() throws IOException
+        {
+            if (out == null)
+            {
+                out = new FaultyOutputStream(super.getOutputStream());
+            }
+
+            return out;
+        }
+
+        @Override
+        public synchronized void close() throws IOException
+        {
+            try
+            {
+                super.close();
+            }
+
+            finally
+            {
+                release();
+            }
+        }
+
+        /**
+         * Release the connection slot of this socket. Only the first call has an effect.
+         */
+        void release()
+        {
+            if (released.compareAndSet(false, true))
+            {
+                permits.release();
+            }
+        }
+
+        /**
+         * Apply the faults of the FaultProfile before data is sent to the client.
+         *
+         * @throws IOException if the connection was reset
+         */
+        private void inject() throws IOException
+        {
+            if (profile.getResetRate() > 0 && random.nextDouble() < profile.getResetRate())
+            {
+                setSoLinger(true, 0);
+                close();
+
+                throw new SocketException("Connection reset by simulator");
+            }
+
+            long delay = profile.getDelay();
+
+            if (profile.getJitter() > 0)
+            {
+                delay += random.nextInt(2 * profile.getJitter() + 1) - profile.getJitter();
+            }
+
+            if (delay > 0)
+            {
+                try
+                {
+                    Thread.sleep(delay);
+                }
+
+                catch (InterruptedException e)
+                {
+                    Thread.currentThread().interrupt();
+                    throw new InterruptedIOException("Interrupted during injected delay");
+                }
+            }
+        }
+
+        /**
+         * OutputStream that injects faults on the first write after a flush.
+         */
+        private class FaultyOutputStream extends FilterOutputStream
+        {
+            private boolean pending = false;
+
+            FaultyOutputStream(OutputStream out)
+            {
+                super(out);
+            }
+
+            @Override
+            public void write(int b) throws IOException
+            {
+                beforeWrite();
+                out.write(b);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException
+            {
+                beforeWrite();
+                out.write(b, off, len);
+            }
+
+            @Override
+            public void flush() throws IOException
+            {
+                pending = false;
+                out.flush();
+            }
+
+            /**
+             * Inject faults if this is the first write since the last flush.
+             *
+             * @throws IOException if the connection was reset
+             */
+            private void beforeWrite() throws IOException
+            {
+                if (!pending)
+                {
+                    pending = true;
+                    inject();
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,213 @@
+package eu.tneitzel.rmg.simulator;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.rmi.Remote;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+
+import org.apache.commons.io.IOUtils;
+
+import javassist.CannotCompileException;
+import javassist.ClassPool;
+import javassist.CtClass;
+import javassist.CtMethod;
+import javassist.CtNewConstructor;
+import javassist.CtNewMethod;
+import javassist.NotFoundException;
+
+/**
+ * Generates remote interfaces and their implementations from the internal wordlists of remote-method-guesser.
+ * Each generated interface contains a random selection of wordlist methods. Methods with argument types that are
+ * not available within the simulator JVM are skipped. The generated implementations do nothing and return zero or
+ * null. Generated classes are defined within a separate class loader and ClassPool, which allows to create multiple
+ * Simulators within the same JVM.
+ *
+ * @author Tobias Neitzel (@qtc_de)
+ */
+public class RemoteObjectGenerator
+{
+    private static final String[] wordlists = new String[] { "rmg.txt", "rmiscout.txt" };
+    private static final String packageName = "eu.tneitzel.rmg.simulator.generated";
+
+    private final ClassPool pool;
+    private final CtClass remoteClass;
+    private final CtClass remoteExceptionClass;
+    private final GeneratedClassLoader loader;
+    private final List<String> signatures;
+
+    /**
+     * Create a new RemoteObjectGenerator and load the method signatures from the internal wordlists.
+     *
+     * @throws IOException if the wordlists cannot be read
+     * @throws NotFoundException if the Remote or RemoteException classes cannot be found
+     */
+    public RemoteObjectGenerator() throws IOException, NotFoundException
+    {
+        pool = new ClassPool(true);
+        remoteClass = pool.get("java.rmi.Remote");
+        remoteExceptionClass = pool.get("java.rmi.RemoteException");
+        loader = new GeneratedClassLoader(RemoteObjectGenerator.class.getClassLoader());
+        signatures = loadSignatures();
+    }
+
+    /**
+     * @return number of method signatures that are available for generation
+     */
+    public int getSignatureCount()
+    {
+        return signatures.size();
+    }
+
+    /**
+     * Create a remote object that implements a generated remote interface with the specified number of methods.
+     * Methods are selected randomly, but the selection only depends on the specified seed.
+     *
+     * @param name simple name of the generated interface
+     * @param methodCount number of methods within the interface
+     * @param seed seed for the method selection
+     * @return instance of the generated implementation
+     * @throws ReflectiveOperationException if the generated implementation cannot be instantiated
+     * @throws CannotCompileException if a generated class cannot be compiled
+     * @throws IOException if the bytecode of a generated class cannot be obtained
+     */
+    public Remote generate(String name, int methodCount, long seed) throws ReflectiveOperationException, CannotCompileException, IOException
+    {
+        CtClass intf = pool.makeInterface(packageName + "." + name, remoteClass);
+        CtClass impl = pool.makeClass(packageName + "." + name + "Impl");
+
+        List<String> candidates = new ArrayList<String>(signatures);
+        Collections.shuffle(candidates, new Random(seed));
+
+        int added = 0;
+
+        for (String signature : candidates)
+        {
+            if (added >= methodCount)
+            {
+                break;
+            }
+
+            if (addMethod(intf, impl, signature))
+            {
+                added++;
+            }
+        }
+
+        impl.addInterface(intf);
+        impl.addConstructor(CtNewConstructor.defaultConstructor(impl));
+
+        loader.define(intf);
+        Class<?> implClass = loader.define(impl);
+
+        intf.detach();
+        impl.detach();
+
+        return (Remote)implClass.getDeclaredConstructor().newInstance();
+    }
+
+    /**
+     * Add the specified method to the generated interface and implementation. If the method cannot be compiled
+     * or conflicts with an already added method, it is skipped.
+     *
+     * @param intf generated interface
+     * @param impl generated implementation
+     * @param signature method signature from the wordlist
+     * @return true if the method was added
+     */
+    private boolean addMethod(CtClass intf, CtClass impl, String signature)
+    {
+        try
+        {
+            CtMethod method = CtNewMethod.make("public abstract " + signature + ";", intf);
+
+            for (CtMethod existing : intf.getDeclaredMethods())
+            {
+                if (existing.getName().equals(method.getName()) && existing.getSignature().equals(method.getSignature()))
+                {
+                    return false;
+                }
+            }
+
+            method.setExceptionTypes(new CtClass[] { remoteExceptionClass });
+
+            CtMethod implMethod = CtNewMethod.make(method.getReturnType(), method.getName(), method.getParameterTypes(),
+                                                   method.getExceptionTypes(), null, impl);
+            intf.addMethod(method);
+            impl.addMethod(implMethod);
+
+            return true;
+        }
+
+        catch (CannotCompileException | NotFoundException e)
+        {
+            return false;
+        }
+    }
+
+    /**
+     * Load the method signatures contained within the internal wordlists. Additional information like precomputed
+     * method hashes and generic type parameters are removed.
+     *
+     * @return list of method signatures
+     * @throws IOException if a wordlist cannot be read
+     */
+    private static List<String> loadSignatures() throws IOException
+    {
+        Set<String> signatures = new HashSet<String>();
+
+        for (String wordlist : wordlists)
+        {
+            List<String> lines;
+
+            try (InputStream stream = RemoteObjectGenerator.class.getResourceAsStream("/resources/wordlists/" + wordlist))
+            {
+                if (stream == null)
+                {
+                    throw new IOException("Unable to find internal wordlist " + wordlist);
+                }
+
+                lines = IOUtils.readLines(stream, StandardCharsets.UTF_8);
+            }
+
+            for (String line : lines)
+            {
+                line = line.split(";")[0].trim();
+
+                if (line.isEmpty() || line.startsWith("#"))
+                {
+                    continue;
+                }
+
+                signatures.add(line.replaceAll("\\<[^>]+\\>", "").replaceAll(" +", " "));
+            }
+        }
+
+        List<String> sorted = new ArrayList<String>(signatures);
+        Collections.sort(sorted);
+
+        return sorted;
+    }
+
+    /**
+     * ClassLoader that defines the generated classes.
+     */
+    private static class GeneratedClassLoader extends ClassLoader
+    {
+        GeneratedClassLoader(ClassLoader parent)
+        {
+            super(parent);
+        }
+
+        Class<?> define(CtClass ctClass) throws CannotCompileException, IOException
+        {
+            byte[] bytecode = ctClass.toBytecode();
+            return defineClass(ctClass.getName(), bytecode, 0, bytecode.length);
+        }
+    }
+}
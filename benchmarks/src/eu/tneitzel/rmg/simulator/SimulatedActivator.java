@@ -0,0 +1,62 @@
+package eu.tneitzel.rmg.simulator;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.Method;
+import java.rmi.RemoteException;
+import java.rmi.server.ObjID;
+import java.rmi.server.RMIServerSocketFactory;
+import java.util.HashMap;
+import java.util.Map;
+
+import sun.rmi.server.UnicastServerRef;
+import sun.rmi.transport.LiveRef;
+
+/**
+ * Minimal stand-in for the RMI Activator. The activation system was removed from recent Java versions and
+ * the ActivationID type is no longer available. The SimulatedActivator is therefore exported with the well
+ * known ObjID of the Activator and dispatches calls with the method hash of Activator.activate to a method
+ * that accepts an arbitrary object. Since no ActivationID can be passed to this method, it always behaves
+ * like an Activator that received an argument of the wrong type.
+ *
+ * Exporting requires access to sun.rmi.server and sun.rmi.transport (--add-opens java.rmi/sun.rmi.server=ALL-UNNAMED
+ * and --add-opens java.rmi/sun.rmi.transport=ALL-UNNAMED).
+ *
+ * @author Tobias Neitzel (@qtc_de)
+ */
+public class SimulatedActivator implements ActivatorService
+{
+    private static final long activateHash = -8767355154875805558L;
+
+    @Override
+    public Object activate(Object id, boolean force)
+    {
+        throw new IllegalArgumentException("argument type mismatch");
+    }
+
+    /**
+     * Export a new SimulatedActivator on the specified port.
+     *
+     * @param port port to export the Activator on
+     * @param ssf server socket factory used by the other objects of the Simulator
+     * @return exported SimulatedActivator
+     * @throws RemoteException if exporting fails
+     * @throws ReflectiveOperationException if the method table of the Activator cannot be replaced
+     */
+    public static SimulatedActivator export(int port, RMIServerSocketFactory ssf) throws RemoteException, ReflectiveOperationException
+    {
+        SimulatedActivator activator = new SimulatedActivator();
+
+        LiveRef liveRef = new LiveRef(new ObjID(ObjID.ACTIVATOR_ID), port, null, ssf);
+        UnicastServerRef ref = new UnicastServerRef(liveRef);
+        ref.exportObject(activator, null, false);
+
+        Map<Long,Method> methods = new HashMap<Long,Method>();
+        methods.put(activateHash, ActivatorService.class.getMethod("activate", Object.class, boolean.class));
+
+        Field hashToMethod = UnicastServerRef.class.getDeclaredField("hashToMethod_Map");
+        hashToMethod.setAccessible(true);
+        hashToMethod.set(ref, methods);
+
+        return activator;
+    }
+}
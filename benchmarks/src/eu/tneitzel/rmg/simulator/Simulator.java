@@ -0,0 +1,216 @@
+package eu.tneitzel.rmg.simulator;
+
+import java.io.IOException;
+import java.net.ServerSocket;
+import java.rmi.NoSuchObjectException;
+import java.rmi.Remote;
+import java.rmi.registry.LocateRegistry;
+import java.rmi.registry.Registry;
+import java.rmi.server.UnicastRemoteObject;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import eu.tneitzel.rmg.io.Logger;
+import javassist.CannotCompileException;
+import javassist.NotFoundException;
+import net.sourceforge.argparse4j.ArgumentParsers;
+import net.sourceforge.argparse4j.impl.Arguments;
+import net.sourceforge.argparse4j.inf.ArgumentParser;
+import net.sourceforge.argparse4j.inf.Namespace;
+
+/**
+ * In-process RMI target for benchmarking remote-method-guesser. The Simulator exports an RMI registry together
+ * with a configurable number of remote objects, whose remote interfaces are generated from the internal wordlists.
+ * The DGC is exported automatically by the RMI runtime and a SimulatedActivator can be added optionally. All
+ * objects are served over a single port, whose socket layer injects the faults configured within a FaultProfile.
+ *
+ * In contrast to the docker containers of remote-method-guesser, the Simulator starts within milliseconds and
+ * produces reproducible targets. It can be used from benchmarks or started as a standalone process:
+ *
+ *      java --add-opens java.rmi/sun.rmi.server=ALL-UNNAMED --add-opens java.rmi/sun.rmi.transport=ALL-UNNAMED -cp target/benchmarks.jar eu.tneitzel.rmg.simulator.Simulator 1099
+ *
+ * @author Tobias Neitzel (@qtc_de)
+ */
+public class Simulator
+{
+    /** Prefix of the bound names of the remote objects */
+    public static final String boundNamePrefix = "simulated-";
+
+    private final int objectCount;
+    private final int methodCount;
+    private final boolean activator;
+    private final FaultProfile profile;
+
+    private int port;
+    private Registry registry;
+    private SimulatedActivator activatorImpl;
+
+    private final List<Remote> objects = new ArrayList<Remote>();
+    private final List<String> boundNames = new ArrayList<String>();
+
+    /**
+     * Create a new Simulator.
+     *
+     * @param port port to listen on. Zero chooses a free port
+     * @param objectCount number of remote objects to bind within the registry
+     * @param methodCount number of methods within the remote interface of each remote object
+     * @param activator whether a SimulatedActivator should be exported
+     * @param profile faults to inject into the socket layer
+     */
+    public Simulator(int port, int objectCount, int methodCount, boolean activator, FaultProfile profile)
+    {
+        this.port = port;
+        this.objectCount = objectCount;
+        this.methodCount = methodCount;
+        this.activator = activator;
+        this.profile = profile;
+    }
+
+    /**
+     * Export the registry, the remote objects and optionally the SimulatedActivator. The method selection of the
+     * remote objects only depends on the seed of the FaultProfile.
+     *
+     * @throws IOException if the registry or the remote objects cannot be exported
+     * @throws ReflectiveOperationException if a remote object or the SimulatedActivator cannot be created
+     * @throws CannotCompileException if a remote interface cannot be generated
+     * @throws NotFoundException if the classes required for generation are not available
+     */
+    public void start() throws IOException, ReflectiveOperationException, CannotCompileException, NotFoundException
+    {
+        if (port == 0)
+        {
+            port = freePort();
+        }
+
+        FaultyServerSocketFactory ssf = new FaultyServerSocketFactory(profile);
+        RemoteObjectGenerator generator = new RemoteObjectGenerator();
+
+        registry = LocateRegistry.createRegistry(port, null, ssf);
+
+        for (int ctr = 0; ctr < objectCount; ctr++)
+        {
+            Remote object = generator.generate("SimulatedService" + ctr, methodCount, profile.getSeed() + ctr);
+            Remote stub = UnicastRemoteObject.exportObject(object, port, null, ssf);
+
+            registry.rebind(boundNamePrefix + ctr, stub);
+
+            objects.add(object);
+            boundNames.add(boundNamePrefix + ctr);
+        }
+
+        if (activator)
+        {
+            activatorImpl = SimulatedActivator.export(port, ssf);
+        }
+    }
+
+    /**
+     * Unexport all objects that were exported by the Simulator. Connections that are currently served are
+     * closed forcibly.
+     */
+    public void stop()
+    {
+        List<Remote> exported = new ArrayList<Remote>(objects);
+
+        if (activatorImpl != null)
+        {
+            exported.add(activatorImpl);
+        }
+
+        if (registry != null)
+        {
+            exported.add(registry);
+        }
+
+        for (Remote object : exported)
+        {
+            try
+            {
+                UnicastRemoteObject.unexportObject(object, true);
+            }
+
+            catch (NoSuchObjectException e) {}
+        }
+
+        objects.clear();
+        boundNames.clear();
+        activatorImpl = null;
+        registry = null;
+    }
+
+    /**
+     * @return port the Simulator is listening on
+     */
+    public int getPort()
+    {
+        return port;
+    }
+
+    /**
+     * @return bound names of the remote objects
+     */
+    public List<String> getBoundNames()
+    {
+        return Collections.unmodifiableList(boundNames);
+    }
+
+    /**
+     * Obtain a currently unused TCP port on the local machine.
+     *
+     * @return free port number
+     * @throws IOException if no port can be obtained
+     */
+    private static int freePort() throws IOException
+    {
+        try (ServerSocket socket = new ServerSocket(0))
+        {
+            return socket.getLocalPort();
+        }
+    }
+
+    /**
+     * Start a Simulator as standalone process. The Simulator runs until the process is terminated.
+     *
+     * @param argv command line arguments
+     */
+    public static void main(String[] argv)
+    {
+        ArgumentParser parser = ArgumentParsers.newFor("rmg-simulator").build();
+        parser.description("In-process RMI target for benchmarking remote-method-guesser");
+
+        parser.addArgument("port").type(Integer.class).nargs("?").setDefault(1099).help("port to listen on");
+        parser.addArgument("--objects").type(Integer.class).setDefault(5).metavar("count").help("number of remote objects");
+        parser.addArgument("--methods").type(Integer.class).setDefault(20).metavar("count").help("number of methods per remote object");
+        parser.addArgument("--activator").action(Arguments.storeTrue()).help("export a simulated activator");
+        parser.addArgument("--delay").type(Integer.class).setDefault(0).metavar("ms").help("delay applied to each response");
+        parser.addArgument("--jitter").type(Integer.class).setDefault(0).metavar("ms").help("maximum deviation from the delay");
+        parser.addArgument("--reset-rate").type(Double.class).setDefault(0.0).metavar("rate").help("probability that a response resets the connection");
+        parser.addArgument("--backlog").type(Integer.class).setDefault(50).metavar("count").help("maximum length of the accept queue");
+        parser.addArgument("--max-connections").type(Integer.class).setDefault(0).metavar("count").help("maximum number of concurrently served connections");
+        parser.addArgument("--seed").type(Long.class).setDefault(0L).metavar("seed").help("seed for method selection and fault injection");
+
+        Namespace args = parser.parseArgsOrFail(argv);
+
+        try
+        {
+            FaultProfile profile = new FaultProfile(args.getInt("delay"), args.getInt("jitter"), args.getDouble("reset_rate"),
+                                                    args.getInt("backlog"), args.getInt("max_connections"), args.getLong("seed"));
+
+            Simulator simulator = new Simulator(args.getInt("port"), args.getInt("objects"), args.getInt("methods"),
+                                                args.getBoolean("activator"), profile);
+            simulator.start();
+
+            Logger.printlnMixedYellow("Simulator is listening on port", String.valueOf(simulator.getPort()));
+            Logger.printlnMixedBlue("Bound names:", String.join(", ", simulator.getBoundNames()));
+            Logger.printlnMixedBlue("Faults:", profile.toString());
+        }
+
+        catch (Exception e)
+        {
+            Logger.eprintlnMixedYellow("Starting the simulator caused an", e.getClass().getName(), "exception.");
+            Logger.eprintln("Message: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+}
@@ -1,6 +1,8 @@
 package eu.tneitzel.rmg;
 
 import eu.tneitzel.rmg.internal.ArgumentHandler;
+import eu.tneitzel.rmg.io.Logger;
+import eu.tneitzel.rmg.metrics.Metrics;
 import eu.tneitzel.rmg.operations.Dispatcher;
 import eu.tneitzel.rmg.operations.Operation;
 import eu.tneitzel.rmg.utils.RMGUtils;
@@ -20,6 +22,8 @@ public class Starter
      */
     public static void main(String[] argv)
     {
+        Logger.startWriter();
+
         ArgumentHandler handler = new ArgumentHandler(argv);
         Operation operation = handler.getAction();
 
@@ -28,6 +32,8 @@ public class Starter
         RMGUtils.enableCodebaseCollector();
         Dispatcher dispatcher = new Dispatcher(handler);
 
+        Metrics.start();
         operation.invoke(dispatcher);
+        Metrics.stop();
     }
 }
@@ -0,0 +1,432 @@
+package eu.tneitzel.rmg.endpoints;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.rmi.Remote;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+import org.yaml.snakeyaml.DumperOptions;
+import org.yaml.snakeyaml.LoaderOptions;
+import org.yaml.snakeyaml.Yaml;
+import org.yaml.snakeyaml.constructor.SafeConstructor;
+
+import eu.tneitzel.rmg.internal.ExceptionHandler;
+import eu.tneitzel.rmg.internal.MethodCandidate;
+import eu.tneitzel.rmg.internal.RMGOption;
+import eu.tneitzel.rmg.io.Logger;
+import eu.tneitzel.rmg.utils.RemoteObjectWrapper;
+import eu.tneitzel.rmg.utils.SpringRemotingWrapper;
+import javassist.CannotCompileException;
+import javassist.NotFoundException;
+
+/**
+ * The GuessCache stores the results of method guessing operations on disk. Results are stored per remote class
+ * name and contain the identified remote methods, a fingerprint of the interfaces implemented by the remote
+ * object and the method hashes that were guessed on the class. When the same remote class is encountered again,
+ * the cached result can be used in the same way as a KnownEndpoint: if all current method candidates were already
+ * guessed, guessing is skipped and the cached methods are reported. Otherwise, only method candidates that were
+ * not guessed before are sent to the remote object.
+ *
+ * Cached results expire after the configured TTL and are ignored if the interface fingerprint of the remote object
+ * changed. Using --invalidate-cache ignores all existing results, which causes them to be replaced after guessing.
+ * Spring Remoting objects are not cached, as they all share the same remote class.
+ *
+ * The cache is stored as YAML file and is loaded once per run, similar to the KnownEndpointHolder.
+ *
+ * @author Tobias Neitzel (@qtc_de)
+ */
+public class GuessCache
+{
+    private final File file;
+    private final long ttl;
+    private final boolean invalidate;
+    private final Map<String, Entry> entries;
+
+    private static GuessCache instance = null;
+    private static boolean initialized = false;
+
+    /**
+     * Create a GuessCache that is backed by the specified file. Existing entries are loaded from the file.
+     *
+     * @param file file to load and store cache entries
+     * @param ttl time in milliseconds after which cached entries expire
+     * @param invalidate whether existing entries should be ignored
+     */
+    private GuessCache(File file, long ttl, boolean invalidate)
+    {
+        this.file = file;
+        this.ttl = ttl;
+        this.invalidate = invalidate;
+        this.entries = new LinkedHashMap<String, Entry>();
+
+        if (file.isFile())
+        {
+            load();
+        }
+    }
+
+    /**
+     * Return the GuessCache configured by the --guess-cache option. The cache is only loaded once. If no
+     * cache file was configured, null is returned.
+     *
+     * @return GuessCache or null if caching is disabled
+     */
+    public static synchronized GuessCache getCache()
+    {
+        if (!initialized)
+        {
+            initialized = true;
+            String path = RMGOption.GUESS_CACHE.getValue();
+
+            if (path != null && !path.isEmpty())
+            {
+                Integer hours = RMGOption.GUESS_CACHE_TTL.getValue();
+                long ttl = (hours == null || hours <= 0) ? Long.MAX_VALUE : hours * 3600L * 1000L;
+
+                instance = new GuessCache(new File(path), ttl, RMGOption.GUESS_CACHE_INVALIDATE.getBool());
+            }
+        }
+
+        return instance;
+    }
+
+    /**
+     * Lookup the cache entry for the specified remote object. Entries are only returned if their interface
+     * fingerprint matches the remote object and if they did not expire yet.
+     *
+     * @param remoteObject remote object to lookup
+     * @return valid cache entry for the remote object or null
+     */
+    public synchronized Entry lookup(RemoteObjectWrapper remoteObject)
+    {
+        if (invalidate || remoteObject instanceof SpringRemotingWrapper)
+        {
+            return null;
+        }
+
+        Entry entry = entries.get(remoteObject.getInterfaceName());
+
+        if (entry == null || !entry.fingerprint.equals(getFingerprint(remoteObject.remoteObject)))
+        {
+            return null;
+        }
+
+        if (System.currentTimeMillis() - entry.timestamp > ttl)
+        {
+            return null;
+        }
+
+        return entry;
+    }
+
+    /**
+     * Store the guessing result for the specified remote object. If a previous entry was used during guessing,
+     * the guessed method hashes are merged with the ones of the previous entry and the timestamp of the previous
+     * entry is kept. This makes sure that partially refreshed entries still expire according to their oldest part.
+     *
+     * @param remoteObject remote object that was guessed
+     * @param methods all remote methods that are known to exist on the remote object
+     * @param guessed method hashes that were guessed during the current run
+     * @param previous previous entry used during guessing or null
+     */
+    public synchronized void update(RemoteObjectWrapper remoteObject, Collection<MethodCandidate> methods, Set<Long> guessed, Entry previous)
+    {
+        if (remoteObject instanceof SpringRemotingWrapper)
+        {
+            return;
+        }
+
+        TreeSet<Long> hashes = new TreeSet<Long>(guessed);
+        TreeSet<String> signatures = new TreeSet<String>();
+        long timestamp = System.currentTimeMillis();
+
+        for (MethodCandidate method : methods)
+        {
+            signatures.add(method.getSignature());
+        }
+
+        if (previous != null)
+        {
+            for (long hash : previous.guessed)
+            {
+                hashes.add(hash);
+            }
+
+            signatures.addAll(previous.methods);
+            timestamp = previous.timestamp;
+        }
+
+        long[] hashArray = new long[hashes.size()];
+        int ctr = 0;
+
+        for (long hash : hashes)
+        {
+            hashArray[ctr++] = hash;
+        }
+
+        String fingerprint = getFingerprint(remoteObject.remoteObject);
+        entries.put(remoteObject.getInterfaceName(), new Entry(fingerprint, timestamp, new ArrayList<String>(signatures), hashArray));
+    }
+
+    /**
+     * Write the cache to disk. The cache is first written to a temporary file that is moved to the final
+     * location afterwards. This prevents corrupted cache files when rmg is interrupted while saving.
+     */
+    public synchronized void save()
+    {
+        Map<String, Object> content = new LinkedHashMap<String, Object>();
+
+        for (Map.Entry<String, Entry> entry : entries.entrySet())
+        {
+            content.put(entry.getKey(), entry.getValue().toMap());
+        }
+
+        DumperOptions options = new DumperOptions();
+        options.setDefaultFlowStyle(DumperOptions.FlowStyle.BLOCK);
+
+        try
+        {
+            File parent = file.getAbsoluteFile().getParentFile();
+            File tmp = File.createTempFile(".rmg-cache", ".tmp", parent);
+
+            try (Writer writer = new OutputStreamWriter(Files.newOutputStream(tmp.toPath()), StandardCharsets.UTF_8))
+            {
+                new Yaml(options).dump(content, writer);
+            }
+
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        catch (IOException e)
+        {
+            Logger.eprintlnMixedYellow("Caught", "IOException", "while writing the guess cache.");
+            ExceptionHandler.showStackTrace(e);
+        }
+    }
+
+    /**
+     * Load the cache entries from the cache file. Malformed entries are skipped. If the file cannot be
+     * parsed at all, a warning is printed and the cache starts empty.
+     */
+    private void load()
+    {
+        try (InputStream stream = Files.newInputStream(file.toPath()))
+        {
+            Object content = new Yaml(new SafeConstructor(new LoaderOptions())).load(stream);
+
+            if (!(content instanceof Map))
+            {
+                return;
+            }
+
+            for (Map.Entry<?, ?> entry : ((Map<?, ?>)content).entrySet())
+            {
+                Entry cacheEntry = Entry.fromMap(entry.getValue());
+
+                if (cacheEntry != null)
+                {
+                    entries.put(String.valueOf(entry.getKey()), cacheEntry);
+                }
+            }
+        }
+
+        catch (IOException | RuntimeException e)
+        {
+            Logger.eprintlnMixedYellow("Unable to read guess cache", file.getPath());
+            Logger.eprintln("Starting with an empty cache.");
+            ExceptionHandler.showStackTrace(e);
+        }
+    }
+
+    /**
+     * Compute the interface fingerprint of a remote object. The fingerprint is a hash over the sorted names
+     * of all interfaces that are implemented by the class of the remote object.
+     *
+     * @param remote remote object to compute the fingerprint for
+     * @return interface fingerprint as hex string
+     */
+    public static String getFingerprint(Remote remote)
+    {
+        TreeSet<String> names = new TreeSet<String>();
+
+        for (Class<?> intf : remote.getClass().getInterfaces())
+        {
+            names.add(intf.getName());
+        }
+
+        try
+        {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            byte[] hash = digest.digest(String.join(",", names).getBytes(StandardCharsets.UTF_8));
+
+            StringBuilder builder = new StringBuilder();
+
+            for (int ctr = 0; ctr < 8; ctr++)
+            {
+                builder.append(String.format("%02x", hash[ctr]));
+            }
+
+            return builder.toString();
+        }
+
+        catch (NoSuchAlgorithmException e)
+        {
+            ExceptionHandler.internalError("GuessCache.getFingerprint", "SHA-256 is not available.");
+        }
+
+        return null;
+    }
+
+    /**
+     * A cache entry for a single remote class. Contains the interface fingerprint, the time the entry was
+     * created, the signatures of the identified remote methods and the sorted hashes of all guessed methods.
+     *
+     * @author Tobias Neitzel (@qtc_de)
+     */
+    public static class Entry
+    {
+        private final String fingerprint;
+        private final long timestamp;
+        private final List<String> methods;
+        private final long[] guessed;
+
+        private Entry(String fingerprint, long timestamp, List<String> methods, long[] guessed)
+        {
+            this.fingerprint = fingerprint;
+            this.timestamp = timestamp;
+            this.methods = methods;
+            this.guessed = guessed;
+        }
+
+        /**
+         * Check whether the specified method hash was already guessed on the remote class.
+         *
+         * @param hash method hash to check
+         * @return true if the method hash was already guessed
+         */
+        public boolean isGuessed(long hash)
+        {
+            return Arrays.binarySearch(guessed, hash) >= 0;
+        }
+
+        /**
+         * Check whether all specified MethodCandidates were already guessed on the remote class.
+         *
+         * @param candidates MethodCandidates to check
+         * @return true if all candidates were already guessed
+         */
+        public boolean covers(Collection<MethodCandidate> candidates)
+        {
+            for (MethodCandidate candidate : candidates)
+            {
+                if (!isGuessed(candidate.getHash()))
+                {
+                    return false;
+                }
+            }
+
+            return true;
+        }
+
+        /**
+         * Create MethodCandidates for the cached remote methods. Signatures that cannot be parsed are skipped.
+         *
+         * @return List of cached remote methods
+         */
+        public List<MethodCandidate> getMethods()
+        {
+            List<MethodCandidate> candidates = new ArrayList<MethodCandidate>();
+
+            for (String signature : methods)
+            {
+                try
+                {
+                    candidates.add(new MethodCandidate(signature));
+                }
+
+                catch (CannotCompileException | NotFoundException e)
+                {
+                    Logger.eprintlnMixedYellow("Unable to parse cached method", signature);
+                }
+            }
+
+            return candidates;
+        }
+
+        /**
+         * Convert the entry into a map that can be serialized as YAML.
+         *
+         * @return map representation of the entry
+         */
+        private Map<String, Object> toMap()
+        {
+            ByteBuffer buffer = ByteBuffer.allocate(guessed.length * Long.BYTES);
+            buffer.asLongBuffer().put(guessed);
+
+            Map<String, Object> map = new LinkedHashMap<String, Object>();
+            map.put("fingerprint", fingerprint);
+            map.put("timestamp", timestamp);
+            map.put("methods", methods);
+            map.put("guessed", Base64.getEncoder().encodeToString(buffer.array()));
+
+            return map;
+        }
+
+        /**
+         * Create an entry from its map representation. Returns null if the map is malformed.
+         *
+         * @param object map representation as loaded from YAML
+         * @return parsed entry or null
+         */
+        private static Entry fromMap(Object object)
+        {
+            if (!(object instanceof Map))
+            {
+                return null;
+            }
+
+            Map<?, ?> map = (Map<?, ?>)object;
+
+            Object fingerprint = map.get("fingerprint");
+            Object timestamp = map.get("timestamp");
+            Object methods = map.get("methods");
+            Object guessed = map.get("guessed");
+
+            if (!(fingerprint instanceof String) || !(timestamp instanceof Number) || !(methods instanceof List) || !(guessed instanceof String))
+            {
+                return null;
+            }
+
+            List<String> signatures = new ArrayList<String>();
+
+            for (Object method : (List<?>)methods)
+            {
+                signatures.add(String.valueOf(method));
+            }
+
+            ByteBuffer buffer = ByteBuffer.wrap(Base64.getDecoder().decode((String)guessed));
+            long[] hashes = new long[buffer.remaining() / Long.BYTES];
+            buffer.asLongBuffer().get(hashes);
+            Arrays.sort(hashes);
+
+            return new Entry((String)fingerprint, ((Number)timestamp).longValue(), signatures, hashes);
+        }
+    }
+}
@@ -98,7 +98,7 @@ public class KnownEndpointHolder
      *
      * @return KnownEndpointHolder with initialized List of KnownEndpoint
      */
-    public static KnownEndpointHolder getHolder()
+    public static synchronized KnownEndpointHolder getHolder()
     {
         if (instance == null)
         {
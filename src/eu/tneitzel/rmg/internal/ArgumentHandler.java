@@ -442,12 +442,12 @@ public class ArgumentHandler
      */
     public void setSocketTimeout()
     {
-        String scanTimeoutRead = RMGOption.SCAN_TIMEOUT_READ.getValue();
-        String scanTimeoutConnect = RMGOption.SCAN_TIMEOUT_CONNECT.getValue();
+        int scanTimeoutRead = RMGOption.SCAN_TIMEOUT_READ.getValue();
+        int scanTimeoutConnect = RMGOption.SCAN_TIMEOUT_CONNECT.getValue();
 
-        System.setProperty("sun.rmi.transport.connectionTimeout", scanTimeoutConnect);
-        System.setProperty("sun.rmi.transport.tcp.handshakeTimeout", scanTimeoutRead);
-        System.setProperty("sun.rmi.transport.tcp.responseTimeout", scanTimeoutRead);
+        System.setProperty("sun.rmi.transport.connectionTimeout", String.valueOf(scanTimeoutConnect));
+        System.setProperty("sun.rmi.transport.tcp.handshakeTimeout", String.valueOf(scanTimeoutRead));
+        System.setProperty("sun.rmi.transport.tcp.responseTimeout", String.valueOf(scanTimeoutRead));
 
         PortScanner.setSocketTimeouts(scanTimeoutRead, scanTimeoutConnect);
     }
@@ -5,8 +5,14 @@ import java.rmi.server.RMIClassLoader;
 import java.rmi.server.RMIClassLoaderSpi;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.atomic.LongAdder;
 
+import eu.tneitzel.rmg.metrics.FlightEvents;
 import eu.tneitzel.rmg.utils.RMGUtils;
 import javassist.CannotCompileException;
 import javassist.NotFoundException;
@@ -66,14 +72,32 @@ import javassist.NotFoundException;
  *  3. Check if the requested class is known by the client and dynamically create it if this is not the case.
  *  4. Load the class using the regular class loader and return it.
  *
+ * When multiple targets are enumerated within the same JVM, codebases are collected per target. The thread
+ * that enumerates a target registers a separate codebase map via setScope. Remote calls unmarshal their results
+ * within the calling thread, which makes sure that codebases end up in the map of the corresponding target. All
+ * codebase maps are concurrent, as the lookups of a single target may run in multiple threads.
+ *
+ * Dynamically created classes are tracked within a compute-once map. The first thread that requests an unknown
+ * class creates it, whereas other threads requesting the same class wait for the result instead of creating the
+ * class a second time. Classes that were already created are resolved without any locking. The creation itself
+ * is serialized by RMGUtils, which guards its shared ClassPool. The number of created classes and the time spent on
+ * creating them can be obtained via getGenerationCount and getGenerationTime.
+ *
  * @author Tobias Neitzel (@qtc_de)
  */
 public class CodebaseCollector extends RMIClassLoaderSpi
 {
-    private static HashMap<String, Long> serialVersionUIDMap = new HashMap<String,Long>();
-    private static HashMap<String, Set<String>> codebases = new HashMap<String,Set<String>>();
+    private static Map<String, Long> serialVersionUIDMap = new ConcurrentHashMap<String,Long>();
+    private static Map<String, Set<String>> codebases = newScope();
+    private static ThreadLocal<Map<String, Set<String>>> scope = new ThreadLocal<Map<String, Set<String>>>();
     private static RMIClassLoaderSpi originalLoader = RMIClassLoader.getDefaultProviderInstance();
 
+    private static final Map<String, FutureTask<Boolean>> generatedClasses = new ConcurrentHashMap<String, FutureTask<Boolean>>();
+
+    private static final LongAdder generationCount = new LongAdder();
+    private static final LongAdder generationTime = new LongAdder();
+    private static final LongAdder cacheHits = new LongAdder();
+
     /**
      * Just a proxy to the loadClass method of the default provider instance. If a codebase
      * was specified, it is added to the codebase list. Afterwards, the codebase is set to
@@ -103,29 +127,26 @@ public class CodebaseCollector extends RMIClassLoaderSpi
         {
             if (name.endsWith("_Stub"))
             {
-                RMGUtils.makeLegacyStub(name, serialVersionUID);
+                final long uid = serialVersionUID;
+                final String stubName = name;
+
+                generateClass(name, () -> RMGUtils.makeLegacyStub(stubName, uid));
             }
 
             else if (name.equals("sun.rmi.server.ActivatableRef"))
             {
-                RMGUtils.makeActivatableRef();
+                generateClass(name, () -> RMGUtils.makeActivatableRef());
             }
 
-            else if (!RMGOption.SOCKET_FACTORY.isNull())
+            else if (isSocketFactory(name))
             {
-                if (name.contains(RMGOption.SOCKET_FACTORY.<String>getValue()))
-                {
-                    RMGUtils.makeSocketFactory(name, serialVersionUID);
-                }
-            }
+                final long uid = serialVersionUID;
+                final String factoryName = name;
 
-            else if (name.contains("SocketFactory") || name.endsWith("Factory") || name.endsWith("SF"))
-            {
-                RMGUtils.makeSocketFactory(name, serialVersionUID);
+                generateClass(name, () -> RMGUtils.makeSocketFactory(factoryName, uid));
             }
 
             resolvedClass = originalLoader.loadClass(codebase, name, defaultLoader);
-
         }
 
         catch (CannotCompileException | NotFoundException e)
@@ -152,14 +173,16 @@ public class CodebaseCollector extends RMIClassLoaderSpi
         try {
 
             for(String intf : interfaces) {
-                RMGUtils.makeInterface(intf);
+
+                generateClass(intf, () -> RMGUtils.makeInterface(intf));
+
                 addCodebase(codebase, intf);
             }
 
             codebase = null;
             resolvedClass = originalLoader.loadProxyClass(codebase, interfaces, defaultLoader);
 
-        } catch (CannotCompileException e) {
+        } catch (CannotCompileException | NotFoundException e) {
             ExceptionHandler.internalError("loadProxyClass", "Unable to compile unknown interface class.");
         }
 
@@ -206,11 +229,95 @@ public class CodebaseCollector extends RMIClassLoaderSpi
      * that were found for the corresponding codebase. Usually, an RMI server should only
      * expose one codebase that is used by all classes. However, just in case...
      *
+     * If a scope was registered for the current thread, the codebases of this scope are returned.
+     * The returned HashMap is a snapshot of the collected codebases. Use getScope to obtain the
+     * map that is updated by the CodebaseCollector.
+     *
      * @return HashMap of the collected codebases.
      */
     public static HashMap<String,Set<String>> getCodebases()
     {
-        return codebases;
+        HashMap<String,Set<String>> snapshot = new HashMap<String,Set<String>>();
+
+        for (Map.Entry<String,Set<String>> entry : getScope().entrySet())
+        {
+            snapshot.put(entry.getKey(), new HashSet<String>(entry.getValue()));
+        }
+
+        return snapshot;
+    }
+
+    /**
+     * Returns the codebase map that is currently used by the CodebaseCollector. This is the map that was
+     * registered as scope for the current thread or the global codebase map if no scope was registered.
+     * In contrast to getCodebases, the returned map is updated when new codebases are encountered.
+     *
+     * @return codebase map used for the current thread
+     */
+    public static Map<String,Set<String>> getScope()
+    {
+        Map<String,Set<String>> scoped = scope.get();
+        return (scoped != null) ? scoped : codebases;
+    }
+
+    /**
+     * Register a separate codebase map for the current thread. Codebases that are encountered by the
+     * current thread are stored within this map instead of the global one.
+     *
+     * @param scopedCodebases codebase map to use for the current thread or null to use the global map again
+     */
+    public static void setScope(Map<String,Set<String>> scopedCodebases)
+    {
+        if (scopedCodebases == null)
+        {
+            scope.remove();
+        }
+
+        else
+        {
+            scope.set(scopedCodebases);
+        }
+    }
+
+    /**
+     * Create a new and empty codebase map that can be registered via setScope. The map can be
+     * filled and read from multiple threads.
+     *
+     * @return new codebase map
+     */
+    public static Map<String,Set<String>> newScope()
+    {
+        return new ConcurrentHashMap<String,Set<String>>();
+    }
+
+    /**
+     * Return the number of classes that were created dynamically by the CodebaseCollector.
+     *
+     * @return number of created classes
+     */
+    public static long getGenerationCount()
+    {
+        return generationCount.sum();
+    }
+
+    /**
+     * Return the time that was spent on creating classes dynamically.
+     *
+     * @return generation time in milliseconds
+     */
+    public static long getGenerationTime()
+    {
+        return generationTime.sum() / 1_000_000;
+    }
+
+    /**
+     * Return the number of class requests that were answered by a class that was created before.
+     *
+     * @return number of cache hits
+     */
+    public static long getCacheHits()
+    {
+        return cacheHits.sum();
     }
 
     /**
@@ -225,9 +332,128 @@ public class CodebaseCollector extends RMIClassLoaderSpi
     }
 
     /**
-     * Adds the codebase - className pair into a HashMap. If the codebase was already
+     * Check whether the specified class name looks like a socket factory that needs to be created dynamically.
+     * If the user specified a pattern via --socket-factory, only this pattern is considered.
+     *
+     * @param name class name to check
+     * @return true if the class should be created as socket factory
+     */
+    private static boolean isSocketFactory(String name)
+    {
+        if (!RMGOption.SOCKET_FACTORY.isNull())
+        {
+            return name.contains(RMGOption.SOCKET_FACTORY.<String>getValue());
+        }
+
+        return name.contains("SocketFactory") || name.endsWith("Factory") || name.endsWith("SF");
+    }
+
+    /**
+     * Make sure that the specified class exists. The first call for a class name runs the specified generator,
+     * whereas concurrent and later calls for the same class name wait for the outcome of the first call. Classes
+     * that already exist within the JVM are not created and are not counted as generated. If the generator fails,
+     * the class name is removed from the map to allow another attempt.
+     *
+     * @param className name of the class to create
+     * @param generator function that creates the class
+     * @throws CannotCompileException if the class could not be compiled
+     * @throws NotFoundException if a class required for the creation was not found
+     */
+    private static void generateClass(String className, Generator generator) throws CannotCompileException, NotFoundException
+    {
+        FutureTask<Boolean> task = generatedClasses.get(className);
+
+        if (task == null)
+        {
+            FutureTask<Boolean> created = new FutureTask<Boolean>(() -> createClass(className, generator));
+            task = generatedClasses.putIfAbsent(className, created);
+
+            if (task == null)
+            {
+                task = created;
+                task.run();
+            }
+        }
+
+        else
+        {
+            cacheHits.increment();
+        }
+
+        try
+        {
+            task.get();
+        }
+
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+
+        catch (ExecutionException e)
+        {
+            generatedClasses.remove(className, task);
+            Throwable cause = e.getCause();
+
+            if (cause instanceof CannotCompileException)
+            {
+                throw (CannotCompileException)cause;
+            }
+
+            else if (cause instanceof NotFoundException)
+            {
+                throw (NotFoundException)cause;
+            }
+
+            else if (cause instanceof RuntimeException)
+            {
+                throw (RuntimeException)cause;
+            }
+
+            else if (cause instanceof Error)
+            {
+                throw (Error)cause;
+            }
+
+            throw new CannotCompileException(cause);
+        }
+    }
+
+    /**
+     * Run the generator for the specified class if the class does not already exist. Access to the shared
+     * ClassPool used by the generators is synchronized within RMGUtils.
+     *
+     * @param className name of the class to create
+     * @param generator function that creates the class
+     * @return true if the class was created, false if it already existed
+     * @throws Exception if the generator fails
+     */
+    private static Boolean createClass(String className, Generator generator) throws Exception
+    {
+        try
+        {
+            Class.forName(className);
+            return false;
+        }
+
+        catch (ClassNotFoundException e) {}
+
+        long start = System.nanoTime();
+        Object event = FlightEvents.begin(FlightEvents.Type.CLASS_GENERATION);
+
+        generator.generate();
+
+        FlightEvents.classGeneration(event, className);
+        generationTime.add(System.nanoTime() - start);
+        generationCount.increment();
+
+        return true;
+    }
+
+    /**
+     * Adds the codebase - className pair into the codebase Map. If the codebase was already
      * added before, the className is appended to the Set within the value of the
-     * HashMap. Classes that are part of common default packages like java.* are
+     * Map. Classes that are part of common default packages like java.* are
      * ignored.
      *
      * @param codebase value enumerated by the loader
@@ -238,17 +464,24 @@ public class CodebaseCollector extends RMIClassLoaderSpi
         if( codebase == null )
             return;
 
+        Set<String> classNames = getScope().computeIfAbsent(codebase, k -> ConcurrentHashMap.newKeySet());
+
         if( className.startsWith("java.") || className.startsWith("[Ljava") || className.startsWith("javax.") )
-            codebases.putIfAbsent(codebase, new HashSet<String>());
+            return;
 
-        else if( codebases.containsKey(codebase) ) {
-            Set<String> classNames = codebases.get(codebase);
-            classNames.add(className);
+        classNames.add(className);
+    }
 
-        } else {
-            Set<String> classNames = new HashSet<String>();
-            classNames.add(className);
-            codebases.put(codebase, classNames);
-        }
+    /**
+     * Creates a class dynamically. Used as generator function for generateClass.
+     */
+    private interface Generator
+    {
+        /**
+         * @return the created class
+         * @throws CannotCompileException if the class could not be compiled
+         * @throws NotFoundException if a class required for the creation was not found
+         */
+        Class<?> generate() throws CannotCompileException, NotFoundException;
     }
 }
@@ -1,5 +1,7 @@
 package eu.tneitzel.rmg.internal;
 
+import java.io.PrintWriter;
+import java.io.StringWriter;
 import java.rmi.server.ObjID;
 
 import eu.tneitzel.rmg.io.Logger;
@@ -866,7 +868,8 @@ public class ExceptionHandler {
     }
 
     /**
-     * Helper function that prints a stacktrace with a prefixed Logger item.
+     * Helper function that prints a stacktrace with a prefixed Logger item. If the output of the
+     * current thread is buffered, the stacktrace is written into the buffer.
      *
      * @param <T> throwable type
      * @param e Exception that was caught.
@@ -874,7 +877,15 @@ public class ExceptionHandler {
     public static <T extends Throwable> void stackTrace(T e)
     {
         Logger.eprintln("StackTrace:");
-        e.printStackTrace();
+
+        if( Logger.isBuffered() ) {
+            StringWriter trace = new StringWriter();
+            e.printStackTrace(new PrintWriter(trace));
+            Logger.eprintlnPlain(trace.toString().trim());
+
+        } else {
+            e.printStackTrace();
+        }
     }
 
     /**
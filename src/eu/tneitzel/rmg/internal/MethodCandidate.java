@@ -8,6 +8,7 @@ import java.security.DigestOutputStream;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
 
+import eu.tneitzel.rmg.io.CallTemplate;
 import eu.tneitzel.rmg.io.Logger;
 import eu.tneitzel.rmg.io.RawObjectOutputStream;
 import eu.tneitzel.rmg.utils.RMGUtils;
@@ -29,17 +30,21 @@ public class MethodCandidate
     private long hash;
 
     private CtMethod method;
+    private String name;
     private String signature;
 
     private boolean isVoid;
     private int argumentCount;
     private int primitiveSize;
 
+    private volatile CallTemplate callTemplate;
+
+    private static final byte[] ZEROS = new byte[256];
+
     /**
-     * Creates a MethodCandidate from a method signature defined as String. The constructor first of all
-     * checks for unknown types within the method signature and creates the dynamically. Afterwards, it
-     * compiles the method signature to a CtMethod and initializes meta information containing variables
-     * on demand.
+     * Creates a MethodCandidate from a method signature defined as String. The signature is parsed by
+     * MethodSignature, which computes the method descriptor and the meta information without involving
+     * javassist. The corresponding CtMethod is only compiled on demand when getMethod is called.
      *
      * @param signature method signature to create the MethodCandidate from
      * @throws CannotCompileException is thrown when the method signature is invalid
@@ -47,11 +52,14 @@ public class MethodCandidate
      */
     public MethodCandidate(String signature) throws CannotCompileException, NotFoundException
     {
-        this.signature = signature;
-        RMGUtils.createTypesFromSignature(signature);
+        MethodSignature parsed = MethodSignature.parse(signature);
 
-        method = RMGUtils.makeMethod(signature);
-        initialize(method);
+        this.signature = signature;
+        this.name = parsed.getName();
+        this.hash = computeMethodHash(parsed.getName() + parsed.getDescriptor());
+        this.argumentCount = parsed.getArgumentCount();
+        this.primitiveSize = parsed.getPrimitiveSize();
+        this.isVoid = argumentCount == 0;
     }
 
     /**
@@ -72,6 +80,25 @@ public class MethodCandidate
         this.isVoid = Boolean.valueOf(isVoid);
     }
 
+    /**
+     * Creates a MethodCandidate from already parsed meta information. This constructor is used when
+     * loading MethodCandidates from a binary wordlist index.
+     *
+     * @param signature method signature to create the MethodCandidate from.
+     * @param hash method hash for the corresponding method.
+     * @param primitiveSize number of bytes before the first non primitive argument
+     * @param isVoid if true, the method does not take any arguments
+     * @param argumentCount number of arguments the method takes
+     */
+    public MethodCandidate(String signature, long hash, int primitiveSize, boolean isVoid, int argumentCount)
+    {
+        this.signature = signature;
+        this.hash = hash;
+        this.primitiveSize = primitiveSize;
+        this.isVoid = isVoid;
+        this.argumentCount = argumentCount;
+    }
+
     /**
      * This constructor allows creating a MethodCandidate based on an already present CtMethod.
      * This is currently only used in the case of already known classes that are encountered
@@ -199,11 +226,39 @@ public class MethodCandidate
 
         else
         {
-            oo.write(new byte[this.primitiveSize]);
+            int remaining = this.primitiveSize;
+
+            while (remaining > 0)
+            {
+                int count = Math.min(remaining, ZEROS.length);
+                oo.write(ZEROS, 0, count);
+                remaining -= count;
+            }
+
             oo.writeByte(1);
         }
     }
 
+    /**
+     * Returns the precomputed CallTemplate for the MethodCandidate. The template is created on first
+     * access and shared afterwards. CallTemplates are immutable and can be used concurrently.
+     *
+     * @return CallTemplate for the MethodCandidate
+     * @throws IOException should not be thrown in practice
+     */
+    public CallTemplate getCallTemplate() throws IOException
+    {
+        CallTemplate template = this.callTemplate;
+
+        if (template == null)
+        {
+            template = new CallTemplate(this);
+            this.callTemplate = template;
+        }
+
+        return template;
+    }
+
     /**
      * Returns the parameter types of the method as obtained from the CtMethod.
      *
@@ -217,8 +272,8 @@ public class MethodCandidate
     }
 
     /**
-     * Obtain the name of the corresponding method. If the CtMethod was not created so far,
-     * the function returns the placeholder "method".
+     * Obtain the name of the corresponding method. If the name is not known without compiling the
+     * CtMethod and the CtMethod was not created so far, the function returns the placeholder "method".
      *
      * @return the name of the method
      * @throws CannotCompileException should never occur
@@ -226,7 +281,12 @@ public class MethodCandidate
      */
     public String getName() throws CannotCompileException, NotFoundException
     {
-        if (this.method != null)
+        if (this.name != null)
+        {
+            return this.name;
+        }
+
+        else if (this.method != null)
         {
             return this.getMethod().getName();
         }
@@ -344,18 +404,23 @@ public class MethodCandidate
     }
 
     /**
-     * If not already done, creates a CtMethod from the stored method signature.
+     * If not already done, creates a CtMethod from the stored method signature. This requires all types
+     * within the signature to be available. Unknown types are created dynamically before the method is
+     * compiled. The signature is normalized by MethodSignature first, as javassist does not support some
+     * constructs that are allowed within signatures (e.g. varargs or final arguments).
      *
      * @return CtMethod
      * @throws CannotCompileException if method signature was invalid
      * @throws NotFoundException if method signature was invalid
      */
-    public CtMethod getMethod() throws CannotCompileException, NotFoundException
+    public synchronized CtMethod getMethod() throws CannotCompileException, NotFoundException
     {
         if (this.method == null)
         {
-            MethodCandidate tmp = new MethodCandidate(this.getSignature());
-            this.method = tmp.getMethod();
+            String normalized = MethodSignature.parse(this.getSignature()).getNormalizedSignature();
+
+            RMGUtils.createTypesFromSignature(normalized);
+            this.method = RMGUtils.makeMethod(normalized);
         }
 
         return this.method;
@@ -381,7 +446,7 @@ public class MethodCandidate
 
         try
         {
-            typeName = this.method.getParameterTypes()[position].getName();
+            typeName = this.getMethod().getParameterTypes()[position].getName();
         }
 
         catch (Exception e)
@@ -0,0 +1,444 @@
+package eu.tneitzel.rmg.internal;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import javassist.CannotCompileException;
+
+/**
+ * MethodSignature is a lightweight parser for method signatures as they are used within wordlists or on the
+ * command line (e.g. "String execute(String cmd, int timeout)"). Previously, each signature was compiled by
+ * javassist just to obtain the JVM method descriptor that is required for computing the RMI method hash.
+ * This creates a CtMethod and possibly some synthetic CtClasses for each signature, which is slow and keeps
+ * a lot of objects alive for large wordlists.
+ *
+ * MethodSignature produces the JVM method descriptor, the argument types and the primitiveSize directly from
+ * the signature string. Type names are resolved the same way as javassist does it: primitive types, classes
+ * from java.lang and fully qualified class names. Qualified names that refer to nested classes that are
+ * available on the class path (e.g. java.util.Map.Entry) are resolved to their binary name. Unknown classes
+ * are used as specified, which matches the behavior of the dynamically created classes used by javassist.
+ *
+ * Some signatures that are accepted by the parser cannot be compiled by javassist as they are (final arguments,
+ * varargs and nested classes referenced by their qualified name). The parser therefore also creates a normalized
+ * version of the signature, where these constructs are replaced by their javassist compatible equivalents. The
+ * normalized signature has the same method descriptor and should be used when the method needs to be compiled.
+ * The SignatureCheck class verifies during the build that the parser and javassist agree on the internal wordlists.
+ *
+ * @author Tobias Neitzel (@qtc_de)
+ */
+public class MethodSignature
+{
+    private final String name;
+    private final String descriptor;
+    private final String normalized;
+    private final String[] argumentTypes;
+    private final int primitiveSize;
+
+    private static final Map<String, String> primitives = new HashMap<String, String>();
+    private static final Map<String, Integer> primitiveSizes = new HashMap<String, Integer>();
+    private static final Map<String, String> resolvedTypes = new ConcurrentHashMap<String, String>();
+    private static final Set<String> keywords = new HashSet<String>(Arrays.asList(
+            "abstract", "assert", "boolean", "break", "byte", "case", "catch", "char", "class", "const", "continue",
+            "default", "do", "double", "else", "enum", "extends", "false", "final", "finally", "float", "for", "goto",
+            "if", "implements", "import", "instanceof", "int", "interface", "long", "native", "new", "null", "package",
+            "private", "protected", "public", "return", "short", "static", "strictfp", "super", "switch", "synchronized",
+            "this", "throw", "throws", "transient", "true", "try", "void", "volatile", "while"));
+
+    private static final String UNRESOLVED = "";
+
+    static
+    {
+        primitives.put("boolean", "Z");
+        primitives.put("byte", "B");
+        primitives.put("char", "C");
+        primitives.put("short", "S");
+        primitives.put("int", "I");
+        primitives.put("long", "J");
+        primitives.put("float", "F");
+        primitives.put("double", "D");
+        primitives.put("void", "V");
+
+        primitiveSizes.put("boolean", 1);
+        primitiveSizes.put("byte", Byte.BYTES);
+        primitiveSizes.put("char", Character.BYTES);
+        primitiveSizes.put("short", Short.BYTES);
+        primitiveSizes.put("int", Integer.BYTES);
+        primitiveSizes.put("long", Long.BYTES);
+        primitiveSizes.put("float", Float.BYTES);
+        primitiveSizes.put("double", Double.BYTES);
+    }
+
+    private MethodSignature(String name, String descriptor, String normalized, String[] argumentTypes, int primitiveSize)
+    {
+        this.name = name;
+        this.descriptor = descriptor;
+        this.normalized = normalized;
+        this.argumentTypes = argumentTypes;
+        this.primitiveSize = primitiveSize;
+    }
+
+    /**
+     * Parse the specified method signature.
+     *
+     * @param signature method signature to parse
+     * @return parsed MethodSignature
+     * @throws CannotCompileException if the signature is invalid or contains unresolvable types
+     */
+    public static MethodSignature parse(String signature) throws CannotCompileException
+    {
+        String trimmed = signature.trim();
+
+        int argumentsStart = trimmed.indexOf('(');
+        int argumentsEnd = trimmed.lastIndexOf(')');
+
+        if (argumentsStart == -1 || argumentsEnd < argumentsStart || !trimmed.substring(argumentsEnd + 1).trim().isEmpty())
+        {
+            throw new CannotCompileException("invalid method signature: " + signature);
+        }
+
+        String[] head = trimmed.substring(0, argumentsStart).trim().split(" +");
+
+        if (head.length != 2 || !isIdentifier(head[1]))
+        {
+            throw new CannotCompileException("invalid method signature: " + signature);
+        }
+
+        StringBuilder descriptor = new StringBuilder("(");
+        StringBuilder normalized = new StringBuilder();
+
+        String argumentPart = trimmed.substring(argumentsStart + 1, argumentsEnd).trim();
+        String[] arguments = argumentPart.isEmpty() ? new String[0] : argumentPart.split(",");
+        String[] argumentTypes = new String[arguments.length];
+
+        for (int ctr = 0; ctr < arguments.length; ctr++)
+        {
+            String[] parts = arguments[ctr].trim().replaceAll(" *\\[ *\\]", "[]").split(" +");
+
+            if (parts.length == 3 && parts[0].equals("final"))
+            {
+                parts = new String[] { parts[1], parts[2] };
+            }
+
+            if (parts.length != 2)
+            {
+                throw new CannotCompileException("invalid argument in method signature: " + arguments[ctr].trim());
+            }
+
+            String type = parts[0];
+            String argName = parts[1];
+
+            /* C style array declarations like 'String args[]' */
+            while (argName.endsWith("[]"))
+            {
+                type += "[]";
+                argName = argName.substring(0, argName.length() - 2);
+            }
+
+            if (!isIdentifier(argName))
+            {
+                throw new CannotCompileException("invalid argument in method signature: " + arguments[ctr].trim());
+            }
+
+            if (ctr != 0)
+            {
+                normalized.append(", ");
+            }
+
+            argumentTypes[ctr] = type;
+            descriptor.append(getDescriptor(type, normalized));
+            normalized.append(" arg").append(ctr);
+        }
+
+        descriptor.append(")");
+        normalized.append(")");
+
+        StringBuilder returnType = new StringBuilder();
+        descriptor.append(getDescriptor(head[0], returnType));
+
+        if (head[0].endsWith("..."))
+        {
+            throw new CannotCompileException("invalid return type in method signature: " + head[0]);
+        }
+
+        normalized.insert(0, returnType + " " + head[1] + "(");
+        return new MethodSignature(head[1], descriptor.toString(), normalized.toString(), argumentTypes, computePrimitiveSize(argumentTypes));
+    }
+
+    /**
+     * Return the name of the method.
+     *
+     * @return method name
+     */
+    public String getName()
+    {
+        return name;
+    }
+
+    /**
+     * Return the JVM method descriptor (e.g. (Ljava/lang/String;I)V).
+     *
+     * @return method descriptor
+     */
+    public String getDescriptor()
+    {
+        return descriptor;
+    }
+
+    /**
+     * Return the normalized version of the signature. Within the normalized signature, final modifiers are
+     * removed, varargs are replaced by arrays, class names are replaced by their binary names (e.g. Map.Entry
+     * becomes java.util.Map$Entry) and arguments are named arg0 to argN. The normalized signature can be compiled
+     * by javassist and results in the same method descriptor as the original one.
+     *
+     * @return normalized method signature
+     */
+    public String getNormalizedSignature()
+    {
+        return normalized;
+    }
+
+    /**
+     * Return the argument types as they were specified within the signature.
+     *
+     * @return argument types
+     */
+    public String[] getArgumentTypes()
+    {
+        return argumentTypes.clone();
+    }
+
+    /**
+     * Return the number of arguments of the method.
+     *
+     * @return argument count
+     */
+    public int getArgumentCount()
+    {
+        return argumentTypes.length;
+    }
+
+    /**
+     * Return the primitiveSize of the method, as computed by RMGUtils.getPrimitiveSize. For methods
+     * without arguments, -99 is returned.
+     *
+     * @return number of bytes before the first non primitive argument, -1 if all arguments are primitive
+     */
+    public int getPrimitiveSize()
+    {
+        return primitiveSize;
+    }
+
+    /**
+     * Compute the number of bytes before the first non primitive argument. Works exactly like
+     * RMGUtils.getPrimitiveSize, but on type names.
+     *
+     * @param types argument types
+     * @return number of bytes before the first non primitive argument, -1 if all arguments are primitive
+     */
+    private static int computePrimitiveSize(String[] types)
+    {
+        if (types.length == 0)
+        {
+            return -99;
+        }
+
+        int size = 0;
+
+        for (String type : types)
+        {
+            Integer typeSize = primitiveSizes.get(type);
+
+            if (typeSize == null)
+            {
+                return size;
+            }
+
+            size += typeSize;
+        }
+
+        return -1;
+    }
+
+    /**
+     * Create the JVM type descriptor for the specified type name. Array and vararg types are supported.
+     * The normalized version of the type is appended to the specified StringBuilder.
+     *
+     * @param type type name as used within method signatures
+     * @param normalized StringBuilder the normalized type is appended to
+     * @return JVM type descriptor
+     * @throws CannotCompileException if the type cannot be resolved
+     */
+    private static String getDescriptor(String type, StringBuilder normalized) throws CannotCompileException
+    {
+        StringBuilder descriptor = new StringBuilder();
+
+        if (type.endsWith("..."))
+        {
+            descriptor.append('[');
+            type = type.substring(0, type.length() - 3);
+        }
+
+        while (type.endsWith("[]"))
+        {
+            descriptor.append('[');
+            type = type.substring(0, type.length() - 2);
+        }
+
+        String primitive = primitives.get(type);
+
+        if (primitive != null)
+        {
+            if (primitive.equals("V") && descriptor.length() != 0)
+            {
+                throw new CannotCompileException("invalid type: " + type);
+            }
+
+            normalized.append(type);
+            appendDimensions(normalized, descriptor.length());
+
+            return descriptor.append(primitive).toString();
+        }
+
+        String className = resolveClass(type);
+
+        if (className == UNRESOLVED)
+        {
+            throw new CannotCompileException("no such class: " + type);
+        }
+
+        normalized.append(className);
+        appendDimensions(normalized, descriptor.length());
+
+        return descriptor.append('L').append(className.replace('.', '/')).append(';').toString();
+    }
+
+    /**
+     * Append the specified number of array dimensions to a normalized type.
+     *
+     * @param normalized StringBuilder containing the normalized type
+     * @param dimensions number of array dimensions
+     */
+    private static void appendDimensions(StringBuilder normalized, int dimensions)
+    {
+        for (int ctr = 0; ctr < dimensions; ctr++)
+        {
+            normalized.append("[]");
+        }
+    }
+
+    /**
+     * Resolve a class name to its binary name. Results are cached, as the same types are used over and
+     * over again within wordlists.
+     *
+     * @param type class name as used within method signatures
+     * @return binary name of the class or UNRESOLVED if the class cannot be resolved
+     */
+    private static String resolveClass(String type)
+    {
+        String resolved = resolvedTypes.get(type);
+
+        if (resolved == null)
+        {
+            resolved = lookupClass(type);
+            resolvedTypes.put(type, resolved);
+        }
+
+        return resolved;
+    }
+
+    /**
+     * Lookup the binary name for the specified class name. Simple names are looked up within java.lang.
+     * Qualified names are checked for nested classes by replacing the rightmost dots with dollar signs.
+     * Unknown qualified names are returned as they are.
+     *
+     * @param type class name as used within method signatures
+     * @return binary name of the class or UNRESOLVED if the class cannot be resolved
+     */
+    private static String lookupClass(String type)
+    {
+        for (String part : type.split("\\.", -1))
+        {
+            if (!isIdentifier(part))
+            {
+                return UNRESOLVED;
+            }
+        }
+
+        if (!type.contains("."))
+        {
+            if (classExists("java.lang." + type))
+            {
+                return "java.lang." + type;
+            }
+
+            return classExists(type) ? type : UNRESOLVED;
+        }
+
+        String candidate = type;
+
+        while (true)
+        {
+            if (classExists(candidate))
+            {
+                return candidate;
+            }
+
+            int dot = candidate.lastIndexOf('.');
+
+            if (dot == -1)
+            {
+                return type;
+            }
+
+            candidate = candidate.substring(0, dot) + "$" + candidate.substring(dot + 1);
+        }
+    }
+
+    /**
+     * Check whether the specified class is available on the class path without initializing it.
+     *
+     * @param className binary name of the class
+     * @return true if the class exists
+     */
+    private static boolean classExists(String className)
+    {
+        try
+        {
+            Class.forName(className, false, MethodSignature.class.getClassLoader());
+            return true;
+        }
+
+        catch (ClassNotFoundException | LinkageError e)
+        {
+            return false;
+        }
+    }
+
+    /**
+     * Check whether the specified string is a valid Java identifier. Java keywords are not valid identifiers.
+     *
+     * @param identifier string to check
+     * @return true if the string is a valid identifier
+     */
+    private static boolean isIdentifier(String identifier)
+    {
+        if (identifier.isEmpty() || !Character.isJavaIdentifierStart(identifier.charAt(0)) || keywords.contains(identifier))
+        {
+            return false;
+        }
+
+        for (int ctr = 1; ctr < identifier.length(); ctr++)
+        {
+            if (!Character.isJavaIdentifierPart(identifier.charAt(ctr)))
+            {
+                return false;
+            }
+        }
+
+        return true;
+    }
+}
@@ -35,6 +35,12 @@ public enum RMGOption
     GLOBAL_NO_COLOR("--no-color", "disable colored output", Arguments.storeTrue(), RMGOptionGroup.GENERAL),
     /** display stack traces for caught exceptions */
     GLOBAL_STACK_TRACE("--stack-trace", "display stack traces for caught exceptions", Arguments.storeTrue(), RMGOptionGroup.GENERAL),
+    /** print latency and connection metrics after the operation */
+    GLOBAL_METRICS("--metrics", "print latency and connection metrics after the operation", Arguments.storeTrue(), RMGOptionGroup.GENERAL),
+    /** periodically write metrics in Prometheus text format to a file */
+    GLOBAL_METRICS_FILE("--metrics-file", "periodically write metrics in Prometheus text format to a file", Arguments.store(), RMGOptionGroup.GENERAL, "file"),
+    /** expose metrics as MXBean within the platform MBeanServer */
+    GLOBAL_METRICS_JMX("--metrics-jmx", "expose metrics as MXBean within the platform MBeanServer", Arguments.storeTrue(), RMGOptionGroup.GENERAL),
 
     /** target host */
     TARGET_HOST("host", "target host", Arguments.store(), RMGOptionGroup.NONE, "host"),
@@ -54,9 +60,9 @@ public enum RMGOption
     /** use SSL for connections */
     CONN_SSL("--ssl", "use SSL for connections", Arguments.storeTrue(), RMGOptionGroup.CONNECTION),
     /** scan timeout for read operation */
-    SCAN_TIMEOUT_READ("--timeout-read", "scan timeout for read operation", Arguments.store(), RMGOptionGroup.CONNECTION, "sec"),
+    SCAN_TIMEOUT_READ("--timeout-read", "scan timeout for read operation", Arguments.store(), RMGOptionGroup.CONNECTION, "ms"),
     /** scan timeout for connect operation */
-    SCAN_TIMEOUT_CONNECT("--timeout-connect", "scan timeout for connect operation", Arguments.store(), RMGOptionGroup.CONNECTION, "sec"),
+    SCAN_TIMEOUT_CONNECT("--timeout-connect", "scan timeout for connect operation", Arguments.store(), RMGOptionGroup.CONNECTION, "ms"),
 
     /** print SSRF content as gopher payload */
     SSRF_GOPHER("--gopher", "print SSRF content as gopher payload", Arguments.storeTrue(), RMGOptionGroup.SSRF),
@@ -125,6 +131,22 @@ public enum RMGOption
     GUESS_UPDATE("--update", "update wordlist file with method hashes", Arguments.storeTrue(), RMGOptionGroup.ACTION),
     /** allow guessing on void functions (dangerous) */
     GUESS_ZERO_ARG("--zero-arg", "allow guessing on void functions (dangerous)", Arguments.storeTrue(), RMGOptionGroup.ACTION),
+    /** number of guessing calls to pipeline per connection */
+    GUESS_PIPELINE("--pipeline", "number of guessing calls to pipeline per connection (default: 0)", Arguments.store(), RMGOptionGroup.ACTION, "depth"),
+    /** maximum number of threads per remote object */
+    GUESS_TARGET_THREADS("--target-threads", "maximum number of threads per remote object (default: threads)", Arguments.store(), RMGOptionGroup.ACTION, "threads"),
+    /** stream wordlist candidates into the guesser instead of loading them upfront */
+    GUESS_STREAM("--stream-wordlists", "stream wordlist candidates into the guesser", Arguments.storeTrue(), RMGOptionGroup.ACTION),
+    /** adapt the number of concurrent calls per remote object */
+    GUESS_ADAPTIVE("--adaptive", "adapt the number of threads per remote object to its latency and errors", Arguments.storeTrue(), RMGOptionGroup.ACTION),
+    /** journal file to record progress in and to resume from */
+    GUESS_RESUME("--resume", "journal file to record progress in and to resume from", Arguments.store(), RMGOptionGroup.ACTION, "journal"),
+    /** file to cache guessing results in */
+    GUESS_CACHE("--guess-cache", "file to cache guessing results in", Arguments.store(), RMGOptionGroup.ACTION, "path"),
+    /** time in hours after which cached guessing results expire */
+    GUESS_CACHE_TTL("--cache-ttl", "time in hours after which cached results expire (default: 168)", Arguments.store(), RMGOptionGroup.ACTION, "hours"),
+    /** ignore and replace cached guessing results */
+    GUESS_CACHE_INVALIDATE("--invalidate-cache", "ignore and replace cached guessing results", Arguments.storeTrue(), RMGOptionGroup.ACTION),
 
     /** gadget name to use for the deserialization attack */
     GADGET_NAME("gadget", "gadget name to use for the deserialization attack", Arguments.store(), RMGOptionGroup.ACTION, "gadget"),
@@ -135,11 +157,19 @@ public enum RMGOption
     ENUM_BYPASS("--localhost-bypass", "attempt localhost bypass during enum", Arguments.storeTrue(), RMGOptionGroup.ACTION),
     /** scan actions to perform during the enumeration */
     ENUM_ACTION("--scan-action", "scan actions to perform during the enumeration", Arguments.store(), RMGOptionGroup.ACTION, "action"),
+    /** write structured enum results as JSON lines to the specified file */
+    ENUM_JSONL("--jsonl", "write structured enum results as JSON lines to the specified file", Arguments.store(), RMGOptionGroup.ACTION, "file"),
 
-    /** host to perform the scan on */
-    SCAN_HOST("host", "host to perform the scan on", Arguments.store(), RMGOptionGroup.ACTION, "host"),
+    /** hosts, CIDR ranges, @files or - (stdin) to perform the scan on */
+    SCAN_HOST("host", "hosts, CIDR ranges, @files or - (stdin) to perform the scan on", Arguments.store(), RMGOptionGroup.ACTION, "host"),
     /** port specifications to perform the portscan on */
     SCAN_PORTS("--ports", "port specifications to perform the portscan on", Arguments.store(), RMGOptionGroup.ACTION, "port"),
+    /** maximum number of concurrent connections during the portscan */
+    SCAN_CONNECTIONS("--connections", "maximum number of concurrent connections (default: 1000)", Arguments.store(), RMGOptionGroup.ACTION, "count"),
+    /** maximum number of concurrent connections per host during the portscan */
+    SCAN_HOST_CONNECTIONS("--host-connections", "maximum number of concurrent connections per host (default: 32)", Arguments.store(), RMGOptionGroup.ACTION, "count"),
+    /** file to write scan fingerprints to or to read them from during enum */
+    SCAN_FINGERPRINTS("--fingerprints", "file to write scan fingerprints to or to read them from during enum", Arguments.store(), RMGOptionGroup.ACTION, "file"),
 
     /** argument string to use for the call */
     CALL_ARGUMENTS("arguments", "argument string to use for the call", Arguments.store(), RMGOptionGroup.ACTION, "args"),
@@ -160,6 +190,8 @@ public enum RMGOption
     NO_PROGRESS("--no-progress", "disable progress bars", Arguments.storeTrue(), RMGOptionGroup.ACTION),
     /** maximum number of threads (default: 5) */
     THREADS("--threads", "maximum number of threads (default: 5)", Arguments.store(), RMGOptionGroup.ACTION, "threads"),
+    /** use virtual threads for network operations (requires JDK 21+) */
+    VIRTUAL_THREADS("--virtual-threads", "use virtual threads for network operations (requires JDK 21+)", Arguments.storeTrue(), RMGOptionGroup.ACTION),
     /** location of ysoserial.jar for deserialization attacks */
     YSO("--yso", "location of ysoserial.jar for deserialization attacks", Arguments.store(), RMGOptionGroup.ACTION, "yso-path"),
     /** method to use for dgc operations */
@@ -198,11 +230,16 @@ public enum RMGOption
     public Object value = null;
 
     private final static EnumSet<RMGOption> intOptions = EnumSet.of(RMGOption.THREADS, RMGOption.ARGUMENT_POS, RMGOption.SCAN_TIMEOUT_CONNECT,
-            RMGOption.SCAN_TIMEOUT_READ, RMGOption.LISTEN_PORT, RMGOption.TARGET_PORT, RMGOption.ROGUEJMX_FORWARD_PORT);
+            RMGOption.SCAN_TIMEOUT_READ, RMGOption.LISTEN_PORT, RMGOption.TARGET_PORT, RMGOption.ROGUEJMX_FORWARD_PORT, RMGOption.GUESS_PIPELINE,
+            RMGOption.GUESS_TARGET_THREADS, RMGOption.GUESS_CACHE_TTL, RMGOption.SCAN_CONNECTIONS,
+            RMGOption.SCAN_HOST_CONNECTIONS);
     private final static EnumSet<RMGOption> booleanOptions = EnumSet.of(RMGOption.GLOBAL_VERBOSE, RMGOption.GLOBAL_NO_COLOR, RMGOption.GLOBAL_STACK_TRACE,
+            RMGOption.GLOBAL_METRICS, RMGOption.GLOBAL_METRICS_JMX,
             RMGOption.CONN_FOLLOW, RMGOption.CONN_SSL, RMGOption.SSRF_GOPHER, RMGOption.SSRF, RMGOption.BIND_BYPASS, RMGOption.GUESS_CREATE_SAMPLES,
             RMGOption.GUESS_TRUSTED, RMGOption.GUESS_FORCE_GUESSING, RMGOption.GUESS_DUPLICATES, RMGOption.GUESS_UPDATE, RMGOption.GUESS_ZERO_ARG,
-            RMGOption.ENUM_BYPASS, RMGOption.NO_CANARY, RMGOption.NO_PROGRESS, RMGOption.SSRF_ENCODE, RMGOption.SSRF_RAW);
+            RMGOption.GUESS_STREAM, RMGOption.GUESS_CACHE_INVALIDATE, RMGOption.GUESS_ADAPTIVE,
+            RMGOption.ENUM_BYPASS, RMGOption.NO_CANARY, RMGOption.NO_PROGRESS, RMGOption.SSRF_ENCODE, RMGOption.SSRF_RAW,
+            RMGOption.VIRTUAL_THREADS);
     private final static EnumSet<RMGOption> longOptions = EnumSet.of(RMGOption.SERIAL_VERSION_UID, RMGOption.PAYLOAD_SERIAL_VERSION_UID);
 
     /**
@@ -436,7 +473,7 @@ public enum RMGOption
                         "list", "localhost-bypass", "security-manager", "string-marshalling");
             arg.nargs("+");
 
-        } else if( option == RMGOption.SCAN_PORTS ) {
+        } else if( option == RMGOption.SCAN_PORTS || option == RMGOption.SCAN_HOST ) {
             arg.nargs("+");
 
         } else if( option == RMGOption.REG_METHOD ) {
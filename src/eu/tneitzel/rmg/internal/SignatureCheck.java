@@ -0,0 +1,166 @@
+package eu.tneitzel.rmg.internal;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+
+import eu.tneitzel.rmg.io.Logger;
+import eu.tneitzel.rmg.utils.RMGUtils;
+import javassist.CannotCompileException;
+import javassist.NotFoundException;
+
+/**
+ * The SignatureCheck verifies that the MethodSignature parser and javassist agree on method signatures. For
+ * each signature, the normalized signature created by MethodSignature is compiled by javassist. The method
+ * hash, primitiveSize and argument count of the compiled method need to match the values computed by the
+ * parser. For wordlist entries in the advanced format, the stored method hash needs to match as well.
+ *
+ * The check runs during the build on the internal wordlists and on some additional signatures that contain
+ * constructs javassist cannot compile without normalization (final arguments, varargs, C style arrays and
+ * nested classes referenced by their qualified name). The build fails if a signature does not match.
+ *
+ * @author Tobias Neitzel (@qtc_de)
+ */
+public class SignatureCheck
+{
+    private static final String[] additionalSignatures = {
+        "void login(final String user, final String password)",
+        "String format(String pattern, Object... args)",
+        "int count(final java.util.AbstractMap.SimpleEntry... entries)",
+        "void put(java.util.Map.Entry entry)",
+        "java.util.Map.Entry get(int index)",
+        "void matrix(int values[][], String[] names, byte data [])",
+        "void custom(eu.tneitzel.rmg.UnknownType unknown, long id)",
+    };
+
+    /**
+     * Check the specified signature. The signature is parsed by MethodSignature and compiled by javassist
+     * afterwards. Mismatches are reported on stderr.
+     *
+     * @param signature method signature to check
+     * @param storedHash method hash stored within the wordlist or null
+     * @return true if the parser and javassist agree on the signature
+     */
+    private static boolean check(String signature, String storedHash)
+    {
+        MethodCandidate parsed;
+        MethodCandidate compiled;
+
+        try
+        {
+            parsed = new MethodCandidate(signature);
+        }
+
+        catch (CannotCompileException | NotFoundException e)
+        {
+            Logger.eprintlnMixedYellow("Parser rejected signature", signature);
+            return false;
+        }
+
+        try
+        {
+            String normalized = MethodSignature.parse(signature).getNormalizedSignature();
+
+            RMGUtils.createTypesFromSignature(normalized);
+            compiled = new MethodCandidate(RMGUtils.makeMethod(normalized));
+        }
+
+        catch (CannotCompileException | NotFoundException e)
+        {
+            Logger.eprintlnMixedYellow("Javassist rejected signature", signature);
+            Logger.eprintln(e.getMessage());
+            return false;
+        }
+
+        if (parsed.getHash() != compiled.getHash() || (storedHash != null && parsed.getHash() != Long.parseLong(storedHash)))
+        {
+            Logger.eprintlnMixedYellow("Method hash mismatch for signature", signature);
+            return false;
+        }
+
+        if (parsed.primitiveSize() != compiled.primitiveSize() || parsed.getArgumentCount() != compiled.getArgumentCount())
+        {
+            Logger.eprintlnMixedYellow("Argument mismatch for signature", signature);
+            return false;
+        }
+
+        return true;
+    }
+
+    /**
+     * Collect the signatures of all wordlists within the specified folder. Lines are cleaned up the same
+     * way as WordlistHandler.parseMethod does. Each returned entry contains the signature and, for the
+     * advanced wordlist format, the stored method hash.
+     *
+     * @param folder wordlist folder
+     * @return list of signature and stored hash pairs
+     * @throws IOException if reading a wordlist fails
+     */
+    private static List<String[]> readWordlists(File folder) throws IOException
+    {
+        List<String[]> entries = new ArrayList<String[]>();
+
+        for (File wordlist : FileUtils.listFiles(folder, new String[] {"txt"}, false))
+        {
+            for (String line : FileUtils.readLines(wordlist, StandardCharsets.UTF_8))
+            {
+                if (line.trim().startsWith("#") || line.trim().isEmpty())
+                {
+                    continue;
+                }
+
+                line = line.trim().replaceAll(" +", " ").replaceAll(" *, *", ", ").replaceAll("\\<[^>]+\\>", "");
+                String[] split = line.split(";");
+
+                entries.add(new String[] { split[0].trim(), (split.length == 4) ? split[1].trim() : null });
+            }
+        }
+
+        return entries;
+    }
+
+    /**
+     * Run the check on all wordlists within the specified folder and on the additional signatures. This is
+     * called during the build. An exception is thrown if the parser and javassist disagree on a signature,
+     * which lets the build fail.
+     *
+     * @param args wordlist folder
+     * @throws IOException if reading a wordlist fails
+     */
+    public static void main(String[] args) throws IOException
+    {
+        if (args.length != 1)
+        {
+            System.err.println("usage: SignatureCheck <wordlist-folder>");
+            return;
+        }
+
+        RMGUtils.init();
+
+        int failures = 0;
+        List<String[]> entries = readWordlists(new File(args[0]));
+
+        for (String signature : Arrays.asList(additionalSignatures))
+        {
+            entries.add(new String[] { signature, null });
+        }
+
+        for (String[] entry : entries)
+        {
+            if (!check(entry[0], entry[1]))
+            {
+                failures += 1;
+            }
+        }
+
+        if (failures != 0)
+        {
+            throw new IllegalStateException(failures + " method signature(s) are handled differently by the parser and javassist.");
+        }
+    }
+}
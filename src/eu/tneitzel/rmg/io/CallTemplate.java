@@ -0,0 +1,124 @@
+package eu.tneitzel.rmg.io;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.rmi.server.ObjID;
+import java.util.Arrays;
+
+import eu.tneitzel.rmg.internal.MethodCandidate;
+import sun.rmi.transport.TransportConstants;
+
+/**
+ * A CallTemplate contains the precomputed wire representation of a guessing call for a MethodCandidate.
+ * This includes the Call transport operation, the ObjectOutputStream header, the call header containing
+ * the method hash and the dummy arguments created by MethodCandidate.sendArguments. The only part that
+ * differs between remote objects is the ObjID. The template therefore contains a placeholder ObjID that
+ * is replaced when writing the template to a stream. This allows to reuse the same immutable template
+ * for each bound name without allocating anything on the hot path of method guessing.
+ *
+ * The layout of the template is identical to a call created by StreamRemoteCall, where the ObjID is always
+ * located at the beginning of the first BLOCKDATA block.
+ *
+ * @author Tobias Neitzel (@qtc_de)
+ */
+@SuppressWarnings("restriction")
+public class CallTemplate
+{
+    private final byte[] template;
+    private final int objIDOffset;
+
+    /** number of bytes used by a serialized ObjID */
+    public static final int OBJID_SIZE = 22;
+
+    private static final byte TC_BLOCKDATA = 0x77;
+    private static final byte TC_BLOCKDATALONG = 0x7A;
+
+    /**
+     * Create the CallTemplate for the specified MethodCandidate.
+     *
+     * @param candidate MethodCandidate to create the template for
+     * @throws IOException should not be thrown in practice
+     */
+    public CallTemplate(MethodCandidate candidate) throws IOException
+    {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(64);
+        buffer.write(TransportConstants.Call);
+
+        ObjectOutputStream oo = new ObjectOutputStream(buffer);
+        new ObjID(0).write(oo);
+        oo.writeInt(-1);
+        oo.writeLong(candidate.getHash());
+
+        candidate.sendArguments(oo);
+        oo.flush();
+
+        template = buffer.toByteArray();
+
+        /*
+         * Call byte (1) and stream header (4) are followed by the block header. Depending on the size
+         * of the block, the header consists of a length byte (2) or a length int (5).
+         */
+        if (template[5] == TC_BLOCKDATA)
+        {
+            objIDOffset = 7;
+        }
+
+        else if (template[5] == TC_BLOCKDATALONG)
+        {
+            objIDOffset = 10;
+        }
+
+        else
+        {
+            throw new IOException("Unexpected block header in call template.");
+        }
+    }
+
+    /**
+     * Write the template to the specified stream while inserting the specified ObjID.
+     *
+     * @param out OutputStream to write to
+     * @param objID serialized ObjID as obtained by encodeObjID
+     * @throws IOException if writing to the stream fails
+     */
+    public void writeTo(OutputStream out, byte[] objID) throws IOException
+    {
+        int rest = objIDOffset + OBJID_SIZE;
+
+        out.write(template, 0, objIDOffset);
+        out.write(objID, 0, OBJID_SIZE);
+        out.write(template, rest, template.length - rest);
+    }
+
+    /**
+     * Return the size of the template in bytes.
+     *
+     * @return size of the template
+     */
+    public int size()
+    {
+        return template.length;
+    }
+
+    /**
+     * Serialize the specified ObjID in the format that is expected by the writeTo method. This should
+     * be done once per remote object.
+     *
+     * @param objID ObjID to serialize
+     * @return serialized ObjID
+     * @throws IOException should not be thrown in practice
+     */
+    public static byte[] encodeObjID(ObjID objID) throws IOException
+    {
+        ByteArrayOutputStream buffer = new ByteArrayOutputStream(32);
+
+        ObjectOutputStream oo = new ObjectOutputStream(buffer);
+        objID.write(oo);
+        oo.flush();
+
+        byte[] serialized = buffer.toByteArray();
+        return Arrays.copyOfRange(serialized, serialized.length - OBJID_SIZE, serialized.length);
+    }
+}
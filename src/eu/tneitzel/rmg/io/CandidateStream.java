@@ -0,0 +1,151 @@
+package eu.tneitzel.rmg.io;
+
+import java.io.IOException;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+import eu.tneitzel.rmg.internal.ExceptionHandler;
+import eu.tneitzel.rmg.internal.MethodCandidate;
+
+/**
+ * The CandidateStream reads the MethodCandidates of the configured wordlists within a separate producer thread
+ * and hands them out one by one. Instead of materializing all wordlists into a set before guessing starts, the
+ * producer parses the wordlists line by line (or entry by entry for a WordlistIndex) and pushes the resulting
+ * candidates into a bounded queue. This allows the first guessing calls to be sent while the wordlists are still
+ * being parsed and keeps memory usage bounded by the queue capacity and the set of already seen method hashes.
+ *
+ * Duplicate methods are filtered by their method hash, which is the same criteria used by the HashSet of the
+ * non streaming mode. Zero argument methods are dropped unless --zero-arg was specified.
+ *
+ * @author Tobias Neitzel (@qtc_de)
+ */
+public class CandidateStream
+{
+    private int count;
+    private final boolean zeroArg;
+    private final Set<Long> seen;
+    private final WordlistHandler handler;
+    private final BlockingQueue<MethodCandidate> queue;
+
+    private static final MethodCandidate END = new MethodCandidate("END", 0L, 0, true, 0);
+
+    /**
+     * Create a new CandidateStream. CandidateStreams are obtained via WordlistHandler.getCandidateStream.
+     *
+     * @param handler WordlistHandler that reads the configured wordlists
+     * @param zeroArg whether zero argument methods should be included
+     * @param capacity maximum number of parsed candidates that are not consumed yet
+     */
+    CandidateStream(WordlistHandler handler, boolean zeroArg, int capacity)
+    {
+        this.count = 0;
+        this.handler = handler;
+        this.zeroArg = zeroArg;
+        this.seen = new HashSet<Long>();
+        this.queue = new ArrayBlockingQueue<MethodCandidate>(Math.max(capacity, 1));
+    }
+
+    /**
+     * Start the producer thread that reads the wordlists. The thread is a daemon thread and terminates
+     * after all wordlists were read or when an error occurs.
+     */
+    public void start()
+    {
+        Thread producer = new Thread(this::produce, "rmg-candidate-stream");
+        producer.setDaemon(true);
+        producer.start();
+    }
+
+    /**
+     * Obtain the next MethodCandidate. Blocks until the producer has parsed the next candidate.
+     *
+     * @return next MethodCandidate or null if all wordlists were read
+     * @throws InterruptedException if the calling thread is interrupted while waiting
+     */
+    public MethodCandidate take() throws InterruptedException
+    {
+        MethodCandidate candidate = queue.take();
+
+        if (candidate == END)
+        {
+            queue.put(END);
+            return null;
+        }
+
+        return candidate;
+    }
+
+    /**
+     * Return the number of MethodCandidates that were passed to the queue so far. After take returned null,
+     * this is the total number of streamed candidates.
+     *
+     * @return number of streamed MethodCandidates
+     */
+    public synchronized int getCount()
+    {
+        return count;
+    }
+
+    /**
+     * Called by the WordlistHandler for each parsed MethodCandidate. Zero argument methods and duplicates
+     * are filtered, all other candidates are added to the queue. Blocks if the queue is full.
+     *
+     * @param candidate parsed MethodCandidate
+     * @throws InterruptedException if the producer thread is interrupted while waiting
+     */
+    void put(MethodCandidate candidate) throws InterruptedException
+    {
+        if (!zeroArg && candidate.isVoid())
+        {
+            return;
+        }
+
+        if (!seen.add(candidate.getHash()))
+        {
+            return;
+        }
+
+        synchronized (this)
+        {
+            count += 1;
+        }
+
+        queue.put(candidate);
+    }
+
+    /**
+     * Main function of the producer thread. Reads all wordlists and signals the end of the stream afterwards.
+     * Errors while reading the wordlists are reported, but the candidates that were already streamed are still
+     * guessed.
+     */
+    private void produce()
+    {
+        try
+        {
+            handler.streamWordlistMethods(this);
+        }
+
+        catch (IOException e)
+        {
+            Logger.eprintlnMixedYellow("Caught", "IOException", "while reading wordlist file(s).");
+            ExceptionHandler.stackTrace(e);
+        }
+
+        catch (InterruptedException e)
+        {
+            return;
+        }
+
+        try
+        {
+            queue.put(END);
+        }
+
+        catch (InterruptedException e)
+        {
+            return;
+        }
+    }
+}
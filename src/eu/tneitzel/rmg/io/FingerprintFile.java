@@ -0,0 +1,122 @@
+package eu.tneitzel.rmg.io;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.HashMap;
+import java.util.Map;
+
+import eu.tneitzel.rmg.networking.Fingerprint;
+
+/**
+ * The FingerprintFile stores the fingerprints created by the scan action, one fingerprint record per line.
+ * Records are appended to the file and flushed directly after they were written, so that the fingerprints of
+ * multiple scans can be collected within the same file. The enum action reads the file again and uses the
+ * fingerprint of the enumerated endpoint to skip calls on remote objects that are known to be absent.
+ *
+ * @author Tobias Neitzel (@qtc_de)
+ */
+public class FingerprintFile
+{
+    private final File file;
+    private BufferedWriter writer;
+
+    /**
+     * Create a FingerprintFile for the specified file. The file is not opened before
+     * write or read is called.
+     *
+     * @param file file to store the fingerprints in
+     */
+    public FingerprintFile(File file)
+    {
+        this.file = file;
+    }
+
+    /**
+     * Return the file the fingerprints are stored in.
+     *
+     * @return fingerprint file
+     */
+    public File getFile()
+    {
+        return file;
+    }
+
+    /**
+     * Open the file for writing. New records are appended to existing ones.
+     *
+     * @throws IOException if the file cannot be opened
+     */
+    public synchronized void open() throws IOException
+    {
+        writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8, StandardOpenOption.CREATE, StandardOpenOption.APPEND);
+    }
+
+    /**
+     * Append the record of the specified fingerprint to the file.
+     *
+     * @param fingerprint fingerprint to write
+     * @throws IOException if writing the record fails
+     */
+    public synchronized void write(Fingerprint fingerprint) throws IOException
+    {
+        writer.write(fingerprint.toString());
+        writer.newLine();
+        writer.flush();
+    }
+
+    /**
+     * Close the file after writing.
+     *
+     * @throws IOException if closing the file fails
+     */
+    public synchronized void close() throws IOException
+    {
+        if (writer != null)
+        {
+            writer.close();
+        }
+    }
+
+    /**
+     * Read all fingerprints from the file. Fingerprints are indexed by their host:port string. If the file
+     * contains multiple fingerprints for the same endpoint, the most recent one is used. Invalid records
+     * are ignored.
+     *
+     * @return map of host:port strings to the corresponding fingerprint
+     * @throws IOException if reading the file fails
+     */
+    public Map<String, Fingerprint> read() throws IOException
+    {
+        Map<String, Fingerprint> fingerprints = new HashMap<String, Fingerprint>();
+
+        try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8))
+        {
+            String line;
+
+            while ((line = reader.readLine()) != null)
+            {
+                Fingerprint fingerprint = Fingerprint.parse(line);
+
+                if (fingerprint == null)
+                {
+                    continue;
+                }
+
+                String key = fingerprint.getHost() + ":" + fingerprint.getPort();
+                Fingerprint existing = fingerprints.get(key);
+
+                if (existing == null || existing.getTimestamp() <= fingerprint.getTimestamp())
+                {
+                    fingerprints.put(key, fingerprint);
+                }
+            }
+        }
+
+        return fingerprints;
+    }
+}
@@ -2,9 +2,10 @@ package eu.tneitzel.rmg.io;
 
 import java.rmi.server.RMIClientSocketFactory;
 import java.rmi.server.RMISocketFactory;
-import java.util.HashMap;
+import java.util.Map;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map.Entry;
 import java.util.Set;
 
@@ -15,8 +16,12 @@ import eu.tneitzel.rmg.endpoints.KnownEndpointHolder;
 import eu.tneitzel.rmg.endpoints.Vulnerability;
 import eu.tneitzel.rmg.internal.CodebaseCollector;
 import eu.tneitzel.rmg.internal.MethodCandidate;
+import eu.tneitzel.rmg.internal.RMGOption;
+import eu.tneitzel.rmg.metrics.LatencyHistogram;
+import eu.tneitzel.rmg.metrics.Metrics;
 import eu.tneitzel.rmg.operations.RemoteObjectClient;
 import eu.tneitzel.rmg.utils.ActivatableWrapper;
+import eu.tneitzel.rmg.utils.RMGUtils;
 import eu.tneitzel.rmg.utils.RemoteObjectWrapper;
 import eu.tneitzel.rmg.utils.SpringRemotingWrapper;
 import eu.tneitzel.rmg.utils.UnicastWrapper;
@@ -129,8 +134,8 @@ public class Formatter
 
     /**
      * Lists enumerated codebases exposed by the RMI server. The corresponding information is fetched
-     * from a static method on the CodebaseCollector class. It returns a HashMap that maps codebases
-     * to classes that their annotated with it. This function prints this HashMap in a human readable
+     * from a static method on the CodebaseCollector class. It returns a Map that maps codebases
+     * to classes that their annotated with it. This function prints this Map in a human readable
      * format.
      */
     public void listCodebases()
@@ -139,7 +144,7 @@ public class Formatter
         Logger.lineBreak();
         Logger.increaseIndent();
 
-        HashMap<String,Set<String>> codebases = CodebaseCollector.getCodebases();
+        Map<String,Set<String>> codebases = CodebaseCollector.getCodebases();
         if (codebases.isEmpty())
         {
             Logger.printlnMixedYellow("- The remote server", "does not", "expose any codebases.");
@@ -164,6 +169,80 @@ public class Formatter
         Logger.decreaseIndent();
     }
 
+    /**
+     * Prints statistics on the classes that were created dynamically while resolving remote objects
+     * and on the size of the ClassPool that is used for creating them. The statistics are only printed
+     * when verbose output is enabled. They are global to the process and include classes that were
+     * created for other targets.
+     */
+    public void listClassGeneration()
+    {
+        if (!RMGOption.GLOBAL_VERBOSE.getBool())
+        {
+            return;
+        }
+
+        Logger.lineBreak();
+        Logger.printlnMixedBlue("Dynamically created", CodebaseCollector.getGenerationCount() + " classes",
+                                "in " + CodebaseCollector.getGenerationTime() + " ms (" + CodebaseCollector.getCacheHits() + " cache hits).");
+        Logger.printlnMixedBlue("ClassPool contains", RMGUtils.getPoolSize() + " classes", "(" + RMGUtils.getDetachedCount() + " detached).");
+    }
+
+    /**
+     * Prints the summary table of the collected metrics. For each instrumented call that was recorded at least
+     * once, the number of calls and the latency percentiles are printed, followed by the outcomes of the call.
+     * The number of opened connections and the transferred bytes are printed afterwards.
+     */
+    public void listMetrics()
+    {
+        String format = "%-16s %8s %10s %10s %10s %10s";
+
+        Logger.lineBreak();
+        Logger.printlnBlue("Metrics:");
+        Logger.lineBreak();
+        Logger.increaseIndent();
+
+        Logger.println(String.format(format, "call", "count", "p50", "p90", "p99", "max"));
+
+        for (Metrics.Call call : Metrics.Call.values())
+        {
+            LatencyHistogram latency = Metrics.getLatency(call);
+
+            if (latency.getCount() == 0)
+            {
+                continue;
+            }
+
+            Logger.println(String.format(format, call.label(), latency.getCount(), formatMicros(latency.getPercentile(50)),
+                                         formatMicros(latency.getPercentile(90)), formatMicros(latency.getPercentile(99)),
+                                         formatMicros(latency.getMax())));
+            Logger.increaseIndent();
+
+            for (Entry<String,Long> outcome : Metrics.getOutcomes(call).entrySet())
+            {
+                Logger.printlnMixedYellow("-", outcome.getKey(), "(" + outcome.getValue() + ")");
+            }
+
+            Logger.decreaseIndent();
+        }
+
+        Logger.lineBreak();
+        Logger.printlnMixedBlue("Opened", Metrics.getConnections() + " connections", "(" + Metrics.getBytesSent() + " bytes sent, "
+                                + Metrics.getBytesReceived() + " bytes received).");
+        Logger.decreaseIndent();
+    }
+
+    /**
+     * Format a latency value in microseconds as milliseconds.
+     *
+     * @param micros latency in microseconds
+     * @return formatted latency
+     */
+    private static String formatMicros(long micros)
+    {
+        return String.format(Locale.ROOT, "%.2fms", micros / 1000.0);
+    }
+
     /**
      * Prints the meta information contained in a KnownEndpoint in formatted way. This function
      * generates the output that is displayed when using remote-method-guesser's 'known' action.
@@ -0,0 +1,67 @@
+package eu.tneitzel.rmg.io;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+/**
+ * The JsonlWriter writes records in JSON lines format, where each line of the output file contains one JSON
+ * object. Records are flushed directly after they were written. This allows other tools to process the output
+ * file while rmg is still running and makes sure that results are not lost when rmg is interrupted. Records can
+ * be written from multiple threads.
+ *
+ * @author Tobias Neitzel (@qtc_de)
+ */
+public class JsonlWriter
+{
+    private final File file;
+    private final BufferedWriter writer;
+
+    /**
+     * Open the specified output file. Existing files are overwritten.
+     *
+     * @param file output file to write to
+     * @throws IOException if the file cannot be opened
+     */
+    public JsonlWriter(File file) throws IOException
+    {
+        this.file = file;
+        this.writer = Files.newBufferedWriter(file.toPath(), StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Return the output file of the writer.
+     *
+     * @return output file
+     */
+    public File getFile()
+    {
+        return file;
+    }
+
+    /**
+     * Write a single record to the output file. The record is expected to be a JSON object that does not
+     * contain line breaks.
+     *
+     * @param record JSON record to write
+     * @throws IOException if writing the record fails
+     */
+    public synchronized void write(String record) throws IOException
+    {
+        writer.write(record);
+        writer.newLine();
+        writer.flush();
+    }
+
+    /**
+     * Close the output file.
+     *
+     * @throws IOException if closing the file fails
+     */
+    public synchronized void close() throws IOException
+    {
+        writer.close();
+    }
+}
@@ -0,0 +1,147 @@
+package eu.tneitzel.rmg.io;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A LogBuffer collects the output of the Logger class for a single thread instead of writing it to
+ * the console. This allows operations to run in the background while their output is still printed
+ * in a well defined order. Each buffer has its own indent and print count, which are initialized from
+ * the global Logger state when the buffer is created. Replaying the buffer passes the collected LogEvents
+ * to the LogWriter in the order they were logged, or moves them into the buffer of the replaying thread, if
+ * there is one. Recorded check outcomes are passed on to the Logger of the replaying thread.
+ *
+ * @author Tobias Neitzel (@qtc_de)
+ */
+public class LogBuffer
+{
+    int indent;
+    int printCount;
+
+    private final int initialCount;
+    private final List<Entry> entries;
+
+    private static final String ANSI_PATTERN = "\u001B\\[[0-9;]*m";
+
+    /**
+     * Create a new LogBuffer that inherits the current indent and print count of the Logger. If the output
+     * of the current thread is already buffered, indent and print count are inherited from this buffer.
+     */
+    public LogBuffer()
+    {
+        LogBuffer parent = Logger.getBuffer();
+
+        this.indent = (parent != null) ? parent.indent : Logger.getGlobalIndent();
+        this.printCount = (parent != null) ? parent.printCount : Logger.getGlobalPrintCount();
+        this.initialCount = this.printCount;
+
+        this.entries = new ArrayList<Entry>();
+    }
+
+    /**
+     * Add a message to the buffer.
+     *
+     * @param event LogEvent to add
+     */
+    void add(LogEvent event)
+    {
+        entries.add(new Entry(event, null, null));
+    }
+
+    /**
+     * Add the outcome of a check to the buffer.
+     *
+     * @param statusType the thing that was checked
+     * @param status outcome of the check
+     */
+    void addStatus(String statusType, String status)
+    {
+        entries.add(new Entry(null, statusType, status));
+    }
+
+    /**
+     * Return the lines that were written to stderr, without colors and prefixes. Can be used
+     * to obtain the reason for a failed operation.
+     *
+     * @return List of error messages
+     */
+    public List<String> getErrors()
+    {
+        StringBuilder stderr = new StringBuilder();
+        List<String> errors = new ArrayList<String>();
+
+        for (Entry entry : entries)
+        {
+            if (entry.event != null && entry.event.stderr)
+            {
+                stderr.append(entry.event.render());
+            }
+        }
+
+        for (String line : stderr.toString().split("\\R"))
+        {
+            String error = line.replaceAll(ANSI_PATTERN, "").trim().replaceFirst("^\\[-\\]", "").trim();
+
+            if (!error.isEmpty())
+            {
+                errors.add(error);
+            }
+        }
+
+        return errors;
+    }
+
+    /**
+     * Write the buffered output to the console. The global print count of the Logger is increased by the
+     * number of lines that were printed into the buffer. If the output of the replaying thread is buffered
+     * itself, the output is moved into the buffer of the replaying thread instead.
+     */
+    public void replay()
+    {
+        LogBuffer parent = Logger.getBuffer();
+
+        for (Entry entry : entries)
+        {
+            if (entry.event == null)
+            {
+                Logger.recordStatus(entry.statusType, entry.status);
+            }
+
+            else if (parent != null)
+            {
+                parent.entries.add(entry);
+            }
+
+            else
+            {
+                LogWriter.submit(entry.event);
+            }
+        }
+
+        if (parent != null)
+        {
+            parent.printCount += printCount - initialCount;
+            return;
+        }
+
+        Logger.addPrintCount(printCount - initialCount);
+    }
+
+    /**
+     * A single buffered message or check outcome. Messages contain a LogEvent, whereas check outcomes
+     * contain the status type and the status.
+     */
+    private static class Entry
+    {
+        private final LogEvent event;
+        private final String statusType;
+        private final String status;
+
+        Entry(LogEvent event, String statusType, String status)
+        {
+            this.event = event;
+            this.statusType = statusType;
+            this.status = status;
+        }
+    }
+}
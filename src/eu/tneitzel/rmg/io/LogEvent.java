@@ -0,0 +1,71 @@
+package eu.tneitzel.rmg.io;
+
+/**
+ * A LogEvent represents a single message that was logged by the Logger class. Events are immutable
+ * and contain everything that is required to render the message, including the indent that was active
+ * when the message was logged. This allows events to be created within worker threads and to be
+ * rendered later on by a different thread.
+ *
+ * @author Tobias Neitzel (@qtc_de)
+ */
+final class LogEvent
+{
+    final boolean stderr;
+    final String marker;
+    final int indent;
+    final String text;
+    final boolean newline;
+
+    /**
+     * Create a new LogEvent.
+     *
+     * @param stderr whether the message belongs to stderr
+     * @param marker prefix of the message (e.g. [+]) or null for plain messages
+     * @param indent indent of the message. Only used if a marker is present
+     * @param text the message text
+     * @param newline whether to terminate the message with a line break
+     */
+    LogEvent(boolean stderr, String marker, int indent, String text, boolean newline)
+    {
+        this.stderr = stderr;
+        this.marker = marker;
+        this.indent = indent;
+        this.text = text;
+        this.newline = newline;
+    }
+
+    /**
+     * Render the event as it should appear on the console. Messages with a marker are prefixed
+     * by the marker, followed by one tab for each indent level.
+     *
+     * @return rendered message
+     */
+    String render()
+    {
+        if (marker == null && !newline)
+        {
+            return text;
+        }
+
+        StringBuilder rendered = new StringBuilder(text.length() + indent + 8);
+
+        if (marker != null)
+        {
+            rendered.append(marker).append(' ');
+
+            for (int ctr = 0; ctr < indent; ctr++)
+            {
+                rendered.append('\t');
+            }
+        }
+
+        rendered.append(text);
+
+        if (newline)
+        {
+            rendered.append(System.lineSeparator());
+        }
+
+        return rendered.toString();
+    }
+}
@@ -0,0 +1,187 @@
+package eu.tneitzel.rmg.io;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.io.UnsupportedEncodingException;
+import java.nio.charset.Charset;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * The LogWriter writes LogEvents to the console. By default, events are written directly within the logging
+ * thread. After the LogWriter was started, events are instead enqueued into a lock-free queue and written by
+ * a single writer thread. Logging threads therefore never block on the console, and messages of different
+ * threads are never interleaved within a line.
+ *
+ * When started, the LogWriter also replaces System.out and System.err with streams that enqueue their output
+ * as plain events. This keeps output that is written directly to these streams (e.g. by stack traces or by
+ * third party libraries) in order with the output of the Logger. Pending events are written when flush is
+ * called and when the JVM shuts down.
+ *
+ * @author Tobias Neitzel (@qtc_de)
+ */
+final class LogWriter
+{
+    private static final Queue<LogEvent> queue = new ConcurrentLinkedQueue<LogEvent>();
+    private static final Object writeLock = new Object();
+
+    private static volatile Thread writer;
+    private static volatile boolean parked;
+
+    private static PrintStream out;
+    private static PrintStream err;
+
+    private LogWriter() {}
+
+    /**
+     * Start the writer thread and redirect System.out and System.err into the event queue. Calling this
+     * function multiple times has no effect.
+     */
+    static synchronized void start()
+    {
+        if (writer != null)
+        {
+            return;
+        }
+
+        PrintStream redirectedOut;
+        PrintStream redirectedErr;
+
+        try
+        {
+            String charset = Charset.defaultCharset().name();
+
+            redirectedOut = new PrintStream(new EventStream(false), true, charset);
+            redirectedErr = new PrintStream(new EventStream(true), true, charset);
+        }
+
+        catch (UnsupportedEncodingException e)
+        {
+            return;
+        }
+
+        Thread thread = new Thread(LogWriter::run, "rmg-log-writer");
+        thread.setDaemon(true);
+
+        out = System.out;
+        err = System.err;
+        writer = thread;
+
+        System.setOut(redirectedOut);
+        System.setErr(redirectedErr);
+
+        thread.start();
+
+        Runtime.getRuntime().addShutdownHook(new Thread(LogWriter::flush, "rmg-log-flush"));
+    }
+
+    /**
+     * Submit an event. If the writer thread is running, the event is enqueued. Otherwise, it is written
+     * directly.
+     *
+     * @param event event to write
+     */
+    static void submit(LogEvent event)
+    {
+        Thread current = writer;
+
+        if (current == null)
+        {
+            synchronized (writeLock)
+            {
+                PrintStream stream = event.stderr ? System.err : System.out;
+                stream.print(event.render());
+            }
+
+            return;
+        }
+
+        queue.offer(event);
+
+        if (parked)
+        {
+            LockSupport.unpark(current);
+        }
+    }
+
+    /**
+     * Write all pending events within the calling thread. When this function returns, all events that were
+     * submitted by the calling thread before were written.
+     */
+    static void flush()
+    {
+        synchronized (writeLock)
+        {
+            drain();
+        }
+    }
+
+    /**
+     * Write all events that are currently enqueued. Needs to be called while holding the write lock.
+     */
+    private static void drain()
+    {
+        if (out == null)
+        {
+            return;
+        }
+
+        LogEvent event;
+
+        while ((event = queue.poll()) != null)
+        {
+            (event.stderr ? err : out).print(event.render());
+        }
+
+        out.flush();
+        err.flush();
+    }
+
+    /**
+     * Main loop of the writer thread. Writes events as long as they are available and parks otherwise.
+     */
+    private static void run()
+    {
+        while (true)
+        {
+            flush();
+            parked = true;
+
+            if (queue.isEmpty())
+            {
+                LockSupport.park();
+            }
+
+            parked = false;
+        }
+    }
+
+    /**
+     * OutputStream that converts everything that is written to it into plain LogEvents.
+     */
+    private static class EventStream extends OutputStream
+    {
+        private final boolean stderr;
+
+        EventStream(boolean stderr)
+        {
+            this.stderr = stderr;
+        }
+
+        @Override
+        public void write(int b)
+        {
+            write(new byte[] { (byte)b }, 0, 1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len)
+        {
+            if (len > 0)
+            {
+                submit(new LogEvent(stderr, null, 0, new String(b, off, len, Charset.defaultCharset()), false));
+            }
+        }
+    }
+}
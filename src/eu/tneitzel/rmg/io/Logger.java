@@ -1,5 +1,8 @@
 package eu.tneitzel.rmg.io;
 
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.BiConsumer;
+
 import eu.tneitzel.rmg.internal.RMGOption;
 
 /**
@@ -9,6 +12,11 @@ import eu.tneitzel.rmg.internal.RMGOption;
  * This saves invoking classes from handle indentation manually. It is probably not the
  * prettiest approach, but it works quite nice :D
  *
+ * Logged messages are converted into immutable LogEvents that carry the indent that was
+ * active when the message was logged. Events are either collected within the LogBuffer of
+ * the current thread or passed to the LogWriter, which writes them asynchronously from a
+ * single writer thread once startWriter was called.
+ *
  * @author Tobias Neitzel (@qtc_de)
  */
 public class Logger
@@ -20,14 +28,69 @@ public class Logger
     private static String ANSI_GREEN = "\u001B[32m";
     private static String ANSI_PURPLE = "\u001B[35m";
 
-    /** current indent of the logger */
-    public static int indent = 0;
-    /** how many lines have already be printed */
-    public static int printCount = 0;
+    /** current indent of the logger (read-only view, use increaseIndent and decreaseIndent to modify it) */
+    public static volatile int indent = 0;
+    /** how many lines have already be printed (read-only view) */
+    public static volatile int printCount = 0;
     /** whether stdout is enabled */
-    public static boolean stdout = true;
+    public static volatile boolean stdout = true;
     /** whether stderr is enabled */
-    public static boolean stderr = true;
+    public static volatile boolean stderr = true;
+
+    private static final AtomicInteger indentLevel = new AtomicInteger(0);
+    private static final AtomicInteger lineCount = new AtomicInteger(0);
+
+    private static final ThreadLocal<LogBuffer> buffer = new ThreadLocal<LogBuffer>();
+    private static final ThreadLocal<BiConsumer<String,String>> statusListener = new ThreadLocal<BiConsumer<String,String>>();
+
+    /**
+     * Start writing log output asynchronously from a dedicated writer thread. Afterwards, output that is
+     * written directly to System.out or System.err is also passed through the writer thread to keep it in
+     * order with the output of the Logger.
+     */
+    public static void startWriter()
+    {
+        LogWriter.start();
+    }
+
+    /**
+     * Write all pending log output to the console. Only required before output is written by other means
+     * than System.out or System.err, as pending output is also written when the JVM exits.
+     */
+    public static void flush()
+    {
+        LogWriter.flush();
+    }
+
+    /**
+     * Redirect the output of the current thread into the specified LogBuffer. While a buffer is set,
+     * the indent and print count of the current thread are tracked within the buffer.
+     *
+     * @param logBuffer LogBuffer to write to or null to write to the console again
+     */
+    public static void setBuffer(LogBuffer logBuffer)
+    {
+        if( logBuffer == null )
+            buffer.remove();
+        else
+            buffer.set(logBuffer);
+    }
+
+    /**
+     * @return true if the output of the current thread is written into a LogBuffer
+     */
+    public static boolean isBuffered()
+    {
+        return buffer.get() != null;
+    }
+
+    /**
+     * @return LogBuffer of the current thread or null if the output is not buffered
+     */
+    static LogBuffer getBuffer()
+    {
+        return buffer.get();
+    }
 
     /**
      *
@@ -138,14 +201,80 @@ public class Logger
 
     private static String prefix()
     {
-        Logger.printCount++;
-        return "[+]" + Logger.getIndent();
+        countLine();
+        return "[+]";
     }
 
     private static String eprefix()
     {
-        Logger.printCount++;
-        return "[-]" + Logger.getIndent();
+        countLine();
+        return "[-]";
+    }
+
+    private static void countLine()
+    {
+        LogBuffer logBuffer = buffer.get();
+
+        if( logBuffer != null )
+            logBuffer.printCount++;
+        else
+            addPrintCount(1);
+    }
+
+    /**
+     * Add the specified number of lines to the global print count and publish the new value
+     * within the public printCount field.
+     *
+     * @param lines number of lines to add
+     */
+    static void addPrintCount(int lines)
+    {
+        lineCount.addAndGet(lines);
+
+        int value;
+
+        do {
+            value = lineCount.get();
+            printCount = value;
+        } while( value != lineCount.get() );
+    }
+
+    private static void publishIndent()
+    {
+        int value;
+
+        do {
+            value = indentLevel.get();
+            indent = value;
+        } while( value != indentLevel.get() );
+    }
+
+    /**
+     * @return the global indent level, ignoring the LogBuffer of the current thread
+     */
+    static int getGlobalIndent()
+    {
+        return indentLevel.get();
+    }
+
+    /**
+     * @return the global print count, ignoring the LogBuffer of the current thread
+     */
+    static int getGlobalPrintCount()
+    {
+        return lineCount.get();
+    }
+
+    private static int getPrintCount()
+    {
+        LogBuffer logBuffer = buffer.get();
+        return (logBuffer != null) ? logBuffer.printCount : lineCount.get();
+    }
+
+    private static int getIndentLevel()
+    {
+        LogBuffer logBuffer = buffer.get();
+        return (logBuffer != null) ? logBuffer.indent : indentLevel.get();
     }
 
     private static void log(String msg)
@@ -155,13 +284,17 @@ public class Logger
 
     private static void log(String msg, boolean newline)
     {
-        if( Logger.stdout ) {
+        emit(false, null, msg, newline);
+    }
 
-            if( newline )
-                System.out.println(msg);
-            else
-                System.out.print(msg);
-        }
+    private static void log(String marker, String msg)
+    {
+        log(marker, msg, true);
+    }
+
+    private static void log(String marker, String msg, boolean newline)
+    {
+        emit(false, marker, msg, newline);
     }
 
     private static void elog(String msg)
@@ -171,13 +304,32 @@ public class Logger
 
     private static void elog(String msg, boolean newline)
     {
-        if( Logger.stderr ) {
+        emit(true, null, msg, newline);
+    }
+
+    private static void elog(String marker, String msg)
+    {
+        elog(marker, msg, true);
+    }
 
-            if( newline )
-                System.err.println(msg);
-            else
-                System.err.print(msg);
-        }
+    private static void elog(String marker, String msg, boolean newline)
+    {
+        emit(true, marker, msg, newline);
+    }
+
+    private static void emit(boolean toStderr, String marker, String msg, boolean newline)
+    {
+        if( toStderr ? !Logger.stderr : !Logger.stdout )
+            return;
+
+        int level = (marker != null) ? getIndentLevel() : 0;
+        LogEvent event = new LogEvent(toStderr, marker, level, msg, newline);
+        LogBuffer logBuffer = buffer.get();
+
+        if( logBuffer != null )
+            logBuffer.add(event);
+        else
+            LogWriter.submit(event);
     }
 
     /**
@@ -185,9 +337,9 @@ public class Logger
      */
     public static void lineBreak()
     {
-        if( printCount != 0 ) {
+        if( getPrintCount() != 0 ) {
 
-            Logger.printCount++;
+            countLine();
             log("[+]", true);
         }
     }
@@ -197,7 +349,7 @@ public class Logger
      */
     public static void print(String msg)
     {
-        log(prefix() + msg, false);
+        log(prefix(), msg, false);
     }
 
     /**
@@ -213,7 +365,7 @@ public class Logger
      */
     public static void println(String msg)
     {
-        log(prefix() + msg);
+        log(prefix(), msg);
     }
 
     /**
@@ -229,7 +381,7 @@ public class Logger
      */
     public static void eprint(String msg)
     {
-        elog(eprefix() + msg, false);
+        elog(eprefix(), msg, false);
     }
 
     /**
@@ -237,7 +389,7 @@ public class Logger
      */
     public static void eprintln(String msg)
     {
-        elog(eprefix() + msg);
+        elog(eprefix(), msg);
     }
 
     /**
@@ -253,7 +405,7 @@ public class Logger
      */
     public static void printlnBlue(String msg)
     {
-        log(prefix() + blue(msg));
+        log(prefix(), blue(msg));
     }
 
     /**
@@ -261,7 +413,7 @@ public class Logger
      */
     public static void eprintlnBlue(String msg)
     {
-        elog(prefix() + blue(msg));
+        elog(prefix(), blue(msg));
     }
 
     /**
@@ -269,7 +421,7 @@ public class Logger
      */
     public static void printlnYellow(String msg)
     {
-        log(prefix() + yellow(msg));
+        log(prefix(), yellow(msg));
     }
 
     /**
@@ -277,7 +429,7 @@ public class Logger
      */
     public static void eprintlnYellow(String msg)
     {
-        elog(prefix() + yellow(msg));
+        elog(prefix(), yellow(msg));
     }
 
     /**
@@ -350,7 +502,7 @@ public class Logger
      */
     public static void printlnMixedRed(String first, String second)
     {
-        log(prefix() + first + " " + red(second));
+        log(prefix(), first + " " + red(second));
     }
 
     /**
@@ -377,7 +529,7 @@ public class Logger
      */
     public static void printlnMixedGreen(String first, String second)
     {
-        log(prefix() + first + " " + green(second));
+        log(prefix(), first + " " + green(second));
     }
 
     /**
@@ -404,7 +556,7 @@ public class Logger
      */
     public static void printlnMixedPurple(String first, String second)
     {
-        log(prefix() + first + " " + purple(second));
+        log(prefix(), first + " " + purple(second));
     }
 
     /**
@@ -431,7 +583,7 @@ public class Logger
      */
     public static void printlnMixedBlue(String first, String second)
     {
-        log(prefix() + first + " " + blue(second));
+        log(prefix(), first + " " + blue(second));
     }
 
     /**
@@ -441,7 +593,7 @@ public class Logger
      */
     public static void printlnMixedBlue(String first, String second, String third)
     {
-        log(prefix() + first + " " + blue(second) + " " + third);
+        log(prefix(), first + " " + blue(second) + " " + third);
     }
 
     /**
@@ -450,7 +602,7 @@ public class Logger
      */
     public static void printlnMixedYellow(String first, String second)
     {
-        log(prefix() + first + " " + yellow(second));
+        log(prefix(), first + " " + yellow(second));
     }
 
     /**
@@ -460,7 +612,7 @@ public class Logger
      */
     public static void printlnMixedYellow(String first, String second, String third)
     {
-        log(prefix() + first + " " + yellow(second) + " " + third);
+        log(prefix(), first + " " + yellow(second) + " " + third);
     }
 
     /**
@@ -581,7 +733,7 @@ public class Logger
      */
     public static void eprintlnMixedBlue(String first, String second)
     {
-        elog(eprefix() + first + " " + blue(second));
+        elog(eprefix(), first + " " + blue(second));
     }
 
     /**
@@ -591,7 +743,7 @@ public class Logger
      */
     public static void eprintlnMixedBlue(String first, String second, String third)
     {
-        elog(eprefix() + first + " " + blue(second) + " " + third);
+        elog(eprefix(), first + " " + blue(second) + " " + third);
     }
 
     /**
@@ -600,7 +752,7 @@ public class Logger
      */
     public static void eprintlnMixedYellow(String first, String second)
     {
-        elog(eprefix() + first + " " + yellow(second));
+        elog(eprefix(), first + " " + yellow(second));
     }
 
     /**
@@ -610,7 +762,7 @@ public class Logger
      */
     public static void eprintlnMixedYellow(String first, String second, String third)
     {
-        elog(eprefix() + first + " " + yellow(second) + " " + third);
+        elog(eprefix(), first + " " + yellow(second) + " " + third);
     }
 
     /**
@@ -619,7 +771,7 @@ public class Logger
      */
     public static void printlnMixedBlueFirst(String first, String second)
     {
-        log(prefix() + blue(first) + " " + second);
+        log(prefix(), blue(first) + " " + second);
     }
 
     /**
@@ -629,7 +781,7 @@ public class Logger
      */
     public static void printlnMixedBlueFirst(String first, String second, String third)
     {
-        log(prefix() + blue(first) + " " + second + " " + blue(third));
+        log(prefix(), blue(first) + " " + second + " " + blue(third));
     }
 
     /**
@@ -676,7 +828,7 @@ public class Logger
      */
     public static void printlnMixedYellowFirst(String first, String second)
     {
-        log(prefix() + yellow(first) + " " + second);
+        log(prefix(), yellow(first) + " " + second);
     }
 
     /**
@@ -686,7 +838,7 @@ public class Logger
      */
     public static void printlnMixedYellowFirst(String first, String second, String third)
     {
-        log(prefix() + yellow(first) + " " + second + " " + yellow(third));
+        log(prefix(), yellow(first) + " " + second + " " + yellow(third));
     }
 
     /**
@@ -695,7 +847,7 @@ public class Logger
      */
     public static void eprintlnMixedBlueFirst(String first, String second)
     {
-        elog(eprefix() + blue(first) + " " + second);
+        elog(eprefix(), blue(first) + " " + second);
     }
 
     /**
@@ -705,7 +857,7 @@ public class Logger
      */
     public static void eprintlnMixedBlueFirst(String first, String second, String third)
     {
-        elog(eprefix() + blue(first) + " " + second + " " + blue(third));
+        elog(eprefix(), blue(first) + " " + second + " " + blue(third));
     }
 
     /**
@@ -714,7 +866,7 @@ public class Logger
      */
     public static void eprintlnMixedYellowFirst(String first, String second)
     {
-        elog(eprefix() + yellow(first) + " " + second);
+        elog(eprefix(), yellow(first) + " " + second);
     }
 
     /**
@@ -724,7 +876,7 @@ public class Logger
      */
     public static void eprintlnMixedYellowFirst(String first, String second, String third)
     {
-        elog(eprefix() + yellow(first) + " " + second + " " + yellow(third));
+        elog(eprefix(), yellow(first) + " " + second + " " + yellow(third));
     }
 
     /**
@@ -733,7 +885,7 @@ public class Logger
      */
     public static void printMixedBlue(String first, String second)
     {
-        log(prefix() + first + " " + blue(second), false);
+        log(prefix(), first + " " + blue(second), false);
     }
 
     /**
@@ -743,7 +895,7 @@ public class Logger
      */
     public static void printMixedBlue(String first, String second, String third)
     {
-        log(prefix() + first + " " + blue(second) + " " + third, false);
+        log(prefix(), first + " " + blue(second) + " " + third, false);
     }
 
     /**
@@ -752,7 +904,7 @@ public class Logger
      */
     public static void printMixedYellow(String first, String second)
     {
-        log(prefix() + first + " " + yellow(second), false);
+        log(prefix(), first + " " + yellow(second), false);
     }
 
     /**
@@ -762,7 +914,7 @@ public class Logger
      */
     public static void printMixedYellow(String first, String second, String third)
     {
-        log(prefix() + first + " " + yellow(second) + " " + third, false);
+        log(prefix(), first + " " + yellow(second) + " " + third, false);
     }
 
     /**
@@ -771,7 +923,7 @@ public class Logger
      */
     public static void eprintMixedBlue(String first, String second)
     {
-        elog(eprefix() + first + " " + blue(second), false);
+        elog(eprefix(), first + " " + blue(second), false);
     }
 
     /**
@@ -781,7 +933,7 @@ public class Logger
      */
     public static void eprintMixedBlue(String first, String second, String third)
     {
-        elog(eprefix() + first + " " + blue(second) + " " + third, false);
+        elog(eprefix(), first + " " + blue(second) + " " + third, false);
     }
 
     /**
@@ -790,7 +942,7 @@ public class Logger
      */
     public static void eprintMixedYellow(String first, String second)
     {
-        elog(eprefix() + first + " " + yellow(second), false);
+        elog(eprefix(), first + " " + yellow(second), false);
     }
 
     /**
@@ -800,7 +952,7 @@ public class Logger
      */
     public static void eprintMixedYellow(String first, String second, String third)
     {
-        elog(eprefix() + first + " " + yellow(second) + " " + third, false);
+        elog(eprefix(), first + " " + yellow(second) + " " + third, false);
     }
 
     /**
@@ -809,7 +961,7 @@ public class Logger
      */
     public static void printMixedBlueFirst(String first, String second)
     {
-        log(prefix() + blue(first) + " " + second, false);
+        log(prefix(), blue(first) + " " + second, false);
     }
 
     /**
@@ -819,7 +971,7 @@ public class Logger
      */
     public static void printMixedBlueFirst(String first, String second, String third)
     {
-        log(prefix() + blue(first) + " " + second + " " + blue(third), false);
+        log(prefix(), blue(first) + " " + second + " " + blue(third), false);
     }
 
     /**
@@ -828,7 +980,7 @@ public class Logger
      */
     public static void printMixedYellowFirst(String first, String second)
     {
-        log(prefix() + yellow(first) + " " + second, false);
+        log(prefix(), yellow(first) + " " + second, false);
     }
 
     /**
@@ -838,7 +990,7 @@ public class Logger
      */
     public static void printMixedYellowFirst(String first, String second, String third)
     {
-        log(prefix() + yellow(first) + " " + second + " " + yellow(third), false);
+        log(prefix(), yellow(first) + " " + second + " " + yellow(third), false);
     }
 
     /**
@@ -847,7 +999,7 @@ public class Logger
      */
     public static void eprintMixedBlueFirst(String first, String second)
     {
-        elog(eprefix() + blue(first) + " " + second, false);
+        elog(eprefix(), blue(first) + " " + second, false);
     }
 
     /**
@@ -857,7 +1009,7 @@ public class Logger
      */
     public static void eprintMixedBlueFirst(String first, String second, String third)
     {
-        elog(eprefix() + blue(first) + " " + second + " " + blue(third), false);
+        elog(eprefix(), blue(first) + " " + second + " " + blue(third), false);
     }
 
     /**
@@ -866,7 +1018,7 @@ public class Logger
      */
     public static void eprintMixedYellowFirst(String first, String second)
     {
-        elog(eprefix() + yellow(first) + " " + second, false);
+        elog(eprefix(), yellow(first) + " " + second, false);
     }
 
     /**
@@ -876,7 +1028,7 @@ public class Logger
      */
     public static void eprintMixedYellowFirst(String first, String second, String third)
     {
-        elog(eprefix() + yellow(first) + " " + second + " " + yellow(third), false);
+        elog(eprefix(), yellow(first) + " " + second + " " + yellow(third), false);
     }
 
     /**
@@ -896,6 +1048,7 @@ public class Logger
     public static void statusVulnerable()
     {
         printlnMixedRed("  Vulnerability Status:", "Vulnerable");
+        recordStatus("Vulnerability", "Vulnerable");
     }
 
     /**
@@ -904,6 +1057,7 @@ public class Logger
     public static void statusOk()
     {
         printlnMixedGreen("  Vulnerability Status:", "Non Vulnerable");
+        recordStatus("Vulnerability", "Non Vulnerable");
     }
 
     /**
@@ -912,6 +1066,7 @@ public class Logger
     public static void statusOutdated()
     {
         printlnMixedPurple("  Configuration Status:", "Outdated");
+        recordStatus("Configuration", "Outdated");
     }
 
     /**
@@ -920,6 +1075,7 @@ public class Logger
     public static void statusDefault()
     {
         printlnMixedGreen("  Configuration Status:", "Current Default");
+        recordStatus("Configuration", "Current Default");
     }
 
     /**
@@ -928,6 +1084,7 @@ public class Logger
     public static void statusNonDefault()
     {
         printlnMixedRed("  Configuration Status:", "Non Default");
+        recordStatus("Configuration", "Non Default");
     }
 
     /**
@@ -936,6 +1093,39 @@ public class Logger
     public static void statusUndecided(String statusType)
     {
         printlnMixedPurple("  " + statusType + " Status:", "Undecided");
+        recordStatus(statusType, "Undecided");
+    }
+
+    /**
+     * Record the outcome of a check without printing it. Outcomes are passed to the status listener of the
+     * current thread. If no listener is registered but the output of the thread is buffered, the outcome is
+     * stored within the buffer and passed on when the buffer is replayed.
+     *
+     * @param statusType the thing that was checked (e.g. Vulnerability, Configuration, ...)
+     * @param status outcome of the check (e.g. Vulnerable, Current Default, ...)
+     */
+    public static void recordStatus(String statusType, String status)
+    {
+        BiConsumer<String,String> listener = statusListener.get();
+
+        if( listener != null )
+            listener.accept(statusType, status);
+
+        else if( buffer.get() != null )
+            buffer.get().addStatus(statusType, status);
+    }
+
+    /**
+     * Register a listener that obtains the outcomes of all checks that are performed by the current thread.
+     *
+     * @param listener listener to register or null to remove the current listener
+     */
+    public static void setStatusListener(BiConsumer<String,String> listener)
+    {
+        if( listener == null )
+            statusListener.remove();
+        else
+            statusListener.set(listener);
     }
 
     /**
@@ -943,8 +1133,18 @@ public class Logger
      */
     public static void increaseIndent()
     {
-        if(Logger.printCount != 0)
-            indent += 1;
+        LogBuffer logBuffer = buffer.get();
+
+        if(getPrintCount() == 0)
+            return;
+
+        if(logBuffer != null) {
+            logBuffer.indent += 1;
+            return;
+        }
+
+        indentLevel.incrementAndGet();
+        publishIndent();
     }
 
     /**
@@ -952,9 +1152,15 @@ public class Logger
      */
     public static void decreaseIndent()
     {
-        indent -= 1;
-        if(indent < 0)
-            indent = 0;
+        LogBuffer logBuffer = buffer.get();
+
+        if(logBuffer != null) {
+            logBuffer.indent = Math.max(logBuffer.indent - 1, 0);
+            return;
+        }
+
+        indentLevel.updateAndGet(current -> Math.max(current - 1, 0));
+        publishIndent();
     }
 
     /**
@@ -962,7 +1168,7 @@ public class Logger
      */
     public static String getIndent()
     {
-        return " " + new String(new char[indent]).replace("\0", "\t");
+        return " " + new String(new char[getIndentLevel()]).replace("\0", "\t");
     }
 
     /**
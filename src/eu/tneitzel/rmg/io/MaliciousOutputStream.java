@@ -33,7 +33,7 @@ public class MaliciousOutputStream extends MarshalOutputStream {
     private Object location;
     private ObjectOutputStream inner;
 
-    private static Object defaultLocation = null;
+    private static final ThreadLocal<Object> defaultLocation = new ThreadLocal<Object>();
 
     /**
      * Wraps a MarshalOutputStream into an extending class to overwrite its writeLocation method.
@@ -66,8 +66,8 @@ public class MaliciousOutputStream extends MarshalOutputStream {
             ExceptionHandler.unexpectedException(e, "creation", "of MaliciousOutputStream", true);
         }
 
-        if( defaultLocation != null )
-            location = defaultLocation;
+        if( defaultLocation.get() != null )
+            location = defaultLocation.get();
         else
             location = new DefinitelyNonExistingClass();
     }
@@ -104,13 +104,14 @@ public class MaliciousOutputStream extends MarshalOutputStream {
     }
 
     /**
-     * Set the location object to provide within the stream.
+     * Set the location object to provide within the stream. The location is stored per thread, as
+     * the checks of the enum action run concurrently and use different locations.
      *
      * @param payload object to use as location.
      */
     public static void setDefaultLocation(Object payload)
     {
-        defaultLocation = payload;
+        defaultLocation.set(payload);
     }
 
     /**
@@ -120,10 +121,12 @@ public class MaliciousOutputStream extends MarshalOutputStream {
      */
     public static String getDefaultLocation()
     {
-        if(defaultLocation instanceof String)
-            return (String)defaultLocation;
+        Object location = defaultLocation.get();
+
+        if(location instanceof String)
+            return (String)location;
         else
-            return defaultLocation.getClass().getName();
+            return location.getClass().getName();
     }
 
     /**
@@ -131,6 +134,6 @@ public class MaliciousOutputStream extends MarshalOutputStream {
      */
     public static void resetDefaultLocation()
     {
-        defaultLocation = null;
+        defaultLocation.remove();
     }
 }
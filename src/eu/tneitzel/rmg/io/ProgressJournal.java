@@ -0,0 +1,325 @@
+package eu.tneitzel.rmg.io;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.UnsupportedEncodingException;
+import java.net.URLEncoder;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import eu.tneitzel.rmg.internal.ExceptionHandler;
+import eu.tneitzel.rmg.internal.MethodCandidate;
+import eu.tneitzel.rmg.utils.UnicastWrapper;
+import javassist.CannotCompileException;
+import javassist.NotFoundException;
+
+/**
+ * The ProgressJournal records the progress of a guessing run within an append-only journal file. Each guessing call
+ * that lead to a conclusive result creates one record that contains the target, the bound name, the method hash and
+ * the outcome of the call:
+ *
+ *      H   target   bound-name   method-hash   method-signature
+ *      M   target   bound-name   method-hash
+ *
+ * Records are tab separated and bound names are URL encoded. Calls that failed with an error are not recorded and
+ * are retried when the run is resumed. When an existing journal is opened, all recorded method hashes are treated
+ * as completed and recorded hits are merged into the results of the current run. Incomplete records at the end of
+ * the journal, as created by an interrupted run, are ignored.
+ *
+ * Records are written through a buffered writer on top of a FileChannel opened in append mode. The buffer is flushed
+ * regularly, when the journal is closed and by a shutdown hook when rmg is interrupted.
+ *
+ * @author Tobias Neitzel (@qtc_de)
+ */
+public class ProgressJournal
+{
+    private int pending;
+    private final File file;
+    private final BufferedWriter writer;
+    private final Thread shutdownHook;
+
+    private final Map<String, Set<Long>> done;
+    private final Map<String, List<String>> hits;
+
+    private static final int FLUSH_INTERVAL = 64;
+    private static final String HEADER = "# rmg guess journal v1";
+
+    /**
+     * Open the specified journal. Existing records are loaded and new records are appended to the file.
+     *
+     * @param file journal file to open
+     * @throws IOException if reading or opening the journal fails
+     */
+    public ProgressJournal(File file) throws IOException
+    {
+        this.file = file;
+        this.pending = 0;
+        this.done = new HashMap<String, Set<Long>>();
+        this.hits = new HashMap<String, List<String>>();
+
+        boolean newline = true;
+        boolean exists = file.isFile() && file.length() != 0;
+
+        if (exists)
+        {
+            load();
+            newline = endsWithNewline();
+        }
+
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.APPEND);
+        this.writer = new BufferedWriter(Channels.newWriter(channel, StandardCharsets.UTF_8.newEncoder(), -1));
+
+        if (!exists)
+        {
+            writer.write(HEADER);
+            writer.newLine();
+        }
+
+        else if (!newline)
+        {
+            writer.newLine();
+        }
+
+        shutdownHook = new Thread(this::flush, "rmg-journal-flush");
+        Runtime.getRuntime().addShutdownHook(shutdownHook);
+    }
+
+    /**
+     * Return the number of method hashes that were already completed for the specified remote object.
+     *
+     * @param remoteObject remote object to check
+     * @return number of completed method hashes
+     */
+    public synchronized int getDoneCount(UnicastWrapper remoteObject)
+    {
+        Set<Long> hashes = done.get(getKey(remoteObject));
+        return (hashes == null) ? 0 : hashes.size();
+    }
+
+    /**
+     * Check whether the specified method hash was already guessed on the specified remote object.
+     *
+     * @param remoteObject remote object to check
+     * @param hash method hash to check
+     * @return true if the method hash was already guessed
+     */
+    public synchronized boolean isDone(UnicastWrapper remoteObject, long hash)
+    {
+        Set<Long> hashes = done.get(getKey(remoteObject));
+        return hashes != null && hashes.contains(hash);
+    }
+
+    /**
+     * Return the methods that were already identified on the specified remote object.
+     *
+     * @param remoteObject remote object to obtain the identified methods for
+     * @return List of identified methods
+     */
+    public synchronized List<MethodCandidate> getHits(UnicastWrapper remoteObject)
+    {
+        List<MethodCandidate> methods = new ArrayList<MethodCandidate>();
+        List<String> signatures = hits.get(getKey(remoteObject));
+
+        if (signatures == null)
+        {
+            return methods;
+        }
+
+        for (String signature : signatures)
+        {
+            try
+            {
+                methods.add(new MethodCandidate(signature));
+            }
+
+            catch (CannotCompileException | NotFoundException e)
+            {
+                Logger.eprintlnMixedYellow("Unable to parse journaled method", signature);
+            }
+        }
+
+        return methods;
+    }
+
+    /**
+     * Record the outcome of a guessing call.
+     *
+     * @param remoteObject remote object the call was dispatched to
+     * @param candidate MethodCandidate that was guessed
+     * @param hit whether the method exists on the remote object
+     */
+    public synchronized void record(UnicastWrapper remoteObject, MethodCandidate candidate, boolean hit)
+    {
+        StringBuilder record = new StringBuilder();
+
+        record.append(hit ? "H" : "M").append('\t');
+        record.append(remoteObject.getTarget()).append('\t');
+        record.append(encode(remoteObject.boundName)).append('\t');
+        record.append(candidate.getHash());
+
+        if (hit)
+        {
+            record.append('\t').append(candidate.getSignature());
+        }
+
+        try
+        {
+            writer.write(record.toString());
+            writer.newLine();
+
+            if (++pending >= FLUSH_INTERVAL)
+            {
+                writer.flush();
+                pending = 0;
+            }
+        }
+
+        catch (IOException e)
+        {
+            Logger.eprintlnMixedYellow("Caught", "IOException", "while writing to the journal file.");
+            ExceptionHandler.showStackTrace(e);
+        }
+    }
+
+    /**
+     * Flush all buffered records to the journal file.
+     */
+    public synchronized void flush()
+    {
+        try
+        {
+            writer.flush();
+            pending = 0;
+        }
+
+        catch (IOException e)
+        {
+            ExceptionHandler.showStackTrace(e);
+        }
+    }
+
+    /**
+     * Flush all buffered records and close the journal file.
+     */
+    public synchronized void close()
+    {
+        try
+        {
+            writer.close();
+            Runtime.getRuntime().removeShutdownHook(shutdownHook);
+        }
+
+        catch (IOException | IllegalStateException e)
+        {
+            ExceptionHandler.showStackTrace(e);
+        }
+    }
+
+    /**
+     * Load the records of an existing journal file. Malformed records are skipped.
+     *
+     * @throws IOException if reading the journal fails
+     */
+    private void load() throws IOException
+    {
+        try (BufferedReader reader = Files.newBufferedReader(file.toPath(), StandardCharsets.UTF_8))
+        {
+            String line;
+
+            while ((line = reader.readLine()) != null)
+            {
+                if (line.startsWith("#"))
+                {
+                    continue;
+                }
+
+                String[] split = line.split("\t", 5);
+
+                if ((!split[0].equals("H") || split.length != 5) && (!split[0].equals("M") || split.length != 4))
+                {
+                    continue;
+                }
+
+                long hash;
+
+                try
+                {
+                    hash = Long.parseLong(split[3]);
+                }
+
+                catch (NumberFormatException e)
+                {
+                    continue;
+                }
+
+                String key = split[1] + "\t" + split[2];
+                done.computeIfAbsent(key, k -> new HashSet<Long>()).add(hash);
+
+                if (split[0].equals("H"))
+                {
+                    hits.computeIfAbsent(key, k -> new ArrayList<String>()).add(split[4]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Check whether the journal file ends with a line break. If an interrupted run left an incomplete
+     * record, a line break needs to be written before appending new records.
+     *
+     * @return true if the last byte of the journal is a line break
+     * @throws IOException if reading the journal fails
+     */
+    private boolean endsWithNewline() throws IOException
+    {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r"))
+        {
+            raf.seek(raf.length() - 1);
+            return raf.read() == '\n';
+        }
+    }
+
+    /**
+     * Return the key that is used to identify a remote object within the journal.
+     *
+     * @param remoteObject remote object to create the key for
+     * @return key for the remote object
+     */
+    private static String getKey(UnicastWrapper remoteObject)
+    {
+        return remoteObject.getTarget() + "\t" + encode(remoteObject.boundName);
+    }
+
+    /**
+     * URL encode the specified bound name to prevent tabs and line breaks within journal records.
+     *
+     * @param boundName bound name to encode
+     * @return encoded bound name
+     */
+    private static String encode(String boundName)
+    {
+        try
+        {
+            return URLEncoder.encode(boundName, StandardCharsets.UTF_8.name());
+        }
+
+        catch (UnsupportedEncodingException e)
+        {
+            ExceptionHandler.internalError("ProgressJournal.encode", "UTF-8 is not supported.");
+        }
+
+        return null;
+    }
+}
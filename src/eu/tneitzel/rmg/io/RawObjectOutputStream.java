@@ -19,28 +19,23 @@ public class RawObjectOutputStream {
     private DataOutput bout;
     private OutputStream outStream;
 
+    private static Field boutField;
+    private static Field outputStreamField;
+
     /**
      * Wraps an ObjectOutputStream into an RawObjectOutputStream. The underlying OutputStream object is made
      * accessible via reflection. This underlying OutputStream can then be used to perform raw byte operations.
+     * The required fields are only looked up once and are reused for all further instances, as this class is
+     * used on the hot path of method guessing.
      *
      * @param out OutputStream to wrap around
      */
     public RawObjectOutputStream(ObjectOutputStream out)
     {
         try {
-            Field boutField = ObjectOutputStream.class.getDeclaredField("bout");
-            boutField.setAccessible(true);
-            bout = (DataOutput)boutField.get(out);
-
-            Field outputStreamField = null;
-            Class<?>[] classes = ObjectOutputStream.class.getDeclaredClasses();
-            for(Class<?> c : classes) {
-                if(c.getCanonicalName().endsWith("BlockDataOutputStream")) {
-                    outputStreamField = c.getDeclaredField("out");
-                    outputStreamField.setAccessible(true);
-                }
-            }
+            initFields();
 
+            bout = (DataOutput)boutField.get(out);
             outStream = (OutputStream)outputStreamField.get(bout);
 
         } catch (Exception e) {
@@ -48,6 +43,32 @@ public class RawObjectOutputStream {
         }
     }
 
+    /**
+     * Lookup the reflective fields that are required to access the underlying OutputStream.
+     *
+     * @throws ReflectiveOperationException internal error
+     */
+    private static synchronized void initFields() throws ReflectiveOperationException
+    {
+        if( outputStreamField != null )
+            return;
+
+        Field bField = ObjectOutputStream.class.getDeclaredField("bout");
+        bField.setAccessible(true);
+
+        Field oField = null;
+        Class<?>[] classes = ObjectOutputStream.class.getDeclaredClasses();
+        for(Class<?> c : classes) {
+            if(c.getCanonicalName().endsWith("BlockDataOutputStream")) {
+                oField = c.getDeclaredField("out");
+                oField.setAccessible(true);
+            }
+        }
+
+        boutField = bField;
+        outputStreamField = oField;
+    }
+
     /**
      * Write raw byte to the underlying output stream.
      *
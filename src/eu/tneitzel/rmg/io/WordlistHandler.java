@@ -1,8 +1,11 @@
 package eu.tneitzel.rmg.io;
 
+import java.io.BufferedReader;
 import java.io.File;
+import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.InputStreamReader;
 import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.HashSet;
@@ -14,6 +17,7 @@ import org.apache.commons.io.FileUtils;
 import org.apache.commons.io.IOUtils;
 
 import eu.tneitzel.rmg.internal.MethodCandidate;
+import eu.tneitzel.rmg.metrics.FlightEvents;
 import javassist.CannotCompileException;
 import javassist.NotFoundException;
 
@@ -93,11 +97,27 @@ public class WordlistHandler {
         return candidates;
     }
 
+    /**
+     * Create a CandidateStream for the configured wordlists. In contrast to getWordlistMethods, the wordlists
+     * are not read upfront, but parsed incrementally by the producer thread of the CandidateStream. Updating
+     * wordlists is not supported in streaming mode.
+     *
+     * @param capacity maximum number of parsed candidates that are not consumed yet
+     * @return CandidateStream for the configured wordlists
+     */
+    public CandidateStream getCandidateStream(int capacity)
+    {
+        return new CandidateStream(this, zeroArg, capacity);
+    }
+
     /**
      * This function is responsible for loading internal wordlist files. These are stored within the JAR file
      * in the wordlists folder on the top level of the archive. Enumerating files within an internal JAR folder
      * is currently a pain and the available wordlist names are hardcoded into this class.
      *
+     * The build creates a WordlistIndex for each internal wordlist. If an index is available, it is used
+     * instead of parsing the text based wordlist.
+     *
      * @return HashSet of method candidates parsed from the wordlist file
      * @throws IOException if some file access fails
      */
@@ -110,11 +130,28 @@ public class WordlistHandler {
             Logger.printlnMixedBlue("Reading method candidates from internal wordlist", wordlist);
             Logger.increaseIndent();
 
-            InputStream stream = WordlistHandler.class.getResourceAsStream("/resources/wordlists/" + wordlist);
-            String content = new String(IOUtils.toByteArray(stream));
-            stream.close();
+            Object event = FlightEvents.begin(FlightEvents.Type.WORDLIST_LOAD);
+            HashSet<MethodCandidate> loaded;
+
+            String index = WordlistIndex.getIndexFile(new File(wordlist)).getName();
+            InputStream stream = WordlistHandler.class.getResourceAsStream("/resources/wordlists/" + index);
+            boolean indexed = stream != null;
+
+            if( indexed ) {
+                loaded = readIndex(WordlistIndex.read(stream));
+                stream.close();
+
+            } else {
+                stream = WordlistHandler.class.getResourceAsStream("/resources/wordlists/" + wordlist);
+                String content = new String(IOUtils.toByteArray(stream));
+                stream.close();
+
+                loaded = parseMethods(content.split("\n"));
+            }
+
+            FlightEvents.wordlistLoad(event, wordlist, indexed, loaded.size());
+            methods.addAll(loaded);
 
-            methods.addAll(parseMethods(content.split("\n")));
             Logger.decreaseIndent();
         }
 
@@ -123,6 +160,8 @@ public class WordlistHandler {
 
     /**
      * Reads all files ending with .txt within the wordlist folder and returns the corresponding MethodCandidates.
+     * Files ending with .idx are loaded as WordlistIndex, unless they belong to a .txt file within the same
+     * folder. In this case, the index is picked up when reading the .txt file.
      *
      * @param folder wordlist folder to read the wordlist files from
      * @param updateWordlists determines whether wordlists should be updated after creating MethodCandidates
@@ -131,12 +170,7 @@ public class WordlistHandler {
      */
     public static HashSet<MethodCandidate> getWordlistMethodsFromFolder(String folder, boolean updateWordlists) throws IOException
     {
-        File wordlistFolder = new File(folder);
-        if( !wordlistFolder.isDirectory() ) {
-            throw new IOException("wordlist-folder " + wordlistFolder.getCanonicalPath() + " is not a directory.");
-        }
-
-        List<File> files = (List<File>)FileUtils.listFiles(wordlistFolder, new String[]{"txt", "TXT"}, false);
+        List<File> files = listWordlistFiles(folder);
         Logger.printlnMixedBlueFirst(String.valueOf(files.size()), "wordlist files found.");
 
         HashSet<MethodCandidate> methods = new HashSet<MethodCandidate>();
@@ -147,12 +181,66 @@ public class WordlistHandler {
         return methods;
     }
 
+    /**
+     * Lists the wordlist files within the specified folder. Files ending with .idx are only included if there is
+     * no corresponding .txt file within the same folder.
+     *
+     * @param folder wordlist folder to list
+     * @return List of wordlist files within the folder
+     * @throws IOException if the folder is not a directory
+     */
+    private static List<File> listWordlistFiles(String folder) throws IOException
+    {
+        File wordlistFolder = new File(folder);
+        if( !wordlistFolder.isDirectory() ) {
+            throw new IOException("wordlist-folder " + wordlistFolder.getCanonicalPath() + " is not a directory.");
+        }
+
+        List<File> files = new ArrayList<File>(FileUtils.listFiles(wordlistFolder, new String[]{"txt", "TXT", "idx"}, false));
+        Set<File> indexFiles = new HashSet<File>();
+
+        for(File file : files) {
+            if( !file.getName().endsWith(WordlistIndex.EXTENSION) )
+                indexFiles.add(WordlistIndex.getIndexFile(file));
+        }
+
+        files.removeAll(indexFiles);
+        return files;
+    }
+
+    /**
+     * Returns the WordlistIndex file that should be used instead of the specified wordlist file. This is the file
+     * itself for .idx files or an up to date index next to the wordlist. If the wordlist should be updated or no
+     * usable index exists, null is returned.
+     *
+     * @param file wordlist file
+     * @param updateWordlists determines whether wordlists should be updated
+     * @return index file to use or null
+     */
+    private static File getUsableIndex(File file, boolean updateWordlists)
+    {
+        File indexFile = WordlistIndex.getIndexFile(file);
+
+        if( file.getName().endsWith(WordlistIndex.EXTENSION) ) {
+            return file;
+
+        } else if( updateWordlists || !indexFile.isFile() || indexFile.lastModified() < file.lastModified() ) {
+            return null;
+        }
+
+        return indexFile;
+    }
+
     /**
      * Parses a wordlist file for available methods and creates the corresponding MethodCandidates. Comments prefixed with '#'
      * within wordlist files are ignored. Each non comment line is split on the ';' character. If the split has a length of 1,
      * the ordinary wordlist format (that just contains the method signature) is assumed. If the length is 4 instead, it should
      * be the advanced format. Otherwise, we have an unknown format and print a warning. If updateWordlists was set within the
-     * constructor, each wordlist file is updated to the advanced format after the parsing.
+     * constructor, each wordlist file is updated to the advanced format after the parsing and a WordlistIndex is
+     * written next to it.
+     *
+     * If the specified file is a WordlistIndex (.idx) or if an up to date WordlistIndex exists for the specified
+     * wordlist, the index is loaded instead of parsing the wordlist.
      *
      * @param filename wordlist file to parse
      * @param updateWordlists determines whether wordlists should be updated after creating MethodCandidates
@@ -162,16 +250,28 @@ public class WordlistHandler {
     public static HashSet<MethodCandidate> getWordlistMethodsFromFile(String filename, boolean updateWordlists) throws IOException
     {
         File file = new File(filename);
+        File indexFile = getUsableIndex(file, updateWordlists);
 
         Logger.printlnMixedBlue("Reading method candidates from file", file.getCanonicalPath());
         Logger.increaseIndent();
 
-        String[] content = FileUtils.readLines(file, StandardCharsets.UTF_8).toArray(new String[0]);
-        HashSet<MethodCandidate> methods = parseMethods(content);
+        Object event = FlightEvents.begin(FlightEvents.Type.WORDLIST_LOAD);
+        HashSet<MethodCandidate> methods = null;
+
+        if( indexFile != null ) {
+            methods = readIndex(WordlistIndex.map(indexFile));
 
-        if(updateWordlists) {
+        } else {
+            String[] content = FileUtils.readLines(file, StandardCharsets.UTF_8).toArray(new String[0]);
+            methods = parseMethods(content);
+        }
+
+        FlightEvents.wordlistLoad(event, file.getCanonicalPath(), indexFile != null, methods.size());
+
+        if(updateWordlists && indexFile == null) {
             Logger.println("Updating wordlist file.");
             updateWordlist(file, methods);
+            WordlistIndex.write(WordlistIndex.getIndexFile(file), methods);
         }
 
         Logger.decreaseIndent();
@@ -193,32 +293,159 @@ public class WordlistHandler {
 
         for(String line : lines) {
 
-            if( line.trim().startsWith("#") || line.trim().isEmpty() ) {
-                continue;
+            MethodCandidate method = parseMethod(line);
+
+            if( method != null )
+                methods.add(method);
+        }
+
+        Logger.printlnMixedYellowFirst(String.valueOf(methods.size()), "methods were successfully parsed.");
+        return methods;
+    }
+
+    /**
+     * Parses a single line of a wordlist file. Empty lines and comments are ignored and null is returned. The same
+     * applies to invalid method signatures, but these also cause a warning.
+     *
+     * @param line line read from a wordlist file
+     * @return MethodCandidate for the line or null if the line does not contain a valid method
+     */
+    public static MethodCandidate parseMethod(String line)
+    {
+        if( line.trim().startsWith("#") || line.trim().isEmpty() ) {
+            return null;
+        }
+
+        line = line.trim().replaceAll(" +", " ").replaceAll(" *, *", ", ").replaceAll("\\<[^>]+\\>", "");
+        String[] split = line.split(";");
+
+        try {
+            if(split.length == 1)
+                return new MethodCandidate(split[0].trim());
+
+            else if(split.length == 4)
+                return new MethodCandidate(split[0].trim(), split[1].trim(), split[2].trim(), split[3].trim());
+
+            else {
+                Logger.eprintlnMixedYellow("Encountered unknown method format:", line);
+                Logger.eprintln("Skipping this signature");
             }
 
-            line = line.trim().replaceAll(" +", " ").replaceAll(" *, *", ", ").replaceAll("\\<[^>]+\\>", "");
-            String[] split = line.split(";");
+        } catch(CannotCompileException | NotFoundException e) {
+            Logger.eprintlnMixedYellow("Caught Exception while processing", line);
+            Logger.eprintln("Skipping this signature");
+        }
 
-            try {
-                if(split.length == 1)
-                    methods.add(new MethodCandidate(split[0].trim()));
+        return null;
+    }
 
-                else if(split.length == 4)
-                    methods.add(new MethodCandidate(split[0].trim(), split[1].trim(), split[2].trim(), split[3].trim()));
+    /**
+     * Passes the MethodCandidates of the configured wordlists one by one to the specified CandidateStream instead
+     * of collecting them within a set. Wordlist files are read line by line and WordlistIndex files are read entry
+     * by entry. Filtering of zero argument methods and duplicates is performed by the CandidateStream.
+     *
+     * @param stream CandidateStream to pass the MethodCandidates to
+     * @throws IOException if an IO operation fails
+     * @throws InterruptedException if the thread is interrupted while the CandidateStream is full
+     */
+    void streamWordlistMethods(CandidateStream stream) throws IOException, InterruptedException
+    {
+        if( this.wordlistFile != null && !this.wordlistFile.isEmpty() ) {
+            streamFile(new File(this.wordlistFile), stream);
+
+        } else if( this.wordlistFolder != null && !this.wordlistFolder.isEmpty() ) {
+            for(File file : listWordlistFiles(this.wordlistFolder))
+                streamFile(file, stream);
+
+        } else {
+            for(String wordlist : defaultWordlists) {
+
+                String index = WordlistIndex.getIndexFile(new File(wordlist)).getName();
+                InputStream indexStream = WordlistHandler.class.getResourceAsStream("/resources/wordlists/" + index);
+
+                if( indexStream != null ) {
+                    try(InputStream in = indexStream) {
+                        streamIndex(WordlistIndex.read(in), stream);
+                    }
 
-                else {
-                    Logger.eprintlnMixedYellow("Encountered unknown method format:", line);
-                    Logger.eprintln("Skipping this signature");
+                } else {
+                    try(InputStream in = WordlistHandler.class.getResourceAsStream("/resources/wordlists/" + wordlist)) {
+                        streamLines(in, stream);
+                    }
                 }
+            }
+        }
+    }
 
-            } catch(CannotCompileException | NotFoundException e) {
-                Logger.eprintlnMixedYellow("Caught Exception while processing", line);
-                Logger.eprintln("Skipping this signature");
+    /**
+     * Passes the MethodCandidates of a single wordlist file to the specified CandidateStream. If a usable
+     * WordlistIndex exists, it is used instead of the wordlist file.
+     *
+     * @param file wordlist file to read
+     * @param stream CandidateStream to pass the MethodCandidates to
+     * @throws IOException if an IO operation fails
+     * @throws InterruptedException if the thread is interrupted while the CandidateStream is full
+     */
+    private static void streamFile(File file, CandidateStream stream) throws IOException, InterruptedException
+    {
+        File indexFile = getUsableIndex(file, false);
+
+        if( indexFile != null ) {
+            streamIndex(WordlistIndex.map(indexFile), stream);
+
+        } else {
+            try(InputStream in = new FileInputStream(file)) {
+                streamLines(in, stream);
             }
         }
+    }
+
+    /**
+     * Passes all MethodCandidates of a WordlistIndex to the specified CandidateStream.
+     *
+     * @param index WordlistIndex to read from
+     * @param stream CandidateStream to pass the MethodCandidates to
+     * @throws InterruptedException if the thread is interrupted while the CandidateStream is full
+     */
+    private static void streamIndex(WordlistIndex index, CandidateStream stream) throws InterruptedException
+    {
+        for(int ctr = 0; ctr < index.size(); ctr++)
+            stream.put(index.getCandidate(ctr));
+    }
+
+    /**
+     * Parses the lines of a wordlist one by one and passes valid MethodCandidates to the specified CandidateStream.
+     *
+     * @param in InputStream to read the wordlist from
+     * @param stream CandidateStream to pass the MethodCandidates to
+     * @throws IOException if an IO operation fails
+     * @throws InterruptedException if the thread is interrupted while the CandidateStream is full
+     */
+    private static void streamLines(InputStream in, CandidateStream stream) throws IOException, InterruptedException
+    {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        String line;
+
+        while( (line = reader.readLine()) != null ) {
+
+            MethodCandidate method = parseMethod(line);
+
+            if( method != null )
+                stream.put(method);
+        }
+    }
+
+    /**
+     * Obtain the MethodCandidates contained within a WordlistIndex.
+     *
+     * @param index WordlistIndex to read from
+     * @return HashSet of MethodCandidates contained within the index
+     */
+    private static HashSet<MethodCandidate> readIndex(WordlistIndex index)
+    {
+        HashSet<MethodCandidate> methods = index.getCandidates();
+        Logger.printlnMixedYellowFirst(String.valueOf(methods.size()), "methods were successfully loaded from index.");
 
-        Logger.printlnMixedYellowFirst(String.valueOf(methods.size()), "methods were successfully parsed.");
         return methods;
     }
 
@@ -0,0 +1,340 @@
+package eu.tneitzel.rmg.io;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+
+import org.apache.commons.io.FileUtils;
+import org.apache.commons.io.IOUtils;
+
+import eu.tneitzel.rmg.internal.MethodCandidate;
+
+/**
+ * The WordlistIndex is a compiled binary representation of a wordlist. Parsing text based wordlists requires
+ * some regex operations for each line and, for wordlists that are not in the advanced format, compiling each
+ * method signature with javassist. For large wordlists this becomes noticeable during startup. The WordlistIndex
+ * stores all information that is required for method guessing in a format that can be used right away:
+ *
+ *      - Header:       magic (int), version (short), reserved (short), entry count (int), string table offset (int)
+ *      - Entries:      method hash (long), primitiveSize (int), argumentCount (short), isVoid (byte), reserved (byte),
+ *                      signature offset (int), signature length (int)
+ *      - String table: UTF-8 encoded method signatures
+ *
+ * Entries are sorted by their method hash. Index files are loaded via a memory mapped FileChannel, which makes
+ * loading almost free and allows concurrent rmg processes to share the corresponding pages. Index files are
+ * created for the internal wordlists during the build and can be created for custom wordlists by using --update.
+ *
+ * @author Tobias Neitzel (@qtc_de)
+ */
+public class WordlistIndex
+{
+    private final int count;
+    private final int stringTable;
+    private final ByteBuffer buffer;
+
+    /** file extension used for wordlist indices */
+    public static final String EXTENSION = ".idx";
+
+    private static final int MAGIC = 0x524d4757;
+    private static final short VERSION = 1;
+    private static final int HEADER_SIZE = 16;
+    private static final int ENTRY_SIZE = 24;
+
+    /**
+     * Create a WordlistIndex from the specified buffer. The buffer is validated, but not copied.
+     *
+     * @param buffer buffer containing a wordlist index
+     * @throws IOException if the buffer does not contain a valid wordlist index
+     */
+    private WordlistIndex(ByteBuffer buffer) throws IOException
+    {
+        if (buffer.limit() < HEADER_SIZE || buffer.getInt(0) != MAGIC)
+        {
+            throw new IOException("Invalid wordlist index.");
+        }
+
+        if (buffer.getShort(4) != VERSION)
+        {
+            throw new IOException("Unsupported wordlist index version: " + buffer.getShort(4));
+        }
+
+        this.buffer = buffer;
+        this.count = buffer.getInt(8);
+        this.stringTable = buffer.getInt(12);
+
+        if (count < 0 || stringTable != HEADER_SIZE + count * ENTRY_SIZE || stringTable > buffer.limit())
+        {
+            throw new IOException("Corrupted wordlist index.");
+        }
+    }
+
+    /**
+     * Load a WordlistIndex from the specified file by using a memory mapped FileChannel.
+     *
+     * @param file index file to load
+     * @return WordlistIndex for the specified file
+     * @throws IOException if the file cannot be read or does not contain a valid index
+     */
+    public static WordlistIndex map(File file) throws IOException
+    {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ))
+        {
+            return new WordlistIndex(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+        }
+    }
+
+    /**
+     * Load a WordlistIndex from the specified stream. This is used for index files that are stored within
+     * the JAR file, as these cannot be mapped into memory.
+     *
+     * @param stream InputStream to read the index from
+     * @return WordlistIndex read from the stream
+     * @throws IOException if reading fails or the stream does not contain a valid index
+     */
+    public static WordlistIndex read(InputStream stream) throws IOException
+    {
+        return new WordlistIndex(ByteBuffer.wrap(IOUtils.toByteArray(stream)));
+    }
+
+    /**
+     * Return the number of MethodCandidates contained within the index.
+     *
+     * @return number of MethodCandidates
+     */
+    public int size()
+    {
+        return count;
+    }
+
+    /**
+     * Create the MethodCandidate that is stored at the specified position of the index.
+     *
+     * @param index position within the index
+     * @return MethodCandidate stored at the specified position
+     */
+    public MethodCandidate getCandidate(int index)
+    {
+        int entry = HEADER_SIZE + index * ENTRY_SIZE;
+
+        long hash = buffer.getLong(entry);
+        int primitiveSize = buffer.getInt(entry + 8);
+        int argumentCount = buffer.getShort(entry + 12);
+        boolean isVoid = buffer.get(entry + 14) != 0;
+
+        return new MethodCandidate(getSignature(entry), hash, primitiveSize, isVoid, argumentCount);
+    }
+
+    /**
+     * Search the index for a MethodCandidate with the specified method hash.
+     *
+     * @param hash method hash to look for
+     * @return MethodCandidate with the specified hash or null if the index does not contain it
+     */
+    public MethodCandidate find(long hash)
+    {
+        int low = 0;
+        int high = count - 1;
+
+        while (low <= high)
+        {
+            int mid = (low + high) >>> 1;
+            long current = buffer.getLong(HEADER_SIZE + mid * ENTRY_SIZE);
+
+            if (current < hash)
+            {
+                low = mid + 1;
+            }
+
+            else if (current > hash)
+            {
+                high = mid - 1;
+            }
+
+            else
+            {
+                return getCandidate(mid);
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Create all MethodCandidates contained within the index.
+     *
+     * @return HashSet of all MethodCandidates within the index
+     */
+    public HashSet<MethodCandidate> getCandidates()
+    {
+        HashSet<MethodCandidate> candidates = new HashSet<MethodCandidate>(count * 2);
+
+        for (int ctr = 0; ctr < count; ctr++)
+        {
+            candidates.add(getCandidate(ctr));
+        }
+
+        return candidates;
+    }
+
+    /**
+     * Decode the method signature that belongs to the specified entry.
+     *
+     * @param entry offset of the entry within the buffer
+     * @return method signature
+     */
+    private String getSignature(int entry)
+    {
+        int offset = buffer.getInt(entry + 16);
+        int length = buffer.getInt(entry + 20);
+
+        byte[] signature = new byte[length];
+
+        ByteBuffer view = buffer.duplicate();
+        view.position(stringTable + offset);
+        view.get(signature);
+
+        return new String(signature, StandardCharsets.UTF_8);
+    }
+
+    /**
+     * Write the specified MethodCandidates as WordlistIndex to the specified file.
+     *
+     * @param file destination of the index file
+     * @param methods MethodCandidates to write into the index
+     * @throws IOException if writing the file fails
+     */
+    public static void write(File file, Collection<MethodCandidate> methods) throws IOException
+    {
+        List<MethodCandidate> sorted = new ArrayList<MethodCandidate>(methods);
+        sorted.sort((m1, m2) -> Long.compare(m1.getHash(), m2.getHash()));
+
+        List<byte[]> signatures = new ArrayList<byte[]>(sorted.size());
+
+        for (MethodCandidate method : sorted)
+        {
+            signatures.add(method.getSignature().getBytes(StandardCharsets.UTF_8));
+        }
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file))))
+        {
+            out.writeInt(MAGIC);
+            out.writeShort(VERSION);
+            out.writeShort(0);
+            out.writeInt(sorted.size());
+            out.writeInt(HEADER_SIZE + sorted.size() * ENTRY_SIZE);
+
+            int offset = 0;
+
+            for (int ctr = 0; ctr < sorted.size(); ctr++)
+            {
+                MethodCandidate method = sorted.get(ctr);
+
+                out.writeLong(method.getHash());
+                out.writeInt(method.primitiveSize());
+                out.writeShort(countArguments(method.getSignature()));
+                out.writeByte(method.isVoid() ? 1 : 0);
+                out.writeByte(0);
+                out.writeInt(offset);
+                out.writeInt(signatures.get(ctr).length);
+
+                offset += signatures.get(ctr).length;
+            }
+
+            for (byte[] signature : signatures)
+            {
+                out.write(signature);
+            }
+        }
+    }
+
+    /**
+     * Return the index file that belongs to the specified wordlist file. The index file is located in
+     * the same folder and uses the same name, but with the .idx extension.
+     *
+     * @param wordlist wordlist file
+     * @return index file for the wordlist
+     */
+    public static File getIndexFile(File wordlist)
+    {
+        String name = wordlist.getName();
+        int dot = name.lastIndexOf('.');
+
+        if (dot > 0)
+        {
+            name = name.substring(0, dot);
+        }
+
+        return new File(wordlist.getParentFile(), name + EXTENSION);
+    }
+
+    /**
+     * Count the arguments of a method signature as it is stored within wordlist files. Generic types are
+     * already removed from these signatures, so each top level comma separates two arguments.
+     *
+     * @param signature method signature
+     * @return number of arguments
+     */
+    private static int countArguments(String signature)
+    {
+        int start = signature.indexOf('(');
+        int end = signature.lastIndexOf(')');
+
+        if (start == -1 || end <= start + 1 || signature.substring(start + 1, end).trim().isEmpty())
+        {
+            return 0;
+        }
+
+        int count = 1;
+
+        for (int ctr = start + 1; ctr < end; ctr++)
+        {
+            if (signature.charAt(ctr) == ',')
+            {
+                count++;
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Compile all .txt wordlists within a source folder into wordlist indices within a destination folder.
+     * This is used during the build to create the indices for the internal wordlists. Regular output of the
+     * Logger is disabled to keep the build quiet. Errors, like unparsable signatures, are still reported.
+     *
+     * @param args source folder and destination folder
+     * @throws IOException if reading or writing fails
+     */
+    public static void main(String[] args) throws IOException
+    {
+        if (args.length != 2)
+        {
+            System.err.println("usage: WordlistIndex <wordlist-folder> <output-folder>");
+            return;
+        }
+
+        Logger.disableStdout();
+
+        File outputFolder = new File(args[1]);
+        outputFolder.mkdirs();
+
+        for (File wordlist : FileUtils.listFiles(new File(args[0]), new String[] {"txt"}, false))
+        {
+            String[] lines = FileUtils.readLines(wordlist, StandardCharsets.UTF_8).toArray(new String[0]);
+            HashSet<MethodCandidate> methods = WordlistHandler.parseMethods(lines);
+
+            write(new File(outputFolder, getIndexFile(wordlist).getName()), methods);
+        }
+    }
+}
@@ -0,0 +1,202 @@
+package eu.tneitzel.rmg.metrics;
+
+/**
+ * FlightEvents emits custom Java Flight Recorder events for the work performed by remote-method-guesser. This
+ * allows to correlate slow operations with garbage collections, socket waits or class generation within a
+ * recording. The following events are available within the remote-method-guesser category:
+ *
+ *      eu.tneitzel.rmg.RemoteCall          raw RMI calls and method guessing calls
+ *      eu.tneitzel.rmg.Lookup              lookups on the RMI registry
+ *      eu.tneitzel.rmg.ClassGeneration     dynamic creation of stub, interface and socket factory classes
+ *      eu.tneitzel.rmg.Compilation         compilation of method signatures by Javassist
+ *      eu.tneitzel.rmg.WordlistLoad        loading of wordlist files
+ *
+ * An event is started by calling begin, which returns an opaque event handle. The handle is null if the JVM does
+ * not support JFR or if the event is not enabled within a running recording. Callers should skip the collection
+ * of event data in this case. Passing the handle to the corresponding end function commits the event. The JFR
+ * API is only accessed if it is available, which keeps remote-method-guesser compatible with Java 8 runtimes that
+ * do not ship JFR.
+ *
+ * @author Tobias Neitzel (@qtc_de)
+ */
+public class FlightEvents
+{
+    private static final boolean available = isAvailable();
+
+    private FlightEvents() {}
+
+    /**
+     * Types of events emitted by remote-method-guesser.
+     */
+    public enum Type
+    {
+        /** raw RMI calls and method guessing calls */
+        REMOTE_CALL,
+        /** lookups on the RMI registry */
+        LOOKUP,
+        /** dynamic class creation */
+        CLASS_GENERATION,
+        /** compilation of method signatures */
+        COMPILATION,
+        /** loading of wordlist files */
+        WORDLIST_LOAD,
+    }
+
+    /**
+     * Begin an event of the specified type.
+     *
+     * @param type type of the event
+     * @return event handle or null if the event is not recorded
+     */
+    public static Object begin(Type type)
+    {
+        if (!available)
+        {
+            return null;
+        }
+
+        return FlightRecorderEvents.begin(type);
+    }
+
+    /**
+     * Check whether events of the specified type are currently recorded.
+     *
+     * @param type type of the event
+     * @return true if a running recording has the event enabled
+     */
+    public static boolean isRecording(Type type)
+    {
+        return available && FlightRecorderEvents.isRecording(type);
+    }
+
+    /**
+     * Commit a remote call event. Bytes sent and received over plain sockets created by remote-method-guesser
+     * during the call are added automatically.
+     *
+     * @param event event handle obtained from begin. Nothing happens if null
+     * @param call name of the instrumented call (e.g. unmanaged_call)
+     * @param target host and port of the targeted endpoint
+     * @param objID ObjID of the targeted remote object
+     * @param methodHash method hash or interface hash of the call
+     * @param outcome Throwable that terminated the call or null
+     */
+    public static void remoteCall(Object event, String call, String target, String objID, long methodHash, Throwable outcome)
+    {
+        if (event != null)
+        {
+            FlightRecorderEvents.remoteCall(event, call, target, objID, methodHash, outcomeOf(outcome));
+        }
+    }
+
+    /**
+     * Commit a remote call event with explicitly specified byte counts. Used for calls that are not sent and received
+     * within the same thread, where the byte counters of the current thread cannot be used.
+     *
+     * @param event event handle obtained from begin. Nothing happens if null
+     * @param call name of the instrumented call (e.g. pipelined_call)
+     * @param target host and port of the targeted endpoint
+     * @param objID ObjID of the targeted remote object
+     * @param methodHash method hash or interface hash of the call
+     * @param outcome Throwable that terminated the call or null
+     * @param bytesSent number of bytes sent for the call
+     * @param bytesReceived number of bytes received for the call
+     */
+    public static void remoteCall(Object event, String call, String target, String objID, long methodHash, Throwable outcome, long bytesSent, long bytesReceived)
+    {
+        if (event != null)
+        {
+            FlightRecorderEvents.remoteCall(event, call, target, objID, methodHash, outcomeOf(outcome), bytesSent, bytesReceived);
+        }
+    }
+
+    /**
+     * Commit a lookup event.
+     *
+     * @param event event handle obtained from begin. Nothing happens if null
+     * @param target host and port of the RMI registry
+     * @param boundName bound name that was looked up
+     * @param outcome Throwable that terminated the lookup or null
+     */
+    public static void lookup(Object event, String target, String boundName, Throwable outcome)
+    {
+        if (event != null)
+        {
+            FlightRecorderEvents.lookup(event, target, boundName, outcomeOf(outcome));
+        }
+    }
+
+    /**
+     * Commit a class generation event.
+     *
+     * @param event event handle obtained from begin. Nothing happens if null
+     * @param className name of the generated class
+     */
+    public static void classGeneration(Object event, String className)
+    {
+        if (event != null)
+        {
+            FlightRecorderEvents.classGeneration(event, className);
+        }
+    }
+
+    /**
+     * Commit a compilation event.
+     *
+     * @param event event handle obtained from begin. Nothing happens if null
+     * @param signature method signature that was compiled
+     * @param outcome Throwable that terminated the compilation or null
+     */
+    public static void compilation(Object event, String signature, Throwable outcome)
+    {
+        if (event != null)
+        {
+            FlightRecorderEvents.compilation(event, signature, outcomeOf(outcome));
+        }
+    }
+
+    /**
+     * Commit a wordlist load event.
+     *
+     * @param event event handle obtained from begin. Nothing happens if null
+     * @param wordlist name or path of the wordlist
+     * @param indexed whether the wordlist was loaded from a WordlistIndex
+     * @param methods number of method candidates that were loaded
+     */
+    public static void wordlistLoad(Object event, String wordlist, boolean indexed, int methods)
+    {
+        if (event != null)
+        {
+            FlightRecorderEvents.wordlistLoad(event, wordlist, indexed, methods);
+        }
+    }
+
+    /**
+     * Obtain the outcome of an operation as used within events.
+     *
+     * @param outcome Throwable that terminated the operation or null
+     * @return simple class name of the Throwable or OK
+     */
+    private static String outcomeOf(Throwable outcome)
+    {
+        return (outcome == null) ? "OK" : outcome.getClass().getSimpleName();
+    }
+
+    /**
+     * Check whether the JFR API is available within the current JVM.
+     *
+     * @return true if jdk.jfr can be used
+     */
+    private static boolean isAvailable()
+    {
+        try
+        {
+            Class.forName("jdk.jfr.Event");
+            return true;
+        }
+
+        catch (ClassNotFoundException | LinkageError e)
+        {
+            return false;
+        }
+    }
+}
@@ -0,0 +1,322 @@
+package eu.tneitzel.rmg.metrics;
+
+import eu.tneitzel.rmg.networking.CountingSocket;
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.EventType;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Contains the JFR event classes of remote-method-guesser and all code that accesses the JFR API. This
+ * class is only loaded by FlightEvents when JFR is available within the current JVM.
+ *
+ * @author Tobias Neitzel (@qtc_de)
+ */
+final class FlightRecorderEvents
+{
+    private static final String CATEGORY = "remote-method-guesser";
+    private static final EventType[] eventTypes = new EventType[FlightEvents.Type.values().length];
+
+    static
+    {
+        for (FlightEvents.Type type : FlightEvents.Type.values())
+        {
+            eventTypes[type.ordinal()] = EventType.getEventType(eventClass(type));
+        }
+    }
+
+    private FlightRecorderEvents() {}
+
+    /**
+     * Create and begin an event of the specified type, if the event is enabled. No event object is
+     * allocated when the event is not enabled.
+     *
+     * @param type type of the event
+     * @return started event or null if the event is not enabled
+     */
+    static Object begin(FlightEvents.Type type)
+    {
+        if (!isRecording(type))
+        {
+            return null;
+        }
+
+        Event event = create(type);
+
+        if (event instanceof RemoteCallEvent)
+        {
+            RemoteCallEvent callEvent = (RemoteCallEvent)event;
+
+            callEvent.bytesSent = CountingSocket.getThreadBytesSent();
+            callEvent.bytesReceived = CountingSocket.getThreadBytesReceived();
+        }
+
+        event.begin();
+        return event;
+    }
+
+    /**
+     * Check whether events of the specified type are enabled within a running recording.
+     *
+     * @param type type of the event
+     * @return true if the event is enabled
+     */
+    static boolean isRecording(FlightEvents.Type type)
+    {
+        return eventTypes[type.ordinal()].isEnabled();
+    }
+
+    /**
+     * End the specified RemoteCallEvent and commit it with the specified data. Bytes are computed
+     * from the difference of the per thread byte counters since the event was started.
+     */
+    static void remoteCall(Object handle, String call, String target, String objID, long methodHash, String outcome)
+    {
+        RemoteCallEvent event = (RemoteCallEvent)handle;
+
+        long bytesSent = CountingSocket.getThreadBytesSent() - event.bytesSent;
+        long bytesReceived = CountingSocket.getThreadBytesReceived() - event.bytesReceived;
+
+        remoteCall(handle, call, target, objID, methodHash, outcome, bytesSent, bytesReceived);
+    }
+
+    /**
+     * End the specified RemoteCallEvent and commit it with the specified data and byte counts.
+     */
+    static void remoteCall(Object handle, String call, String target, String objID, long methodHash, String outcome, long bytesSent, long bytesReceived)
+    {
+        RemoteCallEvent event = (RemoteCallEvent)handle;
+        event.end();
+
+        if (event.shouldCommit())
+        {
+            event.call = call;
+            event.target = target;
+            event.objID = objID;
+            event.methodHash = methodHash;
+            event.outcome = outcome;
+            event.bytesSent = bytesSent;
+            event.bytesReceived = bytesReceived;
+            event.commit();
+        }
+    }
+
+    /**
+     * End the specified LookupEvent and commit it with the specified data.
+     */
+    static void lookup(Object handle, String target, String boundName, String outcome)
+    {
+        LookupEvent event = (LookupEvent)handle;
+        event.end();
+
+        if (event.shouldCommit())
+        {
+            event.target = target;
+            event.boundName = boundName;
+            event.outcome = outcome;
+            event.commit();
+        }
+    }
+
+    /**
+     * End the specified ClassGenerationEvent and commit it with the specified data.
+     */
+    static void classGeneration(Object handle, String className)
+    {
+        ClassGenerationEvent event = (ClassGenerationEvent)handle;
+        event.end();
+
+        if (event.shouldCommit())
+        {
+            event.className = className;
+            event.commit();
+        }
+    }
+
+    /**
+     * End the specified CompilationEvent and commit it with the specified data.
+     */
+    static void compilation(Object handle, String signature, String outcome)
+    {
+        CompilationEvent event = (CompilationEvent)handle;
+        event.end();
+
+        if (event.shouldCommit())
+        {
+            event.signature = signature;
+            event.outcome = outcome;
+            event.commit();
+        }
+    }
+
+    /**
+     * End the specified WordlistLoadEvent and commit it with the specified data.
+     */
+    static void wordlistLoad(Object handle, String wordlist, boolean indexed, int methods)
+    {
+        WordlistLoadEvent event = (WordlistLoadEvent)handle;
+        event.end();
+
+        if (event.shouldCommit())
+        {
+            event.wordlist = wordlist;
+            event.indexed = indexed;
+            event.methods = methods;
+            event.commit();
+        }
+    }
+
+    /**
+     * Return the event class of the specified type.
+     *
+     * @param type type of the event
+     * @return event class
+     */
+    private static Class<? extends Event> eventClass(FlightEvents.Type type)
+    {
+        switch (type)
+        {
+            case REMOTE_CALL:
+                return RemoteCallEvent.class;
+
+            case LOOKUP:
+                return LookupEvent.class;
+
+            case CLASS_GENERATION:
+                return ClassGenerationEvent.class;
+
+            case COMPILATION:
+                return CompilationEvent.class;
+
+            default:
+                return WordlistLoadEvent.class;
+        }
+    }
+
+    /**
+     * Create an event object of the specified type.
+     *
+     * @param type type of the event
+     * @return new event object
+     */
+    private static Event create(FlightEvents.Type type)
+    {
+        switch (type)
+        {
+            case REMOTE_CALL:
+                return new RemoteCallEvent();
+
+            case LOOKUP:
+                return new LookupEvent();
+
+            case CLASS_GENERATION:
+                return new ClassGenerationEvent();
+
+            case COMPILATION:
+                return new CompilationEvent();
+
+            default:
+                return new WordlistLoadEvent();
+        }
+    }
+
+    /** Raw RMI call, method guessing call or pipelined method guessing call */
+    @Name("eu.tneitzel.rmg.RemoteCall")
+    @Label("RMI Call")
+    @Category(CATEGORY)
+    @Description("Raw RMI call or (pipelined) method guessing call")
+    @StackTrace(false)
+    static class RemoteCallEvent extends Event
+    {
+        @Label("Call")
+        String call;
+
+        @Label("Target")
+        String target;
+
+        @Label("ObjID")
+        String objID;
+
+        @Label("Method Hash")
+        long methodHash;
+
+        @Label("Outcome")
+        @Description("Simple class name of the thrown exception or OK")
+        String outcome;
+
+        @Label("Bytes Sent")
+        @DataAmount(DataAmount.BYTES)
+        long bytesSent;
+
+        @Label("Bytes Received")
+        @DataAmount(DataAmount.BYTES)
+        long bytesReceived;
+    }
+
+    /** Lookup of a bound name within an RMI registry */
+    @Name("eu.tneitzel.rmg.Lookup")
+    @Label("Registry Lookup")
+    @Category(CATEGORY)
+    @Description("Lookup of a bound name within an RMI registry")
+    static class LookupEvent extends Event
+    {
+        @Label("Target")
+        String target;
+
+        @Label("Bound Name")
+        String boundName;
+
+        @Label("Outcome")
+        @Description("Simple class name of the thrown exception or OK")
+        String outcome;
+    }
+
+    /** Dynamic creation of a class */
+    @Name("eu.tneitzel.rmg.ClassGeneration")
+    @Label("Class Generation")
+    @Category(CATEGORY)
+    @Description("Dynamic creation of a stub, interface or socket factory class")
+    static class ClassGenerationEvent extends Event
+    {
+        @Label("Class Name")
+        String className;
+    }
+
+    /** Compilation of a method signature */
+    @Name("eu.tneitzel.rmg.Compilation")
+    @Label("Method Compilation")
+    @Category(CATEGORY)
+    @Description("Compilation of a method signature by Javassist")
+    @StackTrace(false)
+    static class CompilationEvent extends Event
+    {
+        @Label("Signature")
+        String signature;
+
+        @Label("Outcome")
+        @Description("Simple class name of the thrown exception or OK")
+        String outcome;
+    }
+
+    /** Loading of a wordlist */
+    @Name("eu.tneitzel.rmg.WordlistLoad")
+    @Label("Wordlist Load")
+    @Category(CATEGORY)
+    @Description("Loading of method candidates from a wordlist")
+    static class WordlistLoadEvent extends Event
+    {
+        @Label("Wordlist")
+        String wordlist;
+
+        @Label("Indexed")
+        @Description("Whether the wordlist was loaded from a binary index")
+        boolean indexed;
+
+        @Label("Methods")
+        int methods;
+    }
+}
@@ -0,0 +1,155 @@
+package eu.tneitzel.rmg.metrics;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Lock-free latency histogram with log-linear buckets, similar to an HdrHistogram with a precision of
+ * roughly 3%. Values are recorded in microseconds. Values below 64 are stored with exact precision,
+ * larger values are stored within 32 linear sub buckets per power of two. This allows to record arbitrary
+ * latencies with a fixed amount of memory, while percentiles are still reasonably accurate.
+ *
+ * @author Tobias Neitzel (@qtc_de)
+ */
+public class LatencyHistogram
+{
+    private static final int SUB_BUCKET_BITS = 5;
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+    private static final int LINEAR_BUCKETS = 2 * SUB_BUCKETS;
+    private static final int LINEAR_BITS = SUB_BUCKET_BITS + 1;
+    private static final int BUCKET_COUNT = LINEAR_BUCKETS + (63 - LINEAR_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray buckets;
+    private final LongAdder count;
+    private final LongAdder sum;
+    private final AtomicLong max;
+
+    /**
+     * Create an empty histogram.
+     */
+    public LatencyHistogram()
+    {
+        this.buckets = new AtomicLongArray(BUCKET_COUNT);
+        this.count = new LongAdder();
+        this.sum = new LongAdder();
+        this.max = new AtomicLong();
+    }
+
+    /**
+     * Record a single value.
+     *
+     * @param micros value in microseconds. Negative values are recorded as zero
+     */
+    public void record(long micros)
+    {
+        long value = Math.max(micros, 0);
+
+        buckets.incrementAndGet(indexOf(value));
+        count.increment();
+        sum.add(value);
+        max.accumulateAndGet(value, Math::max);
+    }
+
+    /**
+     * @return number of recorded values
+     */
+    public long getCount()
+    {
+        return count.sum();
+    }
+
+    /**
+     * @return sum of all recorded values in microseconds
+     */
+    public long getSum()
+    {
+        return sum.sum();
+    }
+
+    /**
+     * @return largest recorded value in microseconds
+     */
+    public long getMax()
+    {
+        return max.get();
+    }
+
+    /**
+     * Obtain the value at the specified percentile. The returned value is the upper bound of the bucket
+     * that contains the percentile, but never larger than the largest recorded value.
+     *
+     * @param percentile percentile between 0 and 100
+     * @return value at the percentile in microseconds or 0 if no values were recorded
+     */
+    public long getPercentile(double percentile)
+    {
+        long total = 0;
+        long[] snapshot = new long[BUCKET_COUNT];
+
+        for (int ctr = 0; ctr < BUCKET_COUNT; ctr++)
+        {
+            snapshot[ctr] = buckets.get(ctr);
+            total += snapshot[ctr];
+        }
+
+        if (total == 0)
+        {
+            return 0;
+        }
+
+        long rank = Math.max(1, (long)Math.ceil(total * Math.min(percentile, 100) / 100));
+        long seen = 0;
+
+        for (int ctr = 0; ctr < BUCKET_COUNT; ctr++)
+        {
+            seen += snapshot[ctr];
+
+            if (seen >= rank)
+            {
+                return Math.min(upperBound(ctr), getMax());
+            }
+        }
+
+        return getMax();
+    }
+
+    /**
+     * Compute the bucket index of the specified value.
+     *
+     * @param value value to compute the index for
+     * @return bucket index
+     */
+    private static int indexOf(long value)
+    {
+        if (value < LINEAR_BUCKETS)
+        {
+            return (int)value;
+        }
+
+        int exponent = 63 - Long.numberOfLeadingZeros(value);
+        int subBucket = (int)(value >>> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1);
+
+        return LINEAR_BUCKETS + (exponent - LINEAR_BITS) * SUB_BUCKETS + subBucket;
+    }
+
+    /**
+     * Compute the largest value that is stored within the specified bucket.
+     *
+     * @param index bucket index
+     * @return upper bound of the bucket
+     */
+    private static long upperBound(int index)
+    {
+        if (index < LINEAR_BUCKETS)
+        {
+            return index;
+        }
+
+        int exponent = (index - LINEAR_BUCKETS) / SUB_BUCKETS + LINEAR_BITS;
+        int subBucket = (index - LINEAR_BUCKETS) % SUB_BUCKETS;
+        int shift = exponent - SUB_BUCKET_BITS;
+
+        return ((long)(SUB_BUCKETS + subBucket) << shift) + (1L << shift) - 1;
+    }
+}
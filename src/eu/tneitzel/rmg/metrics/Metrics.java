@@ -0,0 +1,505 @@
+package eu.tneitzel.rmg.metrics;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.EnumMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.ToLongFunction;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+import eu.tneitzel.rmg.internal.ExceptionHandler;
+import eu.tneitzel.rmg.internal.RMGOption;
+import eu.tneitzel.rmg.io.Formatter;
+import eu.tneitzel.rmg.io.Logger;
+
+/**
+ * The Metrics class collects runtime metrics of the network operations performed by remote-method-guesser.
+ * Instrumented calls record their latency within a LatencyHistogram and their outcome, which is the simple
+ * class name of the thrown exception or OK. Additionally, the number of opened TCP connections and the number
+ * of bytes sent and received over them are counted.
+ *
+ * Metrics are only collected if at least one of the metric options was specified. The collected metrics can be
+ * exposed in three ways:
+ *
+ *      --metrics           print a summary table when the operation has finished
+ *      --metrics-file      write the metrics in Prometheus text format to a file every few seconds
+ *      --metrics-jmx       register the metrics as MXBean within the platform MBeanServer
+ *
+ * All recording functions are lock-free and return immediately when metrics are disabled.
+ *
+ * @author Tobias Neitzel (@qtc_de)
+ */
+public class Metrics
+{
+    private static volatile boolean enabled = false;
+
+    private static final Map<Call,CallMetrics> calls = new EnumMap<Call,CallMetrics>(Call.class);
+    private static final LongAdder connections = new LongAdder();
+    private static final LongAdder bytesSent = new LongAdder();
+    private static final LongAdder bytesReceived = new LongAdder();
+
+    private static Path metricsFile;
+    private static ScheduledExecutorService fileWriter;
+
+    private static final long FILE_INTERVAL = 5;
+    private static final String OK = "OK";
+    private static final String OBJECT_NAME = "eu.tneitzel.rmg:type=Metrics";
+    private static final double[] QUANTILES = new double[] { 0.5, 0.9, 0.99 };
+
+    static
+    {
+        for (Call call : Call.values())
+        {
+            calls.put(call, new CallMetrics());
+        }
+    }
+
+    /**
+     * Calls that are instrumented by remote-method-guesser.
+     */
+    public enum Call
+    {
+        /** raw RMI calls dispatched by RMIEndpoint.unmanagedCall */
+        UNMANAGED_CALL,
+        /** method guessing calls dispatched by RMIEndpoint.guessingCall */
+        GUESSING_CALL,
+        /** method guessing calls sent over a GuessingPipeline */
+        PIPELINED_CALL,
+        /** plain text fingerprint probes of the scan action */
+        SCAN_PROBE;
+
+        /**
+         * @return name of the call as used within the metric output
+         */
+        public String label()
+        {
+            return name().toLowerCase(Locale.ROOT);
+        }
+    }
+
+    /**
+     * Enable metric collection if one of the metric options was specified. Starts the periodic metrics file
+     * writer and registers the MXBean if requested. Should be called once after the arguments were parsed.
+     */
+    public static synchronized void start()
+    {
+        String file = RMGOption.GLOBAL_METRICS_FILE.getValue();
+
+        enabled = RMGOption.GLOBAL_METRICS.getBool() || file != null || RMGOption.GLOBAL_METRICS_JMX.getBool();
+
+        if (file != null)
+        {
+            metricsFile = Paths.get(file).toAbsolutePath();
+
+            fileWriter = Executors.newSingleThreadScheduledExecutor(r ->
+            {
+                Thread thread = new Thread(r, "rmg-metrics");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+            fileWriter.scheduleWithFixedDelay(Metrics::writeFile, FILE_INTERVAL, FILE_INTERVAL, TimeUnit.SECONDS);
+            Runtime.getRuntime().addShutdownHook(new Thread(Metrics::writeFile, "rmg-metrics-flush"));
+        }
+
+        if (RMGOption.GLOBAL_METRICS_JMX.getBool())
+        {
+            registerBean();
+        }
+    }
+
+    /**
+     * Finish metric collection after the operation has finished. Writes the metrics file a last time and prints
+     * the summary table if requested.
+     */
+    public static synchronized void stop()
+    {
+        if (!enabled)
+        {
+            return;
+        }
+
+        if (fileWriter != null)
+        {
+            fileWriter.shutdownNow();
+            writeFile();
+        }
+
+        if (RMGOption.GLOBAL_METRICS.getBool())
+        {
+            new Formatter().listMetrics();
+        }
+    }
+
+    /**
+     * @return true if metrics are collected
+     */
+    public static boolean isEnabled()
+    {
+        return enabled;
+    }
+
+    /**
+     * Obtain the start time for a call that should be recorded.
+     *
+     * @return current value of System.nanoTime or 0 if metrics are disabled
+     */
+    public static long timestamp()
+    {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    /**
+     * Record a finished call. The outcome is the simple class name of the specified Throwable,
+     * or OK if the Throwable is null.
+     *
+     * @param call call to record
+     * @param start start time obtained from the timestamp function
+     * @param outcome Throwable that terminated the call or null
+     */
+    public static void record(Call call, long start, Throwable outcome)
+    {
+        if (!enabled)
+        {
+            return;
+        }
+
+        record(call, start, (outcome == null) ? OK : outcome.getClass().getSimpleName());
+    }
+
+    /**
+     * Record a finished call with the specified outcome.
+     *
+     * @param call call to record
+     * @param start start time obtained from the timestamp function
+     * @param outcome outcome of the call
+     */
+    public static void record(Call call, long start, String outcome)
+    {
+        if (!enabled)
+        {
+            return;
+        }
+
+        CallMetrics metrics = calls.get(call);
+
+        metrics.latency.record(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - start));
+        metrics.outcomes.computeIfAbsent(outcome, k -> new LongAdder()).increment();
+    }
+
+    /**
+     * Count an opened TCP connection.
+     */
+    public static void connectionOpened()
+    {
+        if (enabled)
+        {
+            connections.increment();
+        }
+    }
+
+    /**
+     * Count bytes that were sent over a TCP connection.
+     *
+     * @param count number of bytes
+     */
+    public static void bytesSent(long count)
+    {
+        if (enabled && count > 0)
+        {
+            bytesSent.add(count);
+        }
+    }
+
+    /**
+     * Count bytes that were received over a TCP connection.
+     *
+     * @param count number of bytes
+     */
+    public static void bytesReceived(long count)
+    {
+        if (enabled && count > 0)
+        {
+            bytesReceived.add(count);
+        }
+    }
+
+    /**
+     * @return number of opened TCP connections
+     */
+    public static long getConnections()
+    {
+        return connections.sum();
+    }
+
+    /**
+     * @return number of bytes sent over TCP connections
+     */
+    public static long getBytesSent()
+    {
+        return bytesSent.sum();
+    }
+
+    /**
+     * @return number of bytes received over TCP connections
+     */
+    public static long getBytesReceived()
+    {
+        return bytesReceived.sum();
+    }
+
+    /**
+     * @param call call to obtain the histogram for
+     * @return latency histogram of the specified call
+     */
+    public static LatencyHistogram getLatency(Call call)
+    {
+        return calls.get(call).latency;
+    }
+
+    /**
+     * @param call call to obtain the outcomes for
+     * @return snapshot of the outcome counters of the specified call, sorted by outcome
+     */
+    public static Map<String,Long> getOutcomes(Call call)
+    {
+        Map<String,Long> outcomes = new TreeMap<String,Long>();
+
+        for (Map.Entry<String,LongAdder> entry : calls.get(call).outcomes.entrySet())
+        {
+            outcomes.put(entry.getKey(), entry.getValue().sum());
+        }
+
+        return outcomes;
+    }
+
+    /**
+     * Write the metrics in Prometheus text format to the metrics file. The metrics are first written to a
+     * temporary file within the same directory, which is then moved to the metrics file. Readers therefore
+     * never see a partially written file. Write errors disable further writes.
+     */
+    private static synchronized void writeFile()
+    {
+        if (metricsFile == null)
+        {
+            return;
+        }
+
+        Path tmp = metricsFile.resolveSibling(metricsFile.getFileName() + ".tmp");
+
+        try
+        {
+            try (Writer writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8))
+            {
+                writePrometheus(writer);
+            }
+
+            try
+            {
+                Files.move(tmp, metricsFile, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            }
+
+            catch (AtomicMoveNotSupportedException e)
+            {
+                Files.move(tmp, metricsFile, StandardCopyOption.REPLACE_EXISTING);
+            }
+        }
+
+        catch (IOException e)
+        {
+            Logger.eprintlnMixedYellow("Unable to write metrics file", metricsFile.toString());
+            ExceptionHandler.showStackTrace(e);
+
+            metricsFile = null;
+        }
+    }
+
+    /**
+     * Write the current metrics in Prometheus text format. Latencies are exposed as summaries in seconds,
+     * outcomes, connections and bytes as counters.
+     *
+     * @param writer Writer to write to
+     * @throws IOException if writing fails
+     */
+    static void writePrometheus(Writer writer) throws IOException
+    {
+        writer.write("# HELP rmg_call_duration_seconds Latency of instrumented RMI calls and scan probes.\n");
+        writer.write("# TYPE rmg_call_duration_seconds summary\n");
+
+        for (Call call : Call.values())
+        {
+            LatencyHistogram latency = getLatency(call);
+            String label = "call=\"" + call.label() + "\"";
+
+            for (double quantile : QUANTILES)
+            {
+                writer.write(String.format(Locale.ROOT, "rmg_call_duration_seconds{%s,quantile=\"%s\"} %s\n",
+                                           label, quantile, seconds(latency.getPercentile(quantile * 100))));
+            }
+
+            writer.write(String.format(Locale.ROOT, "rmg_call_duration_seconds_sum{%s} %s\n", label, seconds(latency.getSum())));
+            writer.write(String.format(Locale.ROOT, "rmg_call_duration_seconds_count{%s} %d\n", label, latency.getCount()));
+        }
+
+        writer.write("# HELP rmg_call_outcomes_total Outcomes of instrumented calls by exception class.\n");
+        writer.write("# TYPE rmg_call_outcomes_total counter\n");
+
+        for (Call call : Call.values())
+        {
+            for (Map.Entry<String,Long> entry : getOutcomes(call).entrySet())
+            {
+                writer.write(String.format(Locale.ROOT, "rmg_call_outcomes_total{call=\"%s\",outcome=\"%s\"} %d\n",
+                                           call.label(), entry.getKey(), entry.getValue()));
+            }
+        }
+
+        writeCounter(writer, "rmg_connections_opened_total", "Number of opened TCP connections.", getConnections());
+        writeCounter(writer, "rmg_bytes_sent_total", "Number of bytes sent over TCP connections.", getBytesSent());
+        writeCounter(writer, "rmg_bytes_received_total", "Number of bytes received over TCP connections.", getBytesReceived());
+    }
+
+    /**
+     * Write a single counter in Prometheus text format.
+     *
+     * @param writer Writer to write to
+     * @param name name of the counter
+     * @param help help text of the counter
+     * @param value value of the counter
+     * @throws IOException if writing fails
+     */
+    private static void writeCounter(Writer writer, String name, String help, long value) throws IOException
+    {
+        writer.write("# HELP " + name + " " + help + "\n");
+        writer.write("# TYPE " + name + " counter\n");
+        writer.write(name + " " + value + "\n");
+    }
+
+    /**
+     * Convert microseconds to seconds as used by Prometheus.
+     *
+     * @param micros value in microseconds
+     * @return value in seconds
+     */
+    private static String seconds(long micros)
+    {
+        return String.format(Locale.ROOT, "%.6f", micros / 1_000_000.0);
+    }
+
+    /**
+     * Register the MXBean of the collected metrics within the platform MBeanServer.
+     */
+    private static void registerBean()
+    {
+        try
+        {
+            ManagementFactory.getPlatformMBeanServer().registerMBean(new MetricsBean(), new ObjectName(OBJECT_NAME));
+        }
+
+        catch (JMException e)
+        {
+            Logger.eprintlnMixedYellow("Unable to register metrics MXBean", OBJECT_NAME);
+            ExceptionHandler.showStackTrace(e);
+        }
+    }
+
+    /**
+     * Latency histogram and outcome counters of a single instrumented call.
+     */
+    private static class CallMetrics
+    {
+        private final LatencyHistogram latency = new LatencyHistogram();
+        private final Map<String,LongAdder> outcomes = new ConcurrentHashMap<String,LongAdder>();
+    }
+
+    /**
+     * MXBean implementation that exposes the collected metrics.
+     */
+    private static class MetricsBean implements MetricsMXBean
+    {
+        @Override
+        public long getConnectionsOpened()
+        {
+            return getConnections();
+        }
+
+        @Override
+        public long getBytesSent()
+        {
+            return Metrics.getBytesSent();
+        }
+
+        @Override
+        public long getBytesReceived()
+        {
+            return Metrics.getBytesReceived();
+        }
+
+        @Override
+        public Map<String,Long> getCallCounts()
+        {
+            return perCall(LatencyHistogram::getCount);
+        }
+
+        @Override
+        public Map<String,Long> getOutcomeCounts()
+        {
+            Map<String,Long> counts = new TreeMap<String,Long>();
+
+            for (Call call : Call.values())
+            {
+                for (Map.Entry<String,Long> entry : getOutcomes(call).entrySet())
+                {
+                    counts.put(call.label() + ":" + entry.getKey(), entry.getValue());
+                }
+            }
+
+            return counts;
+        }
+
+        @Override
+        public Map<String,Long> getLatencyP50Micros()
+        {
+            return perCall(latency -> latency.getPercentile(50));
+        }
+
+        @Override
+        public Map<String,Long> getLatencyP99Micros()
+        {
+            return perCall(latency -> latency.getPercentile(99));
+        }
+
+        @Override
+        public Map<String,Long> getLatencyMaxMicros()
+        {
+            return perCall(LatencyHistogram::getMax);
+        }
+
+        private static Map<String,Long> perCall(ToLongFunction<LatencyHistogram> getter)
+        {
+            Map<String,Long> values = new TreeMap<String,Long>();
+
+            for (Call call : Call.values())
+            {
+                values.put(call.label(), getter.applyAsLong(getLatency(call)));
+            }
+
+            return values;
+        }
+    }
+}
@@ -0,0 +1,54 @@
+package eu.tneitzel.rmg.metrics;
+
+import java.util.Map;
+
+/**
+ * Management interface of the Metrics class. When remote-method-guesser was started with --metrics-jmx,
+ * the collected metrics are registered under the name eu.tneitzel.rmg:type=Metrics within the platform
+ * MBeanServer and can be observed with tools like jconsole while an operation is running. Maps returned
+ * by this interface are keyed by the name of the instrumented call.
+ *
+ * @author Tobias Neitzel (@qtc_de)
+ */
+public interface MetricsMXBean
+{
+    /**
+     * @return number of TCP connections that were opened
+     */
+    long getConnectionsOpened();
+
+    /**
+     * @return number of bytes that were sent over TCP connections
+     */
+    long getBytesSent();
+
+    /**
+     * @return number of bytes that were received over TCP connections
+     */
+    long getBytesReceived();
+
+    /**
+     * @return number of recorded calls per call name
+     */
+    Map<String,Long> getCallCounts();
+
+    /**
+     * @return number of recorded outcomes, keyed by call name and outcome separated by a colon
+     */
+    Map<String,Long> getOutcomeCounts();
+
+    /**
+     * @return median latency in microseconds per call name
+     */
+    Map<String,Long> getLatencyP50Micros();
+
+    /**
+     * @return 99th percentile of the latency in microseconds per call name
+     */
+    Map<String,Long> getLatencyP99Micros();
+
+    /**
+     * @return maximum latency in microseconds per call name
+     */
+    Map<String,Long> getLatencyMaxMicros();
+}
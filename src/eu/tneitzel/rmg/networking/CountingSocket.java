@@ -0,0 +1,223 @@
+package eu.tneitzel.rmg.networking;
+
+import java.io.FilterInputStream;
+import java.io.FilterOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.net.Socket;
+import java.net.SocketAddress;
+
+import javax.net.ssl.SSLSocketFactory;
+
+import eu.tneitzel.rmg.metrics.FlightEvents;
+import eu.tneitzel.rmg.metrics.Metrics;
+
+/**
+ * Plain TCP socket that reports opened connections and the number of bytes that are sent and
+ * received over it to the Metrics class. The socket factories of remote-method-guesser create
+ * CountingSockets instead of regular sockets when metrics are enabled or when remote call events
+ * are recorded by JFR. TLS connections are layered on top of a CountingSocket, which means that
+ * bytes are counted as they appear on the wire.
+ *
+ * Bytes are additionally counted per thread. RMI calls write their arguments and read their return
+ * values within the calling thread, which allows to attribute the traffic to a single call.
+ *
+ * @author Tobias Neitzel (@qtc_de)
+ */
+public class CountingSocket extends Socket
+{
+    private InputStream in;
+    private OutputStream out;
+
+    private static final ThreadLocal<long[]> traffic = ThreadLocal.withInitial(() -> new long[2]);
+
+    /**
+     * Check whether sockets created by remote-method-guesser should be CountingSockets.
+     *
+     * @return true if metrics are enabled or remote call events are recorded
+     */
+    public static boolean isActive()
+    {
+        return Metrics.isEnabled() || FlightEvents.isRecording(FlightEvents.Type.REMOTE_CALL);
+    }
+
+    /**
+     * @return number of bytes that were sent over CountingSockets by the current thread
+     */
+    public static long getThreadBytesSent()
+    {
+        return traffic.get()[0];
+    }
+
+    /**
+     * @return number of bytes that were received over CountingSockets by the current thread
+     */
+    public static long getThreadBytesReceived()
+    {
+        return traffic.get()[1];
+    }
+
+    /**
+     * Create a plain socket that is connected to the specified target. If CountingSockets are not
+     * active, a regular socket is returned.
+     *
+     * @param host target host
+     * @param port target port
+     * @param readTimeout read timeout of the socket. Zero means no timeout
+     * @param connectTimeout connect timeout of the socket. Zero means no timeout
+     * @return connected socket
+     * @throws IOException if the connection fails
+     */
+    public static Socket connect(String host, int port, int readTimeout, int connectTimeout) throws IOException
+    {
+        Socket sock = isActive() ? new CountingSocket() : new Socket();
+        sock.setSoTimeout(readTimeout);
+
+        SocketAddress sockAddr = new InetSocketAddress(host, port);
+        sock.connect(sockAddr, connectTimeout);
+
+        return sock;
+    }
+
+    /**
+     * Create a TLS socket that is layered on top of a connected CountingSocket.
+     *
+     * @param fax SSLSocketFactory to create the TLS socket with
+     * @param host target host
+     * @param port target port
+     * @param readTimeout read timeout of the socket. Zero means no timeout
+     * @param connectTimeout connect timeout of the socket. Zero means no timeout
+     * @return connected TLS socket
+     * @throws IOException if the connection fails
+     */
+    public static Socket connectSsl(SSLSocketFactory fax, String host, int port, int readTimeout, int connectTimeout) throws IOException
+    {
+        Socket plain = connect(host, port, readTimeout, connectTimeout);
+
+        try
+        {
+            return fax.createSocket(plain, host, port, true);
+        }
+
+        catch (IOException e)
+        {
+            plain.close();
+            throw e;
+        }
+    }
+
+    @Override
+    public void connect(SocketAddress endpoint, int timeout) throws IOException
+    {
+        super.connect(endpoint, timeout);
+        Metrics.connectionOpened();
+    }
+
+    @Override
+    public synchronized InputStream getInputStream() throws IOException
+    {
+        if (in == null)
+        {
+            in = new CountingInputStream(super.getInputStream());
+        }
+
+        return in;
+    }
+
+    @Override
+    public synchronized OutputStream getOutputStream() throws IOException
+    {
+        if (out == null)
+        {
+            out = new CountingOutputStream(super.getOutputStream());
+        }
+
+        return out;
+    }
+
+    /**
+     * Account bytes that were sent by the current thread.
+     *
+     * @param count number of bytes
+     */
+    private static void sent(long count)
+    {
+        traffic.get()[0] += count;
+        Metrics.bytesSent(count);
+    }
+
+    /**
+     * Account bytes that were received by the current thread.
+     *
+     * @param count number of bytes
+     */
+    private static void received(long count)
+    {
+        traffic.get()[1] += count;
+        Metrics.bytesReceived(count);
+    }
+
+    /**
+     * InputStream that reports the number of read bytes.
+     */
+    private static class CountingInputStream extends FilterInputStream
+    {
+        CountingInputStream(InputStream in)
+        {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException
+        {
+            int b = super.read();
+
+            if (b != -1)
+            {
+                received(1);
+            }
+
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException
+        {
+            int count = super.read(b, off, len);
+
+            if (count > 0)
+            {
+                received(count);
+            }
+
+            return count;
+        }
+    }
+
+    /**
+     * OutputStream that reports the number of written bytes.
+     */
+    private static class CountingOutputStream extends FilterOutputStream
+    {
+        CountingOutputStream(OutputStream out)
+        {
+            super(out);
+        }
+
+        @Override
+        public void write(int b) throws IOException
+        {
+            out.write(b);
+            sent(1);
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) throws IOException
+        {
+            out.write(b, off, len);
+            sent(len);
+        }
+    }
+}
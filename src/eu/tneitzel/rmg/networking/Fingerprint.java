@@ -0,0 +1,347 @@
+package eu.tneitzel.rmg.networking;
+
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A Fingerprint summarizes the information that can be obtained from an RMI endpoint with a single connection.
+ * This includes the well known remote objects (registry, DGC and activator) that are exposed on the endpoint,
+ * whether the endpoint uses TLS, the client endpoint that was reflected by the server within the JRMP ProtocolAck
+ * and the time that was required for the handshake and the calls.
+ *
+ * The reflected client endpoint is only available for plain text endpoints, as TLS endpoints are fingerprinted
+ * by using the regular RMI stack. Fingerprints are immutable. The toString method returns a compact one line
+ * record that is suitable for further processing and can be parsed again by the parse method. The scan action
+ * stores these records within the file specified by --fingerprints. The enum action reads the same file and
+ * uses fresh fingerprints to skip calls on well known remote objects that are not present on the endpoint.
+ *
+ * @author Tobias Neitzel (@qtc_de)
+ */
+public class Fingerprint
+{
+    private final String host;
+    private final int port;
+    private final boolean tls;
+
+    private final String ackHost;
+    private final int ackPort;
+
+    private final boolean registry;
+    private final boolean dgc;
+    private final boolean activator;
+
+    private final long handshakeTime;
+    private final long callTime;
+    private final long timestamp;
+
+    private static final String NO_SUCH_OBJECT = "java.rmi.NoSuchObjectException";
+    private static final long MAX_AGE = TimeUnit.HOURS.toMillis(24);
+
+    /**
+     * Create a new Fingerprint.
+     *
+     * @param host host of the endpoint
+     * @param port port of the endpoint
+     * @param tls whether the endpoint uses TLS
+     * @param ackHost client host reflected within the ProtocolAck or null if unknown
+     * @param ackPort client port reflected within the ProtocolAck or -1 if unknown
+     * @param registry whether the endpoint exposes an RMI registry
+     * @param dgc whether the endpoint exposes a DGC
+     * @param activator whether the endpoint exposes an activator
+     * @param handshakeTime time in nanoseconds from the connect until the ProtocolAck was received or -1 if unknown
+     * @param callTime time in nanoseconds from sending the calls until the last return was received
+     */
+    public Fingerprint(String host, int port, boolean tls, String ackHost, int ackPort, boolean registry, boolean dgc,
+                       boolean activator, long handshakeTime, long callTime)
+    {
+        this(host, port, tls, ackHost, ackPort, registry, dgc, activator, handshakeTime, callTime, System.currentTimeMillis());
+    }
+
+    /**
+     * Create a new Fingerprint that was taken at the specified time.
+     *
+     * @param host host of the endpoint
+     * @param port port of the endpoint
+     * @param tls whether the endpoint uses TLS
+     * @param ackHost client host reflected within the ProtocolAck or null if unknown
+     * @param ackPort client port reflected within the ProtocolAck or -1 if unknown
+     * @param registry whether the endpoint exposes an RMI registry
+     * @param dgc whether the endpoint exposes a DGC
+     * @param activator whether the endpoint exposes an activator
+     * @param handshakeTime time in nanoseconds from the connect until the ProtocolAck was received or -1 if unknown
+     * @param callTime time in nanoseconds from sending the calls until the last return was received
+     * @param timestamp time the fingerprint was taken in milliseconds since the epoch
+     */
+    public Fingerprint(String host, int port, boolean tls, String ackHost, int ackPort, boolean registry, boolean dgc,
+                       boolean activator, long handshakeTime, long callTime, long timestamp)
+    {
+        this.host = host;
+        this.port = port;
+        this.tls = tls;
+        this.ackHost = ackHost;
+        this.ackPort = ackPort;
+        this.registry = registry;
+        this.dgc = dgc;
+        this.activator = activator;
+        this.handshakeTime = handshakeTime;
+        this.callTime = callTime;
+        this.timestamp = timestamp;
+    }
+
+    /**
+     * Parse a fingerprint record as created by the toString method.
+     *
+     * @param record fingerprint record
+     * @return parsed Fingerprint or null if the record is invalid
+     */
+    public static Fingerprint parse(String record)
+    {
+        String[] fields = record.trim().split(" +");
+
+        if (fields.length != 9)
+        {
+            return null;
+        }
+
+        try
+        {
+            int separator = fields[0].lastIndexOf(':');
+
+            String host = fields[0].substring(0, separator);
+            int port = Integer.parseInt(fields[0].substring(separator + 1));
+
+            String ack = value(fields[2], "ack");
+            String ackHost = null;
+            int ackPort = -1;
+
+            if (!ack.equals("-"))
+            {
+                separator = ack.lastIndexOf(':');
+                ackHost = ack.substring(0, separator);
+                ackPort = Integer.parseInt(ack.substring(separator + 1));
+            }
+
+            return new Fingerprint(host, port, flag(fields[1], "tls"), ackHost, ackPort, flag(fields[3], "reg"), flag(fields[4], "dgc"),
+                                   flag(fields[5], "act"), parseTime(value(fields[6], "handshake")), parseTime(value(fields[7], "calls")),
+                                   TimeUnit.SECONDS.toMillis(Long.parseLong(value(fields[8], "time"))));
+        }
+
+        catch (IllegalArgumentException | IndexOutOfBoundsException e)
+        {
+            return null;
+        }
+    }
+
+    /**
+     * Check whether the fingerprint is recent enough to be used instead of contacting the endpoint.
+     * Fingerprints expire after 24 hours.
+     *
+     * @return true if the fingerprint was taken within the last 24 hours
+     */
+    public boolean isFresh()
+    {
+        return System.currentTimeMillis() - timestamp <= MAX_AGE;
+    }
+
+    /**
+     * Decide whether a remote object exists, based on the exception that was returned for a call on it.
+     * Calls on non existing ObjIDs are answered with a NoSuchObjectException. Any other return indicates
+     * that the remote object exists, as the call was dispatched to it.
+     *
+     * @param exception class name of the returned exception or null for a regular return
+     * @return true if the remote object exists
+     */
+    public static boolean exists(String exception)
+    {
+        return !NO_SUCH_OBJECT.equals(exception);
+    }
+
+    /**
+     * @return host of the endpoint
+     */
+    public String getHost()
+    {
+        return host;
+    }
+
+    /**
+     * @return port of the endpoint
+     */
+    public int getPort()
+    {
+        return port;
+    }
+
+    /**
+     * @return whether the endpoint uses TLS
+     */
+    public boolean isTls()
+    {
+        return tls;
+    }
+
+    /**
+     * @return client host reflected within the ProtocolAck or null if unknown
+     */
+    public String getAckHost()
+    {
+        return ackHost;
+    }
+
+    /**
+     * @return client port reflected within the ProtocolAck or -1 if unknown
+     */
+    public int getAckPort()
+    {
+        return ackPort;
+    }
+
+    /**
+     * @return whether the endpoint exposes an RMI registry
+     */
+    public boolean hasRegistry()
+    {
+        return registry;
+    }
+
+    /**
+     * @return whether the endpoint exposes a DGC
+     */
+    public boolean hasDgc()
+    {
+        return dgc;
+    }
+
+    /**
+     * @return whether the endpoint exposes an activator
+     */
+    public boolean hasActivator()
+    {
+        return activator;
+    }
+
+    /**
+     * @return time in nanoseconds from the connect until the ProtocolAck was received or -1 if unknown
+     */
+    public long getHandshakeTime()
+    {
+        return handshakeTime;
+    }
+
+    /**
+     * @return time in nanoseconds from sending the calls until the last return was received
+     */
+    public long getCallTime()
+    {
+        return callTime;
+    }
+
+    /**
+     * @return time the fingerprint was taken in milliseconds since the epoch
+     */
+    public long getTimestamp()
+    {
+        return timestamp;
+    }
+
+    /**
+     * Return the fingerprint as a compact one line record, e.g.:
+     *
+     *      172.17.0.2:9010 tls=0 ack=172.17.0.1:41178 reg=1 dgc=1 act=0 handshake=0.81ms calls=2.10ms time=1718000000
+     *
+     * @return fingerprint record
+     */
+    @Override
+    public String toString()
+    {
+        StringBuilder record = new StringBuilder();
+
+        record.append(host).append(':').append(port);
+        record.append(" tls=").append(tls ? 1 : 0);
+        record.append(" ack=").append((ackHost == null) ? "-" : ackHost + ":" + ackPort);
+        record.append(" reg=").append(registry ? 1 : 0);
+        record.append(" dgc=").append(dgc ? 1 : 0);
+        record.append(" act=").append(activator ? 1 : 0);
+        record.append(" handshake=").append(formatTime(handshakeTime));
+        record.append(" calls=").append(formatTime(callTime));
+        record.append(" time=").append(TimeUnit.MILLISECONDS.toSeconds(timestamp));
+
+        return record.toString();
+    }
+
+    /**
+     * Obtain the value of a key=value field of a fingerprint record.
+     *
+     * @param field field of the record
+     * @param key expected key of the field
+     * @return value of the field
+     * @throws IllegalArgumentException if the field has a different key
+     */
+    private static String value(String field, String key)
+    {
+        if (!field.startsWith(key + "="))
+        {
+            throw new IllegalArgumentException("Unexpected field: " + field);
+        }
+
+        return field.substring(key.length() + 1);
+    }
+
+    /**
+     * Parse a flag field (0 or 1) of a fingerprint record.
+     *
+     * @param field field of the record
+     * @param key expected key of the field
+     * @return value of the flag
+     * @throws IllegalArgumentException if the field is invalid
+     */
+    private static boolean flag(String field, String key)
+    {
+        String value = value(field, key);
+
+        if (!value.equals("0") && !value.equals("1"))
+        {
+            throw new IllegalArgumentException("Unexpected flag: " + field);
+        }
+
+        return value.equals("1");
+    }
+
+    /**
+     * Parse a time that was formatted by formatTime.
+     *
+     * @param time formatted time
+     * @return time in nanoseconds or -1 if the time is unknown
+     * @throws NumberFormatException if the time is invalid
+     */
+    private static long parseTime(String time)
+    {
+        if (time.equals("-"))
+        {
+            return -1;
+        }
+
+        if (!time.endsWith("ms"))
+        {
+            throw new NumberFormatException("Invalid time: " + time);
+        }
+
+        return (long)(Double.parseDouble(time.substring(0, time.length() - 2)) * 1_000_000);
+    }
+
+    /**
+     * Format a time in nanoseconds as milliseconds with two decimal places.
+     *
+     * @param time time in nanoseconds
+     * @return formatted time or a dash if the time is unknown
+     */
+    private static String formatTime(long time)
+    {
+        if (time < 0)
+        {
+            return "-";
+        }
+
+        return String.format(Locale.ROOT, "%.2fms", time / 1_000_000.0);
+    }
+}
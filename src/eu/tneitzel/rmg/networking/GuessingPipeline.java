@@ -0,0 +1,630 @@
+package eu.tneitzel.rmg.networking;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.net.Socket;
+import java.rmi.UnmarshalException;
+import java.rmi.server.ObjID;
+import java.rmi.server.RMIClientSocketFactory;
+import java.rmi.server.RMISocketFactory;
+import java.rmi.server.UID;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+
+import eu.tneitzel.rmg.internal.MethodCandidate;
+import eu.tneitzel.rmg.io.CallTemplate;
+import eu.tneitzel.rmg.metrics.FlightEvents;
+import eu.tneitzel.rmg.metrics.Metrics;
+import eu.tneitzel.rmg.utils.TaskExecutor;
+import sun.rmi.server.MarshalInputStream;
+import sun.rmi.transport.TransportConstants;
+
+/**
+ * The GuessingPipeline is an alternative transport for method guessing. Instead of dispatching
+ * each guessing call via StreamRemoteCall and waiting for the server response before the next
+ * call is sent, the GuessingPipeline opens a raw JRMP connection and writes multiple calls back
+ * to back. Server responses are read by a separate reader thread and are matched to the corresponding
+ * MethodCandidates in the order the calls were sent.
+ *
+ * This works because RMI servers process calls on a single connection strictly sequential. After a
+ * call was processed, the server just reads the next transport operation from the stream. The guessing
+ * calls created by MethodCandidate.sendArguments are designed to keep the stream in a clean state (see
+ * the RMIEndpoint.guessingCall method for details) and it does not matter whether the next call is already
+ * waiting in the servers receive buffer or not. With a pipeline depth of n, up to n calls are in flight
+ * at the same time and guessing speed is no longer limited by the round trip time to the server.
+ *
+ * Zero argument methods are not supported by the pipeline, as they lead to real method calls that may
+ * return arbitrary data. If the pipeline encounters an unexpected response, it is considered to be out
+ * of sync. In this case, the connection is closed and all MethodCandidates that have not been answered
+ * yet are returned to the caller, who is expected to guess them by using the regular guessingCall.
+ *
+ * A GuessingPipeline can be used for multiple batches of MethodCandidates. The connection and the reader
+ * thread stay alive between batches and are only recreated after the pipeline failed. The reader thread is
+ * created by the TaskExecutor and is a virtual thread if virtual threads are used. Pipelines need to be
+ * closed when they are no longer needed. A single pipeline must not be used by multiple threads at once.
+ *
+ * The latency, outcome and size of each answered call are recorded as pipelined_call within the Metrics and
+ * the RemoteCall events of JFR. The latency of a pipelined call is measured from the moment the call was
+ * queued until its response was read. Calls that were not answered by the pipeline are recorded by the
+ * regular guessingCall instead.
+ *
+ * @author Tobias Neitzel (@qtc_de)
+ */
+@SuppressWarnings("restriction")
+public class GuessingPipeline
+{
+    private final int port;
+    private final String host;
+    private final ObjID objID;
+    private byte[] objIDBytes;
+    private final RMIClientSocketFactory csf;
+    private final BlockingQueue<PendingCall> inFlight;
+
+    private Socket socket;
+    private DataInputStream in;
+    private DataOutputStream out;
+    private ResponseCounter counter;
+    private Thread reader;
+
+    private volatile boolean failed;
+    private volatile int answered;
+    private volatile ResultHandler handler;
+
+    private static final PendingCall STOP = new PendingCall(null);
+
+    /**
+     * Create a new GuessingPipeline. The connection to the remote endpoint is not established until
+     * the guess method is called for the first time.
+     *
+     * @param host remote host of the targeted remote object
+     * @param port remote port of the targeted remote object
+     * @param csf client socket factory to use for the connection. If null, the default RMISocketFactory is used
+     * @param objID ObjID of the targeted remote object
+     * @param depth maximum number of calls that are in flight at the same time
+     */
+    public GuessingPipeline(String host, int port, RMIClientSocketFactory csf, ObjID objID, int depth)
+    {
+        this.host = host;
+        this.port = port;
+        this.objID = objID;
+        this.inFlight = new ArrayBlockingQueue<PendingCall>(Math.max(depth, 1));
+
+        if (csf == null)
+        {
+            csf = RMISocketFactory.getSocketFactory();
+
+            if (csf == null)
+            {
+                csf = RMISocketFactory.getDefaultSocketFactory();
+            }
+        }
+
+        this.csf = csf;
+    }
+
+    /**
+     * Guess the specified MethodCandidates over the pipelined connection. The result of each guessing
+     * call is passed to the specified ResultHandler. The handler is called from the reader thread of
+     * the pipeline and obtains either null (the call returned normally) or the exception that was returned
+     * by the server. The exception is the same that would have been thrown by the regular guessingCall.
+     * Additionally, the handler obtains the latency of the call, measured from writing the call until its
+     * response was read. If the pipeline fails or ends early, the handleAbort method of the handler is
+     * called from the calling thread before the unanswered candidates are returned.
+     *
+     * The connection is established on the first call and reused for subsequent calls. If the pipeline
+     * failed during a previous call, a new connection is established.
+     *
+     * @param candidates MethodCandidates to guess
+     * @param handler ResultHandler that processes the result of each guessing call
+     * @return List of MethodCandidates that could not be guessed by the pipeline
+     */
+    public List<MethodCandidate> guess(Collection<MethodCandidate> candidates, ResultHandler handler)
+    {
+        List<MethodCandidate> pending = new ArrayList<MethodCandidate>(candidates.size());
+        List<MethodCandidate> unsupported = new ArrayList<MethodCandidate>();
+
+        for (MethodCandidate candidate : candidates)
+        {
+            if (candidate.isVoid())
+            {
+                unsupported.add(candidate);
+            }
+
+            else
+            {
+                pending.add(candidate);
+            }
+        }
+
+        if (pending.size() == 0)
+        {
+            return unsupported;
+        }
+
+        if (socket == null || failed)
+        {
+            try
+            {
+                connect();
+            }
+
+            catch (IOException e)
+            {
+                fail();
+                handler.handleAbort();
+                unsupported.addAll(pending);
+
+                return unsupported;
+            }
+        }
+
+        this.answered = 0;
+        this.handler = handler;
+
+        awaitBatch(writeCalls(pending));
+
+        if (failed)
+        {
+            handler.handleAbort();
+        }
+
+        unsupported.addAll(pending.subList(answered, pending.size()));
+        return unsupported;
+    }
+
+    /**
+     * Close the connection and stop the reader thread of the pipeline.
+     */
+    public void close()
+    {
+        closeSocket();
+
+        if (reader != null)
+        {
+            putUninterruptibly(STOP);
+            reader = null;
+        }
+    }
+
+    /**
+     * Opens the socket to the remote endpoint and performs the JRMP handshake for the stream protocol.
+     * This is basically a copy of what TCPChannel does when creating a new connection. The reader thread
+     * is started on the first connection and reused afterwards.
+     *
+     * @throws IOException if the connection or the handshake fails
+     */
+    private void connect() throws IOException
+    {
+        closeSocket();
+
+        socket = csf.createSocket(host, port);
+        socket.setTcpNoDelay(true);
+        socket.setKeepAlive(true);
+
+        out = new DataOutputStream(new BufferedOutputStream(socket.getOutputStream()));
+        counter = new ResponseCounter(new BufferedInputStream(socket.getInputStream()));
+        in = new DataInputStream(counter);
+
+        out.writeInt(TransportConstants.Magic);
+        out.writeShort(TransportConstants.Version);
+        out.writeByte(TransportConstants.StreamProtocol);
+        out.flush();
+
+        if (in.readByte() != TransportConstants.ProtocolAck)
+        {
+            throw new IOException("JRMP handshake failed: protocol not acknowledged");
+        }
+
+        in.readUTF();
+        in.readInt();
+
+        out.writeUTF(socket.getLocalAddress().getHostAddress());
+        out.writeInt(0);
+        out.flush();
+
+        objIDBytes = CallTemplate.encodeObjID(objID);
+        failed = false;
+
+        if (reader == null)
+        {
+            reader = TaskExecutor.newThread("rmg-pipeline-reader", this::readResponses);
+            reader.start();
+        }
+    }
+
+    /**
+     * Writes the guessing calls for the specified MethodCandidates to the connection. Calls are buffered
+     * and only flushed when the pipeline is full or all calls were written. The function always finishes
+     * by putting an end marker into the in flight queue, which tells the reader thread that the batch is
+     * complete.
+     *
+     * Each call is written from the precomputed CallTemplate of the corresponding MethodCandidate. The call
+     * looks exactly like a call that was created by StreamRemoteCall: the Call transport constant followed
+     * by an ObjectOutputStream that contains the ObjID, the operation number (-1 for calls by method hash)
+     * and the method hash. The arguments are the same as for regular guessing calls.
+     *
+     * @param candidates MethodCandidates to write guessing calls for
+     * @return end marker of the batch
+     */
+    private PendingCall writeCalls(List<MethodCandidate> candidates)
+    {
+        PendingCall end = new PendingCall(null);
+
+        try
+        {
+            for (MethodCandidate candidate : candidates)
+            {
+                if (failed)
+                {
+                    break;
+                }
+
+                PendingCall call = new PendingCall(candidate);
+
+                if (!inFlight.offer(call))
+                {
+                    out.flush();
+                    inFlight.put(call);
+                }
+
+                CallTemplate template = candidate.getCallTemplate();
+
+                call.begin(template.size());
+                template.writeTo(out, objIDBytes);
+            }
+
+            out.flush();
+        }
+
+        catch (IOException e)
+        {
+            fail();
+        }
+
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+            fail();
+        }
+
+        finally
+        {
+            putUninterruptibly(end);
+        }
+
+        return end;
+    }
+
+    /**
+     * Wait until the reader thread reached the end marker of the current batch. If the waiting thread is
+     * interrupted, the pipeline is marked as failed, which lets the reader thread skip the remaining calls.
+     *
+     * @param end end marker of the batch
+     */
+    private void awaitBatch(PendingCall end)
+    {
+        boolean interrupted = false;
+
+        while (true)
+        {
+            try
+            {
+                end.done.await();
+                break;
+            }
+
+            catch (InterruptedException e)
+            {
+                interrupted = true;
+                fail();
+            }
+        }
+
+        if (interrupted)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Reads the server responses from the connection and passes them to the ResultHandler. Runs inside the
+     * reader thread until the pipeline is closed. End markers of batches are released as soon as they are
+     * encountered. If the connection breaks or a response cannot be parsed, the pipeline is marked as failed
+     * and the remaining calls of the batch are drained without reading further responses.
+     */
+    private void readResponses()
+    {
+        while (true)
+        {
+            PendingCall call;
+
+            try
+            {
+                call = inFlight.take();
+            }
+
+            catch (InterruptedException e)
+            {
+                fail();
+                continue;
+            }
+
+            if (call == STOP)
+            {
+                return;
+            }
+
+            if (call.candidate == null)
+            {
+                call.done.countDown();
+                continue;
+            }
+
+            if (failed)
+            {
+                continue;
+            }
+
+            try
+            {
+                long received = counter.count;
+                Exception result = readResponse();
+                long latency = System.nanoTime() - call.written;
+
+                record(call, result, counter.count - received);
+
+                answered += 1;
+                handler.handleResult(call.candidate, result, latency);
+            }
+
+            catch (IOException | ClassNotFoundException e)
+            {
+                fail();
+            }
+        }
+    }
+
+    /**
+     * Reads one response from the connection. PingAck messages that precede the actual response are skipped.
+     * These are caused by guessing calls on non existing methods that only take primitive arguments (see
+     * MethodCandidate.sendArguments).
+     *
+     * Responses that contain a normal return value cannot be skipped reliably, as the return type is unknown.
+     * If one is encountered, the method is reported as existing, but the pipeline is marked as failed.
+     *
+     * @return exception returned by the server or null if the call returned normally
+     * @throws IOException if reading from the connection fails or the response is malformed
+     * @throws ClassNotFoundException if the returned exception cannot be deserialized
+     */
+    private Exception readResponse() throws IOException, ClassNotFoundException
+    {
+        int op = in.read();
+
+        while (op == TransportConstants.PingAck)
+        {
+            op = in.read();
+        }
+
+        if (op != TransportConstants.Return)
+        {
+            throw new UnmarshalException("Transport return code invalid: " + op);
+        }
+
+        ObjectInputStream ois = new MarshalInputStream(in);
+        byte returnType = ois.readByte();
+        UID.read(ois);
+
+        if (returnType == TransportConstants.ExceptionalReturn)
+        {
+            Object ex = ois.readObject();
+
+            if (ex instanceof Exception)
+            {
+                return (Exception)ex;
+            }
+
+            throw new UnmarshalException("Return type not Exception");
+        }
+
+        if (returnType == TransportConstants.NormalReturn)
+        {
+            fail();
+
+            return null;
+        }
+
+        throw new UnmarshalException("Return code invalid: " + returnType);
+    }
+
+    /**
+     * Record the latency and outcome of an answered call within the Metrics and as JFR event.
+     *
+     * @param call PendingCall that was answered
+     * @param outcome exception returned by the server or null if the call returned normally
+     * @param received number of bytes the response consisted of
+     */
+    private void record(PendingCall call, Exception outcome, long received)
+    {
+        Metrics.record(Metrics.Call.PIPELINED_CALL, call.start, outcome);
+        FlightEvents.remoteCall(call.event, Metrics.Call.PIPELINED_CALL.label(), host + ":" + port, String.valueOf(objID),
+                                call.candidate.getHash(), outcome, call.size, received);
+    }
+
+    /**
+     * Marks the pipeline as failed and closes the socket. Closing the socket unblocks a writer or reader
+     * that is currently waiting on the connection.
+     */
+    private void fail()
+    {
+        failed = true;
+        closeSocket();
+    }
+
+    /**
+     * Puts a marker into the in flight queue. The reader thread keeps consuming the queue until the pipeline
+     * is closed, so waiting for free space always succeeds. Interrupts mark the pipeline as failed, but do not
+     * prevent the marker from being queued.
+     *
+     * @param marker marker to put into the queue
+     */
+    private void putUninterruptibly(PendingCall marker)
+    {
+        boolean interrupted = false;
+
+        while (true)
+        {
+            try
+            {
+                inFlight.put(marker);
+                break;
+            }
+
+            catch (InterruptedException e)
+            {
+                interrupted = true;
+                fail();
+            }
+        }
+
+        if (interrupted)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Close the underlying socket without throwing.
+     */
+    private void closeSocket()
+    {
+        if (socket == null)
+        {
+            return;
+        }
+
+        try
+        {
+            socket.close();
+        }
+
+        catch (IOException e) {}
+    }
+
+    /**
+     * Interface that is used to process the results of pipelined guessing calls.
+     *
+     * @author Tobias Neitzel (@qtc_de)
+     */
+    public interface ResultHandler
+    {
+        /**
+         * Process the result of a guessing call.
+         *
+         * @param candidate MethodCandidate that was guessed
+         * @param e exception returned by the server or null if the call returned normally
+         * @param latency latency of the call in nanoseconds
+         */
+        void handleResult(MethodCandidate candidate, Exception e, long latency);
+
+        /**
+         * Called when the pipeline failed or ended early and not all candidates were answered. The
+         * default implementation does nothing.
+         */
+        default void handleAbort() {}
+    }
+
+    /**
+     * Holder for MethodCandidates within the in flight queue. Required to have end markers that are
+     * distinguishable from actual calls. End markers carry no candidate and are released by the reader
+     * thread once all calls of their batch were processed. Additionally tracks the start of the call for
+     * Metrics and JFR. The call is started by the writer thread and ended by the reader thread.
+     */
+    private static class PendingCall
+    {
+        private final MethodCandidate candidate;
+        private final CountDownLatch done;
+
+        private volatile long start;
+        private volatile long written;
+        private volatile int size;
+        private volatile Object event;
+
+        private PendingCall(MethodCandidate candidate)
+        {
+            this.candidate = candidate;
+            this.done = (candidate == null) ? new CountDownLatch(1) : null;
+        }
+
+        /**
+         * Start the call. Called by the writer thread before the call is written.
+         *
+         * @param size number of bytes the call consists of
+         */
+        private void begin(int size)
+        {
+            this.size = size;
+            written = System.nanoTime();
+            start = Metrics.timestamp();
+            event = FlightEvents.begin(FlightEvents.Type.REMOTE_CALL);
+        }
+    }
+
+    /**
+     * InputStream that counts the bytes that were consumed from the connection. Only accessed by the
+     * reader thread after the handshake.
+     */
+    private static class ResponseCounter extends FilterInputStream
+    {
+        private long count;
+
+        private ResponseCounter(InputStream in)
+        {
+            super(in);
+        }
+
+        @Override
+        public int read() throws IOException
+        {
+            int b = in.read();
+
+            if (b != -1)
+            {
+                count += 1;
+            }
+
+            return b;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException
+        {
+            int read = in.read(b, off, len);
+
+            if (read > 0)
+            {
+                count += read;
+            }
+
+            return read;
+        }
+
+        @Override
+        public long skip(long n) throws IOException
+        {
+            long skipped = in.skip(n);
+            count += skipped;
+
+            return skipped;
+        }
+    }
+}
@@ -51,8 +51,9 @@ public class LoopbackSocketFactory extends RMISocketFactory
     public Socket createSocket(String host, int port) throws IOException
     {
         Socket sock = null;
+        String targetHost = RMIEndpoint.getTargetHost(host, port);
 
-        if (!RMGOption.TARGET_HOST.getValue().equals(host))
+        if (!targetHost.equals(host))
         {
             if (printInfo && RMGOption.GLOBAL_VERBOSE.getBool())
             {
@@ -70,7 +71,7 @@ public class LoopbackSocketFactory extends RMISocketFactory
 
             else
             {
-                host = RMGOption.TARGET_HOST.getValue();
+                host = targetHost;
 
                 if (printInfo && RMGOption.GLOBAL_VERBOSE.getBool())
                 {
@@ -89,7 +90,15 @@ public class LoopbackSocketFactory extends RMISocketFactory
 
         try
         {
-            sock = getFax().createSocket(host, port);
+            if (CountingSocket.isActive())
+            {
+                sock = CountingSocket.connect(host, port, 0, 0);
+            }
+
+            else
+            {
+                sock = getFax().createSocket(host, port);
+            }
         }
 
         catch( UnknownHostException e )
@@ -50,8 +50,9 @@ public class LoopbackSslSocketFactory extends SSLSocketFactory implements RMICli
     public Socket createSocket(String target, int port) throws IOException
     {
         Socket sock = null;
+        String targetHost = RMIEndpoint.getTargetHost(target, port);
 
-        if(!RMGOption.TARGET_HOST.getValue().equals(target)) {
+        if(!targetHost.equals(target)) {
 
             if (printInfo && RMGOption.GLOBAL_VERBOSE.getBool())
             {
@@ -69,7 +70,7 @@ public class LoopbackSslSocketFactory extends SSLSocketFactory implements RMICli
 
             else
             {
-                target = RMGOption.TARGET_HOST.getValue();
+                target = targetHost;
 
                 if (printInfo && RMGOption.GLOBAL_VERBOSE.getBool())
                 {
@@ -88,7 +89,15 @@ public class LoopbackSslSocketFactory extends SSLSocketFactory implements RMICli
 
         try
         {
-            sock = getFax().createSocket(target, port);
+            if (CountingSocket.isActive())
+            {
+                sock = CountingSocket.connectSsl(getFax(), target, port, 0, 0);
+            }
+
+            else
+            {
+                sock = getFax().createSocket(target, port);
+            }
         }
 
         catch (UnknownHostException e)
@@ -5,17 +5,26 @@ import java.io.ObjectInput;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutput;
 import java.io.ObjectOutputStream;
+import java.rmi.RemoteException;
 import java.rmi.server.ObjID;
 import java.rmi.server.RMIClientSocketFactory;
 import java.rmi.server.RemoteRef;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import eu.tneitzel.rmg.exceptions.SSRFException;
 import eu.tneitzel.rmg.internal.ExceptionHandler;
 import eu.tneitzel.rmg.internal.MethodArguments;
 import eu.tneitzel.rmg.internal.MethodCandidate;
 import eu.tneitzel.rmg.internal.Pair;
+import eu.tneitzel.rmg.internal.RMGOption;
 import eu.tneitzel.rmg.io.MaliciousOutputStream;
 import eu.tneitzel.rmg.io.RawObjectInputStream;
+import eu.tneitzel.rmg.metrics.FlightEvents;
+import eu.tneitzel.rmg.metrics.Metrics;
+import eu.tneitzel.rmg.operations.FleetEnumerator;
 import eu.tneitzel.rmg.plugin.PluginSystem;
 import javassist.CtClass;
 import javassist.CtPrimitiveType;
@@ -45,6 +54,9 @@ public class RMIEndpoint
 
     protected RMIClientSocketFactory csf;
 
+    private static final ThreadLocal<String> targetHost = new ThreadLocal<String>();
+    private static final Map<String,String> redirects = new ConcurrentHashMap<String,String>();
+
     /**
      * Creates a new RMIEndpoint instance and configures the corresponding client side socket
      * factory according to the options specified on the command line.
@@ -74,6 +86,87 @@ public class RMIEndpoint
          this.csf = csf;
     }
 
+    /**
+     * Return the host that is currently targeted. This is usually the host that was specified on the command line.
+     * When multiple targets are processed concurrently, each thread can set its own target host, which is then
+     * used by the loopback socket factories to redirect connections back to the correct host.
+     *
+     * @return host that is targeted by the current thread
+     */
+    public static String getTargetHost()
+    {
+        String host = targetHost.get();
+
+        if (host == null)
+        {
+            host = RMGOption.TARGET_HOST.getValue();
+        }
+
+        return host;
+    }
+
+    /**
+     * Return the host that a connection to the specified endpoint should be sent to. This is used by the loopback
+     * socket factories to redirect connections back to the targeted host.
+     *
+     * Connections are usually opened by threads that have a target host registered or by the thread that targets
+     * the host specified on the command line. However, RMI also opens connections from its own background threads,
+     * e.g. for renewing DGC leases. These threads have no target host registered. The redirect target is therefore
+     * also stored per endpoint when a thread with a registered target host connects to it, and background threads
+     * use the stored target of the endpoint. If no target was stored and the command line specified a target list,
+     * the connection is not redirected.
+     *
+     * @param host host of the endpoint that is connected to
+     * @param port port of the endpoint that is connected to
+     * @return host the connection should be sent to
+     */
+    public static String getTargetHost(String host, int port)
+    {
+        String endpoint = host + ":" + port;
+        String target = targetHost.get();
+
+        if (target != null)
+        {
+            redirects.put(endpoint, target);
+            return target;
+        }
+
+        target = redirects.get(endpoint);
+
+        if (target != null)
+        {
+            return target;
+        }
+
+        target = RMGOption.TARGET_HOST.getValue();
+
+        if (target == null || FleetEnumerator.isTargetList(target))
+        {
+            return host;
+        }
+
+        return target;
+    }
+
+    /**
+     * Set the host that is targeted by the current thread. Setting the host to null restores the host that was
+     * specified on the command line.
+     *
+     * @param host host that is targeted by the current thread
+     */
+    public static void setTargetHost(String host)
+    {
+        if (host == null)
+        {
+            targetHost.remove();
+        }
+
+        else
+        {
+            targetHost.set(host);
+        }
+    }
+
     /**
      * Constructs a RemoteRef by using the endpoint information (host, port, csf) and the
      * specified objID.
@@ -186,6 +279,10 @@ public class RMIEndpoint
     @SuppressWarnings("deprecation")
     public void guessingCall(MethodCandidate candidate, String callName, RemoteRef remoteRef) throws Exception
     {
+        long start = Metrics.timestamp();
+        Object event = FlightEvents.begin(FlightEvents.Type.REMOTE_CALL);
+        Throwable outcome = null;
+
         try {
 
             StreamRemoteCall call = (StreamRemoteCall)remoteRef.newCall(null, null, -1, candidate.getHash());
@@ -211,13 +308,37 @@ public class RMIEndpoint
             }
 
         } catch(java.rmi.ConnectException e) {
+            outcome = e;
             ExceptionHandler.connectException(e, callName);
 
         } catch(java.rmi.ConnectIOException e) {
+            outcome = e;
             ExceptionHandler.connectIOException(e, callName);
+
+        } catch(Throwable t) {
+            outcome = t;
+            throw t;
+
+        } finally {
+            Metrics.record(Metrics.Call.GUESSING_CALL, start, outcome);
+            recordEvent(event, Metrics.Call.GUESSING_CALL, remoteRef, null, candidate.getHash(), outcome);
         }
     }
 
+    /**
+     * Create a GuessingPipeline for the specified remote object on this endpoint. Pipelines are an alternative
+     * to the guessingCall method that send multiple guessing calls over a single connection without waiting for
+     * the corresponding responses. Check the GuessingPipeline class for more details.
+     *
+     * @param objID ObjID of the remote object to guess on
+     * @param depth maximum number of calls that are in flight at the same time
+     * @return GuessingPipeline for the remote object. The connection is established on first use
+     */
+    public GuessingPipeline guessingPipeline(ObjID objID, int depth)
+    {
+        return new GuessingPipeline(host, port, csf, objID, depth);
+    }
+
     /**
      * Dispatches a raw RMI call. Having such a function available is important for some low level RMI operations like
      * the localhost bypass or even just calling the registry with serialization gadgets. This method provides full
@@ -253,8 +374,81 @@ public class RMIEndpoint
      *                 plugin (if registered to the plugin system)
      * @throws Exception connection related exceptions are caught, but anything what can go wrong on the server side is thrown
      */
-   @SuppressWarnings({ "deprecation", "rawtypes" })
    public void unmanagedCall(ObjID objID, int callID, long methodHash, MethodArguments callArguments, boolean locationStream, RemoteRef remoteRef, CtClass rtype) throws Exception
+   {
+       long start = Metrics.timestamp();
+       Object event = FlightEvents.begin(FlightEvents.Type.REMOTE_CALL);
+       Throwable outcome = null;
+
+       try {
+           dispatchUnmanagedCall(objID, callID, methodHash, callArguments, locationStream, remoteRef, rtype);
+
+       } catch(Throwable t) {
+           outcome = t;
+           throw t;
+
+       } finally {
+           Metrics.record(Metrics.Call.UNMANAGED_CALL, start, outcome);
+           recordEvent(event, Metrics.Call.UNMANAGED_CALL, remoteRef, objID, methodHash, outcome);
+       }
+   }
+
+   /**
+    * Commit the JFR event of a remote call. The target and the ObjID are obtained from the RemoteRef if
+    * one was used. Otherwise, the endpoint information of this RMIEndpoint and the specified ObjID are used.
+    *
+    * @param event event handle obtained from FlightEvents. Nothing happens if null
+    * @param call instrumented call
+    * @param remoteRef RemoteRef that was used for the call or null
+    * @param objID ObjID that was used for the call if no RemoteRef was used
+    * @param methodHash method hash of the call
+    * @param outcome Throwable that terminated the call or null
+    */
+   private void recordEvent(Object event, Metrics.Call call, RemoteRef remoteRef, ObjID objID, long methodHash, Throwable outcome)
+   {
+       if (event == null)
+       {
+           return;
+       }
+
+       String target = host + ":" + port;
+
+       if (remoteRef instanceof UnicastRef)
+       {
+           LiveRef liveRef = ((UnicastRef)remoteRef).getLiveRef();
+           objID = liveRef.getObjID();
+
+           try
+           {
+               Endpoint endpoint = liveRef.getChannel().getEndpoint();
+
+               if (endpoint instanceof TCPEndpoint)
+               {
+                   target = ((TCPEndpoint)endpoint).getHost() + ":" + ((TCPEndpoint)endpoint).getPort();
+               }
+           }
+
+           catch (RemoteException e) {}
+       }
+
+       FlightEvents.remoteCall(event, call.label(), target, String.valueOf(objID), methodHash, outcome);
+   }
+
+   /**
+    * Performs the actual call for unmanagedCall. The call is split into a separate function to record its
+    * latency and outcome within unmanagedCall.
+    *
+    * @param objID identifies the RemoteObject you want to communicate with
+    * @param callID callID that is used for legacy calls
+    * @param methodHash hash value of the method to call or interface hash for legacy calls
+    * @param callArguments map of arguments for the call
+    * @param locationStream if true, uses the MaliciousOutputStream class to write custom annotation objects
+    * @param remoteRef optional remote reference to use for the call
+    * @param rtype return type of the remote method
+    * @throws Exception connection related exceptions are caught, but anything what can go wrong on the server side is thrown
+    */
+   @SuppressWarnings({ "deprecation", "rawtypes" })
+   private void dispatchUnmanagedCall(ObjID objID, int callID, long methodHash, MethodArguments callArguments, boolean locationStream, RemoteRef remoteRef, CtClass rtype) throws Exception
    {
        if(remoteRef == null) {
            remoteRef = this.getRemoteRef(objID);
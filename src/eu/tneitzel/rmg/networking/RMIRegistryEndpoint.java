@@ -2,20 +2,26 @@ package eu.tneitzel.rmg.networking;
 
 import java.io.IOException;
 import java.io.InvalidClassException;
+import java.rmi.NotBoundException;
 import java.rmi.Remote;
 import java.rmi.RemoteException;
 import java.rmi.UnmarshalException;
 import java.rmi.registry.LocateRegistry;
 import java.rmi.registry.Registry;
 import java.rmi.server.RMISocketFactory;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 
 import eu.tneitzel.rmg.exceptions.SSRFException;
 import eu.tneitzel.rmg.internal.CodebaseCollector;
 import eu.tneitzel.rmg.internal.ExceptionHandler;
 import eu.tneitzel.rmg.internal.RMGOption;
 import eu.tneitzel.rmg.io.Logger;
+import eu.tneitzel.rmg.metrics.FlightEvents;
+import eu.tneitzel.rmg.operations.EnumExecutor;
+import eu.tneitzel.rmg.operations.FleetEnumerator;
 import eu.tneitzel.rmg.plugin.PluginSystem;
 import eu.tneitzel.rmg.utils.RMGUtils;
 import eu.tneitzel.rmg.utils.RemoteObjectWrapper;
@@ -32,8 +38,8 @@ public class RMIRegistryEndpoint extends RMIEndpoint
     private Registry rmiRegistry;
     private Map<String,Remote> remoteObjectCache;
 
-    private static int lookupCount = 0;
     private static final int maxLookupCount = 5;
+    private static final int maxRetryCount = 5;
 
     /**
      * The main purpose of this constructor function is to setup the different socket factories.
@@ -53,11 +59,17 @@ public class RMIRegistryEndpoint extends RMIEndpoint
     {
         super(host, port);
 
-        this.remoteObjectCache = new HashMap<String,Remote>();
+        this.remoteObjectCache = new ConcurrentHashMap<String,Remote>();
 
         try
         {
-            RMISocketFactory.setSocketFactory(PluginSystem.getDefaultSocketFactory(host, port));
+            // The RMISocketFactory can only be set once per JVM. When multiple registries are contacted within
+            // the same run, the factory of the first registry is reused. Redirection still works, as the loopback
+            // factories obtain the targeted host from RMIEndpoint.getTargetHost(host, port)
+            if (RMISocketFactory.getSocketFactory() == null)
+            {
+                RMISocketFactory.setSocketFactory(PluginSystem.getDefaultSocketFactory(host, port));
+            }
         }
 
         catch (IOException e)
@@ -158,6 +170,13 @@ public class RMIRegistryEndpoint extends RMIEndpoint
      * bound names. The corresponding remote objects are wrapped inside the RemoteObjectWrapper class
      * and returned as an array.
      *
+     * Lookups are independent from each other and are performed concurrently using up to --threads
+     * threads. Each lookup may trigger the creation of stub classes, which makes them considerably
+     * slower than a plain RMI call. Output of the lookups is printed in the order of the specified
+     * bound names. If one of the lookups fails, its exception is thrown after all lookups finished.
+     * Workers of a FleetEnumerator already enumerate targets concurrently and perform their lookups
+     * sequentially.
+     *
      * @param boundNames list of bound names to determine the classes from
      * @return List of wrapped remote objects
      * @throws IllegalArgumentException if reflective access fails
@@ -169,10 +188,47 @@ public class RMIRegistryEndpoint extends RMIEndpoint
     public RemoteObjectWrapper[] lookup(String[] boundNames) throws IllegalArgumentException, IllegalAccessException, NoSuchFieldException, SecurityException, UnmarshalException
     {
         RemoteObjectWrapper[] remoteObjects = new RemoteObjectWrapper[boundNames.length];
+        int threads = Math.min(RMGOption.THREADS.<Integer>getValue(), boundNames.length);
+
+        if (threads <= 1 || RMGOption.SSRF.getBool() || RMGOption.SSRFRESPONSE.notNull() || FleetEnumerator.isWorker())
+        {
+            for (int ctr = 0; ctr < boundNames.length; ctr++)
+            {
+                remoteObjects[ctr] = this.lookup(boundNames[ctr]);
+            }
+
+            return remoteObjects;
+        }
 
-        for (int ctr = 0; ctr < boundNames.length; ctr++)
+        EnumExecutor executor = new EnumExecutor(threads);
+        List<EnumExecutor.Task<RemoteObjectWrapper>> tasks = new ArrayList<EnumExecutor.Task<RemoteObjectWrapper>>(boundNames.length);
+
+        for (String boundName : boundNames)
         {
-            remoteObjects[ctr] = this.lookup(boundNames[ctr]);
+            tasks.add(executor.submitChecked(() -> this.lookup(boundName)));
+        }
+
+        try
+        {
+            for (int ctr = 0; ctr < boundNames.length; ctr++)
+            {
+                remoteObjects[ctr] = tasks.get(ctr).joinChecked();
+            }
+        }
+
+        catch (IllegalAccessException | NoSuchFieldException | UnmarshalException | RuntimeException e)
+        {
+            throw e;
+        }
+
+        catch (Exception e)
+        {
+            ExceptionHandler.unexpectedException(e, "lookup", "call", true);
+        }
+
+        finally
+        {
+            executor.close();
         }
 
         return remoteObjects;
@@ -182,6 +238,11 @@ public class RMIRegistryEndpoint extends RMIEndpoint
      * Just a wrapper around the lookup method of the RMI registry. Performs exception handling
      * and caches remote objects that have already been looked up.
      *
+     * It was observed that using --serial-version-uid option can cause an invalid transport return code
+     * exception. This seems to be some kind of race condition and cannot be reproduced reliably. The lookup
+     * operation on the RMI registry does pass only this UnmarshalException to the caller. If this is the case,
+     * the lookup of the affected bound name is retried a few times.
+     *
      * @param boundName name to lookup within the registry
      * @return Remote representing the requested remote object
      * @throws IllegalArgumentException if reflective access fails
@@ -191,6 +252,42 @@ public class RMIRegistryEndpoint extends RMIEndpoint
      * @throws UnmarshalException if unmarshalling the return value fails
      */
     public RemoteObjectWrapper lookup(String boundName) throws IllegalArgumentException, IllegalAccessException, NoSuchFieldException, SecurityException, UnmarshalException
+    {
+        int retryCount = 0;
+
+        while (true)
+        {
+            try
+            {
+                return this.lookup(boundName, 0);
+            }
+
+            catch (UnmarshalException e)
+            {
+                retryCount += 1;
+
+                if (retryCount >= maxRetryCount)
+                {
+                    throw e;
+                }
+            }
+        }
+    }
+
+    /**
+     * Performs the actual lookup operation. If the lookup fails because of a serialVersionUID mismatch,
+     * the serialVersionUID expected by the server is registered and the lookup is repeated.
+     *
+     * @param boundName name to lookup within the registry
+     * @param uidCount number of serialVersionUID corrections that were already performed for the bound name
+     * @return Remote representing the requested remote object
+     * @throws IllegalArgumentException if reflective access fails
+     * @throws IllegalAccessException if reflective access fails
+     * @throws NoSuchFieldException if reflective access fails
+     * @throws SecurityException if reflective access fails
+     * @throws UnmarshalException if unmarshalling the return value fails
+     */
+    private RemoteObjectWrapper lookup(String boundName, int uidCount) throws IllegalArgumentException, IllegalAccessException, NoSuchFieldException, SecurityException, UnmarshalException
     {
         Remote remoteObject = remoteObjectCache.get(boundName);
 
@@ -198,9 +295,8 @@ public class RMIRegistryEndpoint extends RMIEndpoint
         {
             try
             {
-                remoteObject = rmiRegistry.lookup(boundName);
+                remoteObject = registryLookup(boundName);
                 remoteObjectCache.put(boundName, remoteObject);
-                lookupCount = 0;
             }
 
             catch (java.rmi.ConnectIOException e)
@@ -236,7 +332,7 @@ public class RMIRegistryEndpoint extends RMIEndpoint
                 {
                     InvalidClassException invalidClassException = (InvalidClassException)cause;
 
-                    if (lookupCount > maxLookupCount || !cause.getMessage().contains("serialVersionUID"))
+                    if (uidCount > maxLookupCount || !cause.getMessage().contains("serialVersionUID"))
                     {
                         ExceptionHandler.invalidClassException(invalidClassException);
                     }
@@ -247,7 +343,6 @@ public class RMIRegistryEndpoint extends RMIEndpoint
                         long serialVersionUID = RMGUtils.getSerialVersionUID(invalidClassException);
 
                         CodebaseCollector.addSerialVersionUID(className, serialVersionUID);
-                        lookupCount += 1;
                     }
 
                     catch (Exception e1)
@@ -255,7 +350,7 @@ public class RMIRegistryEndpoint extends RMIEndpoint
                         ExceptionHandler.invalidClassException(invalidClassException);
                     }
 
-                    return this.lookup(boundName);
+                    return this.lookup(boundName, uidCount + 1);
                 }
 
                 else if (e instanceof UnmarshalException && e.getMessage().contains("Transport return code invalid"))
@@ -283,6 +378,37 @@ public class RMIRegistryEndpoint extends RMIEndpoint
         return RemoteObjectWrapper.getInstance(remoteObject, boundName);
     }
 
+    /**
+     * Performs the lookup operation on the RMI registry. If JFR records lookup events, an event is
+     * emitted for the lookup.
+     *
+     * @param boundName name to lookup within the registry
+     * @return Remote object that is bound to the specified name
+     * @throws RemoteException if the lookup fails
+     * @throws NotBoundException if the bound name does not exist
+     */
+    private Remote registryLookup(String boundName) throws RemoteException, NotBoundException
+    {
+        Object event = FlightEvents.begin(FlightEvents.Type.LOOKUP);
+        Throwable outcome = null;
+
+        try
+        {
+            return rmiRegistry.lookup(boundName);
+        }
+
+        catch (Throwable t)
+        {
+            outcome = t;
+            throw t;
+        }
+
+        finally
+        {
+            FlightEvents.lookup(event, host + ":" + port, boundName, outcome);
+        }
+    }
+
     /**
      * Return the Remote for the specified bound name from cache or null if it is not available.
      *
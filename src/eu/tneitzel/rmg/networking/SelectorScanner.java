@@ -0,0 +1,891 @@
+package eu.tneitzel.rmg.networking;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.StandardCharsets;
+import java.rmi.server.ObjID;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Queue;
+
+import eu.tneitzel.rmg.internal.ExceptionHandler;
+import eu.tneitzel.rmg.metrics.Metrics;
+import sun.rmi.transport.TransportConstants;
+
+/**
+ * The SelectorScanner sends single JRMP calls to a large number of endpoints without blocking a thread per
+ * connection. All connections are handled by one Selector and each connection runs through a small state machine
+ * that mirrors the client side of the JRMP handshake:
+ *
+ *      CONNECT     non blocking connect to the target
+ *      HANDSHAKE   send the JRMI magic, the protocol version and the StreamProtocol identifier
+ *      ACK         read the ProtocolAck containing the endpoint of the client as seen by the server
+ *      CALL        send the client endpoint followed by the call headers (ObjID, operation and hash)
+ *      RETURN      read the return headers and the class names of the returned exceptions
+ *
+ * Since the client speaks first in JRMP as well as in TLS, a connection cannot be upgraded to TLS after the plain
+ * text handshake was sent. Instead, the response to the handshake is used to classify the endpoint. TLS endpoints
+ * answer the plain text handshake with a TLS alert record or close the connection before sending any data, whereas
+ * other services either send non JRMP data or do not answer at all. Only endpoints of the first kind are reported
+ * as Status.TLS and need to be probed again by using a TLS connection.
+ *
+ * The calls sent by the SelectorScanner do not contain any arguments. They are only useful to identify RMI
+ * endpoints and well known remote objects by the exception class that is returned by the server, e.g. a
+ * NoSuchObjectException for a non existing ObjID. The exception itself is never deserialized. Instead, the class
+ * name is parsed from the beginning of the serialization stream.
+ *
+ * A probe can send multiple calls over the same connection. RMI servers process calls on a connection strictly
+ * sequential and the calls are written back to back after the handshake, as done by the GuessingPipeline. Since
+ * the returned exceptions are not deserialized, the start of the next return is located by searching for the
+ * return header (Return operation followed by a new object stream and the return block data). This is used for
+ * fingerprinting, where the registry, the DGC and the activator are checked over a single connection.
+ *
+ * The number of connections that are in flight at the same time is limited globally and per host. Additional probes
+ * are queued and are started as soon as other connections finish. Probes can also be enqueued from within result
+ * handlers. The SelectorScanner is not thread safe. Probes need to be added before run is called or from within a
+ * result handler.
+ *
+ * @author Tobias Neitzel (@qtc_de)
+ */
+@SuppressWarnings("restriction")
+public class SelectorScanner
+{
+    private int active;
+    private int waiting;
+    private final int hostLimit;
+    private final int maxConnections;
+    private final int readTimeout;
+    private final int connectTimeout;
+    private final Deque<Probe> pending;
+    private final Map<InetAddress, HostSlots> hosts;
+    private final Map<String, byte[]> calls;
+
+    private static final int BUFFER_SIZE = 1024;
+    private static final byte TLS_ALERT = 0x15;
+    private static final byte TLS_MAJOR_VERSION = 0x03;
+    private static final int SELECT_INTERVAL = 100;
+    private static final byte[] RETURN_HEADER = new byte[] { 0x51, (byte)0xac, (byte)0xed, 0x00, 0x05, 0x77 };
+
+    private static final ObjID[] FINGERPRINT_OBJIDS = new ObjID[] { new ObjID(0), new ObjID(2), new ObjID(1) };
+    private static final int[] FINGERPRINT_OPS = new int[] { 22, 22, -1 };
+
+    /**
+     * Possible outcomes of a probe.
+     *
+     * @author Tobias Neitzel (@qtc_de)
+     */
+    public enum Status
+    {
+        /** the connection was refused or could not be established within the connect timeout */
+        CLOSED,
+        /** the connection was established, but the endpoint did not answer like an RMI endpoint */
+        NO_JRMP,
+        /** the endpoint answered the JRMP handshake like a TLS endpoint */
+        TLS,
+        /** the endpoint answered with a JRMP return */
+        RETURN,
+    }
+
+    /**
+     * Handler that is called for each finished probe. Handlers are called by the thread that executes
+     * run and are allowed to enqueue new probes.
+     *
+     * @author Tobias Neitzel (@qtc_de)
+     */
+    public interface ResultHandler
+    {
+        /**
+         * Called when a probe finished.
+         *
+         * @param status outcome of the probe
+         * @param exception class name of the exception returned by the server. Only set for Status.RETURN
+         *                  and null if the call returned without an exception.
+         */
+        void handle(Status status, String exception);
+    }
+
+    /**
+     * Handler that is called for each finished fingerprint probe. Handlers are called by the thread that
+     * executes run and are allowed to enqueue new probes.
+     *
+     * @author Tobias Neitzel (@qtc_de)
+     */
+    public interface FingerprintHandler
+    {
+        /**
+         * Called when a fingerprint probe finished.
+         *
+         * @param status outcome of the probe
+         * @param fingerprint fingerprint of the endpoint. Only set for Status.RETURN
+         */
+        void handle(Status status, Fingerprint fingerprint);
+    }
+
+    /**
+     * Source of probes that is queried by run whenever the scanner has free connection slots and no
+     * pending probes. This allows large scans to create their probes on demand instead of enqueuing
+     * all of them upfront.
+     *
+     * @author Tobias Neitzel (@qtc_de)
+     */
+    public interface ProbeSource
+    {
+        /**
+         * Enqueue the next probe(s) on the specified scanner.
+         *
+         * @param scanner scanner to enqueue the probes on
+         * @return false if the source is exhausted, true otherwise
+         */
+        boolean next(SelectorScanner scanner);
+    }
+
+    /**
+     * Create a new SelectorScanner.
+     *
+     * @param maxConnections maximum number of connections that are in flight at the same time
+     * @param hostLimit maximum number of connections to the same host. Values smaller than one disable the limit
+     * @param readTimeout timeout in milliseconds for the server responses
+     * @param connectTimeout timeout in milliseconds for the initial connect
+     */
+    public SelectorScanner(int maxConnections, int hostLimit, int readTimeout, int connectTimeout)
+    {
+        this.active = 0;
+        this.waiting = 0;
+        this.maxConnections = Math.max(maxConnections, 1);
+        this.hostLimit = (hostLimit < 1) ? this.maxConnections : hostLimit;
+        this.readTimeout = readTimeout;
+        this.connectTimeout = connectTimeout;
+        this.pending = new ArrayDeque<Probe>();
+        this.hosts = new HashMap<InetAddress, HostSlots>();
+        this.calls = new HashMap<String, byte[]>();
+    }
+
+    /**
+     * Enqueue a new probe. The probe opens a new connection to the specified address and sends a call with
+     * the specified ObjID, operation number and method hash.
+     *
+     * @param address address of the target endpoint
+     * @param objID ObjID to send the call to
+     * @param op operation number to use
+     * @param hash method hash to use
+     * @param handler handler that is called with the outcome of the probe
+     */
+    public void probe(InetSocketAddress address, ObjID objID, int op, long hash, ResultHandler handler)
+    {
+        byte[] call = calls.computeIfAbsent(objID + ":" + op + ":" + hash, k -> createCall(objID, op, hash));
+        pending.add(new Probe(address, call, 1, probe -> handler.handle(probe.status, probe.exceptions[0])));
+    }
+
+    /**
+     * Enqueue a new fingerprint probe. The probe opens a new connection to the specified address and sends
+     * calls to the registry, the DGC and the activator ObjID over it. Operation numbers are chosen so that
+     * existing remote objects return an exception without performing any action.
+     *
+     * @param address address of the target endpoint
+     * @param handler handler that is called with the outcome of the probe
+     */
+    public void fingerprint(InetSocketAddress address, FingerprintHandler handler)
+    {
+        byte[] call = calls.computeIfAbsent("fingerprint", k -> createCalls(FINGERPRINT_OBJIDS, FINGERPRINT_OPS));
+
+        pending.add(new Probe(address, call, FINGERPRINT_OBJIDS.length, probe -> {
+
+            Fingerprint fingerprint = null;
+
+            if (probe.status == Status.RETURN)
+            {
+                fingerprint = new Fingerprint(address.getHostString(), address.getPort(), false, probe.ackHost, probe.ackPort,
+                                              Fingerprint.exists(probe.exceptions[0]), Fingerprint.exists(probe.exceptions[1]),
+                                              Fingerprint.exists(probe.exceptions[2]), probe.ackTime - probe.startTime,
+                                              probe.endTime - probe.ackTime);
+            }
+
+            handler.handle(probe.status, fingerprint);
+        }));
+    }
+
+    /**
+     * Run the selector loop until all enqueued probes, including probes that were enqueued by result
+     * handlers, are finished.
+     *
+     * @throws IOException if the selector cannot be opened
+     */
+    public void run() throws IOException
+    {
+        run(null);
+    }
+
+    /**
+     * Run the selector loop until all enqueued probes and all probes of the specified source are finished.
+     * Probes that target a host that already reached its connection limit are parked until one of the
+     * connections to the host finishes. To keep memory usage bounded, the source is not queried while too
+     * many probes are parked.
+     *
+     * @param source source to obtain further probes from. May be null
+     * @throws IOException if the selector cannot be opened
+     */
+    public void run(ProbeSource source) throws IOException
+    {
+        boolean exhausted = (source == null);
+
+        try (Selector selector = Selector.open())
+        {
+            while (!exhausted || !pending.isEmpty() || active != 0 || waiting != 0)
+            {
+                while (active < maxConnections)
+                {
+                    if (pending.isEmpty())
+                    {
+                        if (exhausted || waiting > maxConnections * 4)
+                        {
+                            break;
+                        }
+
+                        exhausted = !source.next(this);
+                        continue;
+                    }
+
+                    Probe probe = pending.poll();
+
+                    if (acquire(probe))
+                    {
+                        probe.start(selector);
+                    }
+                }
+
+                selector.select(SELECT_INTERVAL);
+                Iterator<SelectionKey> it = selector.selectedKeys().iterator();
+
+                while (it.hasNext())
+                {
+                    SelectionKey key = it.next();
+                    it.remove();
+
+                    ((Probe)key.attachment()).process(key);
+                }
+
+                long now = System.nanoTime();
+
+                for (SelectionKey key : selector.keys())
+                {
+                    Probe probe = (Probe)key.attachment();
+
+                    if (probe != null && now - probe.deadline > 0)
+                    {
+                        probe.timeout();
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Attempt to obtain a connection slot for the host of the specified probe. If the host already
+     * reached its limit, the probe is parked until a slot becomes available.
+     *
+     * @param probe probe that should be started
+     * @return true if a slot was obtained, false if the probe was parked
+     */
+    private boolean acquire(Probe probe)
+    {
+        HostSlots slots = hosts.computeIfAbsent(probe.address.getAddress(), k -> new HostSlots());
+
+        if (slots.active >= hostLimit)
+        {
+            slots.parked.add(probe);
+            waiting += 1;
+
+            return false;
+        }
+
+        slots.active += 1;
+        return true;
+    }
+
+    /**
+     * Release the connection slot of the specified probe. If probes are parked for the same host,
+     * the next one is moved to the front of the pending queue.
+     *
+     * @param probe probe that finished
+     */
+    private void release(Probe probe)
+    {
+        InetAddress host = probe.address.getAddress();
+        HostSlots slots = hosts.get(host);
+
+        slots.active -= 1;
+
+        if (!slots.parked.isEmpty())
+        {
+            pending.addFirst(slots.parked.poll());
+            waiting -= 1;
+        }
+
+        else if (slots.active == 0)
+        {
+            hosts.remove(host);
+        }
+    }
+
+    /**
+     * Create the call header that is sent after the client endpoint. The header is created by an
+     * ObjectOutputStream in the same way as StreamRemoteCall does it.
+     *
+     * @param objID ObjID to send the call to
+     * @param op operation number to use
+     * @param hash method hash to use
+     * @return call header
+     */
+    private static byte[] createCall(ObjID objID, int op, long hash)
+    {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+
+        try
+        {
+            bos.write(TransportConstants.Call);
+
+            ObjectOutputStream oos = new ObjectOutputStream(bos);
+            objID.write(oos);
+            oos.writeInt(op);
+            oos.writeLong(hash);
+            oos.flush();
+        }
+
+        catch (IOException e)
+        {
+            ExceptionHandler.internalError("SelectorScanner.createCall", "Unable to create call header.");
+        }
+
+        return bos.toByteArray();
+    }
+
+    /**
+     * Create the concatenated call headers for the specified ObjIDs and operation numbers. All calls use
+     * a method hash of zero.
+     *
+     * @param objIDs ObjIDs to send the calls to
+     * @param ops operation numbers to use
+     * @return concatenated call headers
+     */
+    private static byte[] createCalls(ObjID[] objIDs, int[] ops)
+    {
+        ByteArrayOutputStream bos = new ByteArrayOutputStream();
+
+        for (int ctr = 0; ctr < objIDs.length; ctr++)
+        {
+            byte[] call = createCall(objIDs[ctr], ops[ctr], 0L);
+            bos.write(call, 0, call.length);
+        }
+
+        return bos.toByteArray();
+    }
+
+    /**
+     * Callback that is invoked when a probe finished.
+     */
+    private interface ProbeCallback
+    {
+        /**
+         * @param probe the finished probe
+         */
+        void done(Probe probe);
+    }
+
+    /**
+     * States of the per connection state machine.
+     */
+    private enum State
+    {
+        CONNECT,
+        HANDSHAKE,
+        ACK,
+        CALL,
+        RETURN,
+    }
+
+    /**
+     * A Probe represents a single connection attempt and holds the state of the corresponding connection.
+     *
+     * @author Tobias Neitzel (@qtc_de)
+     */
+    private class Probe
+    {
+        private final byte[] call;
+        private final int callCount;
+        private final InetSocketAddress address;
+        private final ProbeCallback callback;
+
+        private State state;
+        private long deadline;
+        private ByteBuffer in;
+        private ByteBuffer out;
+        private SocketChannel channel;
+
+        private int received;
+        private boolean skipping;
+
+        private Status status;
+        private String[] exceptions;
+        private String ackHost;
+        private int ackPort;
+
+        private long startTime;
+        private long ackTime;
+        private long endTime;
+
+        /**
+         * Create a new probe.
+         *
+         * @param address address of the target endpoint
+         * @param call call headers to send after the handshake
+         * @param callCount number of calls contained in the call headers
+         * @param callback callback that is invoked when the probe finished
+         */
+        Probe(InetSocketAddress address, byte[] call, int callCount, ProbeCallback callback)
+        {
+            this.call = call;
+            this.callCount = callCount;
+            this.address = address;
+            this.callback = callback;
+
+            this.ackPort = -1;
+            this.exceptions = new String[callCount];
+        }
+
+        /**
+         * Open the channel, register it on the selector and initiate the connect.
+         *
+         * @param selector selector to register the channel on
+         */
+        void start(Selector selector)
+        {
+            active += 1;
+            state = State.CONNECT;
+            startTime = System.nanoTime();
+            deadline = startTime + connectTimeout * 1_000_000L;
+
+            try
+            {
+                channel = SocketChannel.open();
+                channel.configureBlocking(false);
+
+                SelectionKey key = channel.register(selector, SelectionKey.OP_CONNECT, this);
+
+                if (channel.connect(address))
+                {
+                    connected(key);
+                }
+            }
+
+            catch (IOException | RuntimeException e)
+            {
+                finish(Status.CLOSED);
+            }
+        }
+
+        /**
+         * Process a selected key and advance the state machine.
+         *
+         * @param key selected key of the connection
+         */
+        void process(SelectionKey key)
+        {
+            try
+            {
+                if (state == State.CONNECT)
+                {
+                    try
+                    {
+                        if (!channel.finishConnect())
+                        {
+                            return;
+                        }
+                    }
+
+                    catch (IOException e)
+                    {
+                        finish(Status.CLOSED);
+                        return;
+                    }
+
+                    connected(key);
+                }
+
+                else if (key.isWritable())
+                {
+                    write(key);
+                }
+
+                else if (key.isReadable())
+                {
+                    read(key);
+                }
+            }
+
+            catch (IOException | RuntimeException e)
+            {
+                finish((state == State.ACK && in.position() == 0) ? Status.TLS : Status.NO_JRMP);
+            }
+        }
+
+        /**
+         * Called when the connection was established. Queues the JRMP handshake for sending.
+         *
+         * @param key selection key of the connection
+         * @throws IOException if writing to the channel fails
+         */
+        private void connected(SelectionKey key) throws IOException
+        {
+            ByteBuffer handshake = ByteBuffer.allocate(7);
+
+            handshake.putInt(TransportConstants.Magic);
+            handshake.putShort(TransportConstants.Version);
+            handshake.put(TransportConstants.StreamProtocol);
+            handshake.flip();
+
+            Metrics.connectionOpened();
+
+            in = ByteBuffer.allocate(BUFFER_SIZE);
+            out = handshake;
+            state = State.HANDSHAKE;
+            deadline = System.nanoTime() + readTimeout * 1_000_000L;
+
+            write(key);
+        }
+
+        /**
+         * Write pending output to the channel. Once all output was written, the connection waits for
+         * the server response.
+         *
+         * @param key selection key of the connection
+         * @throws IOException if writing to the channel fails
+         */
+        private void write(SelectionKey key) throws IOException
+        {
+            Metrics.bytesSent(channel.write(out));
+
+            if (out.hasRemaining())
+            {
+                key.interestOps(SelectionKey.OP_WRITE);
+                return;
+            }
+
+            state = (state == State.HANDSHAKE) ? State.ACK : State.RETURN;
+            key.interestOps(SelectionKey.OP_READ);
+        }
+
+        /**
+         * Read available input from the channel and attempt to parse the expected server messages.
+         *
+         * @param key selection key of the connection
+         * @throws IOException if reading from the channel fails
+         */
+        private void read(SelectionKey key) throws IOException
+        {
+            int count = channel.read(in);
+            Metrics.bytesReceived(count);
+
+            if (state == State.ACK)
+            {
+                ByteBuffer view = in.duplicate();
+                view.flip();
+
+                readAck(key, view);
+            }
+
+            else
+            {
+                readReturns();
+            }
+
+            if (state == State.ACK && count < 0 && in.position() == 0)
+            {
+                finish(Status.TLS);
+            }
+
+            else if (state == State.ACK || state == State.RETURN)
+            {
+                if (count < 0 || !in.hasRemaining())
+                {
+                    finish(Status.NO_JRMP);
+                }
+            }
+        }
+
+        /**
+         * Parse the ProtocolAck of the server. The ProtocolAck contains the host and port of the client as seen
+         * by the server. The client answers with its own endpoint, where the host is the one suggested by the
+         * server and the port is zero, just like the regular RMI client does. The call headers are sent right away.
+         *
+         * @param key selection key of the connection
+         * @param view input received so far
+         * @throws IOException if writing to the channel fails
+         */
+        private void readAck(SelectionKey key, ByteBuffer view) throws IOException
+        {
+            if (!view.hasRemaining())
+            {
+                return;
+            }
+
+            byte first = view.get();
+
+            if (first == TLS_ALERT)
+            {
+                if (view.hasRemaining())
+                {
+                    finish((view.get() == TLS_MAJOR_VERSION) ? Status.TLS : Status.NO_JRMP);
+                }
+
+                return;
+            }
+
+            if (first != TransportConstants.ProtocolAck)
+            {
+                finish(Status.NO_JRMP);
+                return;
+            }
+
+            if (view.remaining() < 2)
+            {
+                return;
+            }
+
+            int length = view.getShort() & 0xffff;
+
+            if (view.remaining() < length + 4)
+            {
+                return;
+            }
+
+            byte[] host = new byte[length];
+            view.get(host);
+
+            ackHost = new String(host, StandardCharsets.UTF_8);
+            ackPort = view.getInt();
+            ackTime = System.nanoTime();
+
+            ByteArrayOutputStream bos = new ByteArrayOutputStream();
+            DataOutputStream dos = new DataOutputStream(bos);
+
+            dos.writeUTF(ackHost);
+            dos.writeInt(0);
+            dos.write(call);
+
+            in.clear();
+            out = ByteBuffer.wrap(bos.toByteArray());
+            state = State.CALL;
+            deadline = System.nanoTime() + readTimeout * 1_000_000L;
+
+            write(key);
+        }
+
+        /**
+         * Parse the returns received so far. After the exception class of a return was parsed, the remaining
+         * data of the return is skipped until the header of the next return is found. Consumed input is removed
+         * from the buffer.
+         */
+        private void readReturns()
+        {
+            in.flip();
+
+            while (state == State.RETURN)
+            {
+                if (skipping)
+                {
+                    int index = findReturnHeader();
+
+                    if (index < 0)
+                    {
+                        in.position(Math.max(in.position(), in.limit() - RETURN_HEADER.length + 1));
+                        break;
+                    }
+
+                    in.position(index);
+                    skipping = false;
+                }
+
+                in.mark();
+
+                if (!readReturn())
+                {
+                    if (state == State.RETURN)
+                    {
+                        in.reset();
+                    }
+
+                    break;
+                }
+
+                received += 1;
+                skipping = true;
+
+                if (received == callCount)
+                {
+                    endTime = System.nanoTime();
+                    finish(Status.RETURN);
+                }
+            }
+
+            in.compact();
+        }
+
+        /**
+         * Search the input for the next return header.
+         *
+         * @return position of the next return header or -1 if no complete header was found
+         */
+        private int findReturnHeader()
+        {
+            outer:
+            for (int pos = in.position(); pos <= in.limit() - RETURN_HEADER.length; pos++)
+            {
+                for (int ctr = 0; ctr < RETURN_HEADER.length; ctr++)
+                {
+                    if (in.get(pos + ctr) != RETURN_HEADER[ctr])
+                    {
+                        continue outer;
+                    }
+                }
+
+                return pos;
+            }
+
+            return -1;
+        }
+
+        /**
+         * Parse a single return header. A return starts with the Return transport operation followed by an
+         * object stream. The first block data contains the return type and a UID. For exceptional returns, the
+         * exception object follows, which starts with the class descriptor of the exception class.
+         *
+         * @return true if the return was parsed, false if more input is required or the input is invalid
+         */
+        private boolean readReturn()
+        {
+            if (!in.hasRemaining())
+            {
+                return false;
+            }
+
+            if (in.get() != TransportConstants.Return)
+            {
+                finish(Status.NO_JRMP);
+                return false;
+            }
+
+            if (in.remaining() < 6)
+            {
+                return false;
+            }
+
+            if (in.getInt() != 0xaced0005 || in.get() != 0x77)
+            {
+                finish(Status.NO_JRMP);
+                return false;
+            }
+
+            int blockLength = in.get() & 0xff;
+
+            if (in.remaining() < blockLength)
+            {
+                return false;
+            }
+
+            byte returnType = in.get();
+            in.position(in.position() + blockLength - 1);
+
+            if (returnType != TransportConstants.ExceptionalReturn)
+            {
+                exceptions[received] = null;
+                return true;
+            }
+
+            if (in.remaining() < 4)
+            {
+                return false;
+            }
+
+            if (in.get() != 0x73 || in.get() != 0x72)
+            {
+                exceptions[received] = "unknown";
+                return true;
+            }
+
+            int length = in.getShort() & 0xffff;
+
+            if (in.remaining() < length)
+            {
+                return false;
+            }
+
+            byte[] className = new byte[length];
+            in.get(className);
+
+            exceptions[received] = new String(className, StandardCharsets.UTF_8);
+            return true;
+        }
+
+        /**
+         * Called when the deadline of the current state is exceeded.
+         */
+        void timeout()
+        {
+            finish((state == State.CONNECT) ? Status.CLOSED : Status.NO_JRMP);
+        }
+
+        /**
+         * Close the connection and invoke the callback of the probe. Only the first call has an effect.
+         *
+         * @param result outcome of the probe
+         */
+        private void finish(Status result)
+        {
+            if (state == null)
+            {
+                return;
+            }
+
+            state = null;
+            status = result;
+            active -= 1;
+            release(this);
+
+            try
+            {
+                if (channel != null)
+                {
+                    channel.close();
+                }
+            }
+
+            catch (IOException e) {}
+
+            Metrics.record(Metrics.Call.SCAN_PROBE, startTime, result.name());
+            callback.done(this);
+        }
+    }
+
+    /**
+     * Connection slots of a single host. Holds the number of active connections and the probes that
+     * wait for a free slot.
+     *
+     * @author Tobias Neitzel (@qtc_de)
+     */
+    private static class HostSlots
+    {
+        private int active = 0;
+        private final Queue<Probe> parked = new ArrayDeque<Probe>();
+    }
+}
@@ -1,10 +1,8 @@
 package eu.tneitzel.rmg.networking;
 
 import java.io.IOException;
-import java.net.InetSocketAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
-import java.net.SocketAddress;
 import java.rmi.server.RMISocketFactory;
 
 /**
@@ -45,17 +43,12 @@ public class TimeoutSocketFactory extends RMISocketFactory {
     }
 
     /**
-     * Creates a socket by using the default factory and sets the read timeout on it.
-     * Then the socket is connected to the target using the specified connect timeout.
+     * Creates a socket and sets the read timeout on it. Then the socket is connected to the
+     * target using the specified connect timeout. When metrics are enabled, the created socket
+     * is a CountingSocket.
      */
     public Socket createSocket(String host, int port) throws IOException
     {
-        Socket sock = new Socket();
-        sock.setSoTimeout(readTimeout);
-
-        SocketAddress sockAddr = new InetSocketAddress(host, port);
-        sock.connect(sockAddr, connectTimeout);
-
-        return sock;
+        return CountingSocket.connect(host, port, readTimeout, connectTimeout);
     }
 }
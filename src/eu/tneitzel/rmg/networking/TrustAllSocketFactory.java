@@ -74,6 +74,11 @@ public class TrustAllSocketFactory implements RMIClientSocketFactory {
     @Override
     public Socket createSocket(String host, int port) throws IOException
     {
+        if (CountingSocket.isActive())
+        {
+            return CountingSocket.connectSsl(fax, host, port, readTimeout, connectTimeout);
+        }
+
         Socket sock = fax.createSocket();
         sock.setSoTimeout(readTimeout);
 
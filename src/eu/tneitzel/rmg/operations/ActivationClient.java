@@ -8,6 +8,7 @@ import eu.tneitzel.rmg.internal.MethodArguments;
 import eu.tneitzel.rmg.internal.RMIComponent;
 import eu.tneitzel.rmg.io.Logger;
 import eu.tneitzel.rmg.io.MaliciousOutputStream;
+import eu.tneitzel.rmg.networking.Fingerprint;
 import eu.tneitzel.rmg.networking.RMIEndpoint;
 import javassist.ClassPool;
 import javassist.CtClass;
@@ -87,6 +88,7 @@ public class ActivationClient
                 Logger.printlnPlainYellow("(activator is present).");
                 Logger.printMixedBlue("  --> Deserialization", "allowed");
                 Logger.printlnPlainMixedRed("\t - Vulnerability Status:", "Vulnerable");
+                Logger.recordStatus("Vulnerability", "Vulnerable");
                 this.enumCodebase();
 
             } else if( t instanceof java.io.InvalidClassException || t instanceof java.lang.UnsupportedOperationException ) {
@@ -94,6 +96,7 @@ public class ActivationClient
                 Logger.printlnPlainYellow("(activator is present).");
                 Logger.printMixedBlue("  --> Deserialization", "filtered");
                 Logger.printlnPlainMixedPurple("\t - Vulnerability Status:", "Undecided");
+                Logger.recordStatus("Vulnerability", "Undecided");
                 this.enumCodebase();
 
             } else {
@@ -106,6 +109,32 @@ public class ActivationClient
         }
     }
 
+    /**
+     * Checks whether an activator endpoint is present, but uses the specified scan fingerprint if available.
+     * When the fingerprint shows that no Activator is present, the activate call is skipped. Otherwise, the
+     * regular enumeration is performed.
+     *
+     * @param fingerprint scan fingerprint of the endpoint (may be null)
+     */
+    public void enumActivator(Fingerprint fingerprint)
+    {
+        if (fingerprint == null || fingerprint.hasActivator())
+        {
+            enumActivator();
+            return;
+        }
+
+        Logger.printlnBlue("RMI ActivationSystem enumeration:");
+        Logger.lineBreak();
+        Logger.increaseIndent();
+
+        Logger.printMixedYellow("- Scan fingerprint shows", "no activator", "on the endpoint ");
+        Logger.printlnPlainYellow("(activator not present).");
+        Logger.statusDefault();
+
+        Logger.decreaseIndent();
+    }
+
     /**
      * Dispatches an activate call using an Integer instead of the actually expected ActivationID. Furthermore,
      * then Integer is annotated with an invalid URL as codebase String. If the remote server parses the codebase
@@ -124,11 +153,13 @@ public class ActivationClient
             if( t instanceof java.net.MalformedURLException) {
                 Logger.printMixedBlue("  --> Client codebase", "enabled");
                 Logger.printlnPlainMixedRed("\t - Configuration Status:", "Non Default");
+                Logger.recordStatus("Configuration", "Non Default");
                 ExceptionHandler.showStackTrace(e);
 
             } else if( t instanceof java.io.InvalidClassException || t instanceof java.lang.UnsupportedOperationException ) {
                 Logger.printMixedBlue("  --> Client codebase", "filtered");
                 Logger.printlnPlainMixedPurple("\t - Configuration Status:", "Undecided");
+                Logger.recordStatus("Configuration", "Undecided");
 
             } else {
                 ExceptionHandler.unexpectedException(e, "codebase", "enumeration", false);
@@ -137,6 +168,7 @@ public class ActivationClient
         } catch( java.lang.IllegalArgumentException e ) {
             Logger.printMixedBlue("  --> Client codebase", "disabled");
             Logger.printlnPlainMixedGreen("\t - Configuration Status:", "Current Default");
+            Logger.recordStatus("Configuration", "Current Default");
             ExceptionHandler.showStackTrace(e);
 
         } catch( Exception e ) {
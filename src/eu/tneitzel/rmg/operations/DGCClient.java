@@ -8,6 +8,7 @@ import eu.tneitzel.rmg.internal.MethodArguments;
 import eu.tneitzel.rmg.internal.RMIComponent;
 import eu.tneitzel.rmg.io.Logger;
 import eu.tneitzel.rmg.io.MaliciousOutputStream;
+import eu.tneitzel.rmg.networking.Fingerprint;
 import eu.tneitzel.rmg.networking.RMIEndpoint;
 import eu.tneitzel.rmg.utils.DefinitelyNonExistingClass;
 
@@ -138,6 +139,31 @@ public class DGCClient
         }
     }
 
+    /**
+     * Performs the Security Manager enumeration, but uses the specified scan fingerprint if available. When the
+     * fingerprint shows that no DGC is present, the DGC call is skipped and the status remains undecided.
+     *
+     * @param callName DGC call to use for the enumeration
+     * @param fingerprint scan fingerprint of the endpoint (may be null)
+     */
+    public void enumSecurityManager(String callName, Fingerprint fingerprint)
+    {
+        if (fingerprint == null || fingerprint.hasDgc())
+        {
+            enumSecurityManager(callName);
+            return;
+        }
+
+        Logger.printlnBlue("RMI Security Manager enumeration:");
+        Logger.lineBreak();
+        Logger.increaseIndent();
+
+        dgcNotPresent();
+        Logger.statusUndecided("Configuration");
+
+        Logger.decreaseIndent();
+    }
+
     /**
      * Checks for deserialization filters on the DGC endpoint. This is pretty straight forward. Just sends a
      * java.util.HashMap during a DGC call and checks whether the class is rejected.
@@ -196,6 +222,40 @@ public class DGCClient
         }
     }
 
+    /**
+     * Performs the JEP290 enumeration, but uses the specified scan fingerprint if available. When the fingerprint
+     * shows that no DGC is present, the DGC call is skipped and the status remains undecided.
+     *
+     * @param callName the DGC call to use for the operation (clean|dirty)
+     * @param fingerprint scan fingerprint of the endpoint (may be null)
+     */
+    public void enumJEP290(String callName, Fingerprint fingerprint)
+    {
+        if (fingerprint == null || fingerprint.hasDgc())
+        {
+            enumJEP290(callName);
+            return;
+        }
+
+        Logger.printlnBlue("RMI server JEP290 enumeration:");
+        Logger.lineBreak();
+        Logger.increaseIndent();
+
+        dgcNotPresent();
+        Logger.statusUndecided("Vulnerability");
+
+        Logger.decreaseIndent();
+    }
+
+    /**
+     * Prints that the enumeration was skipped, as the scan fingerprint shows no DGC on the endpoint.
+     */
+    private static void dgcNotPresent()
+    {
+        Logger.printMixedYellow("- Scan fingerprint shows", "no DGC", "on the endpoint ");
+        Logger.printlnPlainYellow("(enumeration skipped).");
+    }
+
     /**
      * Invokes a DGC method with a user controlled codebase as class annotation. The codebase is already set
      * by the ArgumentParser during the startup of the program. This method was never successfully tested, as
@@ -1,11 +1,15 @@
 package eu.tneitzel.rmg.operations;
 
+import java.io.File;
 import java.io.IOException;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
 import java.rmi.NoSuchObjectException;
 import java.rmi.server.ObjID;
 import java.util.EnumSet;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import javax.management.remote.rmi.RMIServer;
@@ -14,16 +18,22 @@ import eu.tneitzel.rmg.endpoints.KnownEndpoint;
 import eu.tneitzel.rmg.endpoints.KnownEndpointHolder;
 import eu.tneitzel.rmg.exceptions.UnexpectedCharacterException;
 import eu.tneitzel.rmg.internal.ArgumentHandler;
+import eu.tneitzel.rmg.internal.CodebaseCollector;
 import eu.tneitzel.rmg.internal.ExceptionHandler;
 import eu.tneitzel.rmg.internal.MethodCandidate;
 import eu.tneitzel.rmg.internal.RMGOption;
 import eu.tneitzel.rmg.internal.RMIComponent;
+import eu.tneitzel.rmg.io.FingerprintFile;
 import eu.tneitzel.rmg.io.Formatter;
+import eu.tneitzel.rmg.io.JsonlWriter;
 import eu.tneitzel.rmg.io.Logger;
 import eu.tneitzel.rmg.io.SampleWriter;
+import eu.tneitzel.rmg.io.CandidateStream;
 import eu.tneitzel.rmg.io.WordlistHandler;
+import eu.tneitzel.rmg.networking.Fingerprint;
 import eu.tneitzel.rmg.networking.RMIEndpoint;
 import eu.tneitzel.rmg.networking.RMIRegistryEndpoint;
+import eu.tneitzel.rmg.utils.HostList;
 import eu.tneitzel.rmg.utils.RMGUtils;
 import eu.tneitzel.rmg.utils.RemoteObjectWrapper;
 import eu.tneitzel.rmg.utils.RogueJMX;
@@ -48,11 +58,17 @@ public class Dispatcher
 {
     private ArgumentHandler p;
 
+    private String host = null;
+    private int port = -1;
+
     private String[] boundNames = null;
     private MethodCandidate candidate = null;
     private RMIRegistryEndpoint rmiReg = null;
     private RemoteObjectWrapper[] remoteObjects = null;
 
+    private static final int STREAM_CAPACITY = 1024;
+    private static Map<String, Fingerprint> fingerprints = null;
+
     /**
      * Creates the dispatcher object.
      *
@@ -63,6 +79,21 @@ public class Dispatcher
         this.p = p;
     }
 
+    /**
+     * Creates a dispatcher object that targets the specified host and port instead of the target
+     * that was specified on the command line.
+     *
+     * @param p ArgumentParser object that contains the current command line specifications
+     * @param host target host to use
+     * @param port target port to use
+     */
+    public Dispatcher(ArgumentHandler p, String host, int port)
+    {
+        this.p = p;
+        this.host = host;
+        this.port = port;
+    }
+
     /**
      * Obtains a list of bound names from the RMI registry and stores it into an object attribute.
      *
@@ -81,41 +112,26 @@ public class Dispatcher
     /**
      * Performs the RMI lookup operation to request remote objects from the RMI registry. If no bound name
      * was specified on the command line, all registered bound names within the RMI registry are looked up.
-     * The result is stored within an object attribute.
-     *
-     * It was observed that using --serial-version-uid option can cause an invalid transport return code
-     * exception. This seems to be some kind of race condition and cannot be reproduced reliably. The lookup
-     * operation on the RMI registry does pass only this UnmarshalException to the caller. If this is the case,
-     * we just retry a few times.
+     * The result is stored within an object attribute. Lookups are performed concurrently and failing lookups
+     * are retried per bound name by the RMIRegistryEndpoint.
      *
      * @throws java.rmi.NoSuchObjectException is thrown when the specified RMI endpoint is not an RMI registry
      */
     private void obtainBoundObjects() throws NoSuchObjectException
     {
-        int retryCount = 0;
-
         if (boundNames == null)
         {
             obtainBoundNames();
         }
 
-        while (retryCount < 5)
+        try
         {
-            try
-            {
-                remoteObjects = getRegistry().lookup(boundNames);
-                return;
-            }
-
-            catch (java.rmi.UnmarshalException e)
-            {
-                retryCount += 1;
-            }
+            remoteObjects = getRegistry().lookup(boundNames);
+        }
 
-            catch (Exception e)
-            {
-                ExceptionHandler.unexpectedException(e, "lookup", "operation", true);
-            }
+        catch (Exception e)
+        {
+            ExceptionHandler.unexpectedException(e, "lookup", "operation", true);
         }
     }
 
@@ -134,6 +150,7 @@ public class Dispatcher
         try
         {
             candidate = new MethodCandidate(signature);
+            candidate.getMethod();
         }
 
         catch (CannotCompileException | NotFoundException e)
@@ -143,15 +160,19 @@ public class Dispatcher
     }
 
     /**
-     * Creates an RMIEndpoint object from the target host and port specified on the command line.
-     * Additionally initializes the method candidate attribute if a method signature was specified.
+     * Creates an RMIEndpoint object from the target host and port specified on the command line, or from
+     * the target that was passed to the constructor. Additionally initializes the method candidate attribute
+     * if a method signature was specified.
      *
      * @return RMIEndpoint to the host:port configuration specified on the command line
      */
     public RMIEndpoint getRMIEndpoint()
     {
-        int port = RMGOption.require(RMGOption.TARGET_PORT);
-        String host = RMGOption.require(RMGOption.TARGET_HOST);
+        if (host == null)
+        {
+            port = RMGOption.require(RMGOption.TARGET_PORT);
+            host = RMGOption.require(RMGOption.TARGET_HOST);
+        }
 
         this.createMethodCandidate();
         return new RMIEndpoint(host, port);
@@ -334,6 +355,79 @@ public class Dispatcher
         return candidates;
     }
 
+    /**
+     * Parses the user specified wordlist options and creates a corresponding CandidateStream. Used instead of
+     * getCandidates when --stream-wordlists was specified.
+     *
+     * @return CandidateStream that provides the MethodCandidates that should be used during guessing operations
+     */
+    private CandidateStream getCandidateStream()
+    {
+        String wordlistFile = RMGOption.GUESS_WORDLIST_FILE.getValue();
+        String wordlistFolder = RMGOption.GUESS_WORDLIST_FOLDER.getValue();
+        boolean zeroArg = RMGOption.GUESS_ZERO_ARG.getBool();
+
+        WordlistHandler wlHandler = new WordlistHandler(wordlistFile, wordlistFolder, false, zeroArg);
+        return wlHandler.getCandidateStream(STREAM_CAPACITY);
+    }
+
+    /**
+     * Obtain the scan fingerprint for the specified endpoint from the file specified by the --fingerprints
+     * option. The file is read on the first call and shared by all dispatchers. Endpoints are looked up by
+     * the specified host and, if no fingerprint was found, by its IP address. Fingerprints that are older
+     * than 24 hours are ignored.
+     *
+     * @param host host of the endpoint
+     * @param port port of the endpoint
+     * @return fresh Fingerprint of the endpoint or null if none is available
+     */
+    private static synchronized Fingerprint getFingerprint(String host, int port)
+    {
+        if (RMGOption.SCAN_FINGERPRINTS.isNull())
+        {
+            return null;
+        }
+
+        if (fingerprints == null)
+        {
+            String path = RMGOption.SCAN_FINGERPRINTS.getValue();
+
+            try
+            {
+                fingerprints = new FingerprintFile(new File(path)).read();
+            }
+
+            catch (IOException e)
+            {
+                Logger.eprintlnMixedYellow("Unable to read fingerprint file", path);
+                ExceptionHandler.showStackTrace(e);
+                RMGUtils.exit();
+            }
+        }
+
+        Fingerprint fingerprint = fingerprints.get(host + ":" + port);
+
+        if (fingerprint == null)
+        {
+            try
+            {
+                fingerprint = fingerprints.get(InetAddress.getByName(host).getHostAddress() + ":" + port);
+            }
+
+            catch (UnknownHostException e)
+            {
+                return null;
+            }
+        }
+
+        if (fingerprint == null || !fingerprint.isFresh())
+        {
+            return null;
+        }
+
+        return fingerprint;
+    }
+
     /**
      * Dispatches the listen action. Basically just a handover to ysoserial.
      */
@@ -526,11 +620,59 @@ public class Dispatcher
 
     /**
      * Performs rmg's enumeration action. During this action, several different vulnerability types
-     * are enumerated.
+     * are enumerated. If the specified host is a target list, all targets are enumerated by a
+     * FleetEnumerator. Otherwise, the specified target is enumerated directly. If the --jsonl option
+     * was used, the structured result of the enumeration is written to the specified file.
      */
     public void dispatchEnum()
     {
         RMGUtils.enableCodebase();
+
+        String host = RMGOption.require(RMGOption.TARGET_HOST);
+        int port = RMGOption.require(RMGOption.TARGET_PORT);
+
+        if (FleetEnumerator.isTargetList(host))
+        {
+            new FleetEnumerator(p, host, port).run();
+            return;
+        }
+
+        EnumResult result = null;
+        JsonlWriter output = FleetEnumerator.openOutput();
+        boolean parallel = !RMGOption.SSRF.getBool() && RMGOption.SSRFRESPONSE.isNull();
+
+        if (output != null)
+        {
+            result = new EnumResult(host, port);
+        }
+
+        enumerate(result, parallel ? RMGOption.THREADS.getValue() : 1);
+
+        if (output != null)
+        {
+            result.finish();
+            FleetEnumerator.write(output, result);
+            FleetEnumerator.closeOutput(output);
+        }
+    }
+
+    /**
+     * Enumerates the target of the dispatcher. Independent scan actions are executed concurrently by an
+     * EnumExecutor, while their output is still printed in the canonical order. Listing the bound names
+     * is performed on the calling thread, as the remaining registry actions are skipped if no registry
+     * is available.
+     *
+     * If a result object is specified, the outcome of each scan action, the bound names and the codebases
+     * of the target are recorded within it.
+     *
+     * If a fresh scan fingerprint of the target is available via --fingerprints, the activator and DGC
+     * checks are skipped for objects that the fingerprint shows as absent.
+     *
+     * @param result result object to record the enumeration results in (may be null)
+     * @param threads number of threads to use for the scan actions
+     */
+    void enumerate(EnumResult result, int threads)
+    {
         RMIEndpoint rmi = getRMIEndpoint();
 
         Formatter format = new Formatter();
@@ -538,8 +680,35 @@ public class Dispatcher
         RegistryClient registryClient = new RegistryClient(rmi);
         EnumSet<ScanAction> actions = p.getScanActions();
 
-        boolean enumJEP290Bypass = true;
-        boolean marshal = true;
+        boolean ssrf = RMGOption.SSRF.getBool() || RMGOption.SSRFRESPONSE.notNull();
+        Fingerprint fingerprint = ssrf ? null : getFingerprint(rmi.host, rmi.port);
+
+        EnumExecutor executor = new EnumExecutor(threads);
+
+        if (result != null)
+        {
+            Logger.setStatusListener(result::addStatus);
+        }
+
+        EnumExecutor.Task<Void> securityManagerTask = null;
+        EnumExecutor.Task<Void> jep290Task = null;
+        EnumExecutor.Task<Void> activatorTask = null;
+        EnumExecutor.Task<Void> filterBypassTask = null;
+
+        if (actions.contains(ScanAction.SECURITY_MANAGER))
+        {
+            securityManagerTask = executor.submit(() -> dgc.enumSecurityManager(p.getDgcMethod(), fingerprint));
+        }
+
+        if (actions.contains(ScanAction.JEP290))
+        {
+            jep290Task = executor.submit(() -> dgc.enumJEP290(p.getDgcMethod(), fingerprint));
+        }
+
+        if (actions.contains(ScanAction.ACTIVATOR))
+        {
+            activatorTask = executor.submit(() -> new ActivationClient(rmi).enumActivator(fingerprint));
+        }
 
         try
         {
@@ -554,6 +723,7 @@ public class Dispatcher
 
                     Logger.lineBreak();
                     format.listCodebases();
+                    format.listClassGeneration();
                 }
 
                 else
@@ -562,66 +732,146 @@ public class Dispatcher
                     format.listBoundNames(remoteObjects);
                 }
 
+                if (result != null)
+                {
+                    result.addRemoteObjects(remoteObjects);
+                }
+
                 if (RMGOption.SSRFRESPONSE.notNull())
                 {
+                    finishEnumeration(result);
                     return;
                 }
             }
 
+            EnumExecutor.Task<Boolean> marshalTask = executor.completed(true);
+            EnumExecutor.Task<Void> codebaseTask = null;
+            EnumExecutor.Task<Void> localhostBypassTask = null;
+
             if (actions.contains(ScanAction.STRING_MARSHALLING))
             {
-                Logger.lineBreak();
-                marshal = registryClient.enumerateStringMarshalling();
+                marshalTask = executor.submit(() -> registryClient.enumerateStringMarshalling());
             }
 
             if (actions.contains(ScanAction.CODEBASE))
             {
-                Logger.lineBreak();
-                registryClient.enumCodebase(marshal, p.getRegMethod(), RMGOption.ENUM_BYPASS.getBool());
+                codebaseTask = executor.submit(marshalTask, marshal ->
+                {
+                    registryClient.enumCodebase(marshal, p.getRegMethod(), RMGOption.ENUM_BYPASS.getBool());
+                    return null;
+                });
             }
 
             if (actions.contains(ScanAction.LOCALHOST_BYPASS))
             {
-                Logger.lineBreak();
-                registryClient.enumLocalhostBypass();
+                localhostBypassTask = executor.submit(() -> registryClient.enumLocalhostBypass());
+            }
+
+            if (actions.contains(ScanAction.FILTER_BYPASS))
+            {
+                filterBypassTask = executor.submit(marshalTask, marshal ->
+                {
+                    registryClient.enumJEP290Bypass(p.getRegMethod(), RMGOption.ENUM_BYPASS.getBool(), marshal);
+                    return null;
+                });
+            }
+
+            if (actions.contains(ScanAction.STRING_MARSHALLING))
+            {
+                joinCheck(ScanAction.STRING_MARSHALLING, marshalTask, result);
+            }
+
+            if (codebaseTask != null)
+            {
+                joinCheck(ScanAction.CODEBASE, codebaseTask, result);
+            }
+
+            if (localhostBypassTask != null)
+            {
+                joinCheck(ScanAction.LOCALHOST_BYPASS, localhostBypassTask, result);
             }
         }
 
         catch (java.rmi.NoSuchObjectException e)
         {
+            if (result != null)
+            {
+                result.setRegistry(false);
+            }
+
             ExceptionHandler.noSuchObjectExceptionRegistryEnum();
-            enumJEP290Bypass = false;
 
             Logger.lineBreak();
             format.listCodebases();
         }
 
-        if (actions.contains(ScanAction.SECURITY_MANAGER))
+        if (securityManagerTask != null)
         {
-            Logger.lineBreak();
-            dgc.enumSecurityManager(p.getDgcMethod());
+            joinCheck(ScanAction.SECURITY_MANAGER, securityManagerTask, result);
         }
 
-        if (actions.contains(ScanAction.JEP290))
+        if (jep290Task != null)
         {
-            Logger.lineBreak();
-            dgc.enumJEP290(p.getDgcMethod());
+            joinCheck(ScanAction.JEP290, jep290Task, result);
         }
 
-        if (enumJEP290Bypass && actions.contains(ScanAction.FILTER_BYPASS))
+        if (filterBypassTask != null)
         {
-            Logger.lineBreak();
-            registryClient.enumJEP290Bypass(p.getRegMethod(), RMGOption.ENUM_BYPASS.getBool(), marshal);
+            joinCheck(ScanAction.FILTER_BYPASS, filterBypassTask, result);
         }
 
-        if (actions.contains(ScanAction.ACTIVATOR))
+        if (activatorTask != null)
         {
-            Logger.lineBreak();
-            ActivationClient activationClient = new ActivationClient(rmi);
-            activationClient.enumActivator();
+            joinCheck(ScanAction.ACTIVATOR, activatorTask, result);
+        }
+
+        executor.close();
+        finishEnumeration(result);
+    }
+
+    /**
+     * Joins the task of a scan action within rmg's enum action. The result object is informed about the
+     * scan action, so that the reported check outcomes are assigned to it.
+     *
+     * @param action scan action that is performed by the task
+     * @param task task to join
+     * @param result result object to record the outcome in (may be null)
+     */
+    private void joinCheck(ScanAction action, EnumExecutor.Task<?> task, EnumResult result)
+    {
+        Logger.lineBreak();
+
+        if (result != null)
+        {
+            result.setCheck(action);
+        }
+
+        task.join();
+
+        if (result != null)
+        {
+            result.setCheck(null);
         }
     }
 
+    /**
+     * Finishes the recording of enumeration results. The collected codebases are added to the result
+     * and the status listener of the current thread is removed.
+     *
+     * @param result result object of the enumeration (may be null)
+     */
+    private void finishEnumeration(EnumResult result)
+    {
+        if (result == null)
+        {
+            return;
+        }
+
+        result.setCheck(null);
+        result.addCodebases(CodebaseCollector.getCodebases());
+        Logger.setStatusListener(null);
+    }
+
     /**
      * Performs a method guessing attack. During this operation, the specified wordlist files are parsed
      * for valid method definitions and each method is invoked on the targeted RMI endpoint. Currently, this
@@ -642,7 +892,18 @@ public class Dispatcher
         }
 
         UnicastWrapper[] wrappers = RemoteObjectWrapper.getUnicastWrappers(remoteObjects);
-        MethodGuesser guesser = new MethodGuesser(wrappers, getCandidates());
+        MethodGuesser guesser = null;
+
+        if (candidate == null && RMGOption.GUESS_STREAM.getBool() && !RMGOption.GUESS_UPDATE.getBool())
+        {
+            guesser = new MethodGuesser(wrappers, getCandidateStream());
+        }
+
+        else
+        {
+            guesser = new MethodGuesser(wrappers, getCandidates());
+        }
+
         guesser.printGuessingIntro();
 
         List<RemoteObjectClient> results = guesser.guessMethods();
@@ -683,19 +944,39 @@ public class Dispatcher
 
     /**
      * Performs a primitive portscan for RMI services. Targeted ports are usually obtained from the
-     * configuration file, but can also be supplied by the user.
+     * configuration file, but can also be supplied by the user. Targeted hosts can be specified as
+     * single hosts, CIDR ranges, host files or via stdin.
      */
     public void dispatchPortScan()
     {
-        String host = RMGOption.require(RMGOption.TARGET_HOST);
+        List<String> hostSpecs = RMGOption.require(RMGOption.SCAN_HOST);
+
+        p.setSocketTimeout();
+        HostList hosts = HostList.parse(hostSpecs);
         int[] rmiPorts = p.getRmiPorts();
 
+        if (hosts.size() == 0)
+        {
+            Logger.eprintln("The specified host list does not contain any resolvable hosts.");
+            RMGUtils.exit();
+        }
+
         Logger.printMixedYellow("Scanning", String.valueOf(rmiPorts.length), "Ports on ");
-        Logger.printlnPlainMixedBlueFirst(host, "for RMI services.");
+
+        if (hosts.size() == 1)
+        {
+            Logger.printlnPlainMixedBlueFirst(HostList.getHostString(hosts.get(0)), "for RMI services.");
+        }
+
+        else
+        {
+            Logger.printlnPlainMixedBlueFirst(String.valueOf(hosts.size()), "hosts for RMI services.");
+        }
+
         Logger.lineBreak();
         Logger.increaseIndent();
 
-        PortScanner ps = new PortScanner(host, rmiPorts);
+        PortScanner ps = new PortScanner(hosts, rmiPorts);
         ps.portScan();
 
         Logger.decreaseIndent();
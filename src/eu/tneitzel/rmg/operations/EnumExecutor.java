@@ -0,0 +1,386 @@
+package eu.tneitzel.rmg.operations;
+
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.function.Function;
+import java.util.function.Supplier;
+
+import eu.tneitzel.rmg.internal.CodebaseCollector;
+import eu.tneitzel.rmg.io.LogBuffer;
+import eu.tneitzel.rmg.io.Logger;
+import eu.tneitzel.rmg.networking.RMIEndpoint;
+import eu.tneitzel.rmg.utils.DeferredExit;
+import eu.tneitzel.rmg.utils.TaskExecutor;
+
+/**
+ * The EnumExecutor runs the scan actions of rmg's enum action concurrently. Most scan actions are independent
+ * blocking RMI calls, whereas some of them depend on the result of another action (e.g. the codebase enumeration
+ * requires the String marshalling behavior of the server). Actions are submitted as tasks, optionally with a
+ * dependency on another task. Tasks without dependency start right away, whereas dependent tasks start as soon
+ * as their dependency has finished.
+ *
+ * The Logger output of each task is collected within a LogBuffer. The caller joins the tasks in the canonical
+ * order of the scan actions, which replays the buffered output. This way, the output looks exactly like the
+ * output of a sequential run. Tasks that are never joined, e.g. because an earlier action showed that they
+ * are not applicable, are discarded together with their output.
+ *
+ * Tasks run with the targeted host and the codebase scope of the thread that submitted them. This allows to
+ * use the EnumExecutor for other independent operations, like the lookup of bound names, even when multiple
+ * targets are enumerated at the same time. If a task requests an exit and the joining thread is buffered
+ * itself, the exit is passed on to the joining thread.
+ *
+ * In sequential mode, tasks are not started upfront, but run within the calling thread when they are joined.
+ * This mode is used when output cannot be buffered, e.g. for SSRF payloads.
+ *
+ * Actions that throw checked exceptions can be submitted via submitChecked. Their exceptions are stored within
+ * the result of the task in the same way as runtime exceptions and are rethrown by joinChecked.
+ *
+ * @author Tobias Neitzel (@qtc_de)
+ */
+public class EnumExecutor
+{
+    private final TaskExecutor executor;
+
+    /**
+     * Create a new EnumExecutor.
+     *
+     * @param threads number of threads to use. Values smaller than two enable the sequential mode
+     */
+    public EnumExecutor(int threads)
+    {
+        this.executor = (threads > 1) ? new TaskExecutor(threads) : null;
+    }
+
+    /**
+     * Submit a task without dependencies.
+     *
+     * @param <T> result type of the task
+     * @param action action to perform
+     * @return Task that can be joined to obtain the result
+     */
+    public <T> Task<T> submit(Supplier<T> action)
+    {
+        return submitChecked(action::get);
+    }
+
+    /**
+     * Submit a task without dependencies that may throw checked exceptions. Exceptions thrown by the action
+     * are rethrown when the task is joined via joinChecked.
+     *
+     * @param <T> result type of the task
+     * @param action action to perform
+     * @return Task that can be joined to obtain the result
+     */
+    public <T> Task<T> submitChecked(CheckedAction<T> action)
+    {
+        if (executor == null)
+        {
+            return new Task<T>(action);
+        }
+
+        LogBuffer output = new LogBuffer();
+        Context context = new Context();
+
+        return new Task<T>(CompletableFuture.supplyAsync(() -> capture(action, output, context), executor));
+    }
+
+    /**
+     * Submit a task without dependencies and without result.
+     *
+     * @param action action to perform
+     * @return Task that can be joined to wait for the action
+     */
+    public Task<Void> submit(Runnable action)
+    {
+        return submit(() ->
+        {
+            action.run();
+            return null;
+        });
+    }
+
+    /**
+     * Create a task that has already finished with the specified result. Can be used as dependency
+     * when the action that usually provides the result was not requested.
+     *
+     * @param <T> result type of the task
+     * @param value result of the task
+     * @return finished Task
+     */
+    public <T> Task<T> completed(T value)
+    {
+        return new Task<T>(CompletableFuture.completedFuture(new Result<T>(value, null, null)));
+    }
+
+    /**
+     * Submit a task that depends on the result of another task. The task starts after the dependency finished
+     * successfully. If the dependency failed, the task is skipped.
+     *
+     * @param <D> result type of the dependency
+     * @param <T> result type of the task
+     * @param dependency task the new task depends on
+     * @param action action to perform with the result of the dependency
+     * @return Task that can be joined to obtain the result
+     */
+    public <D, T> Task<T> submit(Task<D> dependency, Function<D, T> action)
+    {
+        if (executor == null)
+        {
+            return new Task<T>(() -> action.apply(dependency.join()));
+        }
+
+        LogBuffer output = new LogBuffer();
+        Context context = new Context();
+
+        return new Task<T>(dependency.future.thenApplyAsync(result ->
+        {
+            if (result.error != null)
+            {
+                return new Result<T>(null, null, result.error);
+            }
+
+            return capture(() -> action.apply(result.value), output, context);
+
+        }, executor));
+    }
+
+    /**
+     * Wait for all submitted tasks, including tasks that were never joined, and release the threads of the
+     * executor.
+     */
+    public void close()
+    {
+        if (executor == null)
+        {
+            return;
+        }
+
+        try
+        {
+            executor.awaitCompletion();
+        }
+
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Run the specified action while the Logger output of the current thread is redirected into the specified
+     * LogBuffer and the context of the submitting thread is installed. Exceptions and requested exits are
+     * stored within the result, to be handled when the task is joined.
+     *
+     * @param <T> result type of the action
+     * @param action action to run
+     * @param output LogBuffer to redirect the output to
+     * @param context context of the submitting thread
+     * @return result of the action
+     */
+    private static <T> Result<T> capture(CheckedAction<T> action, LogBuffer output, Context context)
+    {
+        Logger.setBuffer(output);
+        context.install();
+
+        try
+        {
+            return new Result<T>(action.run(), output, null);
+        }
+
+        catch (DeferredExit | Exception e)
+        {
+            return new Result<T>(null, output, e);
+        }
+
+        finally
+        {
+            Logger.setBuffer(null);
+            Context.clear();
+        }
+    }
+
+    /**
+     * An action that returns a result and may throw checked exceptions.
+     *
+     * @param <T> result type of the action
+     */
+    @FunctionalInterface
+    public interface CheckedAction<T>
+    {
+        /**
+         * Perform the action.
+         *
+         * @return result of the action
+         * @throws Exception if the action fails
+         */
+        T run() throws Exception;
+    }
+
+    /**
+     * Thread specific state of the submitting thread that needs to be available within a task.
+     */
+    private static class Context
+    {
+        private final String targetHost;
+        private final Map<String,Set<String>> codebases;
+
+        Context()
+        {
+            this.targetHost = RMIEndpoint.getTargetHost();
+            this.codebases = CodebaseCollector.getScope();
+        }
+
+        void install()
+        {
+            RMIEndpoint.setTargetHost(targetHost);
+            CodebaseCollector.setScope(codebases);
+        }
+
+        static void clear()
+        {
+            RMIEndpoint.setTargetHost(null);
+            CodebaseCollector.setScope(null);
+        }
+    }
+
+    /**
+     * Outcome of a task, consisting of the result value, the buffered output and the error that terminated
+     * the task, if any.
+     *
+     * @param <T> result type of the task
+     */
+    private static class Result<T>
+    {
+        private final T value;
+        private final LogBuffer output;
+        private final Throwable error;
+
+        Result(T value, LogBuffer output, Throwable error)
+        {
+            this.value = value;
+            this.output = output;
+            this.error = error;
+        }
+    }
+
+    /**
+     * A Task represents a submitted scan action. Joining the task prints its buffered output and returns the
+     * result of the action. Each task should only be joined once.
+     *
+     * @param <T> result type of the task
+     * @author Tobias Neitzel (@qtc_de)
+     */
+    public static class Task<T>
+    {
+        private final CheckedAction<T> action;
+        private final CompletableFuture<Result<T>> future;
+
+        private boolean joined;
+        private T value;
+
+        private Task(CheckedAction<T> action)
+        {
+            this.action = action;
+            this.future = null;
+        }
+
+        private Task(CompletableFuture<Result<T>> future)
+        {
+            this.action = null;
+            this.future = future;
+        }
+
+        /**
+         * Wait for the task to finish, replay its buffered output and return its result. If the task requested
+         * an exit, rmg exits after the output was replayed, or the exit is passed on if the output of the joining
+         * thread is buffered too. Runtime exceptions thrown by the task are rethrown. Checked exceptions are
+         * rethrown wrapped into a CompletionException, use joinChecked to obtain them unwrapped.
+         * In sequential mode, the task is executed within the calling thread instead.
+         *
+         * @return result of the task
+         */
+        public T join()
+        {
+            try
+            {
+                return joinChecked();
+            }
+
+            catch (RuntimeException e)
+            {
+                throw e;
+            }
+
+            catch (Exception e)
+            {
+                throw new CompletionException(e);
+            }
+        }
+
+        /**
+         * Same as join, but checked exceptions thrown by the task are rethrown as they are.
+         *
+         * @return result of the task
+         * @throws Exception if the action of the task threw an exception
+         */
+        public T joinChecked() throws Exception
+        {
+            if (joined)
+            {
+                return value;
+            }
+
+            joined = true;
+
+            if (future == null)
+            {
+                value = action.run();
+                return value;
+            }
+
+            Result<T> result;
+
+            try
+            {
+                result = future.join();
+            }
+
+            catch (CompletionException e)
+            {
+                Throwable cause = e.getCause();
+
+                if (cause instanceof Error)
+                {
+                    throw (Error)cause;
+                }
+
+                throw e;
+            }
+
+            if (result.output != null)
+            {
+                result.output.replay();
+            }
+
+            if (result.error instanceof DeferredExit)
+            {
+                if (Logger.isBuffered())
+                {
+                    throw (DeferredExit)result.error;
+                }
+
+                System.exit(1);
+            }
+
+            else if (result.error instanceof Exception)
+            {
+                throw (Exception)result.error;
+            }
+
+            value = result.value;
+            return value;
+        }
+    }
+}
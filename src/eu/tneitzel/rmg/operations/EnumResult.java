@@ -0,0 +1,389 @@
+package eu.tneitzel.rmg.operations;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+
+import eu.tneitzel.rmg.internal.CodebaseCollector;
+import eu.tneitzel.rmg.utils.RemoteObjectWrapper;
+
+/**
+ * An EnumResult contains the outcome of rmg's enum action for a single target in a structured form. It is
+ * filled while the scan actions are performed. The outcome of each check is obtained from the status lines
+ * that are printed by the Logger (e.g. Vulnerability Status: Vulnerable), which are assigned to the scan
+ * action that is currently active. Additionally, the result contains the bound names, the remote classes
+ * and the codebases that were observed on the target.
+ *
+ * Results can be converted into a single line of JSON, which is used to write the results of an enumeration
+ * in JSONL format.
+ *
+ * @author Tobias Neitzel (@qtc_de)
+ */
+public class EnumResult
+{
+    private final String host;
+    private final int port;
+    private final long start;
+
+    private long duration;
+    private String error;
+    private boolean registry;
+    private ScanAction check;
+
+    private final List<String[]> boundNames;
+    private final Set<String> classes;
+    private final Map<String,Set<String>> codebases;
+    private final Map<ScanAction,Map<String,String>> checks;
+
+    private static final String VULNERABLE = "Vulnerable";
+
+    /**
+     * Create a new EnumResult for the specified target. The duration of the enumeration is measured
+     * from the creation of the result until finish is called.
+     *
+     * @param host targeted host
+     * @param port targeted port
+     */
+    public EnumResult(String host, int port)
+    {
+        this.host = host;
+        this.port = port;
+        this.start = System.nanoTime();
+
+        this.duration = -1;
+        this.registry = true;
+
+        this.boundNames = new ArrayList<String[]>();
+        this.classes = new TreeSet<String>();
+        this.codebases = CodebaseCollector.newScope();
+        this.checks = new EnumMap<ScanAction,Map<String,String>>(ScanAction.class);
+    }
+
+    /**
+     * Return the target of the result in host:port format.
+     *
+     * @return target of the result
+     */
+    public String getTarget()
+    {
+        return host + ":" + port;
+    }
+
+    /**
+     * Set the scan action that is currently performed. Check outcomes that are reported afterwards
+     * are assigned to this action.
+     *
+     * @param check currently performed scan action
+     */
+    public void setCheck(ScanAction check)
+    {
+        this.check = check;
+    }
+
+    /**
+     * Record the outcome of a check for the currently performed scan action. Outcomes that are reported
+     * while no scan action is active are ignored.
+     *
+     * @param statusType the thing that was checked (e.g. Vulnerability, Configuration, ...)
+     * @param status outcome of the check (e.g. Vulnerable, Current Default, ...)
+     */
+    public synchronized void addStatus(String statusType, String status)
+    {
+        if (check == null)
+        {
+            return;
+        }
+
+        checks.computeIfAbsent(check, k -> new LinkedHashMap<String,String>()).put(statusType, status);
+    }
+
+    /**
+     * Record the bound names that were obtained from the registry. If the remote objects were looked up,
+     * their interface names are recorded too.
+     *
+     * @param remoteObjects remote objects obtained from the registry
+     */
+    public void addRemoteObjects(RemoteObjectWrapper[] remoteObjects)
+    {
+        if (remoteObjects == null)
+        {
+            return;
+        }
+
+        for (RemoteObjectWrapper remoteObject : remoteObjects)
+        {
+            String className = null;
+
+            if (remoteObject.remoteObject != null)
+            {
+                className = remoteObject.getInterfaceName();
+                classes.add(className);
+            }
+
+            boundNames.add(new String[] { remoteObject.boundName, className, String.valueOf(remoteObject.isKnown()) });
+        }
+    }
+
+    /**
+     * Record whether the target is an RMI registry.
+     *
+     * @param registry whether the target is an RMI registry
+     */
+    public void setRegistry(boolean registry)
+    {
+        this.registry = registry;
+    }
+
+    /**
+     * Record the error that terminated the enumeration of the target.
+     *
+     * @param error description of the error
+     */
+    public void setError(String error)
+    {
+        this.error = error;
+    }
+
+    /**
+     * Return the codebase map of the result. The map can be registered as scope within the CodebaseCollector
+     * to collect the codebases of the target directly into the result.
+     *
+     * @return codebase map of the result
+     */
+    public Map<String,Set<String>> getCodebases()
+    {
+        return codebases;
+    }
+
+    /**
+     * Record the specified codebases. This is required when codebases were not collected directly into
+     * the codebase map of the result.
+     *
+     * @param codebases codebases to record
+     */
+    public void addCodebases(Map<String,Set<String>> codebases)
+    {
+        if (codebases == this.codebases)
+        {
+            return;
+        }
+
+        for (Map.Entry<String,Set<String>> entry : codebases.entrySet())
+        {
+            this.codebases.computeIfAbsent(entry.getKey(), k -> ConcurrentHashMap.newKeySet()).addAll(entry.getValue());
+        }
+    }
+
+    /**
+     * Check whether one of the performed checks reported the target as vulnerable.
+     *
+     * @return true if the target is vulnerable
+     */
+    public synchronized boolean isVulnerable()
+    {
+        return !getVulnerableChecks().isEmpty();
+    }
+
+    /**
+     * Check whether the enumeration of the target failed.
+     *
+     * @return true if an error was recorded
+     */
+    public boolean hasError()
+    {
+        return error != null;
+    }
+
+    /**
+     * Mark the enumeration of the target as finished and store its duration.
+     */
+    public void finish()
+    {
+        duration = System.nanoTime() - start;
+    }
+
+    /**
+     * Convert the result into a single line of JSON.
+     *
+     * @return JSON representation of the result
+     */
+    public synchronized String toJson()
+    {
+        StringBuilder json = new StringBuilder();
+
+        json.append('{');
+        json.append("\"host\":").append(quote(host));
+        json.append(",\"port\":").append(port);
+        json.append(",\"registry\":").append(registry);
+        json.append(",\"error\":").append(quote(error));
+        json.append(",\"duration_ms\":").append((duration < 0) ? -1 : duration / 1_000_000);
+
+        json.append(",\"vulnerable\":");
+        appendArray(json, getVulnerableChecks());
+
+        json.append(",\"checks\":{");
+        boolean first = true;
+
+        for (Map.Entry<ScanAction,Map<String,String>> entry : checks.entrySet())
+        {
+            json.append(first ? "" : ",").append(quote(getName(entry.getKey()))).append(":{");
+            first = false;
+
+            boolean firstStatus = true;
+
+            for (Map.Entry<String,String> status : entry.getValue().entrySet())
+            {
+                json.append(firstStatus ? "" : ",").append(quote(status.getKey())).append(':').append(quote(status.getValue()));
+                firstStatus = false;
+            }
+
+            json.append('}');
+        }
+
+        json.append("},\"bound_names\":[");
+        first = true;
+
+        for (String[] boundName : boundNames)
+        {
+            json.append(first ? "" : ",");
+            json.append("{\"name\":").append(quote(boundName[0]));
+            json.append(",\"class\":").append(quote(boundName[1]));
+            json.append(",\"known\":").append(boundName[2]).append('}');
+            first = false;
+        }
+
+        Map<String,Set<String>> sortedCodebases = new TreeMap<String,Set<String>>();
+        Set<String> allClasses = new TreeSet<String>(classes);
+
+        for (Map.Entry<String,Set<String>> entry : codebases.entrySet())
+        {
+            sortedCodebases.put(entry.getKey(), new TreeSet<String>(entry.getValue()));
+            allClasses.addAll(entry.getValue());
+        }
+
+        json.append("],\"classes\":");
+        appendArray(json, allClasses);
+
+        json.append(",\"codebases\":{");
+        first = true;
+
+        for (Map.Entry<String,Set<String>> entry : sortedCodebases.entrySet())
+        {
+            json.append(first ? "" : ",").append(quote(entry.getKey())).append(':');
+            appendArray(json, entry.getValue());
+            first = false;
+        }
+
+        json.append("}}");
+        return json.toString();
+    }
+
+    /**
+     * Return the names of all checks that reported the target as vulnerable.
+     *
+     * @return names of the vulnerable checks
+     */
+    private List<String> getVulnerableChecks()
+    {
+        List<String> vulnerable = new ArrayList<String>();
+
+        for (Map.Entry<ScanAction,Map<String,String>> entry : checks.entrySet())
+        {
+            if (entry.getValue().containsValue(VULNERABLE))
+            {
+                vulnerable.add(getName(entry.getKey()));
+            }
+        }
+
+        return vulnerable;
+    }
+
+    /**
+     * Return the name of a scan action as it is used on the command line.
+     *
+     * @param action scan action to obtain the name for
+     * @return command line name of the scan action
+     */
+    private static String getName(ScanAction action)
+    {
+        return action.name().toLowerCase().replace('_', '-');
+    }
+
+    /**
+     * Append the specified strings as JSON array.
+     *
+     * @param json StringBuilder to append to
+     * @param values strings to append
+     */
+    private static void appendArray(StringBuilder json, Iterable<String> values)
+    {
+        boolean first = true;
+        json.append('[');
+
+        for (String value : values)
+        {
+            json.append(first ? "" : ",").append(quote(value));
+            first = false;
+        }
+
+        json.append(']');
+    }
+
+    /**
+     * Convert a string into a quoted JSON string. Null values are converted into the JSON null literal.
+     *
+     * @param value string to convert
+     * @return quoted JSON string
+     */
+    private static String quote(String value)
+    {
+        if (value == null)
+        {
+            return "null";
+        }
+
+        StringBuilder quoted = new StringBuilder(value.length() + 2);
+        quoted.append('"');
+
+        for (char c : value.toCharArray())
+        {
+            switch (c)
+            {
+                case '"':
+                    quoted.append("\\\"");
+                    break;
+                case '\\':
+                    quoted.append("\\\\");
+                    break;
+                case '\n':
+                    quoted.append("\\n");
+                    break;
+                case '\r':
+                    quoted.append("\\r");
+                    break;
+                case '\t':
+                    quoted.append("\\t");
+                    break;
+                default:
+                    if (c < 0x20)
+                    {
+                        quoted.append(String.format("\\u%04x", (int)c));
+                    }
+
+                    else
+                    {
+                        quoted.append(c);
+                    }
+            }
+        }
+
+        quoted.append('"');
+        return quoted.toString();
+    }
+}
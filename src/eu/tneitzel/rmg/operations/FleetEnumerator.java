@@ -0,0 +1,305 @@
+package eu.tneitzel.rmg.operations;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import eu.tneitzel.rmg.internal.ArgumentHandler;
+import eu.tneitzel.rmg.internal.CodebaseCollector;
+import eu.tneitzel.rmg.internal.ExceptionHandler;
+import eu.tneitzel.rmg.internal.RMGOption;
+import eu.tneitzel.rmg.io.Formatter;
+import eu.tneitzel.rmg.io.JsonlWriter;
+import eu.tneitzel.rmg.io.LogBuffer;
+import eu.tneitzel.rmg.io.Logger;
+import eu.tneitzel.rmg.networking.RMIEndpoint;
+import eu.tneitzel.rmg.utils.DeferredExit;
+import eu.tneitzel.rmg.utils.HostList;
+import eu.tneitzel.rmg.utils.RMGUtils;
+import eu.tneitzel.rmg.utils.TaskExecutor;
+
+/**
+ * The FleetEnumerator runs rmg's enum action against multiple targets within the same process. Targets are
+ * specified in the same format as for the scan action (comma separated hosts, CIDR ranges, @files or - for
+ * stdin) and are all enumerated on the port that was specified on the command line.
+ *
+ * Targets are processed by a fixed number of workers, which is configured by the --threads option. Each worker
+ * pulls the next target from the target list when it finished the previous one. Targets are therefore resolved
+ * on demand and large target lists do not create one task per target. Each worker enumerates one target at a
+ * time and performs the requested scan actions sequentially. The Logger
+ * output of a target is buffered and printed as one block after the target was finished. Errors that would
+ * usually terminate rmg only terminate the enumeration of the affected target and are recorded within its
+ * result.
+ *
+ * When the --jsonl option is used, the structured result of each target is written as one JSON line as soon
+ * as the target was finished.
+ *
+ * @author Tobias Neitzel (@qtc_de)
+ */
+public class FleetEnumerator
+{
+    private final ArgumentHandler p;
+    private final int port;
+    private final HostList targets;
+    private final JsonlWriter output;
+    private final AtomicLong next;
+
+    private final AtomicInteger vulnerable;
+    private final AtomicInteger failed;
+
+    private static final ThreadLocal<Boolean> worker = new ThreadLocal<Boolean>();
+
+    /**
+     * Create a new FleetEnumerator for the specified target list. Targets are resolved directly and the JSONL
+     * output file is opened, if requested.
+     *
+     * @param p ArgumentHandler containing the current command line specifications
+     * @param targetSpec target specification as obtained from the command line
+     * @param port port to enumerate on each target
+     */
+    public FleetEnumerator(ArgumentHandler p, String targetSpec, int port)
+    {
+        this.p = p;
+        this.port = port;
+        this.targets = HostList.parse(Arrays.asList(targetSpec));
+        this.output = openOutput();
+        this.next = new AtomicLong(0);
+
+        this.vulnerable = new AtomicInteger(0);
+        this.failed = new AtomicInteger(0);
+    }
+
+    /**
+     * Check whether the current thread is a worker of a FleetEnumerator. Workers already run concurrently
+     * and should perform their operations sequentially.
+     *
+     * @return true if the current thread enumerates a target of a target list
+     */
+    public static boolean isWorker()
+    {
+        return worker.get() != null;
+    }
+
+    /**
+     * Decide whether the host that was specified on the command line is a target list.
+     *
+     * @param host host as specified on the command line
+     * @return true if the host is a target list
+     */
+    public static boolean isTargetList(String host)
+    {
+        return host.equals("-") || host.startsWith("@") || host.contains(",") || host.contains("/");
+    }
+
+    /**
+     * Open the JSONL output file specified by the --jsonl option. If the file cannot be opened, rmg exits.
+     *
+     * @return JsonlWriter for the output file or null if no output file was specified
+     */
+    static JsonlWriter openOutput()
+    {
+        if (RMGOption.ENUM_JSONL.isNull())
+        {
+            return null;
+        }
+
+        String path = RMGOption.ENUM_JSONL.getValue();
+
+        try
+        {
+            return new JsonlWriter(new File(path));
+        }
+
+        catch (IOException e)
+        {
+            Logger.eprintlnMixedYellow("Unable to open JSONL output file", path);
+            ExceptionHandler.showStackTrace(e);
+            RMGUtils.exit();
+        }
+
+        return null;
+    }
+
+    /**
+     * Close the specified JSONL output.
+     *
+     * @param output JSONL output to close
+     */
+    static void closeOutput(JsonlWriter output)
+    {
+        try
+        {
+            output.close();
+        }
+
+        catch (IOException e)
+        {
+            ExceptionHandler.unexpectedException(e, "closing", "JSONL output", false);
+        }
+    }
+
+    /**
+     * Write a result to the specified JSONL output. Write errors are reported, but do not abort the enumeration.
+     *
+     * @param output JSONL output to write to
+     * @param result result to write
+     */
+    static void write(JsonlWriter output, EnumResult result)
+    {
+        try
+        {
+            output.write(result.toJson());
+        }
+
+        catch (IOException e)
+        {
+            Logger.eprintlnMixedYellow("Unable to write result to", output.getFile().getPath());
+            ExceptionHandler.showStackTrace(e);
+        }
+    }
+
+    /**
+     * Enumerate all targets. Results are printed and written as soon as a target was finished. After all targets
+     * were processed, a short summary is printed.
+     */
+    public void run()
+    {
+        if (RMGOption.SSRF.getBool() || RMGOption.SSRFRESPONSE.notNull())
+        {
+            Logger.eprintlnMixedYellow("Target lists cannot be combined with", "SSRF", "options.");
+            RMGUtils.exit();
+        }
+
+        if (targets.size() == 0)
+        {
+            Logger.eprintln("The specified target list does not contain any resolvable hosts.");
+            RMGUtils.exit();
+        }
+
+        int threads = RMGOption.THREADS.getValue();
+
+        Logger.printlnMixedYellow("Enumerating", targets.size() + " targets", "on port " + port + " using " + threads + " threads.");
+
+        TaskExecutor executor = new TaskExecutor(threads);
+        long workers = Math.min(threads, targets.size());
+
+        for (long count = 0; count < workers; count++)
+        {
+            executor.execute(this::work);
+        }
+
+        try
+        {
+            executor.awaitCompletion();
+        }
+
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+
+        if (output != null)
+        {
+            closeOutput(output);
+        }
+
+        Logger.lineBreak();
+        Logger.printlnMixedYellow("Enumeration finished:", vulnerable.get() + " vulnerable", "and " + failed.get() + " failed targets.");
+
+        new Formatter().listClassGeneration();
+    }
+
+    /**
+     * Worker loop. Pulls the next index from the target list and enumerates the corresponding target until
+     * all targets were processed.
+     */
+    private void work()
+    {
+        long index;
+
+        while ((index = next.getAndIncrement()) < targets.size())
+        {
+            enumerate(HostList.getHostString(targets.get(index)));
+        }
+    }
+
+    /**
+     * Enumerate a single target. This function runs within a worker thread. The Logger output, the check outcomes,
+     * the codebases and the targeted host are all registered for the current thread, which separates the target
+     * from targets that are enumerated concurrently.
+     *
+     * @param host host to enumerate
+     */
+    private void enumerate(String host)
+    {
+        LogBuffer buffer = new LogBuffer();
+        EnumResult result = new EnumResult(host, port);
+
+        worker.set(Boolean.TRUE);
+        Logger.setBuffer(buffer);
+        RMIEndpoint.setTargetHost(host);
+        CodebaseCollector.setScope(result.getCodebases());
+
+        try
+        {
+            new Dispatcher(p, host, port).enumerate(result, 1);
+        }
+
+        catch (DeferredExit e)
+        {
+            List<String> errors = buffer.getErrors();
+            result.setError(errors.isEmpty() ? "Enumeration aborted." : errors.get(0));
+        }
+
+        catch (RuntimeException e)
+        {
+            result.setError(e.toString());
+        }
+
+        finally
+        {
+            worker.remove();
+            Logger.setBuffer(null);
+            Logger.setStatusListener(null);
+            RMIEndpoint.setTargetHost(null);
+            CodebaseCollector.setScope(null);
+        }
+
+        result.finish();
+        report(result, buffer);
+    }
+
+    /**
+     * Print the buffered output of a target and write its result to the JSONL output. Reports of different
+     * targets are not interleaved.
+     *
+     * @param result result of the target
+     * @param buffer buffered output of the target
+     */
+    private synchronized void report(EnumResult result, LogBuffer buffer)
+    {
+        if (result.hasError())
+        {
+            failed.incrementAndGet();
+        }
+
+        else if (result.isVulnerable())
+        {
+            vulnerable.incrementAndGet();
+        }
+
+        Logger.lineBreak();
+        Logger.printlnMixedBlue("Target:", result.getTarget());
+        Logger.lineBreak();
+
+        buffer.replay();
+
+        if (output != null)
+        {
+            write(output, result);
+        }
+    }
+}
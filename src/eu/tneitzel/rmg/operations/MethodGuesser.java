@@ -1,26 +1,36 @@
 package eu.tneitzel.rmg.operations;
 
+import java.io.File;
+import java.io.IOException;
 import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
-import java.util.concurrent.ExecutorService;
-import java.util.concurrent.Executors;
-import java.util.concurrent.TimeUnit;
+import java.util.concurrent.ConcurrentHashMap;
 
 import org.springframework.remoting.support.RemoteInvocation;
 
+import eu.tneitzel.rmg.endpoints.GuessCache;
 import eu.tneitzel.rmg.internal.ExceptionHandler;
 import eu.tneitzel.rmg.internal.MethodArguments;
 import eu.tneitzel.rmg.internal.MethodCandidate;
 import eu.tneitzel.rmg.internal.RMGOption;
+import eu.tneitzel.rmg.io.CandidateStream;
 import eu.tneitzel.rmg.io.Logger;
+import eu.tneitzel.rmg.io.ProgressJournal;
+import eu.tneitzel.rmg.networking.GuessingPipeline;
+import eu.tneitzel.rmg.utils.AdaptiveLimit;
 import eu.tneitzel.rmg.utils.ProgressBar;
 import eu.tneitzel.rmg.utils.RMGUtils;
 import eu.tneitzel.rmg.utils.RemoteInvocationHolder;
 import eu.tneitzel.rmg.utils.SpringRemotingWrapper;
 import eu.tneitzel.rmg.utils.UnicastWrapper;
+import eu.tneitzel.rmg.utils.WorkScheduler;
 import javassist.CannotCompileException;
 import javassist.NotFoundException;
 
@@ -49,12 +59,18 @@ public class MethodGuesser
     private int padding = 0;
     private final ProgressBar progressBar;
 
+    private CandidateStream stream;
     private Set<MethodCandidate> candidates;
     private List<RemoteObjectClient> clientList;
     private List<RemoteObjectClient> knownClientList;
-    private List<Set<MethodCandidate>> candidateSets;
     private Set<RemoteInvocationHolder> invocationHolders;
-    private List<Set<RemoteInvocationHolder>> invocationHolderSets;
+
+    private GuessCache cache;
+    private Map<UnicastWrapper, GuessCache.Entry> cacheEntries;
+    private Map<RemoteObjectClient, Set<Long>> answeredHashes;
+    private ProgressJournal journal;
+
+    private static final int BATCH_SIZE = 32;
 
     /**
      * To create a MethodGuesser you need to pass the references for remote objects you want to guess on.
@@ -71,15 +87,43 @@ public class MethodGuesser
      */
     public MethodGuesser(UnicastWrapper[] remoteObjects, Set<MethodCandidate> candidates)
     {
-        this.candidates = candidates;
+        this(remoteObjects, candidates, null);
+    }
+
+    /**
+     * Create a MethodGuesser that obtains its MethodCandidates from a CandidateStream. Candidates are guessed
+     * as soon as they are parsed from the wordlists. The amount of work is therefore unknown when guessing
+     * starts and the progress bar grows with the number of streamed candidates.
+     *
+     * @param remoteObjects Array of looked up remote objects from the RMI registry
+     * @param stream CandidateStream that provides the MethodCandidates that should be guessed
+     */
+    public MethodGuesser(UnicastWrapper[] remoteObjects, CandidateStream stream)
+    {
+        this(remoteObjects, null, stream);
+    }
+
+    /**
+     * Shared constructor logic. Exactly one of candidates and stream is expected to be non null.
+     *
+     * @param remoteObjects Array of looked up remote objects from the RMI registry
+     * @param candidates MethodCandidates that should be guessed
+     * @param stream CandidateStream that provides the MethodCandidates that should be guessed
+     */
+    private MethodGuesser(UnicastWrapper[] remoteObjects, Set<MethodCandidate> candidates, CandidateStream stream)
+    {
+        this.stream = stream;
+        this.candidates = (stream == null) ? candidates : new HashSet<MethodCandidate>();
 
         this.knownClientList = new ArrayList<RemoteObjectClient>();
-        this.candidateSets = RMGUtils.splitSet(candidates, RMGOption.THREADS.getValue());
+        this.cache = GuessCache.getCache();
+        this.cacheEntries = new HashMap<UnicastWrapper, GuessCache.Entry>();
+        this.answeredHashes = new ConcurrentHashMap<RemoteObjectClient, Set<Long>>();
+        this.journal = openJournal();
 
         if (SpringRemotingWrapper.containsSpringRemotingClient(remoteObjects))
         {
-            invocationHolders = SpringRemotingWrapper.getInvocationHolders(candidates);
-            invocationHolderSets = RMGUtils.splitSet(invocationHolders, RMGOption.THREADS.getValue());
+            invocationHolders = SpringRemotingWrapper.getInvocationHolders(this.candidates);
         }
 
         if (!RMGOption.GUESS_FORCE_GUESSING.getBool())
@@ -87,6 +131,11 @@ public class MethodGuesser
             remoteObjects = handleKnownMethods(remoteObjects);
         }
 
+        if (cache != null)
+        {
+            remoteObjects = handleCachedMethods(remoteObjects);
+        }
+
         this.clientList = initClientList(remoteObjects);
         int workCount = 0;
 
@@ -94,12 +143,12 @@ public class MethodGuesser
         {
             if (client.remoteObject instanceof SpringRemotingWrapper)
             {
-                workCount += invocationHolders.size();
+                workCount += getInvocationHolders(client).size();
             }
 
             else
             {
-                workCount += candidates.size();
+                workCount += getCandidates(client).size();
             }
         }
 
@@ -271,6 +320,219 @@ public class MethodGuesser
         return unknown.toArray(new UnicastWrapper[0]);
     }
 
+    /**
+     * When a guess cache is used, remote objects with cached results are handled similar to known remote objects.
+     * If all current MethodCandidates were already guessed on the remote class, guessing is skipped and the cached
+     * methods are listed instead. If only some of them were guessed, the cached methods are added to the results
+     * and only the remaining MethodCandidates are guessed. In streaming mode, the MethodCandidates are unknown
+     * upfront and remote objects with cached results are always guessed on the remaining candidates.
+     *
+     * @param remoteObjects Array of looked up remote objects from the RMI registry
+     * @return Array of remote objects that still need to be guessed
+     */
+    private UnicastWrapper[] handleCachedMethods(UnicastWrapper[] remoteObjects)
+    {
+        ArrayList<UnicastWrapper> uncached = new ArrayList<UnicastWrapper>();
+        ArrayList<RemoteObjectClient> cachedClientList = new ArrayList<RemoteObjectClient>();
+
+        for (UnicastWrapper o : remoteObjects)
+        {
+            GuessCache.Entry entry = cache.lookup(o);
+
+            if (entry == null)
+            {
+                uncached.add(o);
+            }
+
+            else if (stream == null && entry.covers(candidates))
+            {
+                RemoteObjectClient cachedClient = new RemoteObjectClient(o);
+                cachedClient.addRemoteMethods(entry.getMethods());
+                cachedClientList.add(cachedClient);
+            }
+
+            else
+            {
+                cacheEntries.put(o, entry);
+                uncached.add(o);
+            }
+        }
+
+        if (cachedClientList.size() != 0)
+        {
+            Logger.disableIfNotVerbose();
+            Logger.printInfoBox();
+
+            Logger.println("The following bound names were already guessed and are contained in the guess cache:");
+            Logger.lineBreak();
+            Logger.increaseIndent();
+
+            for (RemoteObjectClient o : cachedClientList)
+            {
+                Logger.printlnMixedBlue("-", o.getBoundName() + " (" + o.remoteObject.getInterfaceName() + ")");
+            }
+
+            Logger.decreaseIndent();
+            Logger.lineBreak();
+            Logger.printlnMixedBlue("Method guessing", "is skipped", "and cached methods are listed instead.");
+            Logger.printlnMixedYellow("You can use", "--invalidate-cache", "to guess methods anyway.");
+            Logger.decreaseIndent();
+            Logger.lineBreak();
+            Logger.enable();
+
+            knownClientList.addAll(cachedClientList);
+        }
+
+        return uncached.toArray(new UnicastWrapper[0]);
+    }
+
+    /**
+     * Open the journal specified by the --resume option. If the journal already exists, the previous
+     * progress is loaded and the guessing run is resumed.
+     *
+     * @return ProgressJournal or null if --resume was not used
+     */
+    private ProgressJournal openJournal()
+    {
+        String path = RMGOption.GUESS_RESUME.getValue();
+
+        if (path == null || path.isEmpty())
+        {
+            return null;
+        }
+
+        File file = new File(path);
+
+        if (file.isFile())
+        {
+            Logger.printlnMixedBlue("Resuming guessing run from journal", file.getPath());
+        }
+
+        try
+        {
+            return new ProgressJournal(file);
+        }
+
+        catch (IOException e)
+        {
+            Logger.eprintlnMixedYellow("Caught", "IOException", "while opening journal file " + file.getPath() + ".");
+            ExceptionHandler.stackTrace(e);
+            RMGUtils.exit();
+        }
+
+        return null;
+    }
+
+    /**
+     * Check whether the specified method hash was already guessed on the specified client. This is the
+     * case if the hash is contained in the guess cache entry or in the journal of a resumed run. Hashes
+     * from the journal were answered conclusively during the interrupted run and are recorded as such.
+     *
+     * @param client RemoteObjectClient to check
+     * @param hash method hash to check
+     * @return true if the method hash does not need to be guessed again
+     */
+    private boolean isGuessed(RemoteObjectClient client, long hash)
+    {
+        GuessCache.Entry entry = cacheEntries.get(client.remoteObject);
+
+        if (entry != null && entry.isGuessed(hash))
+        {
+            return true;
+        }
+
+        if (journal != null && journal.isDone(client.remoteObject, hash))
+        {
+            recordAnswer(client, hash);
+            return true;
+        }
+
+        return false;
+    }
+
+    /**
+     * Check whether some MethodCandidates of the specified client can be skipped, because they were
+     * guessed before.
+     *
+     * @param client RemoteObjectClient to check
+     * @return true if MethodCandidates need to be filtered for the client
+     */
+    private boolean hasGuessed(RemoteObjectClient client)
+    {
+        return cacheEntries.containsKey(client.remoteObject) || (journal != null && journal.getDoneCount(client.remoteObject) != 0);
+    }
+
+    /**
+     * Return the MethodCandidates that need to be guessed on the specified client. MethodCandidates that
+     * were already guessed according to the guess cache or the journal are filtered.
+     *
+     * @param client RemoteObjectClient to obtain the MethodCandidates for
+     * @return MethodCandidates to guess on the client
+     */
+    private Collection<MethodCandidate> getCandidates(RemoteObjectClient client)
+    {
+        if (!hasGuessed(client))
+        {
+            return candidates;
+        }
+
+        List<MethodCandidate> remaining = new ArrayList<MethodCandidate>();
+
+        for (MethodCandidate candidate : candidates)
+        {
+            if (!isGuessed(client, candidate.getHash()))
+            {
+                remaining.add(candidate);
+            }
+        }
+
+        return remaining;
+    }
+
+    /**
+     * Return the RemoteInvocationHolders that need to be guessed on the specified spring remoting client.
+     * RemoteInvocationHolders that were already guessed according to the journal are filtered.
+     *
+     * @param client RemoteObjectClient to obtain the RemoteInvocationHolders for
+     * @return RemoteInvocationHolders to guess on the client
+     */
+    private Collection<RemoteInvocationHolder> getInvocationHolders(RemoteObjectClient client)
+    {
+        if (!hasGuessed(client))
+        {
+            return invocationHolders;
+        }
+
+        List<RemoteInvocationHolder> remaining = new ArrayList<RemoteInvocationHolder>();
+
+        for (RemoteInvocationHolder invocationHolder : invocationHolders)
+        {
+            if (!isGuessed(client, invocationHolder.getCandidate().getHash()))
+            {
+                remaining.add(invocationHolder);
+            }
+        }
+
+        return remaining;
+    }
+
+    /**
+     * Store the guessing results within the guess cache. Results are stored for all guessed remote objects,
+     * including the ones where no remote methods were identified. Cached methods that were added to a client
+     * before guessing are part of its results and are therefore stored again. Only method hashes that obtained
+     * a conclusive answer from the server are stored as guessed. Candidates that failed with stream corruption
+     * or unexpected errors are guessed again in later runs.
+     */
+    private void updateCache()
+    {
+        for (RemoteObjectClient client : clientList)
+        {
+            cache.update(client.remoteObject, client.remoteMethods, answeredHashes.get(client), cacheEntries.get(client.remoteObject));
+        }
+
+        cache.save();
+    }
+
     /**
      * Helper function that prints some visual text when the guesser is started. Just contains information
      * on the number of methods that are guessed or the concrete method signature (if specified).
@@ -279,7 +541,18 @@ public class MethodGuesser
     {
         int count = candidates.size();
 
-        if (count == 0)
+        if (stream != null)
+        {
+            if (clientList.size() != 0)
+            {
+                Logger.lineBreak();
+                Logger.printlnMixedYellow("Starting Method Guessing on", "streamed", "method signature(s).");
+            }
+
+            return;
+        }
+
+        else if (count == 0)
         {
             Logger.eprintlnMixedYellow("List of candidate methods contains", "0", "elements.");
             Logger.eprintln("Please use a valid and non empty wordlist file.");
@@ -301,9 +574,11 @@ public class MethodGuesser
     }
 
     /**
-     * This method starts the actual guessing process. It creates a GuessingWorker for each remoteClient in the clientList
-     * and for each Set of MethodCandidates in the candidateSets. If the underlying RemoteObjectWrapper type of a client
-     * is a SpringRemotingWrapper, the spring remoting compatible SpringGuessingWorker will be used.
+     * This method starts the actual guessing process. Each remoteClient in the clientList is registered as a target
+     * within a WorkScheduler. The scheduler hands out small batches of MethodCandidates to its worker threads, which
+     * are processed by a GuessingWorker. This keeps all threads busy until guessing is finished, even if some remote
+     * objects respond slower than others. If the underlying RemoteObjectWrapper type of a client is a SpringRemotingWrapper,
+     * the spring remoting compatible SpringGuessingWorker will be used.
      *
      * @return List of RemoteObjectClient containing the successfully guessed methods. Only clients containing
      *         guessed methods are returned. Clients without guessed methods are filtered.
@@ -314,42 +589,75 @@ public class MethodGuesser
 
         if (clientList.size() == 0)
         {
+            if (journal != null)
+            {
+                journal.close();
+            }
+
             clientList.addAll(knownClientList);
             return clientList;
         }
 
+        for (RemoteObjectClient client : clientList)
+        {
+            GuessCache.Entry entry = cacheEntries.get(client.remoteObject);
+            answeredHashes.put(client, ConcurrentHashMap.<Long>newKeySet());
+
+            if (entry != null)
+            {
+                client.addRemoteMethods(entry.getMethods());
+            }
+
+            if (journal != null)
+            {
+                client.addRemoteMethods(journal.getHits(client.remoteObject));
+            }
+        }
+
         Logger.increaseIndent();
         Logger.printlnYellow("MethodGuesser is running:");
         Logger.increaseIndent();
         Logger.printlnBlue("--------------------------------");
 
-        ExecutorService pool = Executors.newFixedThreadPool(RMGOption.THREADS.getValue());
+        int threads = RMGOption.THREADS.getValue();
+        int batchSize = Math.max(BATCH_SIZE, 4 * RMGOption.GUESS_PIPELINE.<Integer>getValue());
+        Integer targetOption = RMGOption.GUESS_TARGET_THREADS.getValue();
+        int targetThreads = (targetOption == null) ? threads : targetOption;
 
-        for (RemoteObjectClient client : clientList)
+        WorkScheduler scheduler = new WorkScheduler(threads, targetThreads);
+        progressBar.start();
+
+        try
         {
-            if (client.remoteObject instanceof SpringRemotingWrapper)
+            if (stream != null)
             {
-                for (Set<RemoteInvocationHolder> invoHolder : invocationHolderSets)
-                {
-                    Runnable r = new SpringGuessingWorker(client, invoHolder);
-                    pool.execute(r);
-                }
+                streamCandidates(scheduler, batchSize, 2 * batchSize * threads, targetThreads);
             }
 
             else
             {
-                for (Set<MethodCandidate> candidates : candidateSets)
+                for (RemoteObjectClient client : clientList)
                 {
-                    Runnable r = new GuessingWorker(client, candidates);
-                    pool.execute(r);
+                    AdaptiveLimit limit = createLimit(targetThreads);
+
+                    if (client.remoteObject instanceof SpringRemotingWrapper)
+                    {
+                        scheduler.addTarget(getInvocationHolders(client), batchSize, batch -> new SpringGuessingWorker(client, batch, limit).run()).setLimit(limit);
+                    }
+
+                    else
+                    {
+                        scheduler.addTarget(getCandidates(client), batchSize, batch -> new GuessingWorker(client, batch, limit).run()).setLimit(limit);
+                    }
                 }
+
+                scheduler.run();
             }
-        }
 
-        try
-        {
-            pool.shutdown();
-            pool.awaitTermination(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
+            if (cache != null)
+            {
+                updateCache();
+            }
         }
 
         catch (InterruptedException e)
@@ -357,21 +665,177 @@ public class MethodGuesser
              Logger.eprintln("Interrupted!");
         }
 
+        finally
+        {
+            progressBar.stop();
+
+            for (RemoteObjectClient client : clientList)
+            {
+                client.closePipelines();
+            }
+
+            if (journal != null)
+            {
+                journal.close();
+            }
+        }
+
         Logger.decreaseIndent();
         Logger.lineBreak();
         Logger.printlnYellow("done.");
         Logger.lineBreak();
 
+        if (stream != null)
+        {
+            Logger.printlnMixedYellowFirst(String.valueOf(stream.getCount()), "method signature(s) were streamed from the wordlists.");
+            Logger.lineBreak();
+        }
+
         clientList = RemoteObjectClient.filterEmpty(clientList);
         clientList.addAll(knownClientList);
 
         return clientList;
     }
 
+    /**
+     * Guess the MethodCandidates provided by the CandidateStream. Each remoteClient in the clientList is registered
+     * as a streaming target within the WorkScheduler. Candidates are taken from the stream and added to each target
+     * while the workers are already guessing. Adding candidates blocks if a target has too many pending candidates,
+     * which keeps the amount of parsed but unguessed candidates bounded.
+     *
+     * @param scheduler WorkScheduler to use for guessing
+     * @param batchSize maximum number of candidates that are passed to a worker at once
+     * @param capacity maximum number of pending candidates per target
+     * @param targetThreads maximum number of threads per target
+     * @throws InterruptedException if the calling thread is interrupted while waiting
+     */
+    private void streamCandidates(WorkScheduler scheduler, int batchSize, int capacity, int targetThreads) throws InterruptedException
+    {
+        List<RemoteObjectClient> targetClients = new ArrayList<RemoteObjectClient>();
+        List<RemoteObjectClient> springClients = new ArrayList<RemoteObjectClient>();
+        List<WorkScheduler.Target<MethodCandidate>> targets = new ArrayList<WorkScheduler.Target<MethodCandidate>>();
+        List<WorkScheduler.Target<RemoteInvocationHolder>> springTargets = new ArrayList<WorkScheduler.Target<RemoteInvocationHolder>>();
+
+        for (RemoteObjectClient client : clientList)
+        {
+            AdaptiveLimit limit = createLimit(targetThreads);
+
+            if (client.remoteObject instanceof SpringRemotingWrapper)
+            {
+                WorkScheduler.Target<RemoteInvocationHolder> target = scheduler.addTarget(batchSize, capacity, batch -> new SpringGuessingWorker(client, batch, limit).run());
+                target.setLimit(limit);
+
+                springClients.add(client);
+                springTargets.add(target);
+            }
+
+            else
+            {
+                WorkScheduler.Target<MethodCandidate> target = scheduler.addTarget(batchSize, capacity, batch -> new GuessingWorker(client, batch, limit).run());
+                target.setLimit(limit);
+
+                targetClients.add(client);
+                targets.add(target);
+            }
+        }
+
+        stream.start();
+        scheduler.start();
+
+        try
+        {
+            MethodCandidate candidate;
+
+            while ((candidate = stream.take()) != null)
+            {
+                for (int ctr = 0; ctr < targets.size(); ctr++)
+                {
+                    if (isGuessed(targetClients.get(ctr), candidate.getHash()))
+                    {
+                        continue;
+                    }
+
+                    progressBar.addWork();
+                    targets.get(ctr).add(candidate);
+                }
+
+                if (springTargets.size() == 0)
+                {
+                    continue;
+                }
+
+                RemoteInvocationHolder invocationHolder = SpringRemotingWrapper.getInvocationHolder(candidate);
+
+                if (!invocationHolders.add(invocationHolder))
+                {
+                    continue;
+                }
+
+                for (int ctr = 0; ctr < springTargets.size(); ctr++)
+                {
+                    if (isGuessed(springClients.get(ctr), candidate.getHash()))
+                    {
+                        continue;
+                    }
+
+                    progressBar.addWork();
+                    springTargets.get(ctr).add(invocationHolder);
+                }
+            }
+        }
+
+        finally
+        {
+            scheduler.close();
+        }
+
+        scheduler.await();
+
+        if (stream.getCount() == 0)
+        {
+            Logger.eprintlnMixedYellow("List of candidate methods contains", "0", "elements.");
+            Logger.eprintln("Please use a valid and non empty wordlist file.");
+        }
+    }
+
+    /**
+     * Create the AdaptiveLimit for a single target if --adaptive was specified. The limit starts with a
+     * single thread and grows up to the maximum number of threads per target.
+     *
+     * @param targetThreads maximum number of threads per target
+     * @return AdaptiveLimit for the target or null if adaptive concurrency is disabled
+     */
+    private AdaptiveLimit createLimit(int targetThreads)
+    {
+        if (!RMGOption.GUESS_ADAPTIVE.getBool())
+        {
+            return null;
+        }
+
+        return new AdaptiveLimit(1, targetThreads);
+    }
+
+    /**
+     * Record that the server gave a conclusive answer for the specified method hash. This is the case if the method
+     * was identified as existing or if the server reported that the method does not exist.
+     *
+     * @param client RemoteObjectClient the guessing call was made on
+     * @param hash method hash of the guessed MethodCandidate
+     */
+    private void recordAnswer(RemoteObjectClient client, long hash)
+    {
+        Set<Long> hashes = answeredHashes.get(client);
+
+        if (hashes != null)
+        {
+            hashes.add(hash);
+        }
+    }
+
     /**
      * The GuessingWorker class performs the actual method guessing in terms of RMI calls. It implements Runnable and
-     * is intended to be run within a thread pool. Each GuessingWorker gets assigned a Set of MethodCandidates and iterates
-     * over the corresponding set. It uses the obtained RemoteObjectClient object to dispatch a call to the candidates and
+     * is intended to be run within a thread pool. Each GuessingWorker gets assigned a batch of MethodCandidates and iterates
+     * over the corresponding batch. It uses the obtained RemoteObjectClient object to dispatch a call to the candidates and
      * inspects the server-side exception to determine whether the method exists on the remote object.
      *
      * @author Tobias Neitzel (@qtc_de)
@@ -379,20 +843,23 @@ public class MethodGuesser
     private class GuessingWorker implements Runnable
     {
         protected String boundName;
-        protected Set<MethodCandidate> candidates;
+        protected Collection<MethodCandidate> candidates;
         protected RemoteObjectClient client;
+        protected AdaptiveLimit limit;
 
         /**
          * Initialize the guessing worker with all the required information.
          *
          * @param client RemoteObjectClient to the targeted remote object
          * @param candidates MethodCandidates to guess
+         * @param limit AdaptiveLimit of the target that is informed about call results (may be null)
          */
-        public GuessingWorker(RemoteObjectClient client, Set<MethodCandidate> candidates)
+        public GuessingWorker(RemoteObjectClient client, Collection<MethodCandidate> candidates, AdaptiveLimit limit)
         {
             this.client = client;
             this.boundName = client.getBoundName();
             this.candidates = candidates;
+            this.limit = limit;
         }
 
         /**
@@ -406,6 +873,12 @@ public class MethodGuesser
             String prefix = Logger.blue("[ " + Logger.padRight(boundName, padding) + " ] ");
             Logger.printlnMixedYellow(prefix + "HIT! Method with signature", candidate.getSignature(), "exists!");
             client.addRemoteMethod(candidate);
+            recordAnswer(client, candidate.getHash());
+
+            if (journal != null)
+            {
+                journal.record(client.remoteObject, candidate, true);
+            }
         }
 
         /**
@@ -413,73 +886,150 @@ public class MethodGuesser
          * The array is crafted in a way that method calls will never be fully dispatched on the server side while
          * simultaneously preventing corruption of the underlying TCP stream. This allows to reuse the TCP connection
          * during method guessing which makes the process much faster, especially on TLS protected connections.
+         *
+         * If pipelining was requested, the candidates are first guessed via a pipelined connection. Pipelines are kept
+         * open by the RemoteObjectClient and are reused for the following batches of the same target. Candidates that
+         * cannot be handled by the pipeline are guessed afterwards by using regular guessing calls.
          */
         public void run()
         {
-            for (MethodCandidate candidate : candidates)
+            Collection<MethodCandidate> remaining = candidates;
+            int depth = RMGOption.GUESS_PIPELINE.getValue();
+
+            if (depth > 1)
+            {
+                remaining = client.pipelinedGuessingCall(candidates, depth, new GuessingPipeline.ResultHandler()
+                {
+                    @Override
+                    public void handleResult(MethodCandidate candidate, Exception e, long latency)
+                    {
+                        processResult(candidate, e, latency);
+                        progressBar.taskDone(boundName);
+                    }
+
+                    @Override
+                    public void handleAbort()
+                    {
+                        if (limit != null)
+                        {
+                            limit.failure();
+                        }
+                    }
+                });
+            }
+
+            for (MethodCandidate candidate : remaining)
             {
+                long start = System.nanoTime();
+
                 try
                 {
                     client.guessingCall(candidate);
-                    logHit(candidate); // If there was no exception, the method exists (zero arg / valid call)
+                    processResult(candidate, null, System.nanoTime() - start);
                 }
 
-                catch (java.rmi.ServerException e)
+                catch (Exception e)
                 {
-                    Throwable cause = ExceptionHandler.getCause(e);
+                    processResult(candidate, e, System.nanoTime() - start);
+                }
 
-                    /*
-                     * In case of an existing method, the specially crafted argument array that is used during guessing calls
-                     * will always lead to one of the following exceptions. These are caught and indicate an existing method.
-                     * One could also attempt to catch the 'unrecognized method hash' exception from the server to match non
-                     * existing methods, but this requires an additional string compare that might be slower.
-                     */
-                    if (cause instanceof java.io.OptionalDataException || cause instanceof java.io.StreamCorruptedException)
-                    {
-                        logHit(candidate);
-                    }
+                finally
+                {
+                    progressBar.taskDone(boundName);
                 }
+            }
+        }
 
-                catch (java.rmi.UnmarshalException e)
+        /**
+         * Processes the result of a guessing call. If the call did not throw an exception, the method exists
+         * (zero arg / valid call). Otherwise, the exception is inspected to decide whether the method exists.
+         * Server responses are reported as success to the AdaptiveLimit, while stream corruption and unexpected
+         * errors are reported as failure.
+         *
+         * @param candidate MethodCandidate that was guessed
+         * @param e exception caused by the guessing call or null if the call returned normally
+         * @param latency latency of the call in nanoseconds or a negative value if unknown
+         */
+        protected void processResult(MethodCandidate candidate, Exception e, long latency)
+        {
+            if (limit != null)
+            {
+                if (e == null || e instanceof java.rmi.ServerException)
                 {
-                    /*
-                     * When running with multiple threads, from time to time, stream corruption can be observed.
-                     * This seems to be non deterministically and only appears in certain setups. In my current
-                     * setup, it seems always to break on the "String selectSurname(String email)" method. In
-                     * future, this should be debugged. However, as in a run of 3000 methods this only occurs one
-                     * or two times, it is probably not that important.
-                     */
-                    if (RMGOption.GLOBAL_VERBOSE.getBool())
-                    {
-                        String info = "Caught unexpected " + e.getClass().getName() + " while guessing the " + candidate.getSignature() + "method.\n"
-                                +"[-]" + Logger.getIndent() + "This occurs sometimes when guessing with multiple threads.\n"
-                                +"[-]" + Logger.getIndent() + "You can retry with --threads 1 or just ignore the exception.";
-                        Logger.eprintlnBlue(info);
-                        ExceptionHandler.showStackTrace(e);
-                    }
+                    limit.success(latency);
                 }
 
-                catch(Exception e)
+                else
                 {
-                    /*
-                     * If we end up here, an unexpected exception was raised that indicates a general error.
-                     */
-                    StringWriter writer = new StringWriter();
-                    e.printStackTrace(new PrintWriter(writer));
+                    limit.failure();
+                }
+            }
 
-                    String info = "Caught unexpected " + e.getClass().getName() + " during method guessing.\n"
-                                 +"[-]" + Logger.getIndent() + "Please report this to improve rmg :)\n"
-                                 +"[-]" + Logger.getIndent() + "Stack-Trace:\n"
-                                 +writer.toString();
+            if (e == null)
+            {
+                logHit(candidate);
+            }
 
-                    Logger.eprintlnBlue(info);
+            else if (e instanceof java.rmi.ServerException)
+            {
+                Throwable cause = ExceptionHandler.getCause(e);
+
+                /*
+                 * In case of an existing method, the specially crafted argument array that is used during guessing calls
+                 * will always lead to one of the following exceptions. These are caught and indicate an existing method.
+                 * One could also attempt to catch the 'unrecognized method hash' exception from the server to match non
+                 * existing methods, but this requires an additional string compare that might be slower.
+                 */
+                if (cause instanceof java.io.OptionalDataException || cause instanceof java.io.StreamCorruptedException)
+                {
+                    logHit(candidate);
                 }
 
-                finally
+                else
                 {
-                    progressBar.taskDone();
+                    recordAnswer(client, candidate.getHash());
+
+                    if (journal != null)
+                    {
+                        journal.record(client.remoteObject, candidate, false);
+                    }
                 }
             }
+
+            else if (e instanceof java.rmi.UnmarshalException)
+            {
+                /*
+                 * When running with multiple threads, from time to time, stream corruption can be observed.
+                 * This seems to be non deterministically and only appears in certain setups. In my current
+                 * setup, it seems always to break on the "String selectSurname(String email)" method. In
+                 * future, this should be debugged. However, as in a run of 3000 methods this only occurs one
+                 * or two times, it is probably not that important.
+                 */
+                if (RMGOption.GLOBAL_VERBOSE.getBool())
+                {
+                    String info = "Caught unexpected " + e.getClass().getName() + " while guessing the " + candidate.getSignature() + "method.\n"
+                            +"[-]" + Logger.getIndent() + "This occurs sometimes when guessing with multiple threads.\n"
+                            +"[-]" + Logger.getIndent() + "You can retry with --threads 1 or just ignore the exception.";
+                    Logger.eprintlnBlue(info);
+                    ExceptionHandler.showStackTrace(e);
+                }
+            }
+
+            else
+            {
+                /*
+                 * If we end up here, an unexpected exception was raised that indicates a general error.
+                 */
+                StringWriter writer = new StringWriter();
+                e.printStackTrace(new PrintWriter(writer));
+
+                String info = "Caught unexpected " + e.getClass().getName() + " during method guessing.\n"
+                             +"[-]" + Logger.getIndent() + "Please report this to improve rmg :)\n"
+                             +"[-]" + Logger.getIndent() + "Stack-Trace:\n"
+                             +writer.toString();
+
+                Logger.eprintlnBlue(info);
+            }
         }
     }
 
@@ -492,19 +1042,22 @@ public class MethodGuesser
     {
         protected String boundName;
         protected RemoteObjectClient client;
-        protected Set<RemoteInvocationHolder> invocationHolders;
+        protected Collection<RemoteInvocationHolder> invocationHolders;
+        protected AdaptiveLimit limit;
 
         /**
          * Initialize the spring guessing worker with all the required information.
          *
          * @param client RemoteObjectClient to the targeted remote object
-         * @param invocationHolders  set of RemoteInvocationHolders that contain the RemoteInvocations to guess
+         * @param invocationHolders  RemoteInvocationHolders that contain the RemoteInvocations to guess
+         * @param limit AdaptiveLimit of the target that is informed about call results (may be null)
          */
-        public SpringGuessingWorker(RemoteObjectClient client, Set<RemoteInvocationHolder> invocationHolders)
+        public SpringGuessingWorker(RemoteObjectClient client, Collection<RemoteInvocationHolder> invocationHolders, AdaptiveLimit limit)
         {
             this.client = client;
             this.boundName = client.getBoundName();
             this.invocationHolders = invocationHolders;
+            this.limit = limit;
         }
 
         /**
@@ -520,6 +1073,12 @@ public class MethodGuesser
             String prefix = Logger.blue("[ " + Logger.padRight(boundName, padding) + " ] ");
             Logger.printlnMixedYellow(prefix + "HIT! Method with signature", SpringRemotingWrapper.getSignature(existingMethod), "exists!");
             client.addRemoteMethod(existingMethod);
+            recordAnswer(client, existingMethod.getHash());
+
+            if (journal != null)
+            {
+                journal.record(client.remoteObject, existingMethod, true);
+            }
         }
 
         /**
@@ -533,6 +1092,9 @@ public class MethodGuesser
         {
             for (RemoteInvocationHolder invocationHolder : invocationHolders)
             {
+                boolean failed = false;
+                long start = System.nanoTime();
+
                 try
                 {
                     client.unmanagedCall(SpringRemotingWrapper.getInvokeMethod(), new MethodArguments(invocationHolder.getInvo(), RemoteInvocation.class));
@@ -561,6 +1123,7 @@ public class MethodGuesser
                      * exist, it throws a java.lang.NoSuchMethodException. So this branch means that the guessed
                      * method simply does not exist and we can continue.
                      */
+                    logMiss(invocationHolder);
                 }
 
                 catch (java.rmi.ServerException e)
@@ -574,6 +1137,7 @@ public class MethodGuesser
                          * are not known on the server side. In this case, ClassNotFoundExceptions are expected. This
                          * means that the method does not exist and we can continue.
                          */
+                        logMiss(invocationHolder);
                     }
 
                     else if (cause instanceof java.rmi.UnmarshalException)
@@ -585,6 +1149,8 @@ public class MethodGuesser
                          * future, this should be debugged. However, as in a run of 3000 methods this only occurs one
                          * or two times, it is probably not that important.
                          */
+                        failed = true;
+
                         if (RMGOption.GLOBAL_VERBOSE.getBool())
                         {
                             String info = "Caught unexpected " + e.getClass().getName() + " while guessing the " + SpringRemotingWrapper.getSignature(invocationHolder.getCandidate()) + " method.\n"
@@ -600,6 +1166,7 @@ public class MethodGuesser
                         /*
                          * If we end up here, an unexpected exception was raised that indicates a general error.
                          */
+                        failed = true;
                         unexpectedError(invocationHolder, e);
                     }
                 }
@@ -613,6 +1180,8 @@ public class MethodGuesser
                      * future, this should be debugged. However, as in a run of 3000 methods this only occurs one
                      * or two times, it is probably not that important.
                      */
+                    failed = true;
+
                     if (RMGOption.GLOBAL_VERBOSE.getBool())
                     {
                         String info = "Caught unexpected " + e.getClass().getName() + " while guessing the " + SpringRemotingWrapper.getSignature(invocationHolder.getCandidate()) + " method.\n"
@@ -628,16 +1197,59 @@ public class MethodGuesser
                     /*
                      * If we end up here, an unexpected exception was raised that indicates a general error.
                      */
+                    failed = true;
                     unexpectedError(invocationHolder, e);
                 }
 
                 finally
                 {
-                    progressBar.taskDone();
+                    reportResult(failed, System.nanoTime() - start);
+                    progressBar.taskDone(boundName);
                 }
             }
         }
 
+        /**
+         * This function is called when a guessed RemoteInvocation does not exist. It records the conclusive
+         * answer of the server and stores the result within the journal, if one is used.
+         *
+         * @param invoHolder  RemoteInvocationHolder that contains the RemoteInvocation that was guessed
+         */
+        private void logMiss(RemoteInvocationHolder invoHolder)
+        {
+            recordAnswer(client, invoHolder.getCandidate().getHash());
+
+            if (journal != null)
+            {
+                journal.record(client.remoteObject, invoHolder.getCandidate(), false);
+            }
+        }
+
+        /**
+         * Report the result of a call to the AdaptiveLimit of the target. Responses that allow to decide
+         * whether a method exists are reported as success, stream corruption and unexpected errors as failure.
+         *
+         * @param failed whether the call failed
+         * @param latency latency of the call in nanoseconds
+         */
+        private void reportResult(boolean failed, long latency)
+        {
+            if (limit == null)
+            {
+                return;
+            }
+
+            if (failed)
+            {
+                limit.failure();
+            }
+
+            else
+            {
+                limit.success(latency);
+            }
+        }
+
         /**
          * If an unexpected exception was thrown, this method is called. It prints a warning message to the user,
          * but does not interrupt the guessing procedure.
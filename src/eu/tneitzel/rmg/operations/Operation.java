@@ -27,6 +27,9 @@ public enum Operation {
             RMGOption.TARGET_HOST,
             RMGOption.TARGET_PORT,
             RMGOption.GLOBAL_CONFIG,
+            RMGOption.GLOBAL_METRICS,
+            RMGOption.GLOBAL_METRICS_FILE,
+            RMGOption.GLOBAL_METRICS_JMX,
             RMGOption.GLOBAL_NO_COLOR,
             RMGOption.GLOBAL_PLUGIN,
             RMGOption.GLOBAL_STACK_TRACE,
@@ -59,6 +62,9 @@ public enum Operation {
             RMGOption.TARGET_SIGNATURE,
             RMGOption.TARGET_COMPONENT,
             RMGOption.GLOBAL_CONFIG,
+            RMGOption.GLOBAL_METRICS,
+            RMGOption.GLOBAL_METRICS_FILE,
+            RMGOption.GLOBAL_METRICS_JMX,
             RMGOption.GLOBAL_NO_COLOR,
             RMGOption.GLOBAL_PLUGIN,
             RMGOption.GLOBAL_STACK_TRACE,
@@ -89,6 +95,9 @@ public enum Operation {
             RMGOption.TARGET_SIGNATURE,
             RMGOption.TARGET_COMPONENT,
             RMGOption.GLOBAL_CONFIG,
+            RMGOption.GLOBAL_METRICS,
+            RMGOption.GLOBAL_METRICS_FILE,
+            RMGOption.GLOBAL_METRICS_JMX,
             RMGOption.GLOBAL_NO_COLOR,
             RMGOption.GLOBAL_STACK_TRACE,
             RMGOption.GLOBAL_VERBOSE,
@@ -117,11 +126,16 @@ public enum Operation {
             RMGOption.TARGET_PORT,
             RMGOption.TARGET_BOUND_NAME,
             RMGOption.GLOBAL_CONFIG,
+            RMGOption.GLOBAL_METRICS,
+            RMGOption.GLOBAL_METRICS_FILE,
+            RMGOption.GLOBAL_METRICS_JMX,
             RMGOption.GLOBAL_NO_COLOR,
             RMGOption.GLOBAL_STACK_TRACE,
             RMGOption.GLOBAL_VERBOSE,
             RMGOption.ENUM_ACTION,
             RMGOption.ENUM_BYPASS,
+            RMGOption.ENUM_JSONL,
+            RMGOption.SCAN_FINGERPRINTS,
             RMGOption.CONN_SSL,
             RMGOption.CONN_FOLLOW,
             RMGOption.SSRF,
@@ -138,6 +152,8 @@ public enum Operation {
             RMGOption.SOCKET_FACTORY,
             RMGOption.SOCKET_FACTORY_SSL,
             RMGOption.SOCKET_FACTORY_PLAIN,
+            RMGOption.THREADS,
+            RMGOption.VIRTUAL_THREADS,
     }),
 
     /** Guess methods on bound names */
@@ -149,6 +165,9 @@ public enum Operation {
             RMGOption.TARGET_OBJID,
             RMGOption.TARGET_COMPONENT,
             RMGOption.GLOBAL_CONFIG,
+            RMGOption.GLOBAL_METRICS,
+            RMGOption.GLOBAL_METRICS_FILE,
+            RMGOption.GLOBAL_METRICS_JMX,
             RMGOption.GLOBAL_NO_COLOR,
             RMGOption.GLOBAL_STACK_TRACE,
             RMGOption.GLOBAL_VERBOSE,
@@ -164,7 +183,16 @@ public enum Operation {
             RMGOption.GUESS_DUPLICATES,
             RMGOption.GUESS_UPDATE,
             RMGOption.GUESS_ZERO_ARG,
+            RMGOption.GUESS_PIPELINE,
+            RMGOption.GUESS_TARGET_THREADS,
+            RMGOption.GUESS_STREAM,
+            RMGOption.GUESS_ADAPTIVE,
+            RMGOption.GUESS_RESUME,
+            RMGOption.GUESS_CACHE,
+            RMGOption.GUESS_CACHE_TTL,
+            RMGOption.GUESS_CACHE_INVALIDATE,
             RMGOption.THREADS,
+            RMGOption.VIRTUAL_THREADS,
             RMGOption.NO_PROGRESS,
             RMGOption.FORCE_ACTIVATION,
             RMGOption.SERIAL_VERSION_UID,
@@ -208,6 +236,9 @@ public enum Operation {
             RMGOption.TARGET_HOST,
             RMGOption.TARGET_PORT,
             RMGOption.GLOBAL_CONFIG,
+            RMGOption.GLOBAL_METRICS,
+            RMGOption.GLOBAL_METRICS_FILE,
+            RMGOption.GLOBAL_METRICS_JMX,
             RMGOption.GLOBAL_NO_COLOR,
             RMGOption.GLOBAL_PLUGIN,
             RMGOption.GLOBAL_STACK_TRACE,
@@ -251,14 +282,21 @@ public enum Operation {
     /** Perform an RMI service scan on common RMI ports */
     SCAN("dispatchPortScan", "[<port> [<port>] ...]", "Perform an RMI service scan on common RMI ports", new RMGOption[] {
             RMGOption.GLOBAL_CONFIG,
+            RMGOption.GLOBAL_METRICS,
+            RMGOption.GLOBAL_METRICS_FILE,
+            RMGOption.GLOBAL_METRICS_JMX,
             RMGOption.GLOBAL_NO_COLOR,
             RMGOption.GLOBAL_STACK_TRACE,
             RMGOption.GLOBAL_VERBOSE,
             RMGOption.SCAN_HOST,
             RMGOption.SCAN_PORTS,
+            RMGOption.SCAN_CONNECTIONS,
+            RMGOption.SCAN_HOST_CONNECTIONS,
+            RMGOption.SCAN_FINGERPRINTS,
             RMGOption.SCAN_TIMEOUT_CONNECT,
             RMGOption.SCAN_TIMEOUT_READ,
             RMGOption.THREADS,
+            RMGOption.VIRTUAL_THREADS,
             RMGOption.NO_PROGRESS,
     }),
 
@@ -271,6 +309,9 @@ public enum Operation {
             RMGOption.TARGET_SIGNATURE,
             RMGOption.TARGET_COMPONENT,
             RMGOption.GLOBAL_CONFIG,
+            RMGOption.GLOBAL_METRICS,
+            RMGOption.GLOBAL_METRICS_FILE,
+            RMGOption.GLOBAL_METRICS_JMX,
             RMGOption.GLOBAL_NO_COLOR,
             RMGOption.GLOBAL_PLUGIN,
             RMGOption.GLOBAL_STACK_TRACE,
@@ -299,6 +340,9 @@ public enum Operation {
             RMGOption.TARGET_HOST,
             RMGOption.TARGET_PORT,
             RMGOption.GLOBAL_CONFIG,
+            RMGOption.GLOBAL_METRICS,
+            RMGOption.GLOBAL_METRICS_FILE,
+            RMGOption.GLOBAL_METRICS_JMX,
             RMGOption.GLOBAL_NO_COLOR,
             RMGOption.GLOBAL_STACK_TRACE,
             RMGOption.GLOBAL_VERBOSE,
@@ -1,27 +1,36 @@
 package eu.tneitzel.rmg.operations;
 
+import java.io.File;
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
 import java.rmi.server.ObjID;
 import java.rmi.server.RMIClientSocketFactory;
-import java.util.concurrent.ForkJoinPool;
-import java.util.concurrent.TimeUnit;
+import java.util.ArrayList;
+import java.util.List;
 
 import eu.tneitzel.rmg.internal.ExceptionHandler;
 import eu.tneitzel.rmg.internal.MethodArguments;
 import eu.tneitzel.rmg.internal.RMGOption;
+import eu.tneitzel.rmg.io.FingerprintFile;
 import eu.tneitzel.rmg.io.Logger;
+import eu.tneitzel.rmg.networking.Fingerprint;
 import eu.tneitzel.rmg.networking.RMIEndpoint;
+import eu.tneitzel.rmg.networking.SelectorScanner;
 import eu.tneitzel.rmg.networking.TimeoutSocketFactory;
 import eu.tneitzel.rmg.networking.TrustAllSocketFactory;
+import eu.tneitzel.rmg.utils.HostList;
 import eu.tneitzel.rmg.utils.ProgressBar;
+import eu.tneitzel.rmg.utils.RMGUtils;
+import eu.tneitzel.rmg.utils.TaskExecutor;
 
 
 /**
  * The PortScanner class implements a simple RMI service scan that can be used to
  * identify RMI endpoints on a target. By default, it takes a list of ports from the
  * remote-method-guesser configuration file and attempts to perform an RMI call on
- * them. Calls are first dispatched without TLS, but for each port that is open and
- * that does not behave like an RMI port for plain text connections, a second attempt
- * with TLS is made.
+ * them. Calls are first dispatched without TLS, but for each port that answers the
+ * plain text handshake like a TLS endpoint, a second attempt with TLS is made.
  *
  * The PortScanner class is not meant to be used as a replacement for tools like nmap.
  * It is e.g. less reliable, as it does not implement retries and may misses some open
@@ -35,12 +44,20 @@ import eu.tneitzel.rmg.utils.ProgressBar;
  * than nmap regarding the service detection. In the past, we encountered several TLS
  * protected RMI ports where nmap was unable to detect the service correctly.
  *
+ * Multiple hosts are scanned by a single scanner. Work is scheduled as (host, port) pairs
+ * that are created on demand. Pairs are ordered by port, which spreads the connections
+ * over all hosts instead of scanning one host after the other. Identified RMI ports are
+ * reported as soon as they are found. If the --fingerprints option was used, the fingerprint
+ * of each identified port is appended to the specified file, where it can be picked up by
+ * the enum action.
+ *
  * @author Tobias Neitzel (@qtc_de)
  */
 public class PortScanner {
 
     private int hits;
-    private String host;
+    private long next;
+    private HostList hosts;
     private int[] rmiPorts;
 
     private final ObjID OReg = new ObjID(0);
@@ -48,7 +65,8 @@ public class PortScanner {
     private final ObjID ODgc = new ObjID(2);
 
     private ProgressBar bar;
-    private ForkJoinPool pool;
+    private FingerprintFile fingerprints;
+    private TaskExecutor pool;
     private MethodArguments scanArgs;
     private TrustAllSocketFactory sslFactory;
     private RMIClientSocketFactory sockFactory;
@@ -57,68 +75,238 @@ public class PortScanner {
     private static int connectTimeout = 5;
 
     /**
-     * The PortScanner class obtains the target host as a String and the ports to scan
+     * The PortScanner class obtains the target hosts as a HostList and the ports to scan
      * as an array of int.
      *
-     * @param host target for the port scan
+     * @param hosts targets for the port scan
      * @param rmiPorts ports to scan
      */
-    public PortScanner(String host, int[] rmiPorts)
+    public PortScanner(HostList hosts, int[] rmiPorts)
     {
         this.hits = 0;
-        this.host = host;
+        this.next = 0;
+        this.hosts = hosts;
         this.rmiPorts = rmiPorts;
 
-        bar = new ProgressBar(rmiPorts.length, 29);
+        bar = new ProgressBar(hosts.size() * rmiPorts.length, 29);
         scanArgs = new MethodArguments(0);
         sslFactory = new TrustAllSocketFactory(readTimeout, connectTimeout);
         sockFactory = new TimeoutSocketFactory(readTimeout, connectTimeout);
+        fingerprints = openFingerprints();
+    }
+
+    /**
+     * Open the fingerprint file specified by the --fingerprints option. If the file cannot be
+     * opened, rmg exits.
+     *
+     * @return FingerprintFile to write to or null if no file was specified
+     */
+    private static FingerprintFile openFingerprints()
+    {
+        if( RMGOption.SCAN_FINGERPRINTS.isNull() )
+            return null;
+
+        String path = RMGOption.SCAN_FINGERPRINTS.getValue();
+        FingerprintFile file = new FingerprintFile(new File(path));
+
+        try {
+            file.open();
+
+        } catch( IOException e ) {
+            Logger.eprintlnMixedYellow("Unable to open fingerprint file", path);
+            ExceptionHandler.showStackTrace(e);
+            RMGUtils.exit();
+        }
+
+        return file;
     }
 
     /**
-     * Performs the port scan. For each port to scan a PortScanWorker is created and is
-     * executed within a ThreadPool. The function may performs two runs per port. In the
-     * first run, a plain text connection is attempted. Closed ports are ignored, but for
-     * open ports that do not behave like RMI ports on a plain text connection, a second
-     * attempt using TLS is made.
+     * Performs the port scan. The plain text phase is performed by a SelectorScanner, which keeps up to
+     * --connections non blocking connections in flight and drives the JRMP handshake for each of them.
+     * After the handshake, calls on the RMI registry, the DGC and the Activator are pipelined over the same
+     * connection. The registry and DGC calls use the operation number 22, which does not exist within these
+     * objects. An RMI service that does not implement one of the objects returns a NoSuchObjectException for
+     * it, whereas an existing object answers with a different exception. Depending on the Java version of the
+     * server, this is e.g. an ArrayIndexOutOfBoundsException or a ServerException. The results are collected
+     * within a Fingerprint, that also contains the client endpoint reflected by the server and the timing.
      *
-     * The function uses a ForkJoinPool as ExecutorService, as the TLS scans are dispatched
-     * by the non TLS worker threads.
+     * Closed ports are ignored. Open ports are classified by their response to the plain text handshake. Ports
+     * that answer like a TLS endpoint are scanned a second time using TLS, whereas ports that send non JRMP data
+     * or do not answer at all are ignored. The TLS scan is performed by PortScanWorkers within a TaskExecutor.
+     * Depending on the --virtual-threads option, workers run on platform or virtual threads.
      *
      * @return number of identified open ports as int
      */
     public int portScan()
     {
-        pool = new ForkJoinPool(RMGOption.THREADS.getValue());
+        List<InetSocketAddress> tlsTargets = new ArrayList<InetSocketAddress>();
+        SelectorScanner scanner = new SelectorScanner(RMGOption.SCAN_CONNECTIONS.getValue(),
+                                                      RMGOption.SCAN_HOST_CONNECTIONS.getValue(),
+                                                      readTimeout, connectTimeout);
 
-        for( int port : rmiPorts ) {
-            Runnable r = new PortScanWorker(port, false);
-            pool.execute(r);
+        bar.start();
+
+        try {
+            scanner.run(s -> nextProbe(s, tlsTargets));
+
+        } catch( IOException e ) {
+            ExceptionHandler.unexpectedException(e, "portscan", "operation", true);
+        }
+
+        pool = new TaskExecutor(RMGOption.THREADS.getValue());
+
+        for( InetSocketAddress target : tlsTargets ) {
+            pool.execute(new PortScanWorker(target.getHostString(), target.getPort(), true));
         }
 
-        pool.awaitQuiescence(Long.MAX_VALUE, TimeUnit.NANOSECONDS);
-        pool.shutdown();
+        try {
+            pool.awaitCompletion();
+
+        } catch( InterruptedException e ) {
+            Logger.eprintln("Interrupted!");
+        }
 
+        bar.stop();
         Logger.lineBreak();
 
+        if( fingerprints != null ) {
+
+            try {
+                fingerprints.close();
+
+            } catch( IOException e ) {
+                ExceptionHandler.unexpectedException(e, "closing", "fingerprint file", false);
+            }
+        }
+
         return hits;
     }
 
+    /**
+     * Enqueue the fingerprint probe for the next (host, port) pair. Called by the SelectorScanner
+     * whenever it has free connection slots.
+     *
+     * @param scanner SelectorScanner to enqueue the probe on
+     * @param tlsTargets list of targets that need to be scanned using TLS
+     * @return false if all pairs were enqueued
+     */
+    private boolean nextProbe(SelectorScanner scanner, List<InetSocketAddress> tlsTargets)
+    {
+        long hostCount = hosts.size();
+
+        if( next >= hostCount * rmiPorts.length )
+            return false;
+
+        InetAddress host = hosts.get(next % hostCount);
+        int port = rmiPorts[(int)(next / hostCount)];
+
+        probeFingerprint(scanner, new InetSocketAddress(host, port), tlsTargets);
+        next += 1;
+
+        return next < hostCount * rmiPorts.length;
+    }
+
+    /**
+     * Enqueue the plain text fingerprint probe for the specified port. The probe checks the registry, the DGC
+     * and the Activator over a single connection. Ports that answer with JRMP returns are reported as RMI ports,
+     * whereas ports that answer like a TLS endpoint are added to the list of ports that are scanned using TLS.
+     *
+     * @param scanner SelectorScanner to enqueue the probe on
+     * @param address address of the port to scan
+     * @param tlsTargets list of targets that need to be scanned using TLS
+     */
+    private void probeFingerprint(SelectorScanner scanner, InetSocketAddress address, List<InetSocketAddress> tlsTargets)
+    {
+        scanner.fingerprint(address, (status, fingerprint) -> {
+
+            if( status == SelectorScanner.Status.TLS ) {
+                tlsTargets.add(address);
+                return;
+            }
+
+            if( status == SelectorScanner.Status.RETURN )
+                printResult(fingerprint);
+
+            bar.taskDone(address.getHostString());
+        });
+    }
+
+    /**
+     * Print the result of the portscan. Creates a new line for each identified port and
+     * lists the corresponding port number and the identified RMI services. In verbose mode,
+     * the fingerprint record of the port is printed below. The record is also written to the
+     * fingerprint file, if one was specified.
+     *
+     * @param fingerprint fingerprint of the identified RMI port
+     */
+    private synchronized void printResult(Fingerprint fingerprint)
+    {
+        hits += 1;
+
+        int port = fingerprint.getPort();
+        boolean dgc = fingerprint.hasDgc();
+        boolean registry = fingerprint.hasRegistry();
+        boolean activator = fingerprint.hasActivator();
+        StringBuilder sb = new StringBuilder();
+
+        if( registry | activator | dgc ) {
+
+            sb.append("(");
+
+            if( registry )
+                sb.append("Registry, ");
+
+            if( activator )
+                sb.append("Activator, ");
+
+            if( dgc )
+                sb.append("DGC, ");
+
+            sb.setLength(sb.length() - 2);
+            sb.append(")");
+
+        } else {
+            sb.append("(No known ObjID)");
+        }
+
+        String prefix = Logger.blue("[HIT] ");
+        String suffix = new String(new char[(5 - String.valueOf(port).length())]).replace("\0", " ") + Logger.blue(sb.toString());
+
+        Logger.printlnMixedYellow(prefix + "Found RMI service(s) on", fingerprint.getHost() + ":" + String.valueOf(port), suffix);
+
+        if( RMGOption.GLOBAL_VERBOSE.getBool() ) {
+            Logger.increaseIndent();
+            Logger.printlnMixedBlue("Fingerprint:", fingerprint.toString());
+            Logger.decreaseIndent();
+        }
+
+        if( fingerprints != null ) {
+
+            try {
+                fingerprints.write(fingerprint);
+
+            } catch( IOException e ) {
+                ExceptionHandler.unexpectedException(e, "writing", "fingerprint file", false);
+            }
+        }
+    }
+
     /**
      * Set the socket timeout values. By default, RMI connections have long connect
      * and read timeouts, which makes the defaults difficult to use for portscans.
      *
-     * @param read timeout for read operations on the sockets
-     * @param connect timeout for the initial socket connect
+     * @param read timeout in milliseconds for read operations on the sockets
+     * @param connect timeout in milliseconds for the initial socket connect
      */
-    public static void setSocketTimeouts(String read, String connect)
+    public static void setSocketTimeouts(int read, int connect)
     {
-        readTimeout = Integer.valueOf(read);
-        connectTimeout = Integer.valueOf(connect);
+        readTimeout = read;
+        connectTimeout = connect;
     }
 
     /**
-     * The PortScanWorker performs the actual connection attempt to a port. It is also
+     * The PortScanWorker performs the TLS connection attempt to a port. It is also
      * responsible for printing a status message for each identified RMI port.
      *
      * @author Tobias Neitzel (@qtc_de)
@@ -126,6 +314,7 @@ public class PortScanner {
     private class  PortScanWorker implements Runnable {
 
         private int port;
+        private String host;
         private boolean ssl;
         private RMIEndpoint endpoint;
 
@@ -135,15 +324,17 @@ public class PortScanner {
 
 
         /**
-         * A PortScanWorker obtains the candidate port it should scan and a boolean
+         * A PortScanWorker obtains the candidate host and port it should scan and a boolean
          * that indicates whether the connection needs to be made using TLS.
          *
+         * @param host host to scan
          * @param port port to scan
          * @param ssl whether to use TLS
          */
-        public PortScanWorker(int port, boolean ssl)
+        public PortScanWorker(String host, int port, boolean ssl)
         {
             this.ssl = ssl;
+            this.host = host;
             this.port = port;
 
             if(ssl)
@@ -166,6 +357,8 @@ public class PortScanner {
          */
         public void run()
         {
+            long start = System.nanoTime();
+
             try {
                 endpoint.unmanagedCall(OReg, 22, 0L, scanArgs, false, null, null);
 
@@ -173,14 +366,14 @@ public class PortScanner {
 
                 scanDgc();
                 scanAct();
-                printResult();
+                printResult(createFingerprint(start));
 
             } catch( java.lang.ArrayIndexOutOfBoundsException e ) {
 
                 this.registry = true;
                 scanDgc();
                 scanAct();
-                printResult();
+                printResult(createFingerprint(start));
 
             } catch( java.rmi.ConnectException e ) {
 
@@ -192,7 +385,7 @@ public class PortScanner {
 
                     if( !ssl ) {
                         bar.addWork();
-                        pool.execute(new PortScanWorker(port, true));
+                        pool.execute(new PortScanWorker(host, port, true));
                     }
                 }
 
@@ -200,14 +393,27 @@ public class PortScanner {
 
                 if( !ssl ) {
                     bar.addWork();
-                    pool.execute(new PortScanWorker(port, true));
+                    pool.execute(new PortScanWorker(host, port, true));
                 }
 
             } finally {
-                bar.taskDone();
+                bar.taskDone(host);
             }
         }
 
+        /**
+         * Create the fingerprint for the scanned port. TLS ports are scanned using the regular RMI
+         * stack, which does not expose the ProtocolAck. The reflected client endpoint and the handshake
+         * time are therefore unknown and the call time includes the handshake.
+         *
+         * @param start time in nanoseconds when the first call was started
+         * @return fingerprint of the scanned port
+         */
+        private Fingerprint createFingerprint(long start)
+        {
+            return new Fingerprint(host, port, ssl, null, -1, registry, dgc, activator, -1, System.nanoTime() - start);
+        }
+
         /**
          * Performs an unmanaged call on the DGC remote object. If a DGC remote object is present,
          * this should always lead to an ArrayIndexOutOfBoundsException, as the operation number 22
@@ -264,40 +470,5 @@ public class PortScanner {
                 ExceptionHandler.unexpectedException(e, "portscan", "operation", false);
             }
         }
-
-        /**
-         * Print the result of the portscan. Creates a new line for each identified port and
-         * lists the corresponding port number and the identified RMI services.
-         */
-        private void printResult()
-        {
-            hits += 1;
-            StringBuilder sb = new StringBuilder();
-
-            if( registry | activator | dgc ) {
-
-                sb.append("(");
-
-                if( registry )
-                    sb.append("Registry, ");
-
-                if( activator )
-                    sb.append("Activator, ");
-
-                if( dgc )
-                    sb.append("DGC, ");
-
-                sb.setLength(sb.length() - 2);
-                sb.append(")");
-
-            } else {
-                sb.append("(No known ObjID)");
-            }
-
-            String prefix = Logger.blue("[HIT] ");
-            String suffix = new String(new char[(5 - String.valueOf(port).length())]).replace("\0", " ") + Logger.blue(sb.toString());
-
-            Logger.printlnMixedYellow(prefix + "Found RMI service(s) on", host + ":" + String.valueOf(port), suffix);
-        }
     }
 }
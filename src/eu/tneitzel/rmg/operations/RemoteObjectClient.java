@@ -2,9 +2,12 @@ package eu.tneitzel.rmg.operations;
 
 import java.rmi.server.ObjID;
 import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
 
 import eu.tneitzel.rmg.internal.ExceptionHandler;
 import eu.tneitzel.rmg.internal.MethodArguments;
@@ -12,6 +15,7 @@ import eu.tneitzel.rmg.internal.MethodCandidate;
 import eu.tneitzel.rmg.internal.RMGOption;
 import eu.tneitzel.rmg.internal.RMIComponent;
 import eu.tneitzel.rmg.io.Logger;
+import eu.tneitzel.rmg.networking.GuessingPipeline;
 import eu.tneitzel.rmg.networking.RMIEndpoint;
 import eu.tneitzel.rmg.networking.RMIRegistryEndpoint;
 import eu.tneitzel.rmg.utils.DefinitelyNonExistingClass;
@@ -41,6 +45,7 @@ public class RemoteObjectClient
 
     private String boundName;
     private String randomClassName;
+    private final Queue<GuessingPipeline> pipelines = new ConcurrentLinkedQueue<GuessingPipeline>();
 
     /** underlying UnicastWrapper */
     public UnicastWrapper remoteObject;
@@ -364,6 +369,49 @@ public class RemoteObjectClient
         rmi.guessingCall(targetMethod, getMethodName(targetMethod), remoteRef);
     }
 
+    /**
+     * Guess the specified MethodCandidates over a GuessingPipeline. Pipelines are kept open after use and
+     * are reused by subsequent calls, so each worker that guesses on this client keeps its connection for
+     * the whole guessing run. Idle pipelines need to be closed by calling closePipelines.
+     *
+     * @param candidates methods to guess
+     * @param depth maximum number of calls that are in flight at the same time
+     * @param handler ResultHandler that processes the result of each guessing call
+     * @return List of MethodCandidates that could not be guessed by using the pipeline
+     */
+    public List<MethodCandidate> pipelinedGuessingCall(Collection<MethodCandidate> candidates, int depth, GuessingPipeline.ResultHandler handler)
+    {
+        GuessingPipeline pipeline = pipelines.poll();
+
+        if (pipeline == null)
+        {
+            pipeline = rmi.guessingPipeline(objID, depth);
+        }
+
+        try
+        {
+            return pipeline.guess(candidates, handler);
+        }
+
+        finally
+        {
+            pipelines.add(pipeline);
+        }
+    }
+
+    /**
+     * Close all idle GuessingPipelines that were opened by pipelinedGuessingCall.
+     */
+    public void closePipelines()
+    {
+        GuessingPipeline pipeline;
+
+        while ((pipeline = pipelines.poll()) != null)
+        {
+            pipeline.close();
+        }
+    }
+
     /**
      * Takes a list of RemoteObjectClients and filters clients that have no methods within
      * their method list.
@@ -485,8 +533,8 @@ public class RemoteObjectClient
     /**
      * During deserialization and codebase attacks, rmg uses a canary to check whether the attack was successful.
      * Instead of sending the plain payload object to the RMI endpoint, rmg always sends an Object array that consists
-     * out of the actual payload Object and a canary class. The canary class is randomly generated during runtime and
-     * passed in the second position within the Object array. The payload itself is used in the first position.
+     * out of the actual payload Object and a canary class. The canary class is randomly generated once during runtime
+     * and passed in the second position within the Object array. The payload itself is used in the first position.
      *
      * Only if the payload object was successfully processed on the RMI server, it will attempt to load the canary class,
      * that leads to a ClassNotFoundException. This makes it reliably detectable whether an attack was successful.
@@ -523,7 +571,7 @@ public class RemoteObjectClient
 
             try
             {
-                Class<?> randomClass = RMGUtils.makeRandomClass();
+                Class<?> randomClass = RMGUtils.getCanaryClass();
                 randomInstance = randomClass.newInstance();
             }
 
@@ -0,0 +1,104 @@
+package eu.tneitzel.rmg.utils;
+
+/**
+ * The AdaptiveLimit controls the number of concurrent calls that are dispatched to a single target. It follows the
+ * additive increase / multiplicative decrease (AIMD) scheme known from TCP congestion control. Each successful call
+ * increases the limit by 1/limit, which results in an increase of roughly one per limit successful calls. Failed
+ * calls and calls whose latency grows significantly above the lowest observed latency halve the limit.
+ *
+ * Decreases are only performed once per smoothed round trip time. Calls that were already in flight when the limit
+ * was decreased often fail or respond slowly for the same reason. Without the cooldown, they would collapse the limit
+ * to its minimum.
+ *
+ * @author Tobias Neitzel (@qtc_de)
+ */
+public class AdaptiveLimit
+{
+    private final int min;
+    private final int max;
+
+    private double limit;
+    private long minLatency;
+    private long smoothedLatency;
+    private long lastDecrease;
+
+    private static final double DECREASE_FACTOR = 0.5;
+    private static final int LATENCY_TOLERANCE = 4;
+    private static final long MIN_COOLDOWN = 10_000_000L;
+
+    /**
+     * Create a new AdaptiveLimit. The limit starts at the specified minimum.
+     *
+     * @param min minimum number of concurrent calls
+     * @param max maximum number of concurrent calls
+     */
+    public AdaptiveLimit(int min, int max)
+    {
+        this.min = Math.max(min, 1);
+        this.max = Math.max(max, this.min);
+
+        this.limit = this.min;
+        this.minLatency = Long.MAX_VALUE;
+        this.smoothedLatency = 0;
+        this.lastDecrease = 0;
+    }
+
+    /**
+     * Return the current number of allowed concurrent calls.
+     *
+     * @return current limit
+     */
+    public synchronized int get()
+    {
+        return (int)limit;
+    }
+
+    /**
+     * Report a successful call. The latency is used to detect overloaded targets. If the latency of the call
+     * is unknown, a negative value can be used.
+     *
+     * @param latency latency of the call in nanoseconds or a negative value if unknown
+     */
+    public synchronized void success(long latency)
+    {
+        if (latency >= 0)
+        {
+            minLatency = Math.min(minLatency, latency);
+            smoothedLatency = (smoothedLatency == 0) ? latency : (7 * smoothedLatency + latency) / 8;
+
+            if (smoothedLatency > LATENCY_TOLERANCE * minLatency)
+            {
+                decrease();
+                return;
+            }
+        }
+
+        limit = Math.min(max, limit + 1.0 / limit);
+    }
+
+    /**
+     * Report a failed call. Failures indicate that the target cannot handle the current amount of concurrent
+     * calls and cause a multiplicative decrease of the limit.
+     */
+    public synchronized void failure()
+    {
+        decrease();
+    }
+
+    /**
+     * Decrease the limit by the DECREASE_FACTOR, unless the limit was already decreased within the
+     * last round trip time.
+     */
+    private void decrease()
+    {
+        long now = System.nanoTime();
+
+        if (lastDecrease != 0 && now - lastDecrease < Math.max(smoothedLatency, MIN_COOLDOWN))
+        {
+            return;
+        }
+
+        limit = Math.max(min, limit * DECREASE_FACTOR);
+        lastDecrease = now;
+    }
+}
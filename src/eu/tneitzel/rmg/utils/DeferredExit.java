@@ -0,0 +1,24 @@
+package eu.tneitzel.rmg.utils;
+
+/**
+ * DeferredExit is thrown by RMGUtils.exit when it is called from a thread whose output is buffered. Exiting
+ * directly would discard the buffered output of the thread, including the error that caused the exit. Instead,
+ * the thread that replays the buffered output is responsible for exiting after the output was printed.
+ *
+ * DeferredExit extends Error to ensure that it is not caught by the catch all exception handlers that are used
+ * throughout remote-method-guesser.
+ *
+ * @author Tobias Neitzel (@qtc_de)
+ */
+public class DeferredExit extends Error
+{
+    private static final long serialVersionUID = 1L;
+
+    /**
+     * Create a new DeferredExit.
+     */
+    public DeferredExit()
+    {
+        super("exit was requested from a buffered thread", null, false, false);
+    }
+}
@@ -0,0 +1,299 @@
+package eu.tneitzel.rmg.utils;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.UnknownHostException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import eu.tneitzel.rmg.internal.ExceptionHandler;
+import eu.tneitzel.rmg.io.Logger;
+
+/**
+ * The HostList contains the targets of a multi host scan. Hosts can be specified in the following formats:
+ *
+ *      host            a single hostname or IP address
+ *      a.b.c.d/n       an IPv4 CIDR range
+ *      @path           a file containing one host specification per line
+ *      -               host specifications read from stdin
+ *
+ * Multiple host specifications can also be combined as a comma separated list. Hostnames are resolved while the
+ * list is parsed, whereas CIDR ranges are stored as address ranges and addresses are only created when they are
+ * requested. This keeps the memory usage low, even for large ranges like a /8 network.
+ *
+ * @author Tobias Neitzel (@qtc_de)
+ */
+public class HostList
+{
+    private long size;
+    private final List<InetAddress> hosts;
+    private final List<long[]> ranges;
+
+    /**
+     * Create an empty HostList.
+     */
+    private HostList()
+    {
+        this.size = 0;
+        this.hosts = new ArrayList<InetAddress>();
+        this.ranges = new ArrayList<long[]>();
+    }
+
+    /**
+     * Parse the specified host specifications. Hosts that cannot be resolved are reported and skipped.
+     * Invalid CIDR ranges and unreadable host files cause rmg to exit.
+     *
+     * @param specs host specifications as obtained from the command line
+     * @return HostList containing all specified hosts
+     */
+    public static HostList parse(List<String> specs)
+    {
+        HostList list = new HostList();
+
+        for (String spec : specs)
+        {
+            list.add(spec);
+        }
+
+        return list;
+    }
+
+    /**
+     * Return the number of hosts within the list.
+     *
+     * @return number of hosts
+     */
+    public long size()
+    {
+        return size;
+    }
+
+    /**
+     * Return the host with the specified index. Hosts that were specified by name come first,
+     * followed by the addresses of the specified CIDR ranges.
+     *
+     * @param index index of the host
+     * @return host with the specified index
+     */
+    public InetAddress get(long index)
+    {
+        if (index < hosts.size())
+        {
+            return hosts.get((int)index);
+        }
+
+        index -= hosts.size();
+
+        for (long[] range : ranges)
+        {
+            if (index < range[1])
+            {
+                return toAddress(range[0] + index);
+            }
+
+            index -= range[1];
+        }
+
+        throw new IndexOutOfBoundsException("Host index " + index + " is out of range.");
+    }
+
+    /**
+     * Return the name that was used to specify the host or its IP address, if the host was not specified
+     * by name. In contrast to InetAddress.getHostName, no reverse lookup is performed.
+     *
+     * @param host host to obtain the name for
+     * @return hostname or IP address
+     */
+    public static String getHostString(InetAddress host)
+    {
+        return new InetSocketAddress(host, 0).getHostString();
+    }
+
+    /**
+     * Add a single host specification to the list.
+     *
+     * @param spec host specification
+     */
+    private void add(String spec)
+    {
+        spec = spec.trim();
+
+        if (spec.isEmpty() || spec.startsWith("#"))
+        {
+            return;
+        }
+
+        if (spec.contains(","))
+        {
+            for (String part : spec.split(","))
+            {
+                add(part);
+            }
+        }
+
+        else if (spec.equals("-"))
+        {
+            addLines(new BufferedReader(new InputStreamReader(System.in, StandardCharsets.UTF_8)), "stdin");
+        }
+
+        else if (spec.startsWith("@"))
+        {
+            String path = spec.substring(1);
+
+            try (BufferedReader reader = Files.newBufferedReader(Paths.get(path), StandardCharsets.UTF_8))
+            {
+                addLines(reader, path);
+            }
+
+            catch (IOException e)
+            {
+                Logger.eprintlnMixedYellow("Unable to read host file", path);
+                ExceptionHandler.showStackTrace(e);
+                RMGUtils.exit();
+            }
+        }
+
+        else if (spec.contains("/"))
+        {
+            addRange(spec);
+        }
+
+        else
+        {
+            addHost(spec);
+        }
+    }
+
+    /**
+     * Add all host specifications from the specified reader. Each line is expected to contain one host
+     * specification. Empty lines and lines starting with a hash are ignored.
+     *
+     * @param reader reader to obtain the host specifications from
+     * @param source name of the source for error messages
+     */
+    private void addLines(BufferedReader reader, String source)
+    {
+        try
+        {
+            String line;
+
+            while ((line = reader.readLine()) != null)
+            {
+                if (line.trim().equals("-") || line.trim().startsWith("@"))
+                {
+                    continue;
+                }
+
+                add(line);
+            }
+        }
+
+        catch (IOException e)
+        {
+            Logger.eprintlnMixedYellow("Unable to read host specifications from", source);
+            ExceptionHandler.showStackTrace(e);
+            RMGUtils.exit();
+        }
+    }
+
+    /**
+     * Resolve the specified host and add it to the list. Unresolvable hosts are reported and skipped.
+     *
+     * @param host hostname or IP address
+     */
+    private void addHost(String host)
+    {
+        try
+        {
+            hosts.add(InetAddress.getByName(host));
+            size += 1;
+        }
+
+        catch (UnknownHostException e)
+        {
+            ExceptionHandler.unknownHost(e, host, false);
+        }
+    }
+
+    /**
+     * Add an IPv4 CIDR range to the list.
+     *
+     * @param cidr CIDR range in a.b.c.d/n format
+     */
+    private void addRange(String cidr)
+    {
+        String[] split = cidr.split("/");
+
+        try
+        {
+            int prefix = Integer.parseInt(split[1]);
+            InetAddress base = InetAddress.getByName(split[0]);
+
+            if (split.length != 2 || !(base instanceof Inet4Address) || prefix < 0 || prefix > 32)
+            {
+                throw new IllegalArgumentException(cidr);
+            }
+
+            long count = 1L << (32 - prefix);
+            long start = toLong(base) & ~(count - 1);
+
+            ranges.add(new long[] { start, count });
+            size += count;
+        }
+
+        catch (UnknownHostException | IllegalArgumentException | ArrayIndexOutOfBoundsException e)
+        {
+            Logger.eprintlnMixedYellow("The specified CIDR range", cidr, "is invalid.");
+            Logger.eprintlnMixedBlue("Ranges must be specified in", "a.b.c.d/n", "format.");
+            RMGUtils.exit();
+        }
+    }
+
+    /**
+     * Convert an IPv4 address into its numeric representation.
+     *
+     * @param address IPv4 address
+     * @return numeric representation of the address
+     */
+    private static long toLong(InetAddress address)
+    {
+        long value = 0;
+
+        for (byte b : address.getAddress())
+        {
+            value = (value << 8) | (b & 0xff);
+        }
+
+        return value;
+    }
+
+    /**
+     * Convert the numeric representation of an IPv4 address into an InetAddress.
+     *
+     * @param value numeric representation of the address
+     * @return corresponding InetAddress
+     */
+    private static InetAddress toAddress(long value)
+    {
+        byte[] address = new byte[] { (byte)(value >> 24), (byte)(value >> 16), (byte)(value >> 8), (byte)value };
+
+        try
+        {
+            return InetAddress.getByAddress(address);
+        }
+
+        catch (UnknownHostException e)
+        {
+            ExceptionHandler.internalError("HostList.toAddress", "Invalid address length.");
+        }
+
+        return null;
+    }
+}
@@ -1,19 +1,41 @@
 package eu.tneitzel.rmg.utils;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+
 import eu.tneitzel.rmg.internal.RMGOption;
 import eu.tneitzel.rmg.io.Logger;
 
 /**
  * Simple progress bar that is used during the guess and scan operations.
  *
+ * Worker threads only update the progress counters, which are lock-free. The progress bar itself is drawn
+ * by a separate render thread at a fixed frame rate. Apart from the progress, the bar displays the current
+ * throughput and the estimated remaining time. Progress can optionally be accounted per target, which is
+ * displayed as a breakdown in verbose mode when the progress bar is stopped.
+ *
  * @author Tobias Neitzel (@qtc_de)
  */
 public class ProgressBar {
 
-    private int done;
-    private int work;
+    private final LongAdder done;
+    private final AtomicLong work;
     private final int length;
     private final String formatString;
+    private final Map<String,LongAdder> targets;
+
+    private long start;
+    private long lastDone;
+    private long lastWork;
+
+    private volatile boolean running;
+    private Thread renderer;
+
+    private static final long FRAME_INTERVAL = TimeUnit.MILLISECONDS.toNanos(100);
 
     /**
      * Initialize the progress bar with the amount of work and the desired length.
@@ -21,55 +43,218 @@ public class ProgressBar {
      * @param work Amount of work that needs to be done
      * @param length Length of the actual progress bar (# - part)
      */
-    public ProgressBar(int work, int length)
+    public ProgressBar(long work, int length)
     {
-        this.work = work;
+        this.work = new AtomicLong(work);
         this.length = length;
-        this.done = 0;
+        this.done = new LongAdder();
+        this.targets = new ConcurrentHashMap<String,LongAdder>();
+
+        this.lastDone = -1;
+        this.lastWork = -1;
 
         int digits = String.valueOf(work).length();
-        this.formatString = "[%" + String.valueOf(digits) + "d / %d] [%s] %3d%%\r";
+        this.formatString = "[%" + String.valueOf(digits) + "d / %d] [%s] %3d%% | %5d/s | ETA %-8s\r";
     }
 
     /**
-     * During the scan action, the amount of work may increases and we need a function
-     * to increase the value.
+     * Start the render thread of the progress bar. Does nothing when --no-progress was specified.
      */
-    public synchronized void addWork()
+    public synchronized void start()
     {
-        if(RMGOption.NO_PROGRESS.getBool() == true)
+        if (RMGOption.NO_PROGRESS.getBool() || renderer != null)
+        {
             return;
+        }
+
+        start = System.nanoTime();
+        running = true;
 
-        this.work += 1;
+        renderer = new Thread(this::render, "rmg-progress");
+        renderer.setDaemon(true);
+        renderer.start();
     }
 
     /**
-     * Is called for each task that is done. Increases the number of done tasks and
-     * updates the progress bar.
+     * Stop the render thread and draw the final state of the progress bar. In verbose mode, the progress
+     * of each target is printed afterwards, if progress was accounted for more than one target.
      */
-    public synchronized void taskDone()
+    public synchronized void stop()
     {
-        if(RMGOption.NO_PROGRESS.getBool() == true)
+        if (renderer == null)
+        {
             return;
+        }
+
+        running = false;
+        LockSupport.unpark(renderer);
+
+        try
+        {
+            renderer.join();
+        }
+
+        catch (InterruptedException e)
+        {
+            Thread.currentThread().interrupt();
+        }
+
+        renderer = null;
+        printBar(true);
+
+        if (RMGOption.GLOBAL_VERBOSE.getBool() && targets.size() > 1)
+        {
+            printBreakdown();
+        }
+    }
+
+    /**
+     * During the scan action, the amount of work may increases and we need a function
+     * to increase the value.
+     */
+    public void addWork()
+    {
+        work.incrementAndGet();
+    }
+
+    /**
+     * Is called for each task that is done. Increases the number of done tasks. The
+     * progress bar is updated by the render thread.
+     */
+    public void taskDone()
+    {
+        done.increment();
+    }
 
-        this.done += 1;
-        printBar();
+    /**
+     * Is called for each task that is done for the specified target. Increases the number
+     * of done tasks in total and for the target. The counter of the target is looked up
+     * first, as computeIfAbsent locks the corresponding bin on Java 8 even if the key exists.
+     *
+     * @param target target the task was performed on
+     */
+    public void taskDone(String target)
+    {
+        done.increment();
+
+        LongAdder counter = targets.get(target);
+
+        if (counter == null)
+        {
+            counter = targets.computeIfAbsent(target, k -> new LongAdder());
+        }
+
+        counter.increment();
     }
 
     /**
-     * Prints the current progress bar to stdout.
+     * Main loop of the render thread. Draws the progress bar once per frame.
      */
-    private void printBar()
+    private void render()
     {
-        float progress = (float)done / work;
+        while (running)
+        {
+            LockSupport.parkNanos(FRAME_INTERVAL);
+
+            if (running)
+            {
+                printBar(false);
+            }
+        }
+    }
+
+    /**
+     * Prints the current progress bar to stdout. Frames are skipped if the progress did not
+     * change since the last frame, unless the frame is forced.
+     *
+     * @param force whether to print the frame in any case
+     */
+    private void printBar(boolean force)
+    {
+        long doneCount = done.sum();
+        long workCount = work.get();
+
+        if (!force && doneCount == lastDone && workCount == lastWork)
+        {
+            return;
+        }
+
+        lastDone = doneCount;
+        lastWork = workCount;
+
+        float progress = (workCount == 0) ? 1 : Math.min((float)doneCount / workCount, 1);
 
         int percentage = (int) Math.round(progress * 100);
         int barLength = (int) Math.round(progress * length);
 
-        String progressBar = new String(new char[barLength]).replace("\0", "#");
-        progressBar = progressBar + new String(new char[length - barLength]).replace("\0", " ");
-        progressBar = String.format(formatString, done, work, progressBar, percentage);
+        StringBuilder bar = new StringBuilder(length);
+
+        for (int ctr = 0; ctr < length; ctr++)
+        {
+            bar.append(ctr < barLength ? '#' : ' ');
+        }
+
+        long rate = getRate(doneCount);
+        String eta = (rate == 0) ? "--:--" : formatTime((workCount - doneCount) / rate);
+
+        Logger.print(String.format(formatString, doneCount, workCount, bar, percentage, rate, eta));
+    }
+
+    /**
+     * Prints the number of finished tasks and the throughput for each target.
+     */
+    private void printBreakdown()
+    {
+        int padding = 0;
+
+        for (String target : targets.keySet())
+        {
+            padding = Math.max(padding, target.length());
+        }
+
+        Logger.lineBreak();
+
+        for (Map.Entry<String,LongAdder> entry : targets.entrySet())
+        {
+            long count = entry.getValue().sum();
+            Logger.printlnMixedBlue("-", Logger.padRight(entry.getKey(), padding), count + " tasks (" + getRate(count) + "/s)");
+        }
+    }
+
+    /**
+     * Compute the throughput for the specified number of tasks since the progress bar was started.
+     *
+     * @param count number of finished tasks
+     * @return tasks per second
+     */
+    private long getRate(long count)
+    {
+        long elapsed = System.nanoTime() - start;
+
+        if (elapsed <= 0)
+        {
+            return 0;
+        }
+
+        return count * TimeUnit.SECONDS.toNanos(1) / elapsed;
+    }
+
+    /**
+     * Format the specified number of seconds as mm:ss or hh:mm:ss.
+     *
+     * @param seconds seconds to format
+     * @return formatted time
+     */
+    private static String formatTime(long seconds)
+    {
+        long hours = seconds / 3600;
+        long minutes = (seconds % 3600) / 60;
+
+        if (hours > 0)
+        {
+            return String.format("%d:%02d:%02d", hours, minutes, seconds % 60);
+        }
 
-        Logger.print(progressBar);
+        return String.format("%02d:%02d", minutes, seconds % 60);
     }
 }
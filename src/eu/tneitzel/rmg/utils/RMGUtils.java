@@ -22,6 +22,8 @@ import java.util.Iterator;
 import java.util.List;
 import java.util.Set;
 import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 
@@ -31,6 +33,7 @@ import eu.tneitzel.rmg.internal.RMGOption;
 import eu.tneitzel.rmg.internal.RMIComponent;
 import eu.tneitzel.rmg.io.Logger;
 import eu.tneitzel.rmg.io.MaliciousOutputStream;
+import eu.tneitzel.rmg.metrics.FlightEvents;
 import javassist.CannotCompileException;
 import javassist.ClassPool;
 import javassist.CtClass;
@@ -56,22 +59,30 @@ import sun.rmi.transport.LiveRef;
 @SuppressWarnings({ "rawtypes", "deprecation", "restriction" })
 public class RMGUtils
 {
-    private static ClassPool pool;
+    private static RMGClassPool pool;
+    private static Class canaryClass;
     private static CtClass dummyClass;
     private static CtClass remoteClass;
     private static CtClass serializable;
     private static CtClass remoteStubClass;
     private static Set<String> createdClasses;
+    private static final LongAdder detachedClasses = new LongAdder();
 
     /**
      * The init function has to be called before the javassist library can be utilized via RMGUtils.
      * It initializes the class pool and creates CtClass objects for the Remote, RemoteStub and Serializable
      * classes. Furthermore, it creates a Dummy interface that is used for method creation. All this stuff
      * is stored within static variables and can be used by RMGUtils after initialization.
+     *
+     * RMGUtils uses its own ClassPool instead of the default one. CtClass objects that were converted into
+     * classes are removed from this pool, unless they may be required for compiling method signatures later
+     * on. These are only pruned. This prevents the pool from growing with each created class during long
+     * running operations. All functions that modify the pool or convert CtClass objects into classes are
+     * synchronized, as the pool is shared by all threads.
      */
     public static void init()
     {
-        pool = ClassPool.getDefault();
+        pool = new RMGClassPool();
 
         try
         {
@@ -86,7 +97,7 @@ public class RMGUtils
         }
 
         dummyClass = pool.makeInterface("eu.tneitzel.rmg.Dummy");
-        createdClasses = new HashSet<String>();
+        createdClasses = ConcurrentHashMap.newKeySet();
     }
 
     /**
@@ -101,7 +112,7 @@ public class RMGUtils
      * @return created Class instance
      * @throws CannotCompileException can be thrown when e.g. the class name is invalid
      */
-    public static Class makeInterface(String className) throws CannotCompileException
+    public static synchronized Class makeInterface(String className) throws CannotCompileException
     {
         try {
             return Class.forName(className);
@@ -110,7 +121,7 @@ public class RMGUtils
         CtClass intf = pool.makeInterface(className, remoteClass);
         createdClasses.add(className);
 
-        return intf.toClass();
+        return toClass(intf, true);
     }
 
     /**
@@ -135,7 +146,7 @@ public class RMGUtils
      * @throws CannotCompileException may be thrown when the specified class name is invalid
      * @throws NotFoundException should never be thrown in practice
      */
-    public static Class makeLegacyStub(String className, long serialVersionUID) throws CannotCompileException, NotFoundException
+    public static synchronized Class makeLegacyStub(String className, long serialVersionUID) throws CannotCompileException, NotFoundException
     {
         try {
             return Class.forName(className);
@@ -149,7 +160,7 @@ public class RMGUtils
         addSerialVersionUID(ctClass, serialVersionUID);
 
         createdClasses.add(className);
-        return ctClass.toClass();
+        return toClass(ctClass, false);
     }
 
     /**
@@ -164,12 +175,31 @@ public class RMGUtils
      * @return Class object of a serializable class with random class name.
      * @throws CannotCompileException should never be thrown in practice
      */
-    public static Class makeRandomClass() throws CannotCompileException
+    public static synchronized Class makeRandomClass() throws CannotCompileException
     {
         String classname = UUID.randomUUID().toString().replaceAll("-", "");
         CtClass ctClass = pool.makeClass(classname);
         ctClass.addInterface(serializable);
-        return ctClass.toClass();
+        return toClass(ctClass, false);
+    }
+
+    /**
+     * Returns the canary class that is used during method attacks. The canary is a random class created
+     * by makeRandomClass. It is only created once and is then reused for all attacks of the current run.
+     * This is possible, as the canary is never loaded by the server and is only required to have a name
+     * that is unknown to the server.
+     *
+     * @return Class object of the canary class
+     * @throws CannotCompileException should never be thrown in practice
+     */
+    public static synchronized Class getCanaryClass() throws CannotCompileException
+    {
+        if (canaryClass == null)
+        {
+            canaryClass = makeRandomClass();
+        }
+
+        return canaryClass;
     }
 
     /**
@@ -182,7 +212,7 @@ public class RMGUtils
      * @return Class object of a serializable class with specified class name
      * @throws CannotCompileException may be thrown if the specified class name is invalid
      */
-    public static Class makeSerializableClass(String className, long serialVersionUID) throws CannotCompileException
+    public static synchronized Class makeSerializableClass(String className, long serialVersionUID) throws CannotCompileException
     {
         try {
             return Class.forName(className);
@@ -192,7 +222,7 @@ public class RMGUtils
         ctClass.addInterface(serializable);
         addSerialVersionUID(ctClass, serialVersionUID);
 
-        return ctClass.toClass();
+        return toClass(ctClass, false);
     }
 
     /**
@@ -236,7 +266,7 @@ public class RMGUtils
      * @return socket factory class that implements RMIClientSocketFactory
      * @throws CannotCompileException internal error
      */
-    public static Class makeSocketFactory(String className, long serialVersionUID) throws CannotCompileException
+    public static synchronized Class makeSocketFactory(String className, long serialVersionUID) throws CannotCompileException
     {
         try
         {
@@ -272,7 +302,56 @@ public class RMGUtils
 
         catch (NotFoundException e) {}
 
-        return ctClass.toClass();
+        return toClass(ctClass, false);
+    }
+
+    /**
+     * Converts the specified CtClass into a Class object and releases it from the ClassPool afterwards.
+     * Classes that may be referenced by method signatures need to stay resolvable within the ClassPool and
+     * are only pruned. All other classes are detached, as they are never obtained from the pool again.
+     *
+     * @param ctClass CtClass to convert
+     * @param referenced whether the class may be referenced by method signatures
+     * @return converted Class object
+     * @throws CannotCompileException if the conversion fails
+     */
+    private static Class toClass(CtClass ctClass, boolean referenced) throws CannotCompileException
+    {
+        Class cls = ctClass.toClass();
+
+        if (referenced)
+        {
+            ctClass.prune();
+        }
+
+        else
+        {
+            ctClass.detach();
+            detachedClasses.increment();
+        }
+
+        return cls;
+    }
+
+    /**
+     * Returns the number of CtClass objects that are currently contained within the ClassPool of RMGUtils.
+     *
+     * @return size of the ClassPool
+     */
+    public static int getPoolSize()
+    {
+        return pool.size();
+    }
+
+    /**
+     * Returns the number of CtClass objects that were removed from the ClassPool of RMGUtils after they
+     * were converted into classes.
+     *
+     * @return number of detached classes
+     */
+    public static long getDetachedCount()
+    {
+        return detachedClasses.sum();
     }
 
     /**
@@ -285,9 +364,26 @@ public class RMGUtils
      * @return CtMethod compiled from the signature
      * @throws CannotCompileException is thrown when signature is invalid
      */
-    public static CtMethod makeMethod(String signature) throws CannotCompileException
+    public static synchronized CtMethod makeMethod(String signature) throws CannotCompileException
     {
-        return CtNewMethod.make("public " + signature + ";", dummyClass);
+        Object event = FlightEvents.begin(FlightEvents.Type.COMPILATION);
+        Throwable outcome = null;
+
+        try
+        {
+            return CtNewMethod.make("public " + signature + ";", dummyClass);
+        }
+
+        catch (Throwable t)
+        {
+            outcome = t;
+            throw t;
+        }
+
+        finally
+        {
+            FlightEvents.compilation(event, signature, outcome);
+        }
     }
 
     /**
@@ -332,7 +428,7 @@ public class RMGUtils
      * @param types list of Java class names
      * @throws CannotCompileException may be thrown when encountering invalid class names
      */
-    public static void createTypesFromList(List<String> types) throws CannotCompileException
+    public static synchronized void createTypesFromList(List<String> types) throws CannotCompileException
     {
         for(String type : types) {
 
@@ -344,7 +440,7 @@ public class RMGUtils
                     Class.forName(type);
                 } catch (ClassNotFoundException e) {
                     CtClass unknown = pool.makeClass(type);
-                    unknown.toClass();
+                    toClass(unknown, true);
                 }
             }
         }
@@ -576,11 +672,19 @@ public class RMGUtils
     }
 
     /**
-     * Just a wrapper around System.exit(1) that prints an information before quitting.
+     * Just a wrapper around System.exit(1) that prints an information before quitting. When called from
+     * a thread whose output is buffered, a DeferredExit is thrown instead, as exiting right away would
+     * discard the buffered output.
      */
     public static void exit()
     {
         Logger.eprintln("Cannot continue from here.");
+
+        if (Logger.isBuffered())
+        {
+            throw new DeferredExit();
+        }
+
         System.exit(1);
     }
 
@@ -825,7 +929,9 @@ public class RMGUtils
      * @param original Set that should be divided
      * @param count Number of Sets to divide into
      * @return List of n separate sets, where n is equal to count
+     * @deprecated method guessing distributes its work via the WorkScheduler and no longer splits candidate sets
      */
+    @Deprecated
     public static <T> List<Set<T>> splitSet(Set<T> original, int count)
     {
         ArrayList<Set<T>> result = new ArrayList<Set<T>>(count);
@@ -1335,4 +1441,24 @@ public class RMGUtils
             return Class.forName(type.getName());
         }
     }
+
+    /**
+     * ClassPool that is used by RMGUtils. In contrast to the default ClassPool, it allows to obtain the
+     * number of contained CtClass objects.
+     */
+    private static class RMGClassPool extends ClassPool
+    {
+        RMGClassPool()
+        {
+            super(true);
+        }
+
+        /**
+         * @return number of CtClass objects within the pool
+         */
+        int size()
+        {
+            return classes.size();
+        }
+    }
 }
@@ -205,18 +205,28 @@ public class SpringRemotingWrapper extends UnicastWrapper
 
         for (MethodCandidate candidate : candidates)
         {
-            Object[] args = new Object[] {};
+            invocationHolderSet.add(getInvocationHolder(candidate));
+        }
 
-            if (candidate.getArgumentCount() == 0)
-            {
-                args = new Object[] {1};
-            }
+        return invocationHolderSet;
+    }
+
+    /**
+     * Transform a single MethodCandidate to a RemoteInvocationHolder.
+     *
+     * @param candidate MethodCandidate to transform
+     * @return RemoteInvocationHolder for the MethodCandidate
+     */
+    public static RemoteInvocationHolder getInvocationHolder(MethodCandidate candidate)
+    {
+        Object[] args = new Object[] {};
 
-            RemoteInvocationHolder invoHolder = new RemoteInvocationHolder(buildRemoteInvocation(candidate, args), candidate);
-            invocationHolderSet.add(invoHolder);
+        if (candidate.getArgumentCount() == 0)
+        {
+            args = new Object[] {1};
         }
 
-        return invocationHolderSet;
+        return new RemoteInvocationHolder(buildRemoteInvocation(candidate, args), candidate);
     }
 
     /**
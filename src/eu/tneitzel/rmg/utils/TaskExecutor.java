@@ -0,0 +1,294 @@
+package eu.tneitzel.rmg.utils;
+
+import java.lang.reflect.Method;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+
+import eu.tneitzel.rmg.internal.RMGOption;
+import eu.tneitzel.rmg.io.Logger;
+
+/**
+ * The TaskExecutor runs the blocking network tasks of remote-method-guesser (guessing calls, port scans, ...).
+ * By default, tasks are executed within a fixed size pool of platform threads. When the --virtual-threads
+ * option is used and remote-method-guesser runs on JDK 21 or newer, each task runs on its own virtual thread
+ * instead. Virtual threads are cheap to create and do not reserve a full thread stack, which allows running
+ * thousands of concurrent probes from a single JVM. The number of concurrently running tasks is then bounded
+ * by a semaphore with the configured amount of permits.
+ *
+ * Tasks that do not perform network operations themselves, like the workers of a WorkScheduler, can be started
+ * via spawn, which does not acquire a permit. Such tasks can use runBounded to acquire a permit only for their
+ * blocking sections. This allows starting more workers than permits, while the number of concurrent network
+ * operations is still bounded.
+ *
+ * Virtual threads are obtained via reflection, as remote-method-guesser still needs to compile and run on Java 8.
+ * If they are not available, the TaskExecutor falls back to the platform thread pool.
+ *
+ * Tasks may submit further tasks to the same TaskExecutor (e.g. the TLS retry of the PortScanner). The
+ * awaitCompletion method only returns after all of them have finished. Waiting for completion uses a
+ * ReentrantLock instead of a monitor, as virtual threads cannot unmount while holding a monitor on older JDKs.
+ *
+ * @author Tobias Neitzel (@qtc_de)
+ */
+public class TaskExecutor implements Executor
+{
+    private final AtomicInteger pending;
+    private final ReentrantLock lock;
+    private final Condition finished;
+    private final Semaphore permits;
+    private final ExecutorService executor;
+
+    private static Method virtualExecutorMethod;
+    private static Method virtualBuilderMethod;
+    private static Method builderNameMethod;
+    private static Method builderUnstartedMethod;
+    private static boolean virtualChecked = false;
+
+    /**
+     * Create a new TaskExecutor that runs up to the specified number of tasks concurrently. Whether virtual
+     * threads are used is determined by the --virtual-threads option.
+     *
+     * @param threads maximum number of concurrently running tasks
+     */
+    public TaskExecutor(int threads)
+    {
+        this(threads, RMGOption.VIRTUAL_THREADS.getBool());
+    }
+
+    /**
+     * Create a new TaskExecutor that runs up to the specified number of tasks concurrently.
+     *
+     * @param threads maximum number of concurrently running tasks
+     * @param virtual whether to use virtual threads if available
+     */
+    public TaskExecutor(int threads, boolean virtual)
+    {
+        threads = Math.max(threads, 1);
+        ExecutorService virtualExecutor = null;
+
+        if (virtual)
+        {
+            virtualExecutor = newVirtualExecutor();
+        }
+
+        if (virtualExecutor != null)
+        {
+            this.executor = virtualExecutor;
+            this.permits = new Semaphore(threads);
+        }
+
+        else
+        {
+            this.executor = Executors.newFixedThreadPool(threads);
+            this.permits = null;
+        }
+
+        this.pending = new AtomicInteger(0);
+        this.lock = new ReentrantLock();
+        this.finished = lock.newCondition();
+    }
+
+    /**
+     * Check whether tasks created with the current options run on virtual threads. This is the case when the
+     * --virtual-threads option was used and virtual threads are available within the current JVM.
+     *
+     * @return true if virtual threads are used
+     */
+    public static boolean useVirtualThreads()
+    {
+        return RMGOption.VIRTUAL_THREADS.getBool() && virtualAvailable();
+    }
+
+    /**
+     * Create a new thread that is not managed by a TaskExecutor, e.g. a helper thread that lives as long as
+     * a connection. The thread is created the same way as the threads of a TaskExecutor: when virtual threads
+     * are used, a virtual thread is returned. Otherwise, a platform daemon thread is created. The returned
+     * thread is not started yet.
+     *
+     * @param name name of the thread
+     * @param task task to run within the thread
+     * @return unstarted thread that runs the specified task
+     */
+    public static Thread newThread(String name, Runnable task)
+    {
+        if (useVirtualThreads())
+        {
+            try
+            {
+                Object builder = builderNameMethod.invoke(virtualBuilderMethod.invoke(null), name);
+                return (Thread)builderUnstartedMethod.invoke(builder, task);
+            }
+
+            catch (ReflectiveOperationException e) {}
+        }
+
+        Thread thread = new Thread(task, name);
+        thread.setDaemon(true);
+
+        return thread;
+    }
+
+    /**
+     * Submit a new task for execution.
+     *
+     * @param task task to execute
+     */
+    @Override
+    public void execute(Runnable task)
+    {
+        spawn(() -> runBounded(task));
+    }
+
+    /**
+     * Submit a new task for execution without acquiring a permit. When virtual threads are used, the task
+     * starts immediately, independent of the number of configured permits. Blocking sections of the task
+     * should be wrapped by runBounded.
+     *
+     * @param task task to execute
+     */
+    public void spawn(Runnable task)
+    {
+        pending.incrementAndGet();
+
+        executor.execute(() ->
+        {
+            try
+            {
+                task.run();
+            }
+
+            finally
+            {
+                if (pending.decrementAndGet() == 0)
+                {
+                    lock.lock();
+
+                    try
+                    {
+                        finished.signalAll();
+                    }
+
+                    finally
+                    {
+                        lock.unlock();
+                    }
+                }
+            }
+        });
+    }
+
+    /**
+     * Wait until all submitted tasks, including tasks that were submitted by other tasks, have finished
+     * and shutdown the underlying executor.
+     *
+     * @throws InterruptedException if the calling thread is interrupted while waiting
+     */
+    public void awaitCompletion() throws InterruptedException
+    {
+        lock.lock();
+
+        try
+        {
+            while (pending.get() != 0)
+            {
+                finished.await();
+            }
+        }
+
+        finally
+        {
+            lock.unlock();
+            executor.shutdown();
+        }
+    }
+
+    /**
+     * Run the specified task within the calling thread. When virtual threads are used, the task first needs to
+     * acquire a permit from the semaphore. For platform threads, the number of threads in the pool already limits
+     * concurrency.
+     *
+     * @param task task to run
+     */
+    public void runBounded(Runnable task)
+    {
+        if (permits == null)
+        {
+            task.run();
+            return;
+        }
+
+        permits.acquireUninterruptibly();
+
+        try
+        {
+            task.run();
+        }
+
+        finally
+        {
+            permits.release();
+        }
+    }
+
+    /**
+     * Attempt to create an ExecutorService that starts a new virtual thread for each task. This requires
+     * JDK 21 or newer. On older JDKs, a warning is printed once and null is returned.
+     *
+     * @return ExecutorService using virtual threads or null if virtual threads are not available
+     */
+    private static ExecutorService newVirtualExecutor()
+    {
+        if (!virtualAvailable())
+        {
+            return null;
+        }
+
+        try
+        {
+            return (ExecutorService)virtualExecutorMethod.invoke(null);
+        }
+
+        catch (ReflectiveOperationException e)
+        {
+            return null;
+        }
+    }
+
+    /**
+     * Check whether virtual threads are available within the current JVM. On older JDKs, a warning
+     * is printed once.
+     *
+     * @return true if virtual threads are available
+     */
+    private static synchronized boolean virtualAvailable()
+    {
+        if (!virtualChecked)
+        {
+            virtualChecked = true;
+
+            try
+            {
+                virtualExecutorMethod = Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+                virtualBuilderMethod = Thread.class.getMethod("ofVirtual");
+
+                Class<?> builderClass = Class.forName("java.lang.Thread$Builder");
+                builderNameMethod = builderClass.getMethod("name", String.class);
+                builderUnstartedMethod = builderClass.getMethod("unstarted", Runnable.class);
+            }
+
+            catch (ReflectiveOperationException e)
+            {
+                virtualExecutorMethod = null;
+
+                Logger.eprintlnMixedYellow("Virtual threads require", "JDK 21", "or newer.");
+                Logger.eprintlnMixedBlue("Falling back to", "platform threads.");
+            }
+        }
+
+        return virtualExecutorMethod != null;
+    }
+}
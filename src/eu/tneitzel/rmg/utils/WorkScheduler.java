@@ -0,0 +1,452 @@
+package eu.tneitzel.rmg.utils;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.locks.LockSupport;
+import java.util.function.Consumer;
+
+import eu.tneitzel.rmg.internal.ExceptionHandler;
+
+/**
+ * The WorkScheduler distributes work items that belong to different targets (e.g. remote objects) over a
+ * fixed number of worker threads. Each target owns a lock-free queue of work items. Instead of assigning a
+ * static portion of the work to each thread, workers repeatedly grab a small batch of items from one of the
+ * targets until all queues are empty. This keeps all workers busy until the whole job is done, even if some
+ * targets are much slower than others.
+ *
+ * To prevent a single slow target from occupying all workers, the number of workers that process items of
+ * the same target at the same time can be limited. Workers pick targets in a round robin fashion and skip
+ * targets that already reached their limit. If all targets with pending work are at their limit, workers
+ * park until a slot becomes available. Releasing a target or adding work unparks one waiting worker, so idle
+ * workers neither poll nor contend on a shared monitor.
+ *
+ * Instead of the fixed limit, each target can also use an AdaptiveLimit that adjusts the number of workers to
+ * the latency and error rate observed for the target.
+ *
+ * Work items can also be streamed into the scheduler while it is running. In this case, targets are created
+ * with a capacity and adding items to a full target blocks until workers have processed some of them. Workers
+ * keep waiting for new items until the scheduler is closed.
+ *
+ * When virtual threads are used, the number of workers is not bound to the configured number of threads.
+ * Instead, each target gets as many workers as its limit allows, but not more than it has batches of work.
+ * The number of batches that are processed at the same time is still bounded by the configured number of
+ * threads. Workers acquire a permit of the TaskExecutor for each batch, so that idle workers do not hold one.
+ * The limit of each target still protects it from too many concurrent workers.
+ *
+ * Runtime exceptions thrown by the handler of a batch are reported and the worker continues with the next
+ * batch. The items of the failed batch are not retried.
+ *
+ * @author Tobias Neitzel (@qtc_de)
+ */
+public class WorkScheduler
+{
+    private final int threads;
+    private final int targetLimit;
+    private final List<Target<?>> targets;
+    private final AtomicInteger next;
+    private final Queue<Thread> waiters;
+
+    private TaskExecutor executor;
+    private volatile boolean closed;
+
+    /**
+     * Create a new WorkScheduler.
+     *
+     * @param threads number of worker threads to use
+     * @param targetLimit maximum number of workers per target. Values smaller than one disable the limit
+     */
+    public WorkScheduler(int threads, int targetLimit)
+    {
+        this.threads = Math.max(threads, 1);
+        this.targetLimit = (targetLimit < 1) ? this.threads : targetLimit;
+
+        this.targets = new ArrayList<Target<?>>();
+        this.next = new AtomicInteger(0);
+        this.waiters = new ConcurrentLinkedQueue<Thread>();
+        this.closed = true;
+    }
+
+    /**
+     * Add a new target to the scheduler. Targets need to be added before the scheduler is started.
+     *
+     * @param <T> type of the work items
+     * @param items work items that belong to the target
+     * @param batchSize maximum number of items that are passed to the handler at once
+     * @param handler handler that processes a batch of work items
+     * @return added Target
+     */
+    public <T> Target<T> addTarget(Collection<T> items, int batchSize, Consumer<List<T>> handler)
+    {
+        Target<T> target = new Target<T>(items, Math.max(batchSize, 1), 0, handler);
+        targets.add(target);
+
+        return target;
+    }
+
+    /**
+     * Add a new target that obtains its work items while the scheduler is running. Items are added via the
+     * returned Target object. Adding targets puts the scheduler into streaming mode, where workers wait for
+     * new items until close is called. Targets need to be added before the scheduler is started.
+     *
+     * @param <T> type of the work items
+     * @param batchSize maximum number of items that are passed to the handler at once
+     * @param capacity maximum number of pending items before adding blocks
+     * @param handler handler that processes a batch of work items
+     * @return Target that can be used to add work items
+     */
+    public <T> Target<T> addTarget(int batchSize, int capacity, Consumer<List<T>> handler)
+    {
+        Target<T> target = new Target<T>(new ArrayList<T>(), Math.max(batchSize, 1), Math.max(capacity, 1), handler);
+
+        targets.add(target);
+        closed = false;
+
+        return target;
+    }
+
+    /**
+     * Start the worker threads and wait until all work items were processed. Worker threads are created by
+     * a TaskExecutor and may be virtual threads.
+     *
+     * @throws InterruptedException if the calling thread is interrupted while waiting
+     */
+    public void run() throws InterruptedException
+    {
+        start();
+        await();
+    }
+
+    /**
+     * Start the worker threads without waiting for them. With platform threads, the configured number of
+     * workers is started. With virtual threads, the number of workers is derived from the targets, while
+     * the number of concurrently processed batches is bounded by the configured number of threads.
+     */
+    public void start()
+    {
+        int workers = TaskExecutor.useVirtualThreads() ? getVirtualWorkers() : threads;
+        executor = new TaskExecutor(threads);
+
+        for (int ctr = 0; ctr < workers; ctr++)
+        {
+            executor.spawn(this::work);
+        }
+    }
+
+    /**
+     * Determine the number of workers to start when virtual threads are used. Each target contributes its
+     * worker limit, or its number of batches if it has fewer. Streaming targets always contribute their
+     * worker limit, as their number of items is not known upfront.
+     *
+     * @return number of workers to start
+     */
+    private int getVirtualWorkers()
+    {
+        long workers = 0;
+
+        for (Target<?> target : targets)
+        {
+            long batches = (target.capacity != null) ? targetLimit : (target.queue.size() + target.batchSize - 1) / target.batchSize;
+            workers += Math.min(targetLimit, batches);
+        }
+
+        return (int)Math.max(1, Math.min(workers, Integer.MAX_VALUE));
+    }
+
+    /**
+     * Wait until all work items were processed. In streaming mode, this requires the scheduler to be closed.
+     *
+     * @throws InterruptedException if the calling thread is interrupted while waiting
+     */
+    public void await() throws InterruptedException
+    {
+        executor.awaitCompletion();
+    }
+
+    /**
+     * Signal that no more work items will be added. Workers finish as soon as all queues are empty.
+     */
+    public void close()
+    {
+        closed = true;
+
+        Thread waiter;
+
+        while ((waiter = waiters.poll()) != null)
+        {
+            LockSupport.unpark(waiter);
+        }
+    }
+
+    /**
+     * Main loop of the worker threads. Acquires a target, processes one batch of its work items and
+     * releases the target again. Batches are processed while holding a permit of the TaskExecutor.
+     * Returns when there is no work left.
+     */
+    private void work()
+    {
+        Target<?> target;
+
+        while ((target = acquire()) != null)
+        {
+            try
+            {
+                executor.runBounded(target::processBatch);
+            }
+
+            catch (RuntimeException e)
+            {
+                ExceptionHandler.unexpectedException(e, "batch", "processing", false);
+            }
+
+            finally
+            {
+                release(target);
+            }
+        }
+    }
+
+    /**
+     * Select the next target with pending work that did not reach its worker limit yet. The search starts
+     * at a different target each time to distribute workers evenly. If all targets with pending work are at
+     * their limit, the worker registers itself as waiter and parks until another worker releases a target.
+     * Targets are searched once more after registering, which prevents missing a release that happened in
+     * between. Workers that find no work left unpark the next waiter, which then finishes as well.
+     *
+     * @return target to process or null if there is no pending work left
+     */
+    private Target<?> acquire()
+    {
+        Thread current = Thread.currentThread();
+
+        while (true)
+        {
+            Target<?> target = search();
+
+            if (target != null)
+            {
+                return target;
+            }
+
+            waiters.add(current);
+            target = search();
+
+            if (target != null || finished())
+            {
+                waiters.remove(current);
+
+                if (target == null)
+                {
+                    wakeup();
+                }
+
+                return target;
+            }
+
+            LockSupport.park(this);
+            waiters.remove(current);
+
+            if (Thread.currentThread().isInterrupted())
+            {
+                wakeup();
+                return null;
+            }
+        }
+    }
+
+    /**
+     * Search for a target with pending work that did not reach its worker limit yet and register the
+     * current worker for it.
+     *
+     * @return acquired target or null if there is no target available
+     */
+    private Target<?> search()
+    {
+        int count = targets.size();
+        int start = next.getAndIncrement();
+
+        for (int ctr = 0; ctr < count; ctr++)
+        {
+            Target<?> target = targets.get(Math.floorMod(start + ctr, count));
+
+            if (!target.queue.isEmpty() && target.tryAcquire(target.getLimit()))
+            {
+                return target;
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Check whether the scheduler is closed and all queues are empty.
+     *
+     * @return true if there is no pending work left
+     */
+    private boolean finished()
+    {
+        if (!closed)
+        {
+            return false;
+        }
+
+        for (Target<?> target : targets)
+        {
+            if (!target.queue.isEmpty())
+            {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Release a target and wake up workers that wait for a free slot.
+     *
+     * @param target target to release
+     */
+    private void release(Target<?> target)
+    {
+        target.active.decrementAndGet();
+        wakeup();
+    }
+
+    /**
+     * Unpark one worker that is waiting for work or for a free slot.
+     */
+    private void wakeup()
+    {
+        Thread waiter = waiters.poll();
+
+        if (waiter != null)
+        {
+            LockSupport.unpark(waiter);
+        }
+    }
+
+    /**
+     * Holds the pending work items of a single target and the number of workers that currently
+     * process items of it.
+     *
+     * @param <T> type of the work items
+     * @author Tobias Neitzel (@qtc_de)
+     */
+    public class Target<T>
+    {
+        private final int batchSize;
+        private final Queue<T> queue;
+        private final Semaphore capacity;
+        private final AtomicInteger active;
+        private final Consumer<List<T>> handler;
+        private volatile AdaptiveLimit limit;
+
+        private Target(Collection<T> items, int batchSize, int capacity, Consumer<List<T>> handler)
+        {
+            this.batchSize = batchSize;
+            this.handler = handler;
+            this.queue = new ConcurrentLinkedQueue<T>(items);
+            this.active = new AtomicInteger(0);
+            this.capacity = (capacity > 0) ? new Semaphore(capacity) : null;
+        }
+
+        /**
+         * Add a work item to the target. Blocks if the target already contains the maximum number
+         * of pending items.
+         *
+         * @param item work item to add
+         * @throws InterruptedException if the calling thread is interrupted while waiting
+         */
+        public void add(T item) throws InterruptedException
+        {
+            if (capacity != null)
+            {
+                capacity.acquire();
+            }
+
+            queue.add(item);
+            wakeup();
+        }
+
+        /**
+         * Use an AdaptiveLimit instead of the fixed worker limit of the scheduler. The adaptive limit
+         * is still capped by the fixed limit.
+         *
+         * @param limit AdaptiveLimit to use for the target
+         */
+        public void setLimit(AdaptiveLimit limit)
+        {
+            this.limit = limit;
+        }
+
+        /**
+         * Return the number of workers that are currently allowed to process items of the target.
+         *
+         * @return current worker limit
+         */
+        private int getLimit()
+        {
+            AdaptiveLimit current = limit;
+
+            if (current == null)
+            {
+                return targetLimit;
+            }
+
+            return Math.min(current.get(), targetLimit);
+        }
+
+        /**
+         * Attempt to register a new worker for the target.
+         *
+         * @param limit maximum number of workers allowed for the target
+         * @return true if the worker was registered, false if the limit is reached
+         */
+        private boolean tryAcquire(int limit)
+        {
+            int current;
+
+            do
+            {
+                current = active.get();
+
+                if (current >= limit)
+                {
+                    return false;
+                }
+            }
+
+            while (!active.compareAndSet(current, current + 1));
+
+            return true;
+        }
+
+        /**
+         * Take up to batchSize items from the queue and pass them to the handler.
+         */
+        private void processBatch()
+        {
+            List<T> batch = new ArrayList<T>(batchSize);
+            T item;
+
+            while (batch.size() < batchSize && (item = queue.poll()) != null)
+            {
+                batch.add(item);
+            }
+
+            if (capacity != null)
+            {
+                capacity.release(batch.size());
+            }
+
+            if (batch.size() != 0)
+            {
+                handler.accept(batch);
+            }
+        }
+    }
+}